@@ -0,0 +1,424 @@
+package io.github.ashishnitw.observability;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of in-flight calls to a limit that adapts to the measured latency,
+ * using a gradient algorithm. Once per window of at least {@value #MIN_WINDOW_SAMPLES}
+ * calls and 100 ms, the average latency of the window is compared with the no-load
+ * latency. While latency stays within {@value #TOLERANCE} times the no-load latency the
+ * limit grows by about the square root of the limit; when latency rises beyond it, the
+ * limit shrinks in proportion to the rise. Each window moves the limit a fifth of the way
+ * to the new target. A dropped call, such as a timeout, multiplies the limit by
+ * {@value #DROP_BACKOFF} instead. The limit only grows while at least half of
+ * it is in use, so an idle service does not drift to the maximum.
+ * <p>
+ * An overloaded backend never shows its no-load latency, and a baseline taken from
+ * overloaded calls would let the limit ratchet up. So the limiter measures it directly:
+ * at creation and then about every {@value #DEFAULT_PROBE_INTERVAL_WINDOWS} windows it holds
+ * the limit at {@value #DEFAULT_PROBE_LIMIT} calls for two windows and takes the latency of the
+ * second as the baseline, which also follows a backend that became slower for good. Faster
+ * windows in between lower the baseline. Each interval is jittered by up to a quarter, so
+ * instances started together do not all probe at the same time. A probe rejects most calls
+ * for its two windows, so the interval and the probe limit are configurable, and probing can
+ * be turned off, in which case the baseline is the fastest window seen.
+ * <p>
+ * Permits are taken with a compare-and-set on the in-flight count, and the window update
+ * is done by whichever releasing thread closes the window, so no lock is involved. Calls
+ * beyond the limit are rejected by {@link #tryAcquire()}, or wait for a permit with
+ * {@link #acquire(long, TimeUnit)}. Rejections are counted in the {@code <name>_rejected}
+ * counter and drops in {@code <name>_dropped}; the current limit and in-flight count are
+ * exported as the {@code <name>_limit} and {@code <name>_in_flight} gauges.
+ *
+ * <pre>{@code
+ * AdaptiveConcurrencyLimiter limiter = MetricsUtils.concurrencyLimiter("inventory_client");
+ * long permit = limiter.tryAcquire();
+ * if (permit == AdaptiveConcurrencyLimiter.REJECTED) {
+ *     return serviceUnavailable();
+ * }
+ * try {
+ *     Response response = inventory.call(request);
+ *     limiter.release(permit);
+ *     return response;
+ * } catch (TimeoutException e) {
+ *     limiter.releaseDropped(permit);
+ *     throw e;
+ * }
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Token returned when no permit was granted.
+     */
+    public static final long REJECTED = Long.MIN_VALUE;
+
+    /**
+     * Default number of windows between two no-load probes.
+     */
+    public static final int DEFAULT_PROBE_INTERVAL_WINDOWS = 300;
+
+    /**
+     * Default limit held during a no-load probe.
+     */
+    public static final int DEFAULT_PROBE_LIMIT = 4;
+
+    /**
+     * Probe interval that turns periodic probing off.
+     */
+    public static final int NO_PROBE = 0;
+
+    static final double TOLERANCE = 1.5;
+    static final double DROP_BACKOFF = 0.9;
+    static final int MIN_WINDOW_SAMPLES = 10;
+    private static final long MIN_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final double SMOOTHING = 0.2;
+    private static final int PROBE_WINDOWS = 2;
+    private static final double PROBE_JITTER = 0.25;
+    // Waiters re-check at least this often, so a raised limit is noticed without a release
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int probeIntervalWindows;
+    private final int probeLimit;
+    private final LongSupplier clock;
+    private final CounterHandle rejected;
+    private final CounterHandle dropped;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    private volatile int limit;
+
+    // Samples of the current window
+    private final LongAdder windowLatencyNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+    private volatile boolean windowDropped;
+    private final AtomicLong windowStartNanos;
+    private final AtomicBoolean updating = new AtomicBoolean();
+    // Only touched by the thread that holds updating
+    private double estimatedLimit;
+    private double baselineRttNanos = Double.POSITIVE_INFINITY;
+    private int probeWindowsLeft;
+    private int windowsUntilProbe;
+
+    /**
+     * Creates a limiter. Limiters are created by {@link MetricsUtils#concurrencyLimiter(String)}.
+     *
+     * @param name the name prefix of the limiter metrics
+     * @param initialLimit the limit to use after the first no-load probe
+     * @param minLimit the smallest limit
+     * @param maxLimit the largest limit
+     */
+    AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        this(name, initialLimit, minLimit, maxLimit, DEFAULT_PROBE_INTERVAL_WINDOWS, DEFAULT_PROBE_LIMIT);
+    }
+
+    /**
+     * Creates a limiter with custom no-load probes.
+     *
+     * @param name the name prefix of the limiter metrics
+     * @param initialLimit the limit to use after the first no-load probe
+     * @param minLimit the smallest limit
+     * @param maxLimit the largest limit
+     * @param probeIntervalWindows the average number of windows between two probes, or
+     *                             {@link #NO_PROBE} to start at the initial limit and never probe
+     * @param probeLimit the limit held during a probe, kept between the smallest and the initial limit
+     */
+    AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, int probeIntervalWindows,
+                               int probeLimit) {
+        this(name, initialLimit, minLimit, maxLimit, probeIntervalWindows, probeLimit, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, LongSupplier clock) {
+        this(name, initialLimit, minLimit, maxLimit, DEFAULT_PROBE_INTERVAL_WINDOWS, DEFAULT_PROBE_LIMIT, clock);
+    }
+
+    AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, int probeIntervalWindows,
+                               int probeLimit, LongSupplier clock) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+        if (probeIntervalWindows < 0 || probeLimit < 1) {
+            throw new IllegalArgumentException(
+                    "probeIntervalWindows must not be negative and probeLimit must be positive");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.clock = clock;
+        this.probeIntervalWindows = probeIntervalWindows;
+        this.probeLimit = Math.max(minLimit, Math.min(probeLimit, initialLimit));
+        this.estimatedLimit = initialLimit;
+        if (probeIntervalWindows == NO_PROBE) {
+            this.limit = initialLimit;
+        } else {
+            this.limit = this.probeLimit;
+            this.probeWindowsLeft = PROBE_WINDOWS;
+        }
+        this.windowStartNanos = new AtomicLong(clock.getAsLong());
+        this.rejected = MetricsUtils.internalCounter(name + "_rejected");
+        this.dropped = MetricsUtils.internalCounter(name + "_dropped");
+    }
+
+    /**
+     * Gets the name of the limiter.
+     *
+     * @return the limiter name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Takes a permit if fewer calls than the limit are in flight.
+     *
+     * @return the permit token to pass to a release method, or {@link #REJECTED}
+     */
+    public long tryAcquire() {
+        long token = tryTake();
+        if (token == REJECTED) {
+            rejected.increment();
+        }
+        return token;
+    }
+
+    /**
+     * Takes a permit, waiting up to a timeout for one to become free.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout
+     * @return the permit token to pass to a release method, or {@link #REJECTED} on timeout
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public long acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long token = tryTake();
+        if (token != REJECTED) {
+            return token;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Thread current = Thread.currentThread();
+        waiters.add(current);
+        try {
+            while (true) {
+                token = tryTake();
+                if (token != REJECTED) {
+                    return token;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    rejected.increment();
+                    return REJECTED;
+                }
+                LockSupport.parkNanos(this, Math.min(remaining, MAX_PARK_NANOS));
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiters.remove(current);
+        }
+    }
+
+    private long tryTake() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return REJECTED;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                if (current + 1 > windowMaxInFlight.get()) {
+                    windowMaxInFlight.accumulateAndGet(current + 1, Math::max);
+                }
+                return clock.getAsLong();
+            }
+        }
+    }
+
+    /**
+     * Releases a permit of a call that completed normally and samples its latency.
+     *
+     * @param token the token returned when the permit was taken
+     */
+    public void release(long token) {
+        if (token == REJECTED) {
+            return;
+        }
+        long now = clock.getAsLong();
+        windowLatencyNanos.add(now - token);
+        windowSamples.increment();
+        releasePermit();
+        maybeUpdateLimit(now);
+    }
+
+    /**
+     * Releases a permit of a call that was dropped because of overload, such as a timeout,
+     * which shrinks the limit at the end of the window.
+     *
+     * @param token the token returned when the permit was taken
+     */
+    public void releaseDropped(long token) {
+        if (token == REJECTED) {
+            return;
+        }
+        dropped.increment();
+        windowDropped = true;
+        releasePermit();
+        maybeUpdateLimit(clock.getAsLong());
+    }
+
+    /**
+     * Releases a permit without sampling the call, for failures unrelated to load, whose
+     * latency says nothing about the capacity of the backend.
+     *
+     * @param token the token returned when the permit was taken
+     */
+    public void releaseIgnored(long token) {
+        if (token != REJECTED) {
+            releasePermit();
+        }
+    }
+
+    /**
+     * Runs an operation under a permit, recording it like
+     * {@link MetricsUtils#measureOperation(String, MetricsUtils.MeasurableOperation)} under
+     * the limiter name. The latency of an operation that throws is not sampled.
+     *
+     * @param <T> the return type of the operation
+     * @param operation the operation to run
+     * @return the result of the operation
+     * @throws RejectedExecutionException if the limit is reached
+     * @throws Exception if the operation throws an exception
+     */
+    public <T> T execute(MetricsUtils.MeasurableOperation<T> operation) throws Exception {
+        long token = tryAcquire();
+        if (token == REJECTED) {
+            throw new RejectedExecutionException("Concurrency limit of " + limit + " reached for " + name);
+        }
+        boolean success = false;
+        try {
+            T result = MetricsUtils.measureOperation(name, operation);
+            success = true;
+            return result;
+        } finally {
+            if (success) {
+                release(token);
+            } else {
+                releaseIgnored(token);
+            }
+        }
+    }
+
+    private void releasePermit() {
+        inFlight.decrementAndGet();
+        Thread waiter = waiters.peek();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    private void maybeUpdateLimit(long now) {
+        long start = windowStartNanos.get();
+        if (now - start < MIN_WINDOW_NANOS || (windowSamples.sum() < MIN_WINDOW_SAMPLES && !windowDropped)) {
+            return;
+        }
+        if (!updating.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (windowStartNanos.get() != start) {
+                return;
+            }
+            windowStartNanos.set(now);
+            long samples = windowSamples.sumThenReset();
+            long latency = windowLatencyNanos.sumThenReset();
+            int maxInFlight = windowMaxInFlight.getAndSet(inFlight.get());
+            boolean drop = windowDropped;
+            windowDropped = false;
+            updateLimit(samples > 0 ? (double) latency / samples : 0, maxInFlight, drop);
+        } finally {
+            updating.set(false);
+        }
+    }
+
+    private void updateLimit(double shortRttNanos, int maxInFlight, boolean drop) {
+        if (probeWindowsLeft > 0) {
+            // The first probe window still completes calls admitted under the old limit
+            if (shortRttNanos > 0 && --probeWindowsLeft == 0) {
+                baselineRttNanos = shortRttNanos;
+                windowsUntilProbe = nextProbeInterval();
+                limit = (int) estimatedLimit;
+            }
+            return;
+        }
+        double next;
+        if (drop) {
+            next = estimatedLimit * DROP_BACKOFF;
+        } else {
+            if (shortRttNanos <= 0) {
+                return;
+            }
+            baselineRttNanos = Math.min(baselineRttNanos, shortRttNanos);
+            double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baselineRttNanos / shortRttNanos));
+            double queueAllowance = Math.sqrt(estimatedLimit);
+            next = estimatedLimit * gradient + queueAllowance;
+            if (next > estimatedLimit && maxInFlight < estimatedLimit / 2) {
+                next = estimatedLimit;
+            }
+            next = estimatedLimit * (1 - SMOOTHING) + next * SMOOTHING;
+        }
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, next));
+        if (probeIntervalWindows != NO_PROBE && --windowsUntilProbe <= 0) {
+            probeWindowsLeft = PROBE_WINDOWS;
+            limit = probeLimit;
+        } else {
+            limit = (int) estimatedLimit;
+        }
+    }
+
+    private int nextProbeInterval() {
+        int jitter = (int) (probeIntervalWindows * PROBE_JITTER);
+        return probeIntervalWindows - jitter + ThreadLocalRandom.current().nextInt(2 * jitter + 1);
+    }
+
+    /**
+     * Gets the current limit.
+     *
+     * @return the number of calls allowed in flight
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Gets the number of calls in flight.
+     *
+     * @return the in-flight count
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Gets the number of rejected calls.
+     *
+     * @return the rejection count
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,437 @@
+package io.github.ashishnitw.observability;
+
+import org.slf4j.event.Level;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous log appender, so that logging threads never wait for the disk.
+ * Events are handed off through a ring buffer of preallocated {@link LogEvent} slots: a
+ * logging thread claims a slot with a single compare-and-set, fills it and returns. One
+ * background writer thread formats and encodes the events into a batch buffer and writes
+ * the batch to a {@link FileChannel} when the buffer is full or when its oldest event has
+ * waited for the flush interval, whichever comes first. Batches are written to the channel
+ * but not forced to the storage device.
+ * <p>
+ * When the ring buffer is full, events are dropped and counted, or the logging thread waits
+ * for a free slot, depending on the {@link OverflowPolicy}. Dropped events are also counted
+ * by the {@code log_events_dropped} counter. Messages are formatted on the writer thread, so
+ * arguments that are mutated right after logging may be logged with their new state.
+ * <p>
+ * The appender backs the SLF4J provider {@link AsyncLoggingServiceProvider}, and can also
+ * be used directly:
+ *
+ * <pre>{@code
+ * AsyncLogAppender appender = AsyncLogAppender.open(Path.of("app.log"));
+ * appender.append(Level.WARN, "orders", "Order {} is late", new Object[]{orderId}, null, null);
+ * appender.close();
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class AsyncLogAppender implements AutoCloseable {
+
+    /**
+     * What logging threads do when the ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drop the event and count it, see {@link #getDroppedCount()}.
+         */
+        DROP,
+        /**
+         * Wait until the writer frees a slot.
+         */
+        BLOCK
+    }
+
+    /**
+     * Default number of ring buffer slots.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * Default size of the batch buffer in bytes.
+     */
+    public static final int DEFAULT_BATCH_BYTES = 64 * 1024;
+
+    /**
+     * Default time an encoded event may wait in the batch buffer, in milliseconds.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200L;
+
+    static final int MAX_EVENT_BYTES = 16 * 1024 * 1024;
+
+    private static final long FLUSH_PARK_NANOS = 100_000L;
+
+    private final MultiProducerRing ring;
+    private final LogEvent[] events;
+    private final LogEventEncoder encoder;
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final ByteBuffer batch;
+    private final long flushIntervalNanos;
+    private final LongAdder droppedCount = new LongAdder();
+    private final CounterHandle droppedCounter = MetricsUtils.internalCounter("log_events_dropped");
+    private final AtomicLong writtenBytes = new AtomicLong();
+    private final Thread writer;
+    // Sequence below which every event has been written to the channel
+    private volatile long writtenSequence;
+    private volatile boolean flushRequested;
+    // Events encoded into the batch buffer since it was last written, used only by the writer thread
+    private int batchEvents;
+
+    private AsyncLogAppender(FileChannel channel, boolean ownsChannel, int capacity, OverflowPolicy overflowPolicy,
+                             LogEventEncoder encoder, int batchBytes, long flushIntervalNanos) {
+        if (batchBytes < 1 || flushIntervalNanos < 0) {
+            throw new IllegalArgumentException("batchBytes must be positive and the flush interval not negative");
+        }
+        this.writer = new Thread(this::drain, "metrics-async-log-appender");
+        this.writer.setDaemon(true);
+        this.ring = new MultiProducerRing(capacity, overflowPolicy == OverflowPolicy.BLOCK, writer);
+        this.events = new LogEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            events[i] = new LogEvent();
+        }
+        this.encoder = encoder;
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.batch = ByteBuffer.allocateDirect(batchBytes);
+        this.flushIntervalNanos = flushIntervalNanos;
+    }
+
+    /**
+     * Opens an appender that appends text lines to a file with the default settings.
+     *
+     * @param file the file to append to, created if missing
+     * @return the running appender
+     * @throws IOException if the file cannot be opened
+     */
+    public static AsyncLogAppender open(Path file) throws IOException {
+        return open(file, DEFAULT_CAPACITY, OverflowPolicy.DROP, new TextLogEncoder(),
+                DEFAULT_BATCH_BYTES, DEFAULT_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens an appender that appends to a file.
+     *
+     * @param file the file to append to, created if missing
+     * @param capacity the number of ring buffer slots, a power of two
+     * @param overflowPolicy what logging threads do when the ring buffer is full
+     * @param encoder the encoder of the events
+     * @param batchBytes the size of the batch buffer, which triggers a write when full
+     * @param flushInterval the longest time an encoded event waits before it is written
+     * @param unit the unit of the flush interval
+     * @return the running appender
+     * @throws IOException if the file cannot be opened
+     */
+    public static AsyncLogAppender open(Path file, int capacity, OverflowPolicy overflowPolicy, LogEventEncoder encoder,
+                                        int batchBytes, long flushInterval, TimeUnit unit) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        try {
+            return start(new AsyncLogAppender(channel, true, capacity, overflowPolicy, encoder, batchBytes,
+                    unit.toNanos(flushInterval)));
+        } catch (RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an appender that writes to the standard output of the process.
+     * Closing the appender does not close the standard output.
+     *
+     * @param capacity the number of ring buffer slots, a power of two
+     * @param overflowPolicy what logging threads do when the ring buffer is full
+     * @param encoder the encoder of the events
+     * @param batchBytes the size of the batch buffer, which triggers a write when full
+     * @param flushInterval the longest time an encoded event waits before it is written
+     * @param unit the unit of the flush interval
+     * @return the running appender
+     */
+    public static AsyncLogAppender openStandardOutput(int capacity, OverflowPolicy overflowPolicy,
+                                                      LogEventEncoder encoder, int batchBytes,
+                                                      long flushInterval, TimeUnit unit) {
+        @SuppressWarnings("resource")
+        FileChannel channel = new FileOutputStream(FileDescriptor.out).getChannel();
+        return open(channel, capacity, overflowPolicy, encoder, batchBytes, flushInterval, unit);
+    }
+
+    /**
+     * Opens an appender that writes to a channel owned by the caller, which closing the
+     * appender does not close.
+     *
+     * @param channel the channel to write to
+     * @param capacity the number of ring buffer slots, a power of two
+     * @param overflowPolicy what logging threads do when the ring buffer is full
+     * @param encoder the encoder of the events
+     * @param batchBytes the size of the batch buffer, which triggers a write when full
+     * @param flushInterval the longest time an encoded event waits before it is written
+     * @param unit the unit of the flush interval
+     * @return the running appender
+     */
+    static AsyncLogAppender open(FileChannel channel, int capacity, OverflowPolicy overflowPolicy,
+                                 LogEventEncoder encoder, int batchBytes, long flushInterval, TimeUnit unit) {
+        return start(new AsyncLogAppender(channel, false, capacity, overflowPolicy, encoder, batchBytes,
+                unit.toNanos(flushInterval)));
+    }
+
+    private static AsyncLogAppender start(AsyncLogAppender appender) {
+        appender.writer.start();
+        return appender;
+    }
+
+    /**
+     * Hands off an event to the writer thread.
+     * This method does not allocate. When the ring buffer is full the event is dropped or
+     * the caller waits, depending on the overflow policy.
+     *
+     * @param level the level
+     * @param loggerName the name of the logger
+     * @param message the message, an SLF4J pattern if there are arguments
+     * @param arguments the pattern arguments, or null
+     * @param throwable the exception, or null
+     * @param mdc the diagnostic context, or null; it must not be modified afterwards
+     * @return true if the event was accepted, false if it was dropped
+     */
+    public boolean append(Level level, String loggerName, String message, Object[] arguments, Throwable throwable,
+                          Map<String, String> mdc) {
+        long sequence = ring.claim();
+        if (sequence < 0) {
+            drop(1);
+            return false;
+        }
+        events[ring.index(sequence)].set(System.currentTimeMillis(), level, loggerName,
+                Thread.currentThread().getName(), message, arguments, throwable, mdc);
+        ring.publish(sequence);
+        return true;
+    }
+
+    /**
+     * Gets the number of events dropped because the ring buffer was full, the appender was
+     * closed, a single event encoded to more than 16 MB, or the batch holding the event
+     * could not be written.
+     *
+     * @return the dropped count
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Gets the number of events accepted but not yet encoded.
+     *
+     * @return the backlog size
+     */
+    public long getBacklog() {
+        return ring.getClaimedSequence() - ring.getConsumedSequence();
+    }
+
+    /**
+     * Gets the number of bytes written to the channel.
+     *
+     * @return the written byte count
+     */
+    public long getWrittenBytes() {
+        return writtenBytes.get();
+    }
+
+    /**
+     * Waits until every event appended before this call has been written to the channel,
+     * without waiting for the flush interval.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        long target = ring.getClaimedSequence();
+        while (writtenSequence < target && writer.isAlive()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            flushRequested = true;
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(FLUSH_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Stops the writer after writing the events already appended, and closes the file.
+     * Events appended after close are dropped.
+     */
+    @Override
+    public void close() {
+        if (!ring.close()) {
+            return;
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (ownsChannel) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                report("Failed to close log file", e);
+            }
+        }
+    }
+
+    private void drain() {
+        long next = ring.getConsumedSequence();
+        long batchStartNanos = 0L;
+        int idleRounds = 0;
+        while (true) {
+            if (ring.isPublished(next)) {
+                LogEvent event = events[ring.index(next)];
+                if (batch.position() == 0) {
+                    batchStartNanos = System.nanoTime();
+                }
+                try {
+                    encode(event, next);
+                } catch (Throwable e) {
+                    // Keep the writer alive whatever encoding or writing an event throws; the
+                    // batch is in an unknown state, so its events are counted as dropped
+                    drop(batchEvents);
+                    batchEvents = 0;
+                    batch.clear();
+                    report("Failed to encode log event from " + event.getLoggerName(), e);
+                }
+                event.clear();
+                next++;
+                ring.consumed(next);
+                idleRounds = 0;
+                if (batch.position() > 0 && System.nanoTime() - batchStartNanos >= flushIntervalNanos) {
+                    writeBatch(next);
+                }
+            } else if (ring.isClaimedOrOpen(next)) {
+                // Either more events may come, or a claimed event is not published yet.
+                // Only a batch holding events has a deadline to wake up for.
+                long maxParkNanos = MultiProducerRing.MAX_IDLE_PARK_NANOS;
+                if (batch.position() > 0) {
+                    long waitedNanos = System.nanoTime() - batchStartNanos;
+                    if (flushRequested || waitedNanos >= flushIntervalNanos) {
+                        writeBatch(next);
+                    } else {
+                        maxParkNanos = Math.min(maxParkNanos, flushIntervalNanos - waitedNanos);
+                    }
+                }
+                if (batch.position() == 0) {
+                    writtenSequence = next;
+                    flushRequested = false;
+                }
+                idleRounds = MultiProducerRing.idle(idleRounds, maxParkNanos);
+            } else {
+                writeBatch(next);
+                writtenSequence = next;
+                return;
+            }
+        }
+    }
+
+    private void encode(LogEvent event, long sequence) {
+        int start = batch.position();
+        try {
+            encoder.encode(event, batch);
+            batchEvents++;
+            return;
+        } catch (BufferOverflowException e) {
+            batch.position(start);
+        } catch (Throwable e) {
+            batch.position(start);
+            report("Failed to encode log event from " + event.getLoggerName(), e);
+            return;
+        }
+        if (start > 0) {
+            // Write out the earlier events and retry with the whole buffer
+            writeBatch(sequence);
+            try {
+                encoder.encode(event, batch);
+                batchEvents++;
+                return;
+            } catch (BufferOverflowException e) {
+                batch.clear();
+            } catch (Throwable e) {
+                batch.clear();
+                report("Failed to encode log event from " + event.getLoggerName(), e);
+                return;
+            }
+        }
+        encodeOversized(event);
+    }
+
+    // An event larger than the batch buffer gets a temporary buffer of its own
+    private void encodeOversized(LogEvent event) {
+        for (int size = batch.capacity() * 2; size > 0 && size <= MAX_EVENT_BYTES; size *= 2) {
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            try {
+                encoder.encode(event, buffer);
+                buffer.flip();
+                if (!write(buffer)) {
+                    drop(1);
+                }
+                return;
+            } catch (BufferOverflowException e) {
+                // Try a larger buffer
+            } catch (Throwable e) {
+                report("Failed to encode log event from " + event.getLoggerName(), e);
+                return;
+            }
+        }
+        drop(1);
+        report("Dropped log event from " + event.getLoggerName() + " larger than " + MAX_EVENT_BYTES + " bytes", null);
+    }
+
+    private void writeBatch(long sequence) {
+        if (batch.position() > 0) {
+            batch.flip();
+            if (!write(batch)) {
+                drop(batchEvents);
+            }
+            batch.clear();
+        }
+        batchEvents = 0;
+        writtenSequence = sequence;
+    }
+
+    private boolean write(ByteBuffer buffer) {
+        try {
+            while (buffer.hasRemaining()) {
+                writtenBytes.addAndGet(channel.write(buffer));
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // Such as a channel that was closed or not opened for writing
+            report("Failed to write log batch", e);
+            return false;
+        }
+    }
+
+    private void drop(long count) {
+        if (count > 0) {
+            droppedCount.add(count);
+            droppedCounter.increment(count);
+        }
+    }
+
+    // Problems of the appender itself cannot go through SLF4J, which may be backed by this appender
+    private static void report(String message, Throwable error) {
+        System.err.println("AsyncLogAppender: " + message + (error != null ? ": " + error : ""));
+    }
+}
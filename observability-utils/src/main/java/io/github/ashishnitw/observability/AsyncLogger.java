@@ -0,0 +1,79 @@
+package io.github.ashishnitw.observability;
+
+import org.slf4j.Marker;
+import org.slf4j.event.Level;
+import org.slf4j.helpers.BasicMDCAdapter;
+import org.slf4j.helpers.LegacyAbstractLogger;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SLF4J logger that hands its events to an {@link AsyncLogAppender}.
+ * Loggers are created by {@link AsyncLoggingServiceProvider}; markers are ignored.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+final class AsyncLogger extends LegacyAbstractLogger {
+
+    private static final long serialVersionUID = 1L;
+
+    // Not serialized: a deserialized logger is looked up again by name
+    private final transient AsyncLogAppender appender;
+    private final transient BasicMDCAdapter mdcAdapter;
+    private final int threshold;
+
+    AsyncLogger(String name, AsyncLogAppender appender, Level level, BasicMDCAdapter mdcAdapter) {
+        this.name = name;
+        this.appender = appender;
+        this.threshold = level.toInt();
+        this.mdcAdapter = mdcAdapter;
+    }
+
+    @Override
+    public boolean isTraceEnabled() {
+        return threshold <= Level.TRACE.toInt();
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return threshold <= Level.DEBUG.toInt();
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return threshold <= Level.INFO.toInt();
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+        return threshold <= Level.WARN.toInt();
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return threshold <= Level.ERROR.toInt();
+    }
+
+    @Override
+    protected String getFullyQualifiedCallerName() {
+        return null;
+    }
+
+    @Override
+    protected void handleNormalizedLoggingCall(Level level, Marker marker, String messagePattern, Object[] arguments,
+                                               Throwable throwable) {
+        appender.append(level, name, messagePattern, arguments, throwable, copyOfContext());
+    }
+
+    // Only copy the diagnostic context when there is one
+    private Map<String, String> copyOfContext() {
+        if (mdcAdapter == null) {
+            return null;
+        }
+        Set<String> keys = mdcAdapter.getKeys();
+        return keys == null || keys.isEmpty() ? null : mdcAdapter.getCopyOfContextMap();
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.ashishnitw.observability;
+
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+import org.slf4j.helpers.BasicMDCAdapter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates the {@link AsyncLogger} instances of {@link AsyncLoggingServiceProvider}, one per
+ * name, all sharing one appender and level.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+final class AsyncLoggerFactory implements ILoggerFactory {
+
+    private final Map<String, Logger> loggers = new ConcurrentHashMap<>();
+    private final AsyncLogAppender appender;
+    private final Level level;
+    private final BasicMDCAdapter mdcAdapter;
+
+    AsyncLoggerFactory(AsyncLogAppender appender, Level level, BasicMDCAdapter mdcAdapter) {
+        this.appender = appender;
+        this.level = level;
+        this.mdcAdapter = mdcAdapter;
+    }
+
+    @Override
+    public Logger getLogger(String name) {
+        Logger logger = loggers.get(name);
+        if (logger != null) {
+            return logger;
+        }
+        return loggers.computeIfAbsent(name, n -> new AsyncLogger(n, appender, level, mdcAdapter));
+    }
+}
@@ -0,0 +1,165 @@
+package io.github.ashishnitw.observability;
+
+import org.slf4j.ILoggerFactory;
+import org.slf4j.IMarkerFactory;
+import org.slf4j.event.Level;
+import org.slf4j.helpers.BasicMDCAdapter;
+import org.slf4j.helpers.BasicMarkerFactory;
+import org.slf4j.spi.MDCAdapter;
+import org.slf4j.spi.SLF4JServiceProvider;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SLF4J provider that logs through an {@link AsyncLogAppender}.
+ * <p>
+ * The provider is not registered as a service, so adding this library never takes over the
+ * logging of an application. It is selected explicitly with the {@code slf4j.provider}
+ * system property (SLF4J 2.0.9 and later):
+ *
+ * <pre>
+ * -Dslf4j.provider=io.github.ashishnitw.observability.AsyncLoggingServiceProvider
+ * -Dobservability.logging.file=/var/log/app.log
+ * </pre>
+ *
+ * It is configured with these system properties:
+ * <ul>
+ *   <li>{@code observability.logging.file}: the file to append to; standard output if unset</li>
+ *   <li>{@code observability.logging.level}: the lowest level logged, {@code INFO} by default</li>
+ *   <li>{@code observability.logging.format}: {@code text} (default) for {@link TextLogEncoder}
+ *       lines or {@code json} for {@link JsonLogEncoder} lines</li>
+ *   <li>{@code observability.logging.capacity}: the ring buffer slots, a power of two,
+ *       {@value AsyncLogAppender#DEFAULT_CAPACITY} by default</li>
+ *   <li>{@code observability.logging.overflowPolicy}: {@code DROP} (default) or {@code BLOCK}</li>
+ *   <li>{@code observability.logging.batchBytes}: the batch buffer size,
+ *       {@value AsyncLogAppender#DEFAULT_BATCH_BYTES} by default</li>
+ *   <li>{@code observability.logging.flushIntervalMillis}: the longest time an event waits
+ *       to be written, {@value AsyncLogAppender#DEFAULT_FLUSH_INTERVAL_MILLIS} by default</li>
+ * </ul>
+ * Events still in the ring buffer are written by a shutdown hook when the JVM exits.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class AsyncLoggingServiceProvider implements SLF4JServiceProvider {
+
+    /**
+     * The SLF4J API version this provider is built for.
+     */
+    public static final String REQUESTED_API_VERSION = "2.0.99";
+
+    static final String PROPERTY_PREFIX = "observability.logging.";
+
+    private ILoggerFactory loggerFactory;
+    private IMarkerFactory markerFactory;
+    private BasicMDCAdapter mdcAdapter;
+    private AsyncLogAppender appender;
+
+    /**
+     * Creates the provider. SLF4J creates it and calls {@link #initialize()}.
+     */
+    public AsyncLoggingServiceProvider() {
+    }
+
+    @Override
+    public void initialize() {
+        markerFactory = new BasicMarkerFactory();
+        mdcAdapter = new BasicMDCAdapter();
+        Level level = enumProperty("level", Level.class, Level.INFO);
+        int capacity = intProperty("capacity", AsyncLogAppender.DEFAULT_CAPACITY);
+        AsyncLogAppender.OverflowPolicy overflowPolicy =
+                enumProperty("overflowPolicy", AsyncLogAppender.OverflowPolicy.class, AsyncLogAppender.OverflowPolicy.DROP);
+        int batchBytes = intProperty("batchBytes", AsyncLogAppender.DEFAULT_BATCH_BYTES);
+        long flushIntervalMillis = intProperty("flushIntervalMillis", (int) AsyncLogAppender.DEFAULT_FLUSH_INTERVAL_MILLIS);
+        String file = System.getProperty(PROPERTY_PREFIX + "file");
+        LogEventEncoder encoder = enumProperty("format", Format.class, Format.TEXT) == Format.JSON
+                ? new JsonLogEncoder()
+                : new TextLogEncoder();
+        appender = null;
+        if (file != null && !file.isBlank()) {
+            try {
+                appender = AsyncLogAppender.open(Path.of(file), capacity, overflowPolicy, encoder, batchBytes,
+                        flushIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("AsyncLoggingServiceProvider: cannot open " + file
+                        + ", logging to standard output: " + e);
+            }
+        }
+        if (appender == null) {
+            appender = AsyncLogAppender.openStandardOutput(capacity, overflowPolicy, encoder, batchBytes,
+                    flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        AsyncLogAppender started = appender;
+        Runtime.getRuntime().addShutdownHook(new Thread(started::close, "metrics-async-log-shutdown"));
+        loggerFactory = new AsyncLoggerFactory(started, level, mdcAdapter);
+    }
+
+    /**
+     * Values of the {@code observability.logging.format} property.
+     */
+    private enum Format {
+        TEXT,
+        JSON
+    }
+
+    private static int intProperty(String name, int defaultValue) {
+        String value = System.getProperty(PROPERTY_PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("AsyncLoggingServiceProvider: invalid " + PROPERTY_PREFIX + name + " '" + value
+                    + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static <E extends Enum<E>> E enumProperty(String name, Class<E> type, E defaultValue) {
+        String value = System.getProperty(PROPERTY_PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("AsyncLoggingServiceProvider: invalid " + PROPERTY_PREFIX + name + " '" + value
+                    + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Gets the appender the loggers write to, for example to read its dropped count.
+     *
+     * @return the appender, or null before initialization
+     */
+    public AsyncLogAppender getAppender() {
+        return appender;
+    }
+
+    @Override
+    public ILoggerFactory getLoggerFactory() {
+        return loggerFactory;
+    }
+
+    @Override
+    public IMarkerFactory getMarkerFactory() {
+        return markerFactory;
+    }
+
+    @Override
+    public MDCAdapter getMDCAdapter() {
+        return mdcAdapter;
+    }
+
+    @Override
+    public String getRequestedApiVersion() {
+        return REQUESTED_API_VERSION;
+    }
+}
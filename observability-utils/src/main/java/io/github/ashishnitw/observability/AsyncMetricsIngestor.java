@@ -0,0 +1,218 @@
+package io.github.ashishnitw.observability;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous metrics ingestion through a preallocated multi-producer ring buffer.
+ * Producer threads hand off (metric id, value) events with {@link #record(int, long)},
+ * which claims a slot with a single compare-and-set and never allocates. One background
+ * aggregator thread folds the events into the {@link MetricsUtils} counters and timers
+ * that the ids were registered for.
+ *
+ * <pre>{@code
+ * AsyncMetricsIngestor ingestor = AsyncMetricsIngestor.start(1 << 16, AsyncMetricsIngestor.OverflowPolicy.DROP);
+ * int requests = ingestor.registerCounter("requests");
+ * int latency = ingestor.registerTimer("request_latency");
+ * ingestor.record(requests, 1);
+ * ingestor.record(latency, elapsedNanos);
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class AsyncMetricsIngestor implements AutoCloseable {
+
+    /**
+     * What producers do when the ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drop the event and count it, see {@link #getDroppedCount()}.
+         */
+        DROP,
+        /**
+         * Wait until the aggregator frees a slot.
+         */
+        BLOCK
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncMetricsIngestor.class);
+    private static final long FLUSH_PARK_NANOS = 100_000L;
+
+    private final MultiProducerRing ring;
+    private final int[] metricIds;
+    private final long[] values;
+    private final LongAdder droppedCount = new LongAdder();
+    private final Thread aggregator;
+    private volatile Object[] targets = new Object[0];
+
+    private AsyncMetricsIngestor(int capacity, OverflowPolicy overflowPolicy) {
+        this.aggregator = new Thread(this::aggregate, "metrics-ingestor");
+        this.aggregator.setDaemon(true);
+        this.ring = new MultiProducerRing(capacity, overflowPolicy == OverflowPolicy.BLOCK, aggregator);
+        this.metricIds = new int[capacity];
+        this.values = new long[capacity];
+    }
+
+    /**
+     * Creates an ingestor and starts its aggregator thread.
+     *
+     * @param capacity the number of ring buffer slots, a power of two
+     * @param overflowPolicy what producers do when the ring buffer is full
+     * @return the running ingestor
+     */
+    public static AsyncMetricsIngestor start(int capacity, OverflowPolicy overflowPolicy) {
+        AsyncMetricsIngestor ingestor = new AsyncMetricsIngestor(capacity, overflowPolicy);
+        ingestor.aggregator.start();
+        return ingestor;
+    }
+
+    /**
+     * Registers a {@link MetricsUtils} counter as an event target.
+     * The value of each event is added to the counter, which is no longer evicted as idle.
+     *
+     * @param counterName the name of the counter
+     * @return the metric id to pass to {@link #record(int, long)}
+     */
+    public int registerCounter(String counterName) {
+        return register(MetricsUtils.internalCounter(counterName));
+    }
+
+    /**
+     * Registers a {@link MetricsUtils} timer as an event target.
+     * The value of each event is recorded as a duration in nanoseconds, and the timer is no
+     * longer evicted as idle.
+     *
+     * @param timerName the name of the timer
+     * @return the metric id to pass to {@link #record(int, long)}
+     */
+    public int registerTimer(String timerName) {
+        return register(MetricsUtils.internalTimer(timerName));
+    }
+
+    private synchronized int register(Object target) {
+        Object[] current = targets;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == target) {
+                return i;
+            }
+        }
+        Object[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = target;
+        targets = updated;
+        return current.length;
+    }
+
+    /**
+     * Hands off an event to the aggregator.
+     * This method does not allocate. When the ring buffer is full the event is dropped
+     * or the caller waits, depending on the overflow policy.
+     *
+     * @param metricId the id returned when the metric was registered
+     * @param value the counter increment or the duration in nanoseconds
+     * @return true if the event was accepted, false if it was dropped
+     */
+    public boolean record(int metricId, long value) {
+        if (metricId < 0 || metricId >= targets.length) {
+            throw new IllegalArgumentException("Unknown metric id: " + metricId);
+        }
+        long sequence = ring.claim();
+        if (sequence < 0) {
+            droppedCount.increment();
+            return false;
+        }
+        int index = ring.index(sequence);
+        metricIds[index] = metricId;
+        values[index] = value;
+        ring.publish(sequence);
+        return true;
+    }
+
+    /**
+     * Gets the number of events dropped because the ring buffer was full.
+     *
+     * @return the dropped count
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Gets the number of events claimed but not yet folded into their metrics.
+     *
+     * @return the backlog size
+     */
+    public long getBacklog() {
+        return ring.getClaimedSequence() - ring.getConsumedSequence();
+    }
+
+    /**
+     * Waits until every event recorded before this call has been folded into its metric.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        long target = ring.getClaimedSequence();
+        // The aggregator may be in a long idle park
+        LockSupport.unpark(aggregator);
+        while (ring.getConsumedSequence() < target && aggregator.isAlive()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(FLUSH_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Stops the aggregator after draining the events already recorded.
+     * Events recorded after close are dropped.
+     */
+    @Override
+    public void close() {
+        ring.close();
+        LockSupport.unpark(aggregator);
+        try {
+            aggregator.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void aggregate() {
+        long next = ring.getConsumedSequence();
+        int idleRounds = 0;
+        while (true) {
+            if (ring.isPublished(next)) {
+                int index = ring.index(next);
+                fold(metricIds[index], values[index]);
+                next++;
+                ring.consumed(next);
+                idleRounds = 0;
+            } else if (ring.isClaimedOrOpen(next)) {
+                // Either more events may come, or a claimed event is not published yet
+                idleRounds = MultiProducerRing.idle(idleRounds, MultiProducerRing.MAX_IDLE_PARK_NANOS);
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void fold(int metricId, long value) {
+        try {
+            Object target = targets[metricId];
+            if (target instanceof CounterHandle) {
+                ((CounterHandle) target).increment(value);
+            } else {
+                ((TimerHandle) target).record(value);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to fold metrics event for id {}", metricId, e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.ashishnitw.observability;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pre-resolved handle to a local counter.
+ * A handle is obtained once through {@link MetricsUtils#counter(String)} and can then be
+ * incremented without any map lookup or hashing. Updates are spread over striped
+ * {@link LongAdder} cells, so many threads incrementing the same counter do not contend
+ * on a single compare-and-set.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class CounterHandle {
+
+    private final String name;
+    private final String prometheusName;
+    private final LongAdder cells;
+    // Set when the counter lives in a memory-mapped file, see MetricsUtils.useMappedStorage
+    private final MappedCounters.Slot slot;
+
+    /**
+     * Creates a counter handle. Handles are created by {@link MetricsUtils#counter(String)}.
+     *
+     * @param name the name of the counter
+     */
+    CounterHandle(String name) {
+        this(name, MetricsUtils.toPrometheusCounterName(name));
+    }
+
+    /**
+     * Creates a counter handle with a precomputed Prometheus name.
+     *
+     * @param name the name of the counter
+     * @param prometheusName the sanitized name, or null if the counter is not exported on its own
+     */
+    CounterHandle(String name, String prometheusName) {
+        this(name, prometheusName, null);
+    }
+
+    /**
+     * Creates a counter handle stored in a slot of a memory-mapped file.
+     *
+     * @param name the name of the counter
+     * @param prometheusName the sanitized name, or null if the counter is not exported on its own
+     * @param slot the mapped slot, or null to keep the counter on the heap
+     */
+    CounterHandle(String name, String prometheusName, MappedCounters.Slot slot) {
+        this.name = name;
+        this.prometheusName = prometheusName;
+        this.slot = slot;
+        this.cells = slot == null ? new LongAdder() : null;
+    }
+
+    /**
+     * Gets the name of the counter.
+     *
+     * @return the counter name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the name under which the counter is exported to Prometheus.
+     *
+     * @return the sanitized name, or null if the name cannot be exported
+     */
+    String getPrometheusName() {
+        return prometheusName;
+    }
+
+    /**
+     * Increments the counter by 1.
+     */
+    public void increment() {
+        increment(1L);
+    }
+
+    /**
+     * Increments the counter by the specified amount.
+     *
+     * @param amount the amount to increment
+     */
+    public void increment(long amount) {
+        if (slot != null) {
+            slot.add(amount);
+        } else {
+            cells.add(amount);
+        }
+    }
+
+    /**
+     * Gets the current value of the counter.
+     * For heap counters the value is the sum over all cells and is not an atomic
+     * snapshot when other threads are updating concurrently.
+     *
+     * @return the counter value
+     */
+    public long get() {
+        return slot != null ? slot.get() : cells.sum();
+    }
+
+    /**
+     * Resets the counter to 0.
+     */
+    public void reset() {
+        if (slot != null) {
+            slot.set(0L);
+        } else {
+            cells.reset();
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package io.github.ashishnitw.observability;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch with a relative error guarantee (DDSketch).
+ * Values are counted in logarithmic buckets whose width grows with the value, so any
+ * quantile is estimated within {@code relativeAccuracy} of the true value, whatever the
+ * distribution. Sketches with the same accuracy merge exactly by adding bucket counts,
+ * which makes it possible to combine per-node snapshots into fleet-wide percentiles;
+ * averaging per-node percentiles does not.
+ * <p>
+ * Memory is one {@code long} per bucket between the smallest and largest recorded value,
+ * plus up to half as much again as room to grow, never more than the bucket cap.
+ * At the default 1% accuracy the full range from 1 nanosecond to 1 hour spans about 1450
+ * buckets, and with the growth headroom a sketch at the default cap of 2048 buckets takes
+ * at most about 16.5 KB. The bucket count is capped; beyond the cap the
+ * lowest buckets are collapsed, which keeps the upper quantiles accurate. The compact
+ * serialization writes counts as variable-length integers, typically one or two bytes per
+ * bucket.
+ *
+ * <pre>{@code
+ * DDSketch sketch = MetricsUtils.sketch("request_latency");
+ * sketch.record(elapsedNanos);
+ * byte[] snapshot = sketch.serialize();
+ * // on the aggregator
+ * DDSketch fleet = DDSketch.deserialize(nodeA);
+ * fleet.merge(DDSketch.deserialize(nodeB));
+ * double p99 = fleet.getValueAtQuantile(0.99);
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class DDSketch {
+
+    /**
+     * Default relative accuracy of quantile estimates.
+     */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    /**
+     * Default maximum number of buckets.
+     */
+    public static final int DEFAULT_MAX_BUCKETS = 2048;
+
+    /**
+     * Largest accepted maximum number of buckets, {@value} (512 KB of counts).
+     */
+    public static final int MAX_BUCKETS = 1 << 16;
+
+    private static final byte SERIAL_VERSION = 1;
+    private static final int INITIAL_BUCKETS = 64;
+    private static final int FIXED_FOOTPRINT_BYTES = 96;
+
+    private final double relativeAccuracy;
+    private final int maxBuckets;
+    private final double gamma;
+    private final double logGamma;
+    private final double minIndexableValue;
+    // counts[i] is the count of bucket index offset + i; non-empty buckets lie in [minIndex, maxIndex]
+    private long[] counts = new long[0];
+    private int offset;
+    private int minIndex;
+    private int maxIndex;
+    private boolean hasBuckets;
+    private long zeroCount;
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Creates a sketch with the default relative accuracy.
+     */
+    public DDSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+    }
+
+    /**
+     * Creates a sketch.
+     *
+     * @param relativeAccuracy the relative accuracy of quantile estimates, between 0 and 1
+     * @param maxBuckets the maximum number of buckets, at most {@link #MAX_BUCKETS}
+     */
+    public DDSketch(double relativeAccuracy, int maxBuckets) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("relativeAccuracy must be between 0 and 1");
+        }
+        if (maxBuckets < 1 || maxBuckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("maxBuckets must be between 1 and " + MAX_BUCKETS);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.maxBuckets = maxBuckets;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.minIndexableValue = Math.max(Double.MIN_NORMAL * gamma, Math.exp((Integer.MIN_VALUE + 1) * logGamma));
+    }
+
+    /**
+     * Records a value.
+     * Negative values are recorded as 0.
+     *
+     * @param value the value
+     */
+    public void record(double value) {
+        record(value, 1L);
+    }
+
+    /**
+     * Records a value that stands for several occurrences.
+     * Negative values are recorded as 0.
+     *
+     * @param value the value
+     * @param occurrences the number of occurrences the value stands for
+     */
+    public synchronized void record(double value, long occurrences) {
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("value must not be NaN");
+        }
+        if (occurrences <= 0) {
+            return;
+        }
+        double clamped = Math.max(0.0, value);
+        if (clamped < minIndexableValue) {
+            zeroCount += occurrences;
+        } else {
+            addToBucket(index(clamped), occurrences);
+        }
+        count += occurrences;
+        sum += clamped * occurrences;
+        min = Math.min(min, clamped);
+        max = Math.max(max, clamped);
+    }
+
+    /**
+     * Adds the values of another sketch to this one.
+     *
+     * @param other the sketch to merge, with the same relative accuracy
+     */
+    public void merge(DDSketch other) {
+        if (other == this) {
+            throw new IllegalArgumentException("Cannot merge a sketch into itself");
+        }
+        if (Double.compare(other.relativeAccuracy, relativeAccuracy) != 0) {
+            throw new IllegalArgumentException("Cannot merge sketches with different relative accuracy");
+        }
+        long[] otherCounts;
+        int otherOffset;
+        int otherMin;
+        int otherMax;
+        boolean otherHasBuckets;
+        long otherZeroCount;
+        long otherCount;
+        double otherSum;
+        double otherMinValue;
+        double otherMaxValue;
+        synchronized (other) {
+            otherCounts = other.counts.clone();
+            otherOffset = other.offset;
+            otherMin = other.minIndex;
+            otherMax = other.maxIndex;
+            otherHasBuckets = other.hasBuckets;
+            otherZeroCount = other.zeroCount;
+            otherCount = other.count;
+            otherSum = other.sum;
+            otherMinValue = other.min;
+            otherMaxValue = other.max;
+        }
+        synchronized (this) {
+            if (otherHasBuckets) {
+                // Highest first, so collapsing triggered by the range only ever moves lower buckets
+                for (int index = otherMax; index >= otherMin; index--) {
+                    long bucketCount = otherCounts[index - otherOffset];
+                    if (bucketCount != 0) {
+                        addToBucket(index, bucketCount);
+                    }
+                }
+            }
+            zeroCount += otherZeroCount;
+            count += otherCount;
+            sum += otherSum;
+            min = Math.min(min, otherMinValue);
+            max = Math.max(max, otherMaxValue);
+        }
+    }
+
+    /**
+     * Gets the number of recorded values.
+     *
+     * @return the count
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the sum of the recorded values.
+     *
+     * @return the sum
+     */
+    public synchronized double getSum() {
+        return sum;
+    }
+
+    /**
+     * Gets the smallest recorded value.
+     *
+     * @return the minimum, or NaN if the sketch is empty
+     */
+    public synchronized double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Gets the largest recorded value.
+     *
+     * @return the maximum, or NaN if the sketch is empty
+     */
+    public synchronized double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Estimates the value at a quantile, for example 0.5, 0.99 or 0.999.
+     * The estimate is within the relative accuracy of the recorded value of rank
+     * {@code floor(quantile * (count - 1))}.
+     *
+     * @param quantile the quantile, between 0 and 1
+     * @return the estimated value, or NaN if the sketch is empty
+     */
+    public synchronized double getValueAtQuantile(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("quantile must be between 0 and 1");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        long seen = zeroCount;
+        if (seen > rank) {
+            return 0.0;
+        }
+        for (int index = minIndex; index <= maxIndex; index++) {
+            seen += counts[index - offset];
+            if (seen > rank) {
+                return Math.max(min, Math.min(max, value(index)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Gets the relative accuracy of quantile estimates.
+     *
+     * @return the relative accuracy
+     */
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Gets the number of buckets between the smallest and largest non-empty bucket.
+     *
+     * @return the bucket count
+     */
+    public synchronized int getBucketCount() {
+        return hasBuckets ? maxIndex - minIndex + 1 : 0;
+    }
+
+    /**
+     * Estimates the heap used by this sketch, including its bucket array.
+     *
+     * @return the estimated size in bytes
+     */
+    public synchronized long estimateFootprintBytes() {
+        return FIXED_FOOTPRINT_BYTES + 16L + (long) counts.length * Long.BYTES;
+    }
+
+    /**
+     * Serializes the sketch into a compact binary form.
+     *
+     * @return the serialized sketch
+     */
+    public synchronized byte[] serialize() {
+        int buckets = getBucketCount();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(48 + buckets * 2);
+        out.write(SERIAL_VERSION);
+        ByteBuffer doubles = ByteBuffer.allocate(4 * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        doubles.putDouble(relativeAccuracy).putDouble(sum).putDouble(min).putDouble(max);
+        out.write(doubles.array(), 0, doubles.capacity());
+        writeVarLong(out, maxBuckets);
+        writeVarLong(out, zeroCount);
+        writeVarLong(out, buckets);
+        if (buckets > 0) {
+            writeVarLong(out, zigZag(minIndex));
+            for (int index = minIndex; index <= maxIndex; index++) {
+                writeVarLong(out, counts[index - offset]);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a sketch written by {@link #serialize()}.
+     *
+     * @param bytes the serialized sketch
+     * @return the sketch
+     */
+    public static DDSketch deserialize(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            byte version = in.get();
+            if (version != SERIAL_VERSION) {
+                throw new IllegalArgumentException("Unsupported sketch version: " + version);
+            }
+            double relativeAccuracy = in.getDouble();
+            double sum = in.getDouble();
+            double min = in.getDouble();
+            double max = in.getDouble();
+            long maxBuckets = readVarLong(in);
+            if (maxBuckets < 1 || maxBuckets > MAX_BUCKETS) {
+                throw new IllegalArgumentException("Invalid maximum bucket count: " + maxBuckets);
+            }
+            DDSketch sketch = new DDSketch(relativeAccuracy, (int) maxBuckets);
+            sketch.zeroCount = readVarLong(in);
+            long total = sketch.zeroCount;
+            long bucketCount = readVarLong(in);
+            // every count takes at least one byte, so a larger claim cannot be backed by the payload
+            if (bucketCount < 0 || bucketCount > maxBuckets || bucketCount > in.remaining()) {
+                throw new IllegalArgumentException("Invalid bucket count: " + bucketCount);
+            }
+            int buckets = (int) bucketCount;
+            if (buckets > 0) {
+                int firstIndex = unZigZag(readVarLong(in));
+                if ((long) firstIndex + buckets - 1 > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Invalid bucket index: " + firstIndex);
+                }
+                sketch.counts = new long[buckets];
+                sketch.offset = firstIndex;
+                sketch.minIndex = firstIndex;
+                sketch.maxIndex = firstIndex + buckets - 1;
+                sketch.hasBuckets = true;
+                for (int i = 0; i < buckets; i++) {
+                    sketch.counts[i] = readVarLong(in);
+                    total += sketch.counts[i];
+                }
+            }
+            sketch.count = total;
+            sketch.sum = sum;
+            sketch.min = min;
+            sketch.max = max;
+            return sketch;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated sketch", e);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DDSketch{count=" + count + ", relativeAccuracy=" + relativeAccuracy
+                + ", buckets=" + getBucketCount() + "}";
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    // Midpoint of (gamma^(index-1), gamma^index] in relative terms, within relativeAccuracy of both ends
+    private double value(int index) {
+        return 2 * Math.exp(index * logGamma) / (gamma + 1);
+    }
+
+    private void addToBucket(int index, long occurrences) {
+        if (!hasBuckets) {
+            minIndex = index;
+            maxIndex = index;
+            hasBuckets = true;
+        } else if (index < minIndex) {
+            // Below the range the lowest bucket absorbs the value once the cap is reached
+            index = Math.max(index, maxIndex - maxBuckets + 1);
+            minIndex = Math.min(minIndex, index);
+        } else if (index > maxIndex) {
+            int lowestKept = index - maxBuckets + 1;
+            if (lowestKept > minIndex) {
+                long collapsed = 0;
+                for (int i = minIndex; i < Math.min(lowestKept, maxIndex + 1); i++) {
+                    collapsed += counts[i - offset];
+                    counts[i - offset] = 0;
+                }
+                minIndex = lowestKept;
+                maxIndex = index;
+                ensureRange();
+                counts[lowestKept - offset] += collapsed;
+            }
+            maxIndex = index;
+        }
+        ensureRange();
+        counts[index - offset] += occurrences;
+    }
+
+    private void ensureRange() {
+        if (minIndex >= offset && maxIndex < offset + counts.length) {
+            return;
+        }
+        int needed = maxIndex - minIndex + 1;
+        int length = Math.max(needed, Math.min(maxBuckets, Math.max(needed + INITIAL_BUCKETS, needed + needed / 2)));
+        // Center the range so growth in either direction is absorbed without reallocating
+        int newOffset = minIndex - (length - needed) / 2;
+        long[] resized = new long[length];
+        int from = Math.max(offset, newOffset);
+        int to = Math.min(offset + counts.length, newOffset + length);
+        if (from < to) {
+            System.arraycopy(counts, from - offset, resized, from - newOffset, to - from);
+        }
+        counts = resized;
+        offset = newOffset;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable-length integer");
+    }
+
+    private static long zigZag(int value) {
+        return ((long) value << 1) ^ ((long) value >> 63);
+    }
+
+    private static int unZigZag(long value) {
+        return (int) ((value >>> 1) ^ -(value & 1));
+    }
+
+    // Visible for tests
+    synchronized long[] bucketCounts() {
+        return hasBuckets ? Arrays.copyOfRange(counts, minIndex - offset, maxIndex - offset + 1) : new long[0];
+    }
+}
@@ -0,0 +1,203 @@
+package io.github.ashishnitw.observability;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Distinct-count metric backed by a {@link HyperLogLog} sketch, for counting unique users,
+ * tenants or keys in a few KB instead of a set of all values.
+ * <p>
+ * Without a window the counter estimates all distinct values since it was created. With a
+ * window, values are counted in tumbling windows aligned to the wall clock, such as whole
+ * minutes, and {@link #getEstimate()} reports the last completed window, so "uniques per
+ * minute" needs no extra state. Windows roll over lazily on the next add or read, so no
+ * thread is involved; an add racing with the rollover may still land in the window that
+ * just closed. Because windows are aligned, the sketches of the same window on several
+ * nodes can be merged with {@link HyperLogLog#merge(HyperLogLog)}.
+ *
+ * <pre>{@code
+ * DistinctCounter users = MetricsUtils.distinctCounter("active_users", 1, TimeUnit.MINUTES);
+ * users.add(userId);
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class DistinctCounter {
+
+    private final String name;
+    private final String prometheusName;
+    private final int precision;
+    private final long windowMillis;
+    private final LongSupplier clock;
+    private volatile Window current;
+    // The last completed window, null until the first window completes
+    private volatile Window completed;
+
+    /**
+     * Creates a distinct counter. Counters are created by {@link MetricsUtils#distinctCounter(String)}.
+     *
+     * @param name the name of the counter
+     * @param precision the precision of the sketches
+     * @param windowMillis the window length in milliseconds, or 0 to count since creation
+     */
+    DistinctCounter(String name, int precision, long windowMillis) {
+        this(name, precision, windowMillis, System::currentTimeMillis);
+    }
+
+    DistinctCounter(String name, int precision, long windowMillis, LongSupplier clock) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("window must not be negative");
+        }
+        this.name = name;
+        this.prometheusName = MetricsUtils.sanitizeMetricName(name);
+        this.precision = precision;
+        this.windowMillis = windowMillis;
+        this.clock = clock;
+        this.current = new Window(windowMillis > 0 ? windowStart(clock.getAsLong()) : 0, precision);
+    }
+
+    /**
+     * Gets the name of the counter.
+     *
+     * @return the counter name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the sanitized name used when exporting to Prometheus.
+     *
+     * @return the Prometheus name
+     */
+    String getPrometheusName() {
+        return prometheusName;
+    }
+
+    /**
+     * Gets the window length.
+     *
+     * @return the window length in milliseconds, or 0 if the counter has no window
+     */
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value
+     */
+    public void add(long value) {
+        window().sketch.add(value);
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value
+     */
+    public void add(CharSequence value) {
+        window().sketch.add(value);
+    }
+
+    /**
+     * Estimates the distinct values of the last completed window, or since creation if the
+     * counter has no window. This is the value exported to Prometheus.
+     *
+     * @return the estimated distinct count, or 0 before the first window completes
+     */
+    public long getEstimate() {
+        Window window = window();
+        if (windowMillis == 0) {
+            return window.sketch.estimate();
+        }
+        Window last = completed;
+        return last != null ? last.sketch.estimate() : 0;
+    }
+
+    /**
+     * Estimates the distinct values of the window in progress.
+     *
+     * @return the estimated distinct count so far
+     */
+    public long getCurrentEstimate() {
+        return window().sketch.estimate();
+    }
+
+    /**
+     * Copies the sketch of the window in progress, for merging across nodes.
+     *
+     * @return a copy of the current sketch
+     */
+    public HyperLogLog snapshot() {
+        return window().sketch.copy();
+    }
+
+    /**
+     * Copies the sketch of the last completed window, for merging across nodes.
+     *
+     * @return a copy of the sketch, or null before the first window completes
+     */
+    public HyperLogLog snapshotLastWindow() {
+        window();
+        Window last = completed;
+        return last != null ? last.sketch.copy() : null;
+    }
+
+    /**
+     * Gets the start of the last completed window.
+     *
+     * @return the start in epoch milliseconds, or -1 before the first window completes
+     */
+    public long getLastWindowStartMillis() {
+        window();
+        Window last = completed;
+        return last != null ? last.startMillis : -1;
+    }
+
+    private Window window() {
+        Window window = current;
+        if (windowMillis == 0) {
+            return window;
+        }
+        long now = clock.getAsLong();
+        if (now - window.startMillis < windowMillis) {
+            return window;
+        }
+        return roll(now);
+    }
+
+    private synchronized Window roll(long now) {
+        Window window = current;
+        if (now - window.startMillis < windowMillis) {
+            return window;
+        }
+        long start = windowStart(now);
+        // If nothing touched the counter during the previous window, no value arrived in it
+        completed = start - window.startMillis == windowMillis
+                ? window
+                : new Window(start - windowMillis, precision);
+        current = new Window(start, precision);
+        return current;
+    }
+
+    private long windowStart(long nowMillis) {
+        return nowMillis - Math.floorMod(nowMillis, windowMillis);
+    }
+
+    /**
+     * A tumbling window and its sketch.
+     */
+    private static final class Window {
+
+        private final long startMillis;
+        private final HyperLogLog sketch;
+
+        Window(long startMillis, int precision) {
+            this.startMillis = startMillis;
+            this.sketch = new HyperLogLog(precision);
+        }
+    }
+}
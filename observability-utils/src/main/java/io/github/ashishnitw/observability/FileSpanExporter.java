@@ -0,0 +1,151 @@
+package io.github.ashishnitw.observability;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Span exporter that appends one JSON object per span to a file:
+ *
+ * <pre>
+ * {"traceId":"5c1f0e2a9b3d4c7e","spanId":"0a9f3b2c1d4e5f60","parentSpanId":"7e6d5c4b3a291807",
+ *  "name":"charge_card","thread":"main","start":"2024-05-01T12:30:00.250Z","durationNanos":1843000}
+ * </pre>
+ *
+ * {@code parentSpanId} is left out for root spans, and an {@code error} field holds the
+ * exception class of failed spans. Each batch is encoded into one reused buffer, escaped as
+ * by {@link JsonLogEncoder}, and written with a single channel write. A span too large for
+ * the buffer, because of a name of tens of kilobytes, is written through a temporary one,
+ * and spans over 16 MB are skipped.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class FileSpanExporter implements SpanExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSpanExporter.class);
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_SPAN_BYTES = 16 * 1024 * 1024;
+    private static final byte[] TRACE_ID = ascii("{\"traceId\":\"");
+    private static final byte[] SPAN_ID = ascii("\",\"spanId\":\"");
+    private static final byte[] PARENT_SPAN_ID = ascii("\",\"parentSpanId\":\"");
+    private static final byte[] NAME = ascii("\",\"name\":");
+    private static final byte[] THREAD = ascii(",\"thread\":");
+    private static final byte[] START = ascii(",\"start\":\"");
+    private static final byte[] DURATION = ascii("\",\"durationNanos\":");
+    private static final byte[] ERROR = ascii(",\"error\":");
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+
+    /**
+     * Opens the exporter.
+     *
+     * @param file the file to append to, created if missing
+     * @throws IOException if the file cannot be opened
+     */
+    public FileSpanExporter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void export(List<Span> spans) throws IOException {
+        for (int i = 0, size = spans.size(); i < size; i++) {
+            Span span = spans.get(i);
+            int start = buffer.position();
+            try {
+                encode(span, buffer);
+            } catch (BufferOverflowException e) {
+                // Never leave a partial record behind
+                buffer.position(start);
+                write();
+                try {
+                    encode(span, buffer);
+                } catch (BufferOverflowException tooLarge) {
+                    buffer.clear();
+                    writeOversized(span);
+                }
+            }
+        }
+        write();
+    }
+
+    private void write() throws IOException {
+        buffer.flip();
+        try {
+            write(buffer);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private void writeOversized(Span span) throws IOException {
+        for (int size = BUFFER_BYTES * 2; size <= MAX_SPAN_BYTES; size *= 2) {
+            ByteBuffer oversized = ByteBuffer.allocate(size);
+            try {
+                encode(span, oversized);
+            } catch (BufferOverflowException e) {
+                continue;
+            }
+            oversized.flip();
+            write(oversized);
+            return;
+        }
+        logger.warn("Skipped span {} larger than {} bytes", Span.toHex(span.getSpanId()), MAX_SPAN_BYTES);
+    }
+
+    private static void encode(Span span, ByteBuffer out) {
+        out.put(TRACE_ID);
+        LogEncoding.putHex(out, span.getTraceId());
+        out.put(SPAN_ID);
+        LogEncoding.putHex(out, span.getSpanId());
+        if (span.getParentSpanId() != 0L) {
+            out.put(PARENT_SPAN_ID);
+            LogEncoding.putHex(out, span.getParentSpanId());
+        }
+        out.put(NAME);
+        LogEncoding.putJsonString(out, String.valueOf(span.getName()));
+        out.put(THREAD);
+        LogEncoding.putJsonString(out, span.getThreadName());
+        out.put(START);
+        LogEncoding.putTimestamp(out, span.getStartEpochMillis());
+        out.put(DURATION);
+        LogEncoding.putDecimal(out, span.getDurationNanos());
+        String error = span.getError();
+        if (error != null) {
+            out.put(ERROR);
+            LogEncoding.putJsonString(out, error);
+        }
+        out.put((byte) '}');
+        out.put((byte) '\n');
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static byte[] ascii(String chars) {
+        return chars.getBytes(StandardCharsets.US_ASCII);
+    }
+}
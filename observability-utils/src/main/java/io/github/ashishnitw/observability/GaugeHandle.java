@@ -0,0 +1,112 @@
+package io.github.ashishnitw.observability;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pre-resolved handle to a local gauge.
+ * A handle is obtained once through {@link MetricsUtils#gauge(String)} or a labeled
+ * gauge family and can then be updated without any map lookup.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class GaugeHandle {
+
+    private final String name;
+    private final String prometheusName;
+    private final AtomicLong bits;
+    // Set when the gauge lives in a memory-mapped file, see MetricsUtils.useMappedStorage
+    private final MappedCounters.Slot slot;
+
+    /**
+     * Creates a gauge handle. Handles are created by {@link MetricsUtils#gauge(String)}.
+     *
+     * @param name the name of the gauge
+     */
+    GaugeHandle(String name) {
+        this(name, MetricsUtils.sanitizeMetricName(name));
+    }
+
+    /**
+     * Creates a gauge handle with a precomputed Prometheus name.
+     *
+     * @param name the name of the gauge
+     * @param prometheusName the sanitized name, or null if the gauge is not exported on its own
+     */
+    GaugeHandle(String name, String prometheusName) {
+        this(name, prometheusName, null);
+    }
+
+    /**
+     * Creates a gauge handle stored in a slot of a memory-mapped file.
+     *
+     * @param name the name of the gauge
+     * @param prometheusName the sanitized name, or null if the gauge is not exported on its own
+     * @param slot the mapped slot, or null to keep the gauge on the heap
+     */
+    GaugeHandle(String name, String prometheusName, MappedCounters.Slot slot) {
+        this.name = name;
+        this.prometheusName = prometheusName;
+        this.slot = slot;
+        this.bits = slot == null ? new AtomicLong(Double.doubleToRawLongBits(0.0)) : null;
+    }
+
+    /**
+     * Gets the name of the gauge.
+     *
+     * @return the gauge name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the name under which the gauge is exported to Prometheus.
+     *
+     * @return the sanitized name, or null if the gauge is not exported on its own
+     */
+    String getPrometheusName() {
+        return prometheusName;
+    }
+
+    /**
+     * Sets the gauge value.
+     *
+     * @param value the value to set
+     */
+    public void set(double value) {
+        if (slot != null) {
+            slot.setDouble(value);
+        } else {
+            bits.set(Double.doubleToRawLongBits(value));
+        }
+    }
+
+    /**
+     * Adds an amount to the gauge value.
+     *
+     * @param amount the amount to add, may be negative
+     */
+    public void add(double amount) {
+        if (slot != null) {
+            slot.addDouble(amount);
+            return;
+        }
+        long current;
+        long next;
+        do {
+            current = bits.get();
+            next = Double.doubleToRawLongBits(Double.longBitsToDouble(current) + amount);
+        } while (!bits.compareAndSet(current, next));
+    }
+
+    /**
+     * Gets the gauge value.
+     *
+     * @return the current value
+     */
+    public double get() {
+        return slot != null ? slot.getDouble() : Double.longBitsToDouble(bits.get());
+    }
+}
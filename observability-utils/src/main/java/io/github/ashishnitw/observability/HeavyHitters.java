@@ -0,0 +1,362 @@
+package io.github.ashishnitw.observability;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed-memory tracker of the keys with the largest total weight, using the Space-Saving
+ * algorithm. At most {@code capacity} keys are monitored per stripe. A key that is not monitored
+ * replaces the key with the smallest weight and inherits that weight as its possible
+ * overestimation, so a key whose true weight exceeds {@code totalWeight / capacity} is
+ * always monitored and the reported top keys are accurate when the weights are skewed.
+ * <p>
+ * Updates are spread over stripes chosen by thread, each a Space-Saving summary of its own
+ * kept in a min-heap, so an update costs a hash lookup and O(log capacity) swaps under a
+ * lock that other threads rarely hold, and allocates nothing for monitored keys.
+ * {@link #top(int)} merges the stripes: a key missing from a full stripe may have up to
+ * that stripe's smallest weight there, which is added to both its weight and its error,
+ * so the error bound of {@code totalWeight / capacity} holds for the merged result.
+ *
+ * <pre>{@code
+ * HeavyHitters slowest = new HeavyHitters(64);
+ * slowest.add("GET /orders", durationNanos);
+ * List<HeavyHitters.Entry> top = slowest.top(10);
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class HeavyHitters {
+
+    private static final Comparator<Entry> BY_WEIGHT_DESCENDING =
+            Comparator.comparingLong(Entry::getWeight).reversed().thenComparing(Entry::getKey);
+    /**
+     * Largest number of stripes of a tracker.
+     */
+    public static final int MAX_STRIPES = 16;
+
+    private final int capacity;
+    private final Stripe[] stripes;
+
+    /**
+     * Creates a tracker with one stripe per processor, up to {@value #MAX_STRIPES}.
+     *
+     * @param capacity the number of keys monitored at once per stripe
+     */
+    public HeavyHitters(int capacity) {
+        this(capacity, defaultStripeCount());
+    }
+
+    /**
+     * Creates a tracker with a given number of stripes.
+     *
+     * @param capacity the number of keys monitored at once per stripe
+     * @param stripeCount the number of stripes, a power of two
+     */
+    HeavyHitters(int capacity, int stripeCount) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        if (stripeCount < 1 || Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("stripeCount must be a power of two");
+        }
+        this.capacity = capacity;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(capacity);
+        }
+    }
+
+    /**
+     * Adds weight to a key.
+     *
+     * @param key the key
+     * @param weight the weight to add, ignored unless positive
+     */
+    public void add(String key, long weight) {
+        if (weight <= 0) {
+            return;
+        }
+        stripe().add(key, weight);
+    }
+
+    private static int defaultStripeCount() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return Math.min(MAX_STRIPES, Integer.highestOneBit(processors * 2 - 1));
+    }
+
+    private Stripe stripe() {
+        if (stripes.length == 1) {
+            return stripes[0];
+        }
+        // Fibonacci hashing spreads sequential thread ids over the stripes
+        long id = Thread.currentThread().getId();
+        return stripes[(int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (stripes.length - 1)];
+    }
+
+    /**
+     * Gets the monitored keys with the largest weights, largest first.
+     *
+     * @param n the maximum number of keys to return
+     * @return the top keys
+     */
+    public List<Entry> top(int n) {
+        Entry[] entries;
+        if (stripes.length == 1) {
+            entries = stripes[0].snapshot();
+        } else {
+            entries = merge();
+        }
+        Arrays.sort(entries, BY_WEIGHT_DESCENDING);
+        int count = Math.min(Math.max(n, 0), entries.length);
+        List<Entry> top = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            top.add(entries[i]);
+        }
+        return top;
+    }
+
+    private Entry[] merge() {
+        Entry[][] snapshots = new Entry[stripes.length][];
+        Map<String, long[]> merged = new HashMap<>();
+        long missingWeight = 0;
+        for (int s = 0; s < stripes.length; s++) {
+            snapshots[s] = stripes[s].snapshot();
+            // The largest weight a key may have in this stripe without being monitored
+            long floor = snapshots[s].length == capacity ? minWeight(snapshots[s]) : 0L;
+            missingWeight += floor;
+            for (Entry entry : snapshots[s]) {
+                long[] sums = merged.computeIfAbsent(entry.getKey(), k -> new long[3]);
+                sums[0] += entry.getWeight();
+                sums[1] += entry.getError();
+                sums[2] += floor;
+            }
+        }
+        Entry[] entries = new Entry[merged.size()];
+        int i = 0;
+        for (Map.Entry<String, long[]> entry : merged.entrySet()) {
+            long[] sums = entry.getValue();
+            // Stripes that do not monitor the key add their floor to its weight and error
+            long missing = missingWeight - sums[2];
+            entries[i++] = new Entry(entry.getKey(), sums[0] + missing, sums[1] + missing);
+        }
+        return entries;
+    }
+
+    private static long minWeight(Entry[] entries) {
+        long min = Long.MAX_VALUE;
+        for (Entry entry : entries) {
+            min = Math.min(min, entry.getWeight());
+        }
+        return min;
+    }
+
+    /**
+     * Gets the sum of all weights added, including those of keys no longer monitored.
+     *
+     * @return the total weight
+     */
+    public long getTotalWeight() {
+        long total = 0;
+        for (Stripe stripe : stripes) {
+            total += stripe.getTotalWeight();
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of keys monitored at once.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Forgets all keys and weights.
+     */
+    public void reset() {
+        for (Stripe stripe : stripes) {
+            stripe.reset();
+        }
+    }
+
+    /**
+     * One Space-Saving summary, updated by the threads mapped to it.
+     */
+    private static final class Stripe {
+
+        private final int capacity;
+        // Guarded by this
+        private final Map<String, Counter> monitored;
+        private final Counter[] heap;
+        private int size;
+        private long totalWeight;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+            this.monitored = new HashMap<>(capacity * 2);
+            this.heap = new Counter[capacity];
+        }
+
+        synchronized void add(String key, long weight) {
+            totalWeight += weight;
+            Counter counter = monitored.get(key);
+            if (counter == null && size < capacity) {
+                counter = new Counter(key, size);
+                counter.weight = weight;
+                heap[size++] = counter;
+                monitored.put(key, counter);
+                siftUp(counter.index);
+                return;
+            }
+            if (counter == null) {
+                // Replace the smallest key; the new key may have been seen up to that often
+                counter = heap[0];
+                monitored.remove(counter.key);
+                counter.key = key;
+                counter.error = counter.weight;
+                monitored.put(key, counter);
+            }
+            counter.weight += weight;
+            siftDown(counter.index);
+        }
+
+        synchronized Entry[] snapshot() {
+            Entry[] entries = new Entry[size];
+            for (int i = 0; i < size; i++) {
+                Counter counter = heap[i];
+                entries[i] = new Entry(counter.key, counter.weight, counter.error);
+            }
+            return entries;
+        }
+
+        synchronized long getTotalWeight() {
+            return totalWeight;
+        }
+
+        synchronized void reset() {
+            Arrays.fill(heap, 0, size, null);
+            monitored.clear();
+            size = 0;
+            totalWeight = 0;
+        }
+
+        private void siftUp(int index) {
+            Counter counter = heap[index];
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (heap[parent].weight <= counter.weight) {
+                    break;
+                }
+                heap[index] = heap[parent];
+                heap[index].index = index;
+                index = parent;
+            }
+            heap[index] = counter;
+            counter.index = index;
+        }
+
+        // Weights only grow, so a monitored counter only ever moves away from the root
+        private void siftDown(int index) {
+            Counter counter = heap[index];
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1].weight < heap[child].weight) {
+                    child++;
+                }
+                if (heap[child].weight >= counter.weight) {
+                    break;
+                }
+                heap[index] = heap[child];
+                heap[index].index = index;
+                index = child;
+            }
+            heap[index] = counter;
+            counter.index = index;
+        }
+    }
+
+    /**
+     * A monitored key in the heap of a stripe.
+     */
+    private static final class Counter {
+
+        private String key;
+        private long weight;
+        private long error;
+        private int index;
+
+        Counter(String key, int index) {
+            this.key = key;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Snapshot of a monitored key. The true weight of the key lies between
+     * {@link #getGuaranteedWeight()} and {@link #getWeight()}.
+     */
+    public static final class Entry {
+
+        private final String key;
+        private final long weight;
+        private final long error;
+
+        Entry(String key, long weight, long error) {
+            this.key = key;
+            this.weight = weight;
+            this.error = error;
+        }
+
+        /**
+         * Gets the key.
+         *
+         * @return the key
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Gets the estimated weight, which never underestimates the true weight.
+         *
+         * @return the estimated weight
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        /**
+         * Gets the largest possible overestimation of the weight.
+         *
+         * @return the error bound
+         */
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * Gets the weight the key is known to have at least.
+         *
+         * @return the estimated weight minus the error bound
+         */
+        public long getGuaranteedWeight() {
+            return weight - error;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + weight + (error > 0 ? " (error " + error + ")" : "");
+        }
+    }
+}
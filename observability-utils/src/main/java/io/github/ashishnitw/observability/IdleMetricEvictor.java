@@ -0,0 +1,105 @@
+package io.github.ashishnitw.observability;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Finds and removes metrics whose value has not changed for a time-to-idle.
+ * Activity is detected by sampling a reading of each metric, such as a counter value or
+ * a timer count, on every sweep and comparing it with the previous sweep, so the update
+ * path of the metrics carries no bookkeeping at all. Used by {@link MetricsUtils} to bound
+ * its registries.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+final class IdleMetricEvictor {
+
+    private final List<Source<?>> sources;
+    // Guarded by this; keyed by metric instance so a re-created metric starts a fresh idle period
+    private Map<Object, Activity> activity = new IdentityHashMap<>();
+
+    IdleMetricEvictor(List<Source<?>> sources) {
+        this.sources = sources;
+    }
+
+    /**
+     * Sweeps all sources once.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @param timeToIdleNanos the time without change after which a metric is evicted
+     * @return the number of evicted metrics
+     */
+    synchronized int sweep(long nowNanos, long timeToIdleNanos) {
+        Map<Object, Activity> seen = new IdentityHashMap<>(activity.size() + 16);
+        int evicted = 0;
+        for (Source<?> source : sources) {
+            evicted += sweep(source, seen, nowNanos, timeToIdleNanos);
+        }
+        // Metrics removed by other means are forgotten here
+        activity = seen;
+        return evicted;
+    }
+
+    private <T> int sweep(Source<T> source, Map<Object, Activity> seen, long nowNanos, long timeToIdleNanos) {
+        int evicted = 0;
+        for (Map.Entry<String, T> entry : source.metrics.entrySet()) {
+            T metric = entry.getValue();
+            double reading = source.reading.applyAsDouble(metric);
+            Activity previous = activity.get(metric);
+            if (previous == null || Double.compare(previous.reading, reading) != 0) {
+                seen.put(metric, new Activity(reading, nowNanos));
+            } else if (nowNanos - previous.changedAtNanos >= timeToIdleNanos && !source.pinned.test(entry.getKey())) {
+                if (source.metrics.remove(entry.getKey(), metric)) {
+                    source.onEvict.accept(entry.getKey(), metric);
+                    evicted++;
+                }
+            } else {
+                seen.put(metric, previous);
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * A registry map, how to read its metrics, which names must be kept, and what to do
+     * after a metric is evicted.
+     *
+     * @param <T> the metric type
+     */
+    static final class Source<T> {
+
+        private final ConcurrentHashMap<String, T> metrics;
+        private final ToDoubleFunction<T> reading;
+        private final Predicate<String> pinned;
+        private final BiConsumer<String, T> onEvict;
+
+        Source(ConcurrentHashMap<String, T> metrics, ToDoubleFunction<T> reading,
+               Predicate<String> pinned, BiConsumer<String, T> onEvict) {
+            this.metrics = metrics;
+            this.reading = reading;
+            this.pinned = pinned;
+            this.onEvict = onEvict;
+        }
+    }
+
+    /**
+     * Last reading of a metric and when it last changed.
+     */
+    private static final class Activity {
+
+        private final double reading;
+        private final long changedAtNanos;
+
+        Activity(double reading, long changedAtNanos) {
+            this.reading = reading;
+            this.changedAtNanos = changedAtNanos;
+        }
+    }
+}
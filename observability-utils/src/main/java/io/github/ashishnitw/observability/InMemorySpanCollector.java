@@ -0,0 +1,97 @@
+package io.github.ashishnitw.observability;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Span exporter that keeps the most recent finished spans in memory, standing in for a
+ * trace collector in tests and during local development. When full, the oldest span is
+ * discarded for each new one.
+ *
+ * <pre>{@code
+ * InMemorySpanCollector collector = new InMemorySpanCollector(1000);
+ * TracingUtils.enableTracing(1.0, 1000, collector);
+ * ...
+ * TracingUtils.flush();
+ * List<Span> trace = collector.getTrace(root.getTraceId());
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class InMemorySpanCollector implements SpanExporter {
+
+    private final int capacity;
+    // Guarded by this
+    private final ArrayDeque<Span> spans;
+
+    /**
+     * Creates a collector.
+     *
+     * @param capacity the number of spans kept
+     */
+    public InMemorySpanCollector(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.spans = new ArrayDeque<>(Math.min(capacity, 1024));
+    }
+
+    @Override
+    public synchronized void export(List<Span> batch) {
+        for (int i = 0, size = batch.size(); i < size; i++) {
+            if (spans.size() == capacity) {
+                spans.pollFirst();
+            }
+            spans.addLast(batch.get(i));
+        }
+    }
+
+    /**
+     * Gets the collected spans in the order they ended.
+     *
+     * @return a copy of the spans
+     */
+    public synchronized List<Span> getSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    /**
+     * Gets the collected spans of one trace, ordered by start time.
+     *
+     * @param traceId the trace id
+     * @return the spans of the trace
+     */
+    public List<Span> getTrace(long traceId) {
+        List<Span> trace = new ArrayList<>();
+        synchronized (this) {
+            for (Span span : spans) {
+                if (span.getTraceId() == traceId) {
+                    trace.add(span);
+                }
+            }
+        }
+        trace.sort(Comparator.comparingLong(Span::getStartNanos));
+        return trace;
+    }
+
+    /**
+     * Discards the collected spans.
+     */
+    public synchronized void clear() {
+        spans.clear();
+    }
+
+    /**
+     * Gets the number of spans kept.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,180 @@
+package io.github.ashishnitw.observability;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executor service decorator that records the queue wait and run time of every task.
+ * Each task is stamped with {@link System#nanoTime()} when it is submitted; the time until
+ * a thread picks it up goes into the {@code <name>_queue_wait} timer and the time spent
+ * running it into the {@code <name>_run} timer. Instances are created by
+ * {@link MetricsUtils#instrumentExecutor(String, ExecutorService)}.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+final class InstrumentedExecutorService implements ExecutorService {
+
+    private final ExecutorService delegate;
+    private final Timers timers;
+
+    InstrumentedExecutorService(String name, ExecutorService delegate) {
+        this.delegate = delegate;
+        this.timers = new Timers(name);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        delegate.execute(timers.wrap(command));
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return delegate.submit(timers.wrap(task));
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return delegate.submit(timers.wrap(task), result);
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return delegate.submit(timers.wrap(task));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        return delegate.invokeAll(timers.wrapAll(tasks));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return delegate.invokeAll(timers.wrapAll(tasks), timeout, unit);
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+        return delegate.invokeAny(timers.wrapAll(tasks));
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return delegate.invokeAny(timers.wrapAll(tasks), timeout, unit);
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    /**
+     * Stops the delegate and returns the tasks that never ran, unwrapped.
+     *
+     * @return the tasks that never ran
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> pending = delegate.shutdownNow();
+        List<Runnable> unwrapped = new ArrayList<>(pending.size());
+        for (Runnable runnable : pending) {
+            unwrapped.add(runnable instanceof TimedRunnable ? ((TimedRunnable) runnable).task : runnable);
+        }
+        return unwrapped;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Queue wait and run timers shared by the tasks of one executor.
+     */
+    static final class Timers {
+
+        private final TimerHandle queueWait;
+        private final TimerHandle run;
+
+        Timers(String name) {
+            this.queueWait = MetricsUtils.internalTimer(name + "_queue_wait");
+            this.run = MetricsUtils.internalTimer(name + "_run");
+        }
+
+        Runnable wrap(Runnable task) {
+            return new TimedRunnable(this, task, System.nanoTime());
+        }
+
+        <T> Callable<T> wrap(Callable<T> task) {
+            long submittedNanos = System.nanoTime();
+            return () -> {
+                long startNanos = started(submittedNanos);
+                try {
+                    return task.call();
+                } finally {
+                    run.record(System.nanoTime() - startNanos);
+                }
+            };
+        }
+
+        <T> List<Callable<T>> wrapAll(Collection<? extends Callable<T>> tasks) {
+            List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                wrapped.add(wrap(task));
+            }
+            return wrapped;
+        }
+
+        private long started(long submittedNanos) {
+            long startNanos = System.nanoTime();
+            queueWait.record(startNanos - submittedNanos);
+            return startNanos;
+        }
+    }
+
+    /**
+     * Runnable that remembers its submission time, and its task for {@link #shutdownNow()}.
+     */
+    private static final class TimedRunnable implements Runnable {
+
+        private final Timers timers;
+        private final Runnable task;
+        private final long submittedNanos;
+
+        TimedRunnable(Timers timers, Runnable task, long submittedNanos) {
+            this.timers = timers;
+            this.task = task;
+            this.submittedNanos = submittedNanos;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = timers.started(submittedNanos);
+            try {
+                task.run();
+            } finally {
+                timers.run.record(System.nanoTime() - startNanos);
+            }
+        }
+    }
+}
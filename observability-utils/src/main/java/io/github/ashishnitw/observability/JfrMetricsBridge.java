@@ -0,0 +1,135 @@
+package io.github.ashishnitw.observability;
+
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+
+/**
+ * In-process JDK Flight Recorder consumer that turns JDK events into {@link MetricsUtils}
+ * metrics, without an external agent. A {@link RecordingStream} is subscribed to
+ * garbage collection, safepoint, monitor contention and allocation sample events and
+ * folds them into the following metrics:
+ * <ul>
+ *     <li>timer {@code jfr_gc_pause} and labeled counter {@code jfr_gc_collections} by collector</li>
+ *     <li>timer {@code jfr_safepoint}</li>
+ *     <li>timer {@code jfr_monitor_enter} and labeled counter {@code jfr_monitor_contention} by monitor class</li>
+ *     <li>counter {@code jfr_allocation_sample_bytes} and labeled counter
+ *     {@code jfr_allocation_sample_bytes_by_class} by object class</li>
+ * </ul>
+ *
+ * <pre>{@code
+ * try (JfrMetricsBridge bridge = JfrMetricsBridge.start()) {
+ *     runApplication();
+ * }
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class JfrMetricsBridge implements AutoCloseable {
+
+    /**
+     * Default minimum monitor wait that is recorded as contention.
+     */
+    public static final Duration DEFAULT_MONITOR_ENTER_THRESHOLD = Duration.ofMillis(10);
+
+    /**
+     * Default number of allocation samples taken per second.
+     */
+    public static final int DEFAULT_ALLOCATION_SAMPLES_PER_SECOND = 100;
+
+    private static final Logger logger = LoggerFactory.getLogger(JfrMetricsBridge.class);
+    private static final String GARBAGE_COLLECTION = "jdk.GarbageCollection";
+    private static final String SAFEPOINT = "jdk.SafepointBegin";
+    private static final String MONITOR_ENTER = "jdk.JavaMonitorEnter";
+    private static final String ALLOCATION_SAMPLE = "jdk.ObjectAllocationSample";
+    private static final String UNKNOWN = "unknown";
+
+    private final RecordingStream stream;
+    private final TimerHandle gcPause = MetricsUtils.internalTimer("jfr_gc_pause");
+    private final LabeledMetric<CounterHandle> gcCollections = MetricsUtils.labeledCounter("jfr_gc_collections", "collector");
+    private final TimerHandle safepoint = MetricsUtils.internalTimer("jfr_safepoint");
+    private final TimerHandle monitorEnter = MetricsUtils.internalTimer("jfr_monitor_enter");
+    private final LabeledMetric<CounterHandle> monitorContention =
+            MetricsUtils.labeledCounter("jfr_monitor_contention", "monitor_class");
+    private final CounterHandle allocationBytes = MetricsUtils.internalCounter("jfr_allocation_sample_bytes");
+    private final LabeledMetric<CounterHandle> allocationBytesByClass =
+            MetricsUtils.labeledCounter("jfr_allocation_sample_bytes_by_class", "object_class");
+
+    private JfrMetricsBridge(Duration monitorEnterThreshold, int allocationSamplesPerSecond) {
+        this.stream = new RecordingStream();
+        stream.enable(GARBAGE_COLLECTION);
+        stream.enable(SAFEPOINT);
+        stream.enable(MONITOR_ENTER).withThreshold(monitorEnterThreshold);
+        stream.enable(ALLOCATION_SAMPLE).with("throttle", allocationSamplesPerSecond + "/s");
+        stream.onEvent(GARBAGE_COLLECTION, this::onGarbageCollection);
+        stream.onEvent(SAFEPOINT, event -> safepoint.record(event.getDuration().toNanos()));
+        stream.onEvent(MONITOR_ENTER, this::onMonitorEnter);
+        stream.onEvent(ALLOCATION_SAMPLE, this::onAllocationSample);
+        stream.onError(e -> logger.error("JFR metrics stream failed", e));
+    }
+
+    /**
+     * Starts streaming JDK events into metrics with the default settings.
+     *
+     * @return the running bridge
+     */
+    public static JfrMetricsBridge start() {
+        return start(DEFAULT_MONITOR_ENTER_THRESHOLD, DEFAULT_ALLOCATION_SAMPLES_PER_SECOND);
+    }
+
+    /**
+     * Starts streaming JDK events into metrics.
+     *
+     * @param monitorEnterThreshold the minimum monitor wait that is recorded as contention
+     * @param allocationSamplesPerSecond the number of allocation samples taken per second
+     * @return the running bridge
+     */
+    public static JfrMetricsBridge start(Duration monitorEnterThreshold, int allocationSamplesPerSecond) {
+        if (allocationSamplesPerSecond <= 0) {
+            throw new IllegalArgumentException("allocationSamplesPerSecond must be positive");
+        }
+        JfrMetricsBridge bridge = new JfrMetricsBridge(monitorEnterThreshold, allocationSamplesPerSecond);
+        bridge.stream.startAsync();
+        logger.info("JFR metrics bridge started");
+        return bridge;
+    }
+
+    /**
+     * Stops the recording stream.
+     */
+    @Override
+    public void close() {
+        stream.close();
+        logger.info("JFR metrics bridge stopped");
+    }
+
+    private void onGarbageCollection(RecordedEvent event) {
+        gcPause.record(event.getDuration("sumOfPauses").toNanos());
+        gcCollections.labels(stringOrUnknown(event.getString("name"))).increment();
+    }
+
+    private void onMonitorEnter(RecordedEvent event) {
+        monitorEnter.record(event.getDuration().toNanos());
+        monitorContention.labels(className(event.getClass("monitorClass"))).increment();
+    }
+
+    private void onAllocationSample(RecordedEvent event) {
+        long weight = event.getLong("weight");
+        allocationBytes.increment(weight);
+        allocationBytesByClass.labels(className(event.getClass("objectClass"))).increment(weight);
+    }
+
+    private static String className(RecordedClass recordedClass) {
+        return recordedClass == null ? UNKNOWN : stringOrUnknown(recordedClass.getName());
+    }
+
+    private static String stringOrUnknown(String value) {
+        return value == null ? UNKNOWN : value;
+    }
+}
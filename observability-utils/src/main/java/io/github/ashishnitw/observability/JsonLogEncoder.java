@@ -0,0 +1,125 @@
+package io.github.ashishnitw.observability;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encodes log events as JSON lines, writing UTF-8 bytes straight into the target buffer:
+ *
+ * <pre>
+ * {"timestamp":"2024-05-01T12:30:00.250Z","level":"ERROR","logger":"com.example.Orders","thread":"main",
+ *  "message":"Order 42 failed","mdc":{"requestId":"abc"},"exception":"java.lang.IllegalStateException: ..."}
+ * </pre>
+ *
+ * The event is not turned into a map or a {@code String} first. The message is formatted
+ * into a reused buffer and escaped while it is written, the timestamp is written digit by
+ * digit, and fixed fields given at construction are encoded once. An event without
+ * arguments, exception or diagnostic context is encoded without allocating. The
+ * {@code mdc} and {@code exception} fields are left out when empty. Instances are not
+ * thread-safe; an {@link AsyncLogAppender} only calls its encoder from its writer thread.
+ *
+ * <pre>{@code
+ * AsyncLogAppender appender = AsyncLogAppender.open(Path.of("app.json"), 8192,
+ *         AsyncLogAppender.OverflowPolicy.DROP, new JsonLogEncoder(Map.of("service", "orders")),
+ *         AsyncLogAppender.DEFAULT_BATCH_BYTES, 200, TimeUnit.MILLISECONDS);
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class JsonLogEncoder implements LogEventEncoder {
+
+    private static final byte[] TIMESTAMP = ascii("{\"timestamp\":\"");
+    private static final byte[] LEVEL = ascii("\",\"level\":\"");
+    private static final byte[] LOGGER = ascii("\",\"logger\":");
+    private static final byte[] THREAD = ascii(",\"thread\":");
+    private static final byte[] MESSAGE = ascii(",\"message\":");
+    private static final byte[] MDC = ascii(",\"mdc\":{");
+    private static final byte[] EXCEPTION = ascii(",\"exception\":");
+
+    private final LogEncoding encoding = new LogEncoding();
+    // The fixed fields, encoded once as ,"name":"value" pairs
+    private final byte[] fixedFields;
+
+    /**
+     * Creates an encoder that writes the event fields only.
+     */
+    public JsonLogEncoder() {
+        this(Map.of());
+    }
+
+    /**
+     * Creates an encoder that adds fixed fields, such as the service name, to every event.
+     *
+     * @param fixedFields the field names and values, written after the event fields
+     */
+    public JsonLogEncoder(Map<String, String> fixedFields) {
+        Map<String, String> fields = new LinkedHashMap<>(fixedFields);
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        while (true) {
+            try {
+                for (Map.Entry<String, String> field : fields.entrySet()) {
+                    buffer.put((byte) ',');
+                    putField(buffer, field.getKey(), field.getValue());
+                }
+                break;
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+        this.fixedFields = Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    @Override
+    public void encode(LogEvent event, ByteBuffer out) {
+        out.put(TIMESTAMP);
+        LogEncoding.putTimestamp(out, event.getTimestampMillis());
+        out.put(LEVEL);
+        LogEncoding.putAscii(out, event.getLevel().name());
+        out.put(LOGGER);
+        LogEncoding.putJsonString(out, String.valueOf(event.getLoggerName()));
+        out.put(THREAD);
+        LogEncoding.putJsonString(out, String.valueOf(event.getThreadName()));
+        out.put(MESSAGE);
+        LogEncoding.putJsonString(out, encoding.formatMessage(event));
+        Map<String, String> mdc = event.getMdc();
+        if (mdc != null && !mdc.isEmpty()) {
+            out.put(MDC);
+            boolean first = true;
+            for (Map.Entry<String, String> entry : mdc.entrySet()) {
+                if (!first) {
+                    out.put((byte) ',');
+                }
+                first = false;
+                putField(out, entry.getKey(), entry.getValue());
+            }
+            out.put((byte) '}');
+        }
+        if (event.getThrowable() != null) {
+            out.put(EXCEPTION);
+            LogEncoding.putJsonString(out, encoding.formatStackTrace(event.getThrowable()));
+        }
+        out.put(fixedFields);
+        out.put((byte) '}');
+        out.put((byte) '\n');
+    }
+
+    private static void putField(ByteBuffer out, String name, String value) {
+        LogEncoding.putJsonString(out, String.valueOf(name));
+        out.put((byte) ':');
+        if (value == null) {
+            LogEncoding.putAscii(out, "null");
+        } else {
+            LogEncoding.putJsonString(out, value);
+        }
+    }
+
+    private static byte[] ascii(String chars) {
+        return chars.getBytes(StandardCharsets.US_ASCII);
+    }
+}
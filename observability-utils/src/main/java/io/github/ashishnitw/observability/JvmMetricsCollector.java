@@ -0,0 +1,372 @@
+package io.github.ashishnitw.observability;
+
+import io.prometheus.metrics.model.registry.MultiCollector;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import io.prometheus.metrics.model.snapshots.CounterSnapshot;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import io.prometheus.metrics.model.snapshots.Labels;
+import io.prometheus.metrics.model.snapshots.MetricSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples JVM runtime metrics from the platform MXBeans on a background schedule and
+ * exposes them to Prometheus. Beyond {@link MetricsUtils#getMemoryStats()}, it reports
+ * garbage collection counts and times, the allocation rate, the threads that allocate
+ * the most, direct and mapped buffer pools, thread states and class loading.
+ * Scrapes only read the latest sample; the time spent sampling is itself exported so
+ * the collector's overhead can be watched.
+ *
+ * <pre>{@code
+ * JvmMetricsCollector collector = JvmMetricsCollector.start(10_000);
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class JvmMetricsCollector implements MultiCollector, AutoCloseable {
+
+    /**
+     * Default number of threads reported by allocated bytes.
+     */
+    public static final int DEFAULT_TOP_ALLOCATING_THREADS = 10;
+
+    private static final Logger logger = LoggerFactory.getLogger(JvmMetricsCollector.class);
+    private static final Thread.State[] THREAD_STATES = Thread.State.values();
+    private static final List<String> METRIC_NAMES = List.of(
+            "jvm_gc_collections", "jvm_gc_collection_seconds",
+            "jvm_memory_allocated_bytes", "jvm_memory_allocation_rate_bytes",
+            "jvm_thread_allocated_bytes",
+            "jvm_buffer_pool_used_bytes", "jvm_buffer_pool_capacity_bytes", "jvm_buffer_pool_buffers",
+            "jvm_threads_state", "jvm_threads_live", "jvm_threads_daemon",
+            "jvm_classes_currently_loaded", "jvm_classes_loaded", "jvm_classes_unloaded",
+            "jvm_metrics_sample_duration_seconds", "jvm_metrics_sampling_seconds");
+
+    private final PrometheusRegistry registry;
+    private final int topAllocatingThreads;
+    private final List<GarbageCollectorMXBean> garbageCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final List<BufferPoolMXBean> bufferPools = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+    private final ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final com.sun.management.ThreadMXBean allocationThreads;
+    private final ScheduledExecutorService scheduler;
+    // Only touched by the sampling thread, which is serialized by synchronized sample()
+    private Map<Long, Long> previousThreadAllocations = new HashMap<>();
+    private long allocatedBytesTotal;
+    private long totalSampleNanos;
+    private long previousSampleNanoTime;
+    private volatile Sample latest;
+
+    private JvmMetricsCollector(PrometheusRegistry registry, int topAllocatingThreads) {
+        this.registry = registry;
+        this.topAllocatingThreads = topAllocatingThreads;
+        this.allocationThreads = threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) threads
+                : null;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jvm-metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts sampling into the default registry.
+     *
+     * @param intervalMillis the sampling interval in milliseconds
+     * @return the running collector
+     */
+    public static JvmMetricsCollector start(long intervalMillis) {
+        return start(MetricsUtils.getPrometheusRegistry(), intervalMillis, DEFAULT_TOP_ALLOCATING_THREADS);
+    }
+
+    /**
+     * Starts sampling into a registry.
+     *
+     * @param registry the registry to register with
+     * @param intervalMillis the sampling interval in milliseconds
+     * @param topAllocatingThreads the number of threads reported by allocated bytes
+     * @return the running collector
+     */
+    public static JvmMetricsCollector start(PrometheusRegistry registry, long intervalMillis,
+                                            int topAllocatingThreads) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be positive");
+        }
+        JvmMetricsCollector collector = new JvmMetricsCollector(registry, topAllocatingThreads);
+        collector.sample();
+        registry.register(collector);
+        if (registry == MetricsUtils.getPrometheusRegistry()) {
+            MetricsUtils.reserveNames(collector);
+        }
+        collector.scheduler.scheduleWithFixedDelay(collector::sampleSafely, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+        return collector;
+    }
+
+    /**
+     * Takes a sample immediately, in addition to the scheduled ones.
+     */
+    public synchronized void sample() {
+        long start = System.nanoTime();
+        Sample sample = new Sample();
+
+        int gcCount = garbageCollectors.size();
+        sample.gcNames = new String[gcCount];
+        sample.gcCollections = new long[gcCount];
+        sample.gcTimeMillis = new long[gcCount];
+        for (int i = 0; i < gcCount; i++) {
+            GarbageCollectorMXBean gc = garbageCollectors.get(i);
+            sample.gcNames[i] = gc.getName();
+            sample.gcCollections[i] = Math.max(0L, gc.getCollectionCount());
+            sample.gcTimeMillis[i] = Math.max(0L, gc.getCollectionTime());
+        }
+
+        int poolCount = bufferPools.size();
+        sample.poolNames = new String[poolCount];
+        sample.poolUsedBytes = new long[poolCount];
+        sample.poolCapacityBytes = new long[poolCount];
+        sample.poolBuffers = new long[poolCount];
+        for (int i = 0; i < poolCount; i++) {
+            BufferPoolMXBean pool = bufferPools.get(i);
+            sample.poolNames[i] = pool.getName();
+            sample.poolUsedBytes[i] = pool.getMemoryUsed();
+            sample.poolCapacityBytes[i] = pool.getTotalCapacity();
+            sample.poolBuffers[i] = pool.getCount();
+        }
+
+        long[] threadIds = threads.getAllThreadIds();
+        ThreadInfo[] threadInfos = threads.getThreadInfo(threadIds, 0);
+        sample.threadStateCounts = new int[THREAD_STATES.length];
+        for (ThreadInfo info : threadInfos) {
+            if (info != null) {
+                sample.threadStateCounts[info.getThreadState().ordinal()]++;
+            }
+        }
+        sample.liveThreads = threads.getThreadCount();
+        sample.daemonThreads = threads.getDaemonThreadCount();
+        sampleAllocations(sample, threadIds, threadInfos, start);
+
+        sample.loadedClasses = classLoading.getLoadedClassCount();
+        sample.totalLoadedClasses = classLoading.getTotalLoadedClassCount();
+        sample.unloadedClasses = classLoading.getUnloadedClassCount();
+
+        long duration = System.nanoTime() - start;
+        totalSampleNanos += duration;
+        sample.sampleDurationNanos = duration;
+        sample.totalSampleNanos = totalSampleNanos;
+        latest = sample;
+    }
+
+    private void sampleAllocations(Sample sample, long[] threadIds, ThreadInfo[] threadInfos, long now) {
+        sample.topThreadNames = new String[0];
+        sample.topThreadBytes = new long[0];
+        if (allocationThreads == null || !allocationThreads.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        long[] allocated = allocationThreads.getThreadAllocatedBytes(threadIds);
+        Map<Long, Long> current = new HashMap<>(threadIds.length * 2);
+        long delta = 0;
+        for (int i = 0; i < threadIds.length; i++) {
+            if (allocated[i] < 0) {
+                continue;
+            }
+            current.put(threadIds[i], allocated[i]);
+            Long previous = previousThreadAllocations.get(threadIds[i]);
+            delta += Math.max(0L, allocated[i] - (previous != null ? previous : 0L));
+        }
+        previousThreadAllocations = current;
+        boolean firstSample = previousSampleNanoTime == 0;
+        allocatedBytesTotal += delta;
+        sample.allocatedBytesTotal = allocatedBytesTotal;
+        sample.allocationRateBytesPerSecond = firstSample ? 0.0 : delta / ((now - previousSampleNanoTime) / 1e9);
+        previousSampleNanoTime = now;
+
+        Integer[] order = new Integer[threadIds.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(allocated[b], allocated[a]));
+        int reported = 0;
+        String[] names = new String[Math.min(topAllocatingThreads, order.length)];
+        long[] bytes = new long[names.length];
+        for (int i = 0; i < order.length && reported < names.length; i++) {
+            ThreadInfo info = threadInfos[order[i]];
+            if (info != null && allocated[order[i]] >= 0) {
+                names[reported] = info.getThreadName() + "-" + info.getThreadId();
+                bytes[reported] = allocated[order[i]];
+                reported++;
+            }
+        }
+        sample.topThreadNames = Arrays.copyOf(names, reported);
+        sample.topThreadBytes = Arrays.copyOf(bytes, reported);
+    }
+
+    private void sampleSafely() {
+        try {
+            sample();
+        } catch (RuntimeException e) {
+            logger.error("Failed to sample JVM metrics", e);
+        }
+    }
+
+    /**
+     * Gets the duration of the latest sample.
+     *
+     * @return the sampling time in nanoseconds
+     */
+    public long getLastSampleDurationNanos() {
+        return latest.sampleDurationNanos;
+    }
+
+    /**
+     * Gets the total time spent sampling since the collector started.
+     *
+     * @return the sampling time in nanoseconds
+     */
+    public long getTotalSampleNanos() {
+        return latest.totalSampleNanos;
+    }
+
+    @Override
+    public List<String> getPrometheusNames() {
+        return METRIC_NAMES;
+    }
+
+    @Override
+    public MetricSnapshots collect() {
+        Sample sample = latest;
+        List<MetricSnapshot> snapshots = new ArrayList<>(METRIC_NAMES.size());
+
+        CounterSnapshot.Builder gcCollections = CounterSnapshot.builder()
+                .name("jvm_gc_collections").help("Number of garbage collections");
+        CounterSnapshot.Builder gcSeconds = CounterSnapshot.builder()
+                .name("jvm_gc_collection_seconds").help("Time spent in garbage collection");
+        for (int i = 0; i < sample.gcNames.length; i++) {
+            Labels labels = Labels.of("gc", sample.gcNames[i]);
+            gcCollections.dataPoint(counter(sample.gcCollections[i], labels));
+            gcSeconds.dataPoint(counter(sample.gcTimeMillis[i] / 1000.0, labels));
+        }
+        snapshots.add(gcCollections.build());
+        snapshots.add(gcSeconds.build());
+
+        snapshots.add(CounterSnapshot.builder().name("jvm_memory_allocated_bytes")
+                .help("Bytes allocated by live threads since the collector started")
+                .dataPoint(counter(sample.allocatedBytesTotal, Labels.EMPTY)).build());
+        snapshots.add(GaugeSnapshot.builder().name("jvm_memory_allocation_rate_bytes")
+                .help("Bytes allocated per second between the last two samples")
+                .dataPoint(gauge(sample.allocationRateBytesPerSecond, Labels.EMPTY)).build());
+        GaugeSnapshot.Builder threadAllocations = GaugeSnapshot.builder().name("jvm_thread_allocated_bytes")
+                .help("Bytes allocated by the threads that allocated the most");
+        for (int i = 0; i < sample.topThreadNames.length; i++) {
+            threadAllocations.dataPoint(gauge(sample.topThreadBytes[i], Labels.of("thread", sample.topThreadNames[i])));
+        }
+        snapshots.add(threadAllocations.build());
+
+        GaugeSnapshot.Builder poolUsed = GaugeSnapshot.builder().name("jvm_buffer_pool_used_bytes")
+                .help("Memory used by a buffer pool");
+        GaugeSnapshot.Builder poolCapacity = GaugeSnapshot.builder().name("jvm_buffer_pool_capacity_bytes")
+                .help("Total capacity of the buffers in a buffer pool");
+        GaugeSnapshot.Builder poolBuffers = GaugeSnapshot.builder().name("jvm_buffer_pool_buffers")
+                .help("Number of buffers in a buffer pool");
+        for (int i = 0; i < sample.poolNames.length; i++) {
+            Labels labels = Labels.of("pool", sample.poolNames[i]);
+            poolUsed.dataPoint(gauge(sample.poolUsedBytes[i], labels));
+            poolCapacity.dataPoint(gauge(sample.poolCapacityBytes[i], labels));
+            poolBuffers.dataPoint(gauge(sample.poolBuffers[i], labels));
+        }
+        snapshots.add(poolUsed.build());
+        snapshots.add(poolCapacity.build());
+        snapshots.add(poolBuffers.build());
+
+        GaugeSnapshot.Builder threadStates = GaugeSnapshot.builder().name("jvm_threads_state")
+                .help("Number of threads by state");
+        for (Thread.State state : THREAD_STATES) {
+            threadStates.dataPoint(gauge(sample.threadStateCounts[state.ordinal()], Labels.of("state", state.name())));
+        }
+        snapshots.add(threadStates.build());
+        snapshots.add(gaugeSnapshot("jvm_threads_live", "Number of live threads", sample.liveThreads));
+        snapshots.add(gaugeSnapshot("jvm_threads_daemon", "Number of live daemon threads", sample.daemonThreads));
+
+        snapshots.add(gaugeSnapshot("jvm_classes_currently_loaded", "Number of classes currently loaded",
+                sample.loadedClasses));
+        snapshots.add(CounterSnapshot.builder().name("jvm_classes_loaded")
+                .help("Number of classes loaded since the JVM started")
+                .dataPoint(counter(sample.totalLoadedClasses, Labels.EMPTY)).build());
+        snapshots.add(CounterSnapshot.builder().name("jvm_classes_unloaded")
+                .help("Number of classes unloaded since the JVM started")
+                .dataPoint(counter(sample.unloadedClasses, Labels.EMPTY)).build());
+
+        snapshots.add(gaugeSnapshot("jvm_metrics_sample_duration_seconds", "Duration of the latest JVM metrics sample",
+                sample.sampleDurationNanos / 1e9));
+        snapshots.add(CounterSnapshot.builder().name("jvm_metrics_sampling_seconds")
+                .help("Total time spent sampling JVM metrics")
+                .dataPoint(counter(sample.totalSampleNanos / 1e9, Labels.EMPTY)).build());
+        return new MetricSnapshots(snapshots);
+    }
+
+    /**
+     * Stops sampling and unregisters the collector.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        registry.unregister(this);
+        MetricsUtils.releaseNames(this);
+    }
+
+    private static CounterSnapshot.CounterDataPointSnapshot counter(double value, Labels labels) {
+        return CounterSnapshot.CounterDataPointSnapshot.builder().value(value).labels(labels).build();
+    }
+
+    private static GaugeSnapshot.GaugeDataPointSnapshot gauge(double value, Labels labels) {
+        return GaugeSnapshot.GaugeDataPointSnapshot.builder().value(value).labels(labels).build();
+    }
+
+    private static GaugeSnapshot gaugeSnapshot(String name, String help, double value) {
+        return GaugeSnapshot.builder().name(name).help(help).dataPoint(gauge(value, Labels.EMPTY)).build();
+    }
+
+    /**
+     * Immutable result of one sample, published to scrapes through a volatile field.
+     */
+    private static final class Sample {
+        private String[] gcNames;
+        private long[] gcCollections;
+        private long[] gcTimeMillis;
+        private long allocatedBytesTotal;
+        private double allocationRateBytesPerSecond;
+        private String[] topThreadNames;
+        private long[] topThreadBytes;
+        private String[] poolNames;
+        private long[] poolUsedBytes;
+        private long[] poolCapacityBytes;
+        private long[] poolBuffers;
+        private int[] threadStateCounts;
+        private int liveThreads;
+        private int daemonThreads;
+        private int loadedClasses;
+        private long totalLoadedClasses;
+        private long unloadedClasses;
+        private long sampleDurationNanos;
+        private long totalSampleNanos;
+    }
+}
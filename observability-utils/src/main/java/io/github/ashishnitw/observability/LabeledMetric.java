@@ -0,0 +1,283 @@
+package io.github.ashishnitw.observability;
+
+import io.prometheus.metrics.model.snapshots.CounterSnapshot;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import io.prometheus.metrics.model.snapshots.HistogramSnapshot;
+import io.prometheus.metrics.model.snapshots.Labels;
+import io.prometheus.metrics.model.snapshots.MetricSnapshot;
+import io.prometheus.metrics.model.snapshots.PrometheusNaming;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Family of local metrics that share a name and are told apart by label values.
+ * Each distinct label-value tuple is resolved once to a cached child handle, so callers
+ * that keep the child do no string work on updates. The number of children is capped;
+ * once the cap is reached, new label-value tuples share a single overflow child whose
+ * label values are all {@value #OVERFLOW_LABEL_VALUE}. Looking up that tuple explicitly
+ * returns the overflow child too, so it is never exported twice.
+ *
+ * <pre>{@code
+ * LabeledMetric<CounterHandle> requests = MetricsUtils.labeledCounter("http_requests", "method", "status");
+ * CounterHandle getOk = requests.labels("GET", "200");
+ * getOk.increment();
+ * }</pre>
+ *
+ * @param <T> the type of the child handles
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class LabeledMetric<T> {
+
+    /**
+     * Default maximum number of label-value tuples per metric.
+     */
+    public static final int DEFAULT_MAX_CARDINALITY = 1000;
+
+    /**
+     * Label value used for the overflow child.
+     */
+    public static final String OVERFLOW_LABEL_VALUE = "other";
+
+    /**
+     * Kind of the child handles, used to export the family to Prometheus.
+     */
+    enum Kind {
+        COUNTER, GAUGE, HISTOGRAM
+    }
+
+    private static final String HELP = "Labeled metric from MetricsUtils";
+    // Label names that Prometheus adds to the series of histograms and summaries
+    private static final List<String> RESERVED_HISTOGRAM_LABEL_NAMES = List.of("le", "quantile");
+
+    private final String name;
+    private final String prometheusName;
+    private final List<String> labelNames;
+    private final int maxCardinality;
+    private final Kind kind;
+    private final Supplier<T> childFactory;
+    private final ConcurrentHashMap<LabelValues, T> children = new ConcurrentHashMap<>();
+    private final AtomicInteger cardinality = new AtomicInteger();
+    private final LongAdder overflowCount = new LongAdder();
+    private final T overflowChild;
+    private volatile boolean overflowChildUsed;
+
+    LabeledMetric(String name, Kind kind, int maxCardinality, String[] labelNames, Supplier<T> childFactory) {
+        if (labelNames.length == 0) {
+            throw new IllegalArgumentException("At least one label name is required");
+        }
+        if (maxCardinality < 1) {
+            throw new IllegalArgumentException("maxCardinality must be positive");
+        }
+        validateLabelNames(name, kind, labelNames);
+        this.name = name;
+        this.prometheusName = kind == Kind.COUNTER
+                ? MetricsUtils.toPrometheusCounterName(name)
+                : MetricsUtils.sanitizeMetricName(name);
+        this.kind = kind;
+        this.labelNames = List.of(labelNames);
+        this.maxCardinality = maxCardinality;
+        this.childFactory = childFactory;
+        this.overflowChild = childFactory.get();
+    }
+
+    private static void validateLabelNames(String name, Kind kind, String[] labelNames) {
+        Set<String> distinct = new HashSet<>();
+        for (String labelName : labelNames) {
+            if (labelName == null || !PrometheusNaming.isValidLabelName(labelName)) {
+                throw new IllegalArgumentException("Invalid label name for " + name + ": " + labelName);
+            }
+            if (kind == Kind.HISTOGRAM && RESERVED_HISTOGRAM_LABEL_NAMES.contains(labelName)) {
+                throw new IllegalArgumentException("Label name " + labelName + " is reserved for histogram " + name);
+            }
+            if (!distinct.add(labelName)) {
+                throw new IllegalArgumentException("Duplicate label name for " + name + ": " + labelName);
+            }
+        }
+    }
+
+    /**
+     * Gets the name of the metric.
+     *
+     * @return the metric name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the label names of the metric.
+     *
+     * @return the label names
+     */
+    public List<String> getLabelNames() {
+        return labelNames;
+    }
+
+    /**
+     * Gets the child handle for a label-value tuple, creating it on first use.
+     * Resolve the child once and keep it on hot paths. When the cardinality cap has
+     * been reached, the shared overflow child is returned for unseen tuples. The tuple
+     * whose values are all {@value #OVERFLOW_LABEL_VALUE} always resolves to the overflow child.
+     *
+     * @param labelValues the label values, in the order of the label names
+     * @return the child handle
+     */
+    public T labels(String... labelValues) {
+        if (labelValues.length != labelNames.size()) {
+            throw new IllegalArgumentException("Expected " + labelNames.size() + " label values for "
+                    + name + " but got " + labelValues.length);
+        }
+        LabelValues key = new LabelValues(labelValues);
+        T child = children.get(key);
+        if (child != null) {
+            return child;
+        }
+        if (cardinality.get() >= maxCardinality) {
+            overflowCount.increment();
+            overflowChildUsed = true;
+            return overflowChild;
+        }
+        boolean overflowTuple = true;
+        for (String value : labelValues) {
+            if (value == null) {
+                throw new IllegalArgumentException("Label values must not be null for " + name);
+            }
+            overflowTuple &= OVERFLOW_LABEL_VALUE.equals(value);
+        }
+        if (overflowTuple) {
+            overflowChildUsed = true;
+            return overflowChild;
+        }
+        child = children.computeIfAbsent(new LabelValues(labelValues.clone()), k -> {
+            if (cardinality.incrementAndGet() > maxCardinality) {
+                cardinality.decrementAndGet();
+                return null;
+            }
+            return childFactory.get();
+        });
+        if (child == null) {
+            overflowCount.increment();
+            overflowChildUsed = true;
+            return overflowChild;
+        }
+        return child;
+    }
+
+    /**
+     * Gets the number of distinct label-value tuples, excluding the overflow child.
+     *
+     * @return the cardinality
+     */
+    public int getCardinality() {
+        return cardinality.get();
+    }
+
+    /**
+     * Gets the maximum number of distinct label-value tuples.
+     *
+     * @return the cardinality cap
+     */
+    public int getMaxCardinality() {
+        return maxCardinality;
+    }
+
+    /**
+     * Gets how many lookups were folded into the overflow child.
+     *
+     * @return the overflow count
+     */
+    public long getOverflowCount() {
+        return overflowCount.sum();
+    }
+
+    /**
+     * Performs an action for each child, including the overflow child once it has been used.
+     *
+     * @param action the action, called with the label values and the child
+     */
+    public void forEach(BiConsumer<List<String>, T> action) {
+        for (Map.Entry<LabelValues, T> entry : children.entrySet()) {
+            action.accept(List.of(entry.getKey().values), entry.getValue());
+        }
+        if (overflowChildUsed) {
+            String[] overflowValues = new String[labelNames.size()];
+            Arrays.fill(overflowValues, OVERFLOW_LABEL_VALUE);
+            action.accept(List.of(overflowValues), overflowChild);
+        }
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Builds a Prometheus snapshot of all children.
+     *
+     * @param histogramBoundsSeconds the classic bucket bounds used for histogram families
+     * @return the snapshot, or null if the name cannot be exported
+     */
+    MetricSnapshot collect(double[] histogramBoundsSeconds) {
+        if (prometheusName == null) {
+            return null;
+        }
+        switch (kind) {
+            case COUNTER: {
+                CounterSnapshot.Builder builder = CounterSnapshot.builder().name(prometheusName).help(HELP);
+                forEach((values, child) -> builder.dataPoint(CounterSnapshot.CounterDataPointSnapshot.builder()
+                        .value(((CounterHandle) child).get())
+                        .labels(Labels.of(labelNames, values))
+                        .build()));
+                return builder.build();
+            }
+            case GAUGE: {
+                GaugeSnapshot.Builder builder = GaugeSnapshot.builder().name(prometheusName).help(HELP);
+                forEach((values, child) -> builder.dataPoint(GaugeSnapshot.GaugeDataPointSnapshot.builder()
+                        .value(((GaugeHandle) child).get())
+                        .labels(Labels.of(labelNames, values))
+                        .build()));
+                return builder.build();
+            }
+            default: {
+                HistogramSnapshot.Builder builder = HistogramSnapshot.builder().name(prometheusName).help(HELP);
+                forEach((values, child) -> builder.dataPoint(((LatencyHistogram) child)
+                        .toPrometheusDataPoint(histogramBoundsSeconds, Labels.of(labelNames, values))));
+                return builder.build();
+            }
+        }
+    }
+
+    /**
+     * Immutable label-value tuple used as the child map key.
+     */
+    private static final class LabelValues {
+
+        private final String[] values;
+        private final int hash;
+
+        LabelValues(String[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof LabelValues && Arrays.equals(values, ((LabelValues) other).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package io.github.ashishnitw.observability;
+
+import io.prometheus.metrics.model.snapshots.ClassicHistogramBuckets;
+import io.prometheus.metrics.model.snapshots.HistogramSnapshot;
+import io.prometheus.metrics.model.snapshots.Labels;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-memory, log-bucketed histogram for latency values in nanoseconds.
+ * Each power-of-two range is split into linear sub-buckets, so every recorded value
+ * lands in a bucket whose width is at most about 3% of the value. Values above
+ * {@link #MAX_TRACKABLE_VALUE} are counted in the highest bucket.
+ * Recording is lock-free and does not allocate, so it can be used on request paths.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Number of bits used for the linear sub-buckets of each power-of-two range.
+     */
+    static final int SUB_BUCKET_BITS = 6;
+
+    /**
+     * Largest value that is tracked with full precision (about 73 minutes in nanoseconds).
+     */
+    public static final long MAX_TRACKABLE_VALUE = (1L << 42) - 1;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+    private static final int BUCKET_COUNT = bucketIndex(MAX_TRACKABLE_VALUE) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * Records a value.
+     * Negative values are recorded as 0.
+     *
+     * @param value the value in nanoseconds
+     */
+    public void record(long value) {
+        long clamped = Math.max(0L, value);
+        buckets.incrementAndGet(bucketIndex(Math.min(clamped, MAX_TRACKABLE_VALUE)));
+        count.increment();
+        sum.add(clamped);
+        max.accumulate(clamped);
+    }
+
+    /**
+     * Records a value that stands for several occurrences, for example a sampled
+     * measurement scaled up by its sampling interval.
+     * Negative values are recorded as 0.
+     *
+     * @param value the value in nanoseconds
+     * @param occurrences the number of occurrences the value stands for
+     */
+    public void record(long value, long occurrences) {
+        if (occurrences <= 0) {
+            return;
+        }
+        long clamped = Math.max(0L, value);
+        buckets.addAndGet(bucketIndex(Math.min(clamped, MAX_TRACKABLE_VALUE)), occurrences);
+        count.add(occurrences);
+        sum.add(clamped * occurrences);
+        max.accumulate(clamped);
+    }
+
+    /**
+     * Gets the number of recorded values.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the sum of all recorded values.
+     *
+     * @return the sum in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Gets the largest recorded value.
+     *
+     * @return the maximum in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets the mean of all recorded values.
+     *
+     * @return the mean in nanoseconds, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0.0 : (double) getSum() / n;
+    }
+
+    /**
+     * Gets the value at a percentile.
+     * The result is the upper bound of the bucket holding the percentile, capped at the
+     * recorded maximum, so it overstates the exact value by at most one bucket width.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the value in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += buckets.get(i);
+        }
+        if (total == 0) {
+            return 0L;
+        }
+        double clamped = Math.min(Math.max(percentile, 0.0), 100.0);
+        long target = Math.max(1L, (long) Math.ceil(clamped / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return Math.min(getBucketUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Gets the median.
+     *
+     * @return the 50th percentile in nanoseconds
+     */
+    public long getP50() {
+        return getValueAtPercentile(50.0);
+    }
+
+    /**
+     * Gets the 90th percentile.
+     *
+     * @return the 90th percentile in nanoseconds
+     */
+    public long getP90() {
+        return getValueAtPercentile(90.0);
+    }
+
+    /**
+     * Gets the 99th percentile.
+     *
+     * @return the 99th percentile in nanoseconds
+     */
+    public long getP99() {
+        return getValueAtPercentile(99.0);
+    }
+
+    /**
+     * Gets the 99.9th percentile.
+     *
+     * @return the 99.9th percentile in nanoseconds
+     */
+    public long getP999() {
+        return getValueAtPercentile(99.9);
+    }
+
+    /**
+     * Gets the number of buckets of this histogram.
+     *
+     * @return the bucket count
+     */
+    public int getBucketCount() {
+        return BUCKET_COUNT;
+    }
+
+    /**
+     * Gets the number of values recorded in a bucket.
+     *
+     * @param index the bucket index
+     * @return the bucket count
+     */
+    public long getBucketValueCount(int index) {
+        return buckets.get(index);
+    }
+
+    /**
+     * Gets the smallest value that falls into a bucket.
+     *
+     * @param index the bucket index
+     * @return the inclusive lower bound in nanoseconds
+     */
+    public long getBucketLowerBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+        long mantissa = index % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return mantissa << shift;
+    }
+
+    /**
+     * Gets the largest value that falls into a bucket.
+     *
+     * @param index the bucket index
+     * @return the inclusive upper bound in nanoseconds
+     */
+    public long getBucketUpperBound(int index) {
+        if (index == BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        return getBucketLowerBound(index + 1) - 1;
+    }
+
+    /**
+     * Resets all buckets and statistics.
+     * Values recorded concurrently with a reset may be partially lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0L);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * Builds a Prometheus classic histogram data point from the current buckets.
+     * Each log bucket is folded into the first upper bound that is not below the bucket's
+     * own upper bound, so counts may move up by at most one log bucket width.
+     *
+     * @param upperBoundsSeconds the classic bucket upper bounds in seconds, sorted ascending
+     *                           and ending with {@link Double#POSITIVE_INFINITY}
+     * @param labels the labels of the data point
+     * @return the data point snapshot
+     */
+    HistogramSnapshot.HistogramDataPointSnapshot toPrometheusDataPoint(double[] upperBoundsSeconds, Labels labels) {
+        long[] counts = new long[upperBoundsSeconds.length];
+        int bound = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long bucketCount = buckets.get(i);
+            if (bucketCount == 0) {
+                continue;
+            }
+            double upperSeconds = getBucketUpperBound(i) / 1e9;
+            while (upperBoundsSeconds[bound] < upperSeconds) {
+                bound++;
+            }
+            counts[bound] += bucketCount;
+        }
+        return HistogramSnapshot.HistogramDataPointSnapshot.builder()
+                .classicHistogramBuckets(ClassicHistogramBuckets.of(upperBoundsSeconds, counts))
+                .sum(getSum() / 1e9)
+                .labels(labels)
+                .build();
+    }
+
+    /**
+     * Computes the bucket index of a non-negative value.
+     *
+     * @param value the value
+     * @return the bucket index
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int mantissa = (int) (value >>> shift);
+        return (shift + 1) * SUB_BUCKET_HALF_COUNT + mantissa - SUB_BUCKET_HALF_COUNT;
+    }
+}
@@ -0,0 +1,316 @@
+package io.github.ashishnitw.observability;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Scratch buffers and byte-level helpers shared by the log event encoders.
+ * An instance belongs to one encoder and is not thread-safe.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+final class LogEncoding {
+
+    private static final int MAX_RETAINED_CHARS = 16 * 1024;
+    private static final byte[] HEX_DIGITS = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    private final StringBuilder message = new StringBuilder(256);
+    private final StringWriter stackTrace = new StringWriter(1024);
+    private final PrintWriter stackTracePrinter = new PrintWriter(stackTrace);
+
+    /**
+     * Formats the message of an event into a reused buffer, replacing each {@code {}} with the
+     * next argument as SLF4J does. A backslash before {@code {}} keeps it literal.
+     *
+     * @param event the event
+     * @return the formatted message, valid until the next call
+     */
+    CharSequence formatMessage(LogEvent event) {
+        StringBuilder out = reset(message);
+        String pattern = event.getMessage();
+        Object[] arguments = event.getArguments();
+        if (pattern == null) {
+            return out.append("null");
+        }
+        if (arguments == null || arguments.length == 0) {
+            return out.append(pattern);
+        }
+        int argument = 0;
+        int length = pattern.length();
+        for (int i = 0; i < length; i++) {
+            char c = pattern.charAt(i);
+            boolean placeholder = c == '{' && i + 1 < length && pattern.charAt(i + 1) == '}';
+            if (placeholder && i > 0 && pattern.charAt(i - 1) == '\\'
+                    && (i < 2 || pattern.charAt(i - 2) != '\\')) {
+                // Escaped placeholder: drop the backslash and keep the braces
+                out.setLength(out.length() - 1);
+                out.append("{}");
+                i++;
+            } else if (placeholder && argument < arguments.length) {
+                if (i > 1 && pattern.charAt(i - 1) == '\\' && pattern.charAt(i - 2) == '\\') {
+                    // A double backslash is a literal backslash before a real placeholder
+                    out.setLength(out.length() - 1);
+                }
+                appendArgument(out, arguments[argument++]);
+                i++;
+            } else {
+                out.append(c);
+            }
+        }
+        return out;
+    }
+
+    private static void appendArgument(StringBuilder out, Object argument) {
+        try {
+            if (argument == null || !argument.getClass().isArray()) {
+                out.append(argument);
+            } else if (argument instanceof Object[]) {
+                out.append(Arrays.deepToString((Object[]) argument));
+            } else if (argument instanceof int[]) {
+                out.append(Arrays.toString((int[]) argument));
+            } else if (argument instanceof long[]) {
+                out.append(Arrays.toString((long[]) argument));
+            } else if (argument instanceof double[]) {
+                out.append(Arrays.toString((double[]) argument));
+            } else if (argument instanceof float[]) {
+                out.append(Arrays.toString((float[]) argument));
+            } else if (argument instanceof boolean[]) {
+                out.append(Arrays.toString((boolean[]) argument));
+            } else if (argument instanceof char[]) {
+                out.append(Arrays.toString((char[]) argument));
+            } else if (argument instanceof byte[]) {
+                out.append(Arrays.toString((byte[]) argument));
+            } else {
+                out.append(Arrays.toString((short[]) argument));
+            }
+        } catch (RuntimeException e) {
+            out.append("[FAILED toString()]");
+        }
+    }
+
+    /**
+     * Formats the stack trace of an exception into a reused buffer.
+     *
+     * @param throwable the exception
+     * @return the stack trace, ending with a line terminator, valid until the next call
+     */
+    CharSequence formatStackTrace(Throwable throwable) {
+        StringBuffer out = reset(stackTrace.getBuffer());
+        throwable.printStackTrace(stackTracePrinter);
+        stackTracePrinter.flush();
+        return out;
+    }
+
+    // Keep the scratch buffers from pinning the memory of one huge event
+    private static StringBuilder reset(StringBuilder buffer) {
+        if (buffer.capacity() > MAX_RETAINED_CHARS) {
+            buffer.setLength(0);
+            buffer.trimToSize();
+        }
+        buffer.setLength(0);
+        return buffer;
+    }
+
+    // StringWriter exposes a StringBuffer; the same reset applies
+    private static StringBuffer reset(StringBuffer buffer) {
+        if (buffer.capacity() > MAX_RETAINED_CHARS) {
+            buffer.setLength(0);
+            buffer.trimToSize();
+        }
+        buffer.setLength(0);
+        return buffer;
+    }
+
+    /**
+     * Writes characters as UTF-8. Unpaired surrogates are written as {@code ?}.
+     *
+     * @param out the buffer to write to
+     * @param chars the characters
+     */
+    static void putUtf8(ByteBuffer out, CharSequence chars) {
+        for (int i = 0, length = chars.length(); i < length; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                putCodePoint(out, Character.toCodePoint(c, chars.charAt(++i)));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Writes characters as a quoted JSON string in UTF-8. Quotes, backslashes and control
+     * characters are escaped; unpaired surrogates become the replacement character U+FFFD.
+     *
+     * @param out the buffer to write to
+     * @param chars the characters
+     */
+    static void putJsonString(ByteBuffer out, CharSequence chars) {
+        out.put((byte) '"');
+        for (int i = 0, length = chars.length(); i < length; i++) {
+            char c = chars.charAt(i);
+            if (c >= 0x20 && c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    out.put((byte) '\\');
+                }
+                out.put((byte) c);
+            } else if (c < 0x20) {
+                putJsonControl(out, c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                putCodePoint(out, Character.toCodePoint(c, chars.charAt(++i)));
+            } else if (Character.isSurrogate(c)) {
+                putAscii(out, "\\ufffd");
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        out.put((byte) '"');
+    }
+
+    private static void putJsonControl(ByteBuffer out, char c) {
+        out.put((byte) '\\');
+        switch (c) {
+            case '\n':
+                out.put((byte) 'n');
+                break;
+            case '\r':
+                out.put((byte) 'r');
+                break;
+            case '\t':
+                out.put((byte) 't');
+                break;
+            case '\b':
+                out.put((byte) 'b');
+                break;
+            case '\f':
+                out.put((byte) 'f');
+                break;
+            default:
+                out.put((byte) 'u');
+                out.put((byte) '0');
+                out.put((byte) '0');
+                out.put(HEX_DIGITS[c >> 4]);
+                out.put(HEX_DIGITS[c & 0xF]);
+        }
+    }
+
+    private static void putCodePoint(ByteBuffer out, int codePoint) {
+        out.put((byte) (0xF0 | (codePoint >> 18)));
+        out.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+        out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        out.put((byte) (0x80 | (codePoint & 0x3F)));
+    }
+
+    /**
+     * Writes characters known to be ASCII, such as level names.
+     *
+     * @param out the buffer to write to
+     * @param chars the characters
+     */
+    static void putAscii(ByteBuffer out, String chars) {
+        for (int i = 0, length = chars.length(); i < length; i++) {
+            out.put((byte) chars.charAt(i));
+        }
+    }
+
+    /**
+     * Writes a time as ISO-8601 UTC with milliseconds, such as {@code 2024-05-01T12:30:00.250Z},
+     * without going through {@code java.time} objects.
+     *
+     * @param out the buffer to write to
+     * @param epochMillis the time in epoch milliseconds
+     */
+    static void putTimestamp(ByteBuffer out, long epochMillis) {
+        long days = Math.floorDiv(epochMillis, 86_400_000L);
+        int millisOfDay = (int) Math.floorMod(epochMillis, 86_400_000L);
+        // Civil date from days since the epoch (Hinnant's algorithm)
+        long z = days + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        putDigits(out, (int) year, 4);
+        out.put((byte) '-');
+        putDigits(out, month, 2);
+        out.put((byte) '-');
+        putDigits(out, day, 2);
+        out.put((byte) 'T');
+        putDigits(out, millisOfDay / 3_600_000, 2);
+        out.put((byte) ':');
+        putDigits(out, millisOfDay / 60_000 % 60, 2);
+        out.put((byte) ':');
+        putDigits(out, millisOfDay / 1000 % 60, 2);
+        out.put((byte) '.');
+        putDigits(out, millisOfDay % 1000, 3);
+        out.put((byte) 'Z');
+    }
+
+    /**
+     * Writes a long in decimal.
+     *
+     * @param out the buffer to write to
+     * @param value the value
+     */
+    static void putDecimal(ByteBuffer out, long value) {
+        if (value < 0) {
+            out.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                putAscii(out, "9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * Writes a long as 16 lowercase hex digits.
+     *
+     * @param out the buffer to write to
+     * @param value the value
+     */
+    static void putHex(ByteBuffer out, long value) {
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            out.put(HEX_DIGITS[(int) (value >>> shift) & 0xF]);
+        }
+    }
+
+    private static void putDigits(ByteBuffer out, int value, int width) {
+        int divisor = 1;
+        for (int i = 1; i < width; i++) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package io.github.ashishnitw.observability;
+
+import org.slf4j.event.Level;
+
+import java.util.Map;
+
+/**
+ * A log event as handed to a {@link LogEventEncoder}.
+ * <p>
+ * Instances are the preallocated slots of an {@link AsyncLogAppender} ring buffer and are
+ * reused for later events, so an encoder must not keep a reference to an event after
+ * {@link LogEventEncoder#encode(LogEvent, java.nio.ByteBuffer)} returns. The message is
+ * kept as the SLF4J pattern and its arguments, and is only formatted when encoded.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class LogEvent {
+
+    private long timestampMillis;
+    private Level level;
+    private String loggerName;
+    private String threadName;
+    private String message;
+    private Object[] arguments;
+    private Throwable throwable;
+    private Map<String, String> mdc;
+
+    LogEvent() {
+    }
+
+    /**
+     * Creates an event outside of a ring buffer, for encoding it directly.
+     *
+     * @param timestampMillis the time of the event in epoch milliseconds
+     * @param level the level
+     * @param loggerName the name of the logger
+     * @param threadName the name of the thread that logged the event
+     * @param message the message, an SLF4J pattern if there are arguments
+     * @param arguments the pattern arguments, or null
+     * @param throwable the exception, or null
+     * @param mdc the diagnostic context, or null
+     */
+    public LogEvent(long timestampMillis, Level level, String loggerName, String threadName, String message,
+                    Object[] arguments, Throwable throwable, Map<String, String> mdc) {
+        set(timestampMillis, level, loggerName, threadName, message, arguments, throwable, mdc);
+    }
+
+    void set(long timestampMillis, Level level, String loggerName, String threadName, String message,
+             Object[] arguments, Throwable throwable, Map<String, String> mdc) {
+        this.timestampMillis = timestampMillis;
+        this.level = level;
+        this.loggerName = loggerName;
+        this.threadName = threadName;
+        this.message = message;
+        this.arguments = arguments;
+        this.throwable = throwable;
+        this.mdc = mdc;
+    }
+
+    /**
+     * Drops the references held by a slot once the event has been encoded.
+     */
+    void clear() {
+        set(0L, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * Gets the time of the event.
+     *
+     * @return the time in epoch milliseconds
+     */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * Gets the level.
+     *
+     * @return the level
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the name of the logger.
+     *
+     * @return the logger name
+     */
+    public String getLoggerName() {
+        return loggerName;
+    }
+
+    /**
+     * Gets the name of the thread that logged the event.
+     *
+     * @return the thread name
+     */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * Gets the message, an SLF4J pattern with {@code {}} placeholders if there are arguments.
+     *
+     * @return the message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the pattern arguments.
+     *
+     * @return the arguments, or null
+     */
+    public Object[] getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Gets the exception.
+     *
+     * @return the exception, or null
+     */
+    public Throwable getThrowable() {
+        return throwable;
+    }
+
+    /**
+     * Gets the diagnostic context captured when the event was logged.
+     *
+     * @return the diagnostic context, or null if it was empty
+     */
+    public Map<String, String> getMdc() {
+        return mdc;
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.ashishnitw.observability;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes log events into bytes for an {@link AsyncLogAppender}.
+ * <p>
+ * An appender calls its encoder from its writer thread only, so implementations may keep
+ * reusable scratch buffers without synchronization.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public interface LogEventEncoder {
+
+    /**
+     * Writes an event, including its line terminator, at the position of a buffer.
+     * When the event does not fit, the encoder throws {@link java.nio.BufferOverflowException}
+     * and the caller discards whatever was written and retries with more room.
+     *
+     * @param event the event, which must not be referenced after this call
+     * @param out the buffer to write to
+     */
+    void encode(LogEvent event, ByteBuffer out);
+}
@@ -3,10 +3,16 @@ package io.github.ashishnitw.observability;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
 /**
  * Utility class for logging operations.
  * This class provides static methods for structured logging, debug information,
  * and log level management across the application.
+ * While tracing is enabled with {@link TracingUtils}, each {@code logMethodEntry} call also
+ * starts a span named after the method, and the matching {@code logMethodExit} call ends it.
  *
  * @author ashishnitw
  * @version 1.0.0
@@ -15,6 +21,20 @@ import org.slf4j.LoggerFactory;
 public final class LoggingUtils {
 
     private static final Logger logger = LoggerFactory.getLogger(LoggingUtils.class);
+    private static final String EXIT_PATTERN = "Exiting method: {} with result: {}";
+    // Message patterns by parameter count, so parameters are formatted by SLF4J
+    private static final String[] ENTRY_PATTERNS = new String[9];
+    private static final String SUPPRESSED_PATTERN = "Suppressed {} similar messages in the last {}s: {}";
+    // Null unless limitRepeatedMessages is enabled
+    private static volatile RepeatedMessageLimits repeatedMessageLimits;
+
+    static {
+        ENTRY_PATTERNS[0] = "Entering method: {}";
+        ENTRY_PATTERNS[1] = "Entering method: {} with parameters: {}";
+        for (int i = 2; i < ENTRY_PATTERNS.length; i++) {
+            ENTRY_PATTERNS[i] = ENTRY_PATTERNS[i - 1] + ", {}";
+        }
+    }
 
     /**
      * Private constructor to prevent instantiation.
@@ -23,23 +43,196 @@ public final class LoggingUtils {
         throw new UnsupportedOperationException("Utility class cannot be instantiated");
     }
 
+    /**
+     * Logs method entry without parameters.
+     *
+     * @param methodName the name of the method
+     */
+    public static void logMethodEntry(String methodName) {
+        TracingUtils.onMethodEntry(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace("Entering method: {}", methodName);
+        }
+    }
+
+    /**
+     * Logs method entry with one parameter.
+     * Unlike the varargs variant, a call with TRACE disabled allocates nothing.
+     *
+     * @param methodName the name of the method
+     * @param param the parameter passed to the method
+     */
+    public static void logMethodEntry(String methodName, Object param) {
+        TracingUtils.onMethodEntry(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(ENTRY_PATTERNS[1], methodName, param);
+        }
+    }
+
+    /**
+     * Logs method entry with two parameters.
+     *
+     * @param methodName the name of the method
+     * @param param1 the first parameter
+     * @param param2 the second parameter
+     */
+    public static void logMethodEntry(String methodName, Object param1, Object param2) {
+        TracingUtils.onMethodEntry(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(ENTRY_PATTERNS[2], methodName, param1, param2);
+        }
+    }
+
+    /**
+     * Logs method entry with three parameters.
+     *
+     * @param methodName the name of the method
+     * @param param1 the first parameter
+     * @param param2 the second parameter
+     * @param param3 the third parameter
+     */
+    public static void logMethodEntry(String methodName, Object param1, Object param2, Object param3) {
+        TracingUtils.onMethodEntry(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(ENTRY_PATTERNS[3], methodName, param1, param2, param3);
+        }
+    }
+
+    /**
+     * Logs method entry with an {@code int} parameter, boxed only when TRACE is enabled.
+     *
+     * @param methodName the name of the method
+     * @param param the parameter passed to the method
+     */
+    public static void logMethodEntry(String methodName, int param) {
+        TracingUtils.onMethodEntry(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(ENTRY_PATTERNS[1], methodName, param);
+        }
+    }
+
+    /**
+     * Logs method entry with a {@code long} parameter, boxed only when TRACE is enabled.
+     *
+     * @param methodName the name of the method
+     * @param param the parameter passed to the method
+     */
+    public static void logMethodEntry(String methodName, long param) {
+        TracingUtils.onMethodEntry(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(ENTRY_PATTERNS[1], methodName, param);
+        }
+    }
+
+    /**
+     * Logs method entry with a {@code float} parameter, boxed only when TRACE is enabled.
+     *
+     * @param methodName the name of the method
+     * @param param the parameter passed to the method
+     */
+    public static void logMethodEntry(String methodName, float param) {
+        TracingUtils.onMethodEntry(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(ENTRY_PATTERNS[1], methodName, param);
+        }
+    }
+
+    /**
+     * Logs method entry with a {@code double} parameter, boxed only when TRACE is enabled.
+     *
+     * @param methodName the name of the method
+     * @param param the parameter passed to the method
+     */
+    public static void logMethodEntry(String methodName, double param) {
+        TracingUtils.onMethodEntry(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(ENTRY_PATTERNS[1], methodName, param);
+        }
+    }
+
+    /**
+     * Logs method entry with a {@code boolean} parameter.
+     *
+     * @param methodName the name of the method
+     * @param param the parameter passed to the method
+     */
+    public static void logMethodEntry(String methodName, boolean param) {
+        TracingUtils.onMethodEntry(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(ENTRY_PATTERNS[1], methodName, param);
+        }
+    }
+
+    /**
+     * Logs method entry with a {@code char} parameter, boxed only when TRACE is enabled.
+     *
+     * @param methodName the name of the method
+     * @param param the parameter passed to the method
+     */
+    public static void logMethodEntry(String methodName, char param) {
+        TracingUtils.onMethodEntry(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(ENTRY_PATTERNS[1], methodName, param);
+        }
+    }
+
     /**
      * Logs method entry with parameters.
+     * The compiler allocates the parameter array at every call, even with TRACE disabled;
+     * prefer the fixed-arity overloads for up to three parameters on hot paths.
+     * A single array argument is logged as the parameter list.
      *
      * @param methodName the name of the method
      * @param params the parameters passed to the method
      */
     public static void logMethodEntry(String methodName, Object... params) {
+        TracingUtils.onMethodEntry(methodName);
         if (logger.isTraceEnabled()) {
-            StringBuilder sb = new StringBuilder("Entering method: ").append(methodName);
-            if (params.length > 0) {
-                sb.append(" with parameters: ");
-                for (int i = 0; i < params.length; i++) {
-                    if (i > 0) sb.append(", ");
-                    sb.append(params[i]);
-                }
+            logEntry(methodName, params);
+        }
+    }
+
+    private static void logEntry(String methodName, Object[] params) {
+        if (params == null) {
+            logger.trace(ENTRY_PATTERNS[1], methodName, null);
+            return;
+        }
+        Object[] arguments = new Object[params.length + 1];
+        arguments[0] = methodName;
+        System.arraycopy(params, 0, arguments, 1, params.length);
+        logger.trace(entryPattern(params.length), arguments);
+    }
+
+    /**
+     * Logs method entry with parameters computed only when TRACE is enabled, for
+     * parameters that are expensive to render. A non-capturing lambda allocates nothing;
+     * a capturing one may allocate its instance at the call site.
+     * If the supplier returns an array, its elements are logged as the parameter list.
+     *
+     * @param methodName the name of the method
+     * @param params supplies the parameters
+     */
+    public static void logMethodEntryLazy(String methodName, Supplier<?> params) {
+        TracingUtils.onMethodEntry(methodName);
+        if (logger.isTraceEnabled()) {
+            Object value = params.get();
+            if (value instanceof Object[]) {
+                logEntry(methodName, (Object[]) value);
+            } else {
+                logger.trace(ENTRY_PATTERNS[1], methodName, value);
             }
-            logger.trace(sb.toString());
+        }
+    }
+
+    /**
+     * Logs method exit without a return value.
+     *
+     * @param methodName the name of the method
+     */
+    public static void logMethodExit(String methodName) {
+        TracingUtils.onMethodExit(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace("Exiting method: {}", methodName);
         }
     }
 
@@ -50,18 +243,129 @@ public final class LoggingUtils {
      * @param result the return value
      */
     public static void logMethodExit(String methodName, Object result) {
+        TracingUtils.onMethodExit(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(EXIT_PATTERN, methodName, result);
+        }
+    }
+
+    /**
+     * Logs method exit with an {@code int} result, boxed only when TRACE is enabled.
+     *
+     * @param methodName the name of the method
+     * @param result the return value
+     */
+    public static void logMethodExit(String methodName, int result) {
+        TracingUtils.onMethodExit(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(EXIT_PATTERN, methodName, result);
+        }
+    }
+
+    /**
+     * Logs method exit with a {@code long} result, boxed only when TRACE is enabled.
+     *
+     * @param methodName the name of the method
+     * @param result the return value
+     */
+    public static void logMethodExit(String methodName, long result) {
+        TracingUtils.onMethodExit(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(EXIT_PATTERN, methodName, result);
+        }
+    }
+
+    /**
+     * Logs method exit with a {@code float} result, boxed only when TRACE is enabled.
+     *
+     * @param methodName the name of the method
+     * @param result the return value
+     */
+    public static void logMethodExit(String methodName, float result) {
+        TracingUtils.onMethodExit(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(EXIT_PATTERN, methodName, result);
+        }
+    }
+
+    /**
+     * Logs method exit with a {@code double} result, boxed only when TRACE is enabled.
+     *
+     * @param methodName the name of the method
+     * @param result the return value
+     */
+    public static void logMethodExit(String methodName, double result) {
+        TracingUtils.onMethodExit(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(EXIT_PATTERN, methodName, result);
+        }
+    }
+
+    /**
+     * Logs method exit with a {@code boolean} result.
+     *
+     * @param methodName the name of the method
+     * @param result the return value
+     */
+    public static void logMethodExit(String methodName, boolean result) {
+        TracingUtils.onMethodExit(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(EXIT_PATTERN, methodName, result);
+        }
+    }
+
+    /**
+     * Logs method exit with a {@code char} result, boxed only when TRACE is enabled.
+     *
+     * @param methodName the name of the method
+     * @param result the return value
+     */
+    public static void logMethodExit(String methodName, char result) {
+        TracingUtils.onMethodExit(methodName);
+        if (logger.isTraceEnabled()) {
+            logger.trace(EXIT_PATTERN, methodName, result);
+        }
+    }
+
+    /**
+     * Logs method exit with a result computed only when TRACE is enabled.
+     *
+     * @param methodName the name of the method
+     * @param result supplies the return value to log
+     */
+    public static void logMethodExitLazy(String methodName, Supplier<?> result) {
+        TracingUtils.onMethodExit(methodName);
         if (logger.isTraceEnabled()) {
-            logger.trace("Exiting method: {} with result: {}", methodName, result);
+            logger.trace(EXIT_PATTERN, methodName, result.get());
+        }
+    }
+
+    private static String entryPattern(int paramCount) {
+        if (paramCount < ENTRY_PATTERNS.length) {
+            return ENTRY_PATTERNS[paramCount];
+        }
+        StringBuilder pattern = new StringBuilder(ENTRY_PATTERNS[ENTRY_PATTERNS.length - 1]);
+        for (int i = ENTRY_PATTERNS.length - 1; i < paramCount; i++) {
+            pattern.append(", {}");
         }
+        return pattern.toString();
     }
 
     /**
      * Logs method execution time.
+     * The time is also emitted as an {@code io.github.ashishnitw.MethodExecution} JDK Flight
+     * Recorder event when a recording has it enabled.
      *
      * @param methodName the name of the method
      * @param executionTimeMs the execution time in milliseconds
      */
     public static void logMethodExecutionTime(String methodName, long executionTimeMs) {
+        MethodExecutionEvent event = new MethodExecutionEvent();
+        if (event.isEnabled()) {
+            event.methodName = methodName;
+            event.executionTime = executionTimeMs;
+            event.commit();
+        }
         if (logger.isDebugEnabled()) {
             logger.debug("Method: {} executed in {} ms", methodName, executionTimeMs);
         }
@@ -100,6 +404,10 @@ public final class LoggingUtils {
      * @param exception the exception to log
      */
     public static void logException(String message, Exception exception) {
+        RepeatedMessageLimits limits = repeatedMessageLimits;
+        if (limits != null && !limits.permit(limits.exceptions, message, true)) {
+            return;
+        }
         logger.error(message, exception);
     }
 
@@ -111,10 +419,77 @@ public final class LoggingUtils {
      */
     public static void logWarning(String message, Object context) {
         if (logger.isWarnEnabled()) {
+            RepeatedMessageLimits limits = repeatedMessageLimits;
+            if (limits != null && !limits.permit(limits.warnings, message, false)) {
+                return;
+            }
             logger.warn("{} - Context: {}", message, context);
         }
     }
 
+    /**
+     * Limits how often the same message is logged by {@link #logException(String, Exception)}
+     * and {@link #logWarning(String, Object)}, so that an outage repeating one failure thousands
+     * of times per second does not also flood the disk. Each message, taken as the template it
+     * is and separately for exceptions and warnings, gets a token bucket that allows
+     * {@code burst} lines at once and {@code messagesPerSecond} on average. Lines over the
+     * limit are dropped and counted by the {@code log_messages_suppressed} counter. The next
+     * line of that message that is let through is preceded by a summary such as
+     * {@code Suppressed 1520 similar messages in the last 12s: Payment gateway timeout}.
+     * <p>
+     * The buckets are lock-free, see {@link MessageRateLimiter}. Messages with values
+     * concatenated into them are different templates; while {@value MessageRateLimiter#MAX_TEMPLATES}
+     * templates are still limiting or holding a summary, new ones share a single bucket.
+     *
+     * @param messagesPerSecond the average number of lines per message and second, or 0 to stop limiting
+     * @param burst the number of lines per message allowed at once
+     */
+    public static void limitRepeatedMessages(double messagesPerSecond, int burst) {
+        limitRepeatedMessages(messagesPerSecond, burst, System::nanoTime);
+    }
+
+    static void limitRepeatedMessages(double messagesPerSecond, int burst, LongSupplier clock) {
+        repeatedMessageLimits = messagesPerSecond == 0
+                ? null
+                : new RepeatedMessageLimits(messagesPerSecond, burst, clock);
+    }
+
+    /**
+     * The buckets of {@link #limitRepeatedMessages(double, int)}.
+     */
+    private static final class RepeatedMessageLimits {
+
+        private final MessageRateLimiter exceptions;
+        private final MessageRateLimiter warnings;
+        private final CounterHandle suppressedCounter = MetricsUtils.internalCounter("log_messages_suppressed");
+
+        RepeatedMessageLimits(double messagesPerSecond, int burst, LongSupplier clock) {
+            this.exceptions = new MessageRateLimiter(messagesPerSecond, burst, clock);
+            this.warnings = new MessageRateLimiter(messagesPerSecond, burst, clock);
+        }
+
+        boolean permit(MessageRateLimiter limiter, String message, boolean error) {
+            MessageRateLimiter.Bucket bucket = limiter.bucket(message);
+            long now = limiter.now();
+            if (!bucket.tryAcquire(now)) {
+                suppressedCounter.increment();
+                return false;
+            }
+            long suppressed = bucket.takeSuppressed();
+            if (suppressed > 0) {
+                // Round up, so a burst suppressed within the last second does not read as 0s
+                long seconds = (now - bucket.getFirstSuppressedNanos() + TimeUnit.SECONDS.toNanos(1) - 1)
+                        / TimeUnit.SECONDS.toNanos(1);
+                if (error) {
+                    logger.error(SUPPRESSED_PATTERN, suppressed, Math.max(1, seconds), message);
+                } else {
+                    logger.warn(SUPPRESSED_PATTERN, suppressed, Math.max(1, seconds), message);
+                }
+            }
+            return true;
+        }
+    }
+
     /**
      * Logs application startup information.
      *
@@ -0,0 +1,327 @@
+package io.github.ashishnitw.observability;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counters and gauges kept in fixed slots of a memory-mapped file.
+ * Values written through the mapping survive a restart or crash of the owning process, and
+ * other processes can read them at any time with {@link MappedCountersReader} without
+ * talking to this JVM. Updates are atomic operations directly on the mapped memory; no
+ * lock or background thread is involved.
+ * <p>
+ * The file starts with a {@value #HEADER_SIZE}-byte header followed by {@value #SLOT_SIZE}-byte
+ * slots, all little-endian:
+ * <pre>
+ * header: magic int, version int, slot count int, slot size int, owner pid long
+ * slot:   value long, type int (0 = free), name length int, UTF-8 name
+ * </pre>
+ * A slot's type is written last with release semantics, so a reader that sees a non-zero
+ * type also sees its name. Each slot spans two cache lines so writers of neighbouring slots
+ * do not share a line.
+ *
+ * <pre>{@code
+ * MetricsUtils.useMappedStorage(MappedCounters.open(Path.of("/var/run/app/metrics.dat"), 1024));
+ * MetricsUtils.counter("requests").increment();
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class MappedCounters implements AutoCloseable {
+
+    static final int MAGIC = 0x4F425343;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int SLOT_SIZE = 128;
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int SLOT_COUNT_OFFSET = 8;
+    static final int SLOT_SIZE_OFFSET = 12;
+    static final int OWNER_PID_OFFSET = 16;
+    static final int VALUE_OFFSET = 0;
+    static final int TYPE_OFFSET = 8;
+    static final int NAME_LENGTH_OFFSET = 12;
+    static final int NAME_OFFSET = 16;
+    static final int MAX_NAME_BYTES = SLOT_SIZE - NAME_OFFSET;
+    static final int TYPE_FREE = 0;
+    static final int TYPE_COUNTER = 1;
+    static final int TYPE_GAUGE = 2;
+    static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedCounters.class);
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    // Guarded by this; slots are only allocated, never freed, while the file is open
+    private final Map<String, Slot> slots = new HashMap<>();
+    private int nextFreeSlot;
+
+    private MappedCounters(Path file, MappedByteBuffer buffer, int slotCount) {
+        this.file = file;
+        this.buffer = buffer;
+        this.slotCount = slotCount;
+    }
+
+    /**
+     * Opens a counters file, creating it if it does not exist.
+     * Slots of an existing file with the same slot count are reused, so counters continue
+     * from their stored values. A file with a different layout is recreated.
+     *
+     * @param file the file to map
+     * @param slotCount the number of slots
+     * @return the mapped counters
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public static MappedCounters open(Path file, int slotCount) throws IOException {
+        if (slotCount < 1) {
+            throw new IllegalArgumentException("slotCount must be positive");
+        }
+        long size = HEADER_SIZE + (long) slotCount * SLOT_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("slotCount is too large: " + slotCount);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            boolean reuse = channel.size() == size;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            reuse = reuse && hasValidHeader(buffer, slotCount);
+            if (!reuse) {
+                clear(buffer, (int) size);
+                INTS.set(buffer, VERSION_OFFSET, VERSION);
+                INTS.set(buffer, SLOT_COUNT_OFFSET, slotCount);
+                INTS.set(buffer, SLOT_SIZE_OFFSET, SLOT_SIZE);
+                INTS.setRelease(buffer, MAGIC_OFFSET, MAGIC);
+            }
+            LONGS.setRelease(buffer, OWNER_PID_OFFSET, ProcessHandle.current().pid());
+            MappedCounters counters = new MappedCounters(file, buffer, slotCount);
+            if (reuse) {
+                counters.loadExistingSlots();
+            }
+            logger.info("Mapped {} counter slots in {} ({} in use)", slotCount, file, counters.nextFreeSlot);
+            return counters;
+        }
+    }
+
+    static boolean hasValidHeader(ByteBuffer buffer, int expectedSlotCount) {
+        return (int) INTS.getAcquire(buffer, MAGIC_OFFSET) == MAGIC
+                && (int) INTS.get(buffer, VERSION_OFFSET) == VERSION
+                && (expectedSlotCount < 0 || (int) INTS.get(buffer, SLOT_COUNT_OFFSET) == expectedSlotCount)
+                && (int) INTS.get(buffer, SLOT_SIZE_OFFSET) == SLOT_SIZE;
+    }
+
+    private static void clear(MappedByteBuffer buffer, int size) {
+        for (int offset = 0; offset < size; offset += Long.BYTES) {
+            LONGS.set(buffer, offset, 0L);
+        }
+    }
+
+    private void loadExistingSlots() {
+        for (int i = 0; i < slotCount; i++) {
+            int offset = slotOffset(i);
+            int type = (int) INTS.getAcquire(buffer, offset + TYPE_OFFSET);
+            if (type == TYPE_FREE) {
+                break;
+            }
+            slots.put(readName(buffer, offset), new Slot(buffer, offset, type));
+            nextFreeSlot = i + 1;
+        }
+    }
+
+    static int slotOffset(int index) {
+        return HEADER_SIZE + index * SLOT_SIZE;
+    }
+
+    static String readName(ByteBuffer buffer, int offset) {
+        int length = Math.min((int) INTS.get(buffer, offset + NAME_LENGTH_OFFSET), MAX_NAME_BYTES);
+        byte[] name = new byte[Math.max(0, length)];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = buffer.get(offset + NAME_OFFSET + i);
+        }
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets or allocates the counter slot for a name.
+     *
+     * @param name the name of the counter
+     * @return the slot, or null if the file has no free slot left
+     */
+    public Slot counterSlot(String name) {
+        return slot(name, TYPE_COUNTER);
+    }
+
+    /**
+     * Gets or allocates the gauge slot for a name.
+     *
+     * @param name the name of the gauge
+     * @return the slot, or null if the file has no free slot left
+     */
+    public Slot gaugeSlot(String name) {
+        return slot(name, TYPE_GAUGE);
+    }
+
+    private synchronized Slot slot(String name, int type) {
+        Slot slot = slots.get(name);
+        if (slot != null) {
+            if (slot.type != type) {
+                throw new IllegalArgumentException("Slot " + name + " already holds a different metric type");
+            }
+            return slot;
+        }
+        byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        if (encoded.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Name longer than " + MAX_NAME_BYTES + " bytes: " + name);
+        }
+        if (nextFreeSlot == slotCount) {
+            logger.warn("No free slot in {} for {}", file, name);
+            return null;
+        }
+        int offset = slotOffset(nextFreeSlot++);
+        LONGS.set(buffer, offset + VALUE_OFFSET, type == TYPE_GAUGE ? Double.doubleToRawLongBits(0.0) : 0L);
+        INTS.set(buffer, offset + NAME_LENGTH_OFFSET, encoded.length);
+        for (int i = 0; i < encoded.length; i++) {
+            buffer.put(offset + NAME_OFFSET + i, encoded[i]);
+        }
+        INTS.setRelease(buffer, offset + TYPE_OFFSET, type);
+        slot = new Slot(buffer, offset, type);
+        slots.put(name, slot);
+        return slot;
+    }
+
+    /**
+     * Gets the number of allocated slots.
+     *
+     * @return the slots in use
+     */
+    public synchronized int getUsedSlots() {
+        return nextFreeSlot;
+    }
+
+    /**
+     * Gets the total number of slots.
+     *
+     * @return the slot count
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Gets the mapped file.
+     *
+     * @return the file path
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Forces the mapped values to the storage device.
+     * This is only needed to survive an operating system crash; the values of a crashed
+     * process are kept by the page cache.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    /**
+     * Forces the mapped values to the storage device. The mapping itself is released when
+     * it is garbage collected, so slots stay usable for handles that still hold them.
+     */
+    @Override
+    public void close() {
+        force();
+    }
+
+    /**
+     * One slot of the mapped file. Counter slots hold a long, gauge slots the raw bits of a double.
+     */
+    public static final class Slot {
+
+        private final MappedByteBuffer buffer;
+        private final int valueOffset;
+        private final int type;
+
+        Slot(MappedByteBuffer buffer, int offset, int type) {
+            this.buffer = buffer;
+            this.valueOffset = offset + VALUE_OFFSET;
+            this.type = type;
+        }
+
+        /**
+         * Atomically adds to a counter slot.
+         *
+         * @param amount the amount to add
+         */
+        public void add(long amount) {
+            LONGS.getAndAdd(buffer, valueOffset, amount);
+        }
+
+        /**
+         * Stores a counter value.
+         *
+         * @param value the value
+         */
+        public void set(long value) {
+            LONGS.setRelease(buffer, valueOffset, value);
+        }
+
+        /**
+         * Reads a counter value.
+         *
+         * @return the value
+         */
+        public long get() {
+            return (long) LONGS.getVolatile(buffer, valueOffset);
+        }
+
+        /**
+         * Stores a gauge value.
+         *
+         * @param value the value
+         */
+        public void setDouble(double value) {
+            LONGS.setRelease(buffer, valueOffset, Double.doubleToRawLongBits(value));
+        }
+
+        /**
+         * Atomically adds to a gauge value.
+         *
+         * @param amount the amount to add
+         */
+        public void addDouble(double amount) {
+            long current;
+            long next;
+            do {
+                current = (long) LONGS.getVolatile(buffer, valueOffset);
+                next = Double.doubleToRawLongBits(Double.longBitsToDouble(current) + amount);
+            } while (!LONGS.compareAndSet(buffer, valueOffset, current, next));
+        }
+
+        /**
+         * Reads a gauge value.
+         *
+         * @return the value
+         */
+        public double getDouble() {
+            return Double.longBitsToDouble((long) LONGS.getVolatile(buffer, valueOffset));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.ashishnitw.observability;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-only reader for files written by {@link MappedCounters}.
+ * The file is mapped read-only and never locked, so a sidecar or an operator can dump the
+ * values while the owning JVM keeps writing, or after it has exited.
+ *
+ * <pre>
+ * java -cp observability-utils.jar io.github.ashishnitw.observability.MappedCountersReader metrics.dat
+ * </pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class MappedCountersReader {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private MappedCountersReader() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+
+    /**
+     * Reads all values of a counters file.
+     * Counters are returned as {@link Long} and gauges as {@link Double}, in slot order.
+     *
+     * @param file the counters file
+     * @return the values by metric name
+     * @throws IOException if the file cannot be read or is not a counters file
+     */
+    public static Map<String, Number> read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < MappedCounters.HEADER_SIZE) {
+                throw new IOException("Not a counters file: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (!MappedCounters.hasValidHeader(buffer, -1)) {
+            throw new IOException("Not a counters file: " + file);
+        }
+        int slotCount = (int) MappedCounters.INTS.get(buffer, MappedCounters.SLOT_COUNT_OFFSET);
+        if (MappedCounters.slotOffset(slotCount) > buffer.capacity()) {
+            throw new IOException("Truncated counters file: " + file);
+        }
+        Map<String, Number> values = new LinkedHashMap<>();
+        for (int i = 0; i < slotCount; i++) {
+            int offset = MappedCounters.slotOffset(i);
+            int type = (int) MappedCounters.INTS.getAcquire(buffer, offset + MappedCounters.TYPE_OFFSET);
+            if (type == MappedCounters.TYPE_FREE) {
+                break;
+            }
+            long value = (long) MappedCounters.LONGS.getVolatile(buffer, offset + MappedCounters.VALUE_OFFSET);
+            String name = MappedCounters.readName(buffer, offset);
+            values.put(name, type == MappedCounters.TYPE_GAUGE ? (Number) Double.longBitsToDouble(value) : (Number) value);
+        }
+        return values;
+    }
+
+    /**
+     * Gets the process id of the JVM that last opened a counters file for writing.
+     *
+     * @param file the counters file
+     * @return the owner process id
+     * @throws IOException if the file cannot be read or is not a counters file
+     */
+    public static long readOwnerPid(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < MappedCounters.HEADER_SIZE) {
+                throw new IOException("Not a counters file: " + file);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, MappedCounters.HEADER_SIZE);
+            if (!MappedCounters.hasValidHeader(buffer, -1)) {
+                throw new IOException("Not a counters file: " + file);
+            }
+            return (long) MappedCounters.LONGS.getAcquire(buffer, MappedCounters.OWNER_PID_OFFSET);
+        }
+    }
+
+    /**
+     * Writes the values of a counters file as {@code name value} lines.
+     *
+     * @param file the counters file
+     * @param out the stream to write to
+     * @throws IOException if the file cannot be read or is not a counters file
+     */
+    public static void dump(Path file, PrintStream out) throws IOException {
+        out.println("# owner pid " + readOwnerPid(file));
+        for (Map.Entry<String, Number> entry : read(file).entrySet()) {
+            out.println(entry.getKey() + " " + entry.getValue());
+        }
+    }
+
+    /**
+     * Dumps the counters files given as arguments to standard output.
+     *
+     * @param args the counters files
+     * @throws IOException if a file cannot be read or is not a counters file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: MappedCountersReader <file>...");
+            System.exit(1);
+        }
+        for (String arg : args) {
+            dump(Path.of(arg), System.out);
+        }
+    }
+}
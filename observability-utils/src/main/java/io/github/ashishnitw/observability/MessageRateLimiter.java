@@ -0,0 +1,171 @@
+package io.github.ashishnitw.observability;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-message rate limiter for repeated log lines, one token bucket per message template.
+ * Buckets use the generic cell rate algorithm: the only state is the theoretical arrival
+ * time of the next message, advanced with a compare-and-set, so there are no locks and no
+ * refill thread. Each bucket allows {@code burst} messages at once and then
+ * {@code messagesPerSecond} on average.
+ * <p>
+ * At most {@value #MAX_TEMPLATES} templates get a bucket of their own. When a new template
+ * finds them all taken, buckets that are back to a full burst with nothing suppressed are
+ * removed, since a new bucket would behave the same. Only if none can be removed does the
+ * template, typically a message with values concatenated into it, share one overflow bucket,
+ * so that memory stays bounded.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+final class MessageRateLimiter {
+
+    static final int MAX_TEMPLATES = 1024;
+
+    private final long emissionIntervalNanos;
+    private final long toleranceNanos;
+    private final LongSupplier clock;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Bucket overflow;
+    // After a sweep that removed nothing, templates go to the overflow bucket without another
+    // sweep until a bucket may have refilled
+    private final AtomicLong nextSweepNanos = new AtomicLong();
+
+    MessageRateLimiter(double messagesPerSecond, int burst, LongSupplier clock) {
+        if (!(messagesPerSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("messagesPerSecond and burst must be positive");
+        }
+        this.emissionIntervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / messagesPerSecond));
+        this.toleranceNanos = emissionIntervalNanos * (burst - 1);
+        this.clock = clock;
+        this.overflow = new Bucket(clock.getAsLong());
+        this.nextSweepNanos.set(clock.getAsLong());
+    }
+
+    /**
+     * Gets the bucket of a message template.
+     *
+     * @param template the message template; null is treated as {@code "null"}
+     * @return the bucket
+     */
+    Bucket bucket(String template) {
+        String key = template != null ? template : "null";
+        Bucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= MAX_TEMPLATES && !evictFullBuckets()) {
+            return overflow;
+        }
+        return buckets.computeIfAbsent(key, k -> new Bucket(clock.getAsLong()));
+    }
+
+    /**
+     * Removes the buckets that are back to a full burst and have nothing suppressed.
+     *
+     * @return true if a bucket was removed
+     */
+    private boolean evictFullBuckets() {
+        long now = clock.getAsLong();
+        long sweepAt = nextSweepNanos.get();
+        if (now - sweepAt < 0 || !nextSweepNanos.compareAndSet(sweepAt, now + emissionIntervalNanos)) {
+            return false;
+        }
+        boolean evicted = false;
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            Bucket bucket = entry.getValue();
+            if (bucket.isFull(now) && buckets.remove(entry.getKey(), bucket)) {
+                // A message that took the bucket just before its removal keeps its state
+                if (!bucket.isFull(now)) {
+                    buckets.putIfAbsent(entry.getKey(), bucket);
+                } else {
+                    evicted = true;
+                }
+            }
+        }
+        if (evicted) {
+            nextSweepNanos.set(now);
+        }
+        return evicted;
+    }
+
+    /**
+     * Gets the current time of the limiter's clock.
+     *
+     * @return the time in nanoseconds
+     */
+    long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Rate limiting state of one message template.
+     */
+    final class Bucket {
+
+        private final AtomicLong theoreticalArrivalNanos;
+        private final AtomicLong suppressed = new AtomicLong();
+        private volatile long firstSuppressedNanos;
+
+        Bucket(long nowNanos) {
+            this.theoreticalArrivalNanos = new AtomicLong(nowNanos);
+        }
+
+        /**
+         * Takes a token, or counts the message as suppressed if the bucket is empty.
+         *
+         * @param nowNanos the current time of the limiter's clock
+         * @return true if the message may be logged
+         */
+        boolean tryAcquire(long nowNanos) {
+            while (true) {
+                long arrival = theoreticalArrivalNanos.get();
+                long base = arrival - nowNanos > 0 ? arrival : nowNanos;
+                if (base - nowNanos > toleranceNanos) {
+                    if (suppressed.getAndIncrement() == 0) {
+                        firstSuppressedNanos = nowNanos;
+                    }
+                    return false;
+                }
+                if (theoreticalArrivalNanos.compareAndSet(arrival, base + emissionIntervalNanos)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Checks whether the bucket allows a full burst again and has no suppressed messages
+         * to report, so that a new bucket would behave the same.
+         *
+         * @param nowNanos the current time of the limiter's clock
+         * @return true if the bucket can be dropped
+         */
+        boolean isFull(long nowNanos) {
+            return theoreticalArrivalNanos.get() - nowNanos <= 0 && suppressed.get() == 0;
+        }
+
+        /**
+         * Takes the number of messages suppressed since the last call.
+         *
+         * @return the suppressed count
+         */
+        long takeSuppressed() {
+            return suppressed.getAndSet(0);
+        }
+
+        /**
+         * Gets when the suppression that was last taken started. Concurrent suppressions may
+         * make this slightly late, so it is meant for summaries only.
+         *
+         * @return the time in nanoseconds of the limiter's clock
+         */
+        long getFirstSuppressedNanos() {
+            return firstSuppressedNanos;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package io.github.ashishnitw.observability;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Pre-resolved handle to a metered counter that tracks event rates.
+ * A meter keeps exponentially weighted moving averages over 1, 5 and 15 minutes, like a
+ * Unix load average, and answers sliding-window rate queries over the last
+ * {@value #MAX_WINDOW_SECONDS} seconds from a ring of one-second slots. Memory is fixed
+ * per meter, marking adds to striped cells, and reads are constant time, so rates can be
+ * queried on every admission decision.
+ *
+ * <pre>{@code
+ * MeterHandle requests = MetricsUtils.meter("requests");
+ * requests.mark();
+ * if (requests.getRate(10) > limit) {
+ *     reject();
+ * }
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class MeterHandle {
+
+    /**
+     * Longest window, in seconds, supported by {@link #getRate(int)}.
+     */
+    public static final int MAX_WINDOW_SECONDS = 300;
+
+    private static final int SLOT_COUNT = MAX_WINDOW_SECONDS + 1;
+    private static final int EWMA_INTERVAL_SECONDS = 5;
+    private static final int MAX_EWMA_CATCH_UP_INTERVALS = 1000;
+    private static final double ONE_MINUTE_ALPHA = alpha(1);
+    private static final double FIVE_MINUTE_ALPHA = alpha(5);
+    private static final double FIFTEEN_MINUTE_ALPHA = alpha(15);
+
+    private final String name;
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+    private final LongAdder count = new LongAdder();
+    private final AtomicLong lastTickSecond = new AtomicLong();
+    // Cumulative count at the start of each second, and the second each slot belongs to
+    private final AtomicLongArray slotCounts = new AtomicLongArray(SLOT_COUNT);
+    private final AtomicLongArray slotSeconds = new AtomicLongArray(SLOT_COUNT);
+    // Last second written to the slots, guarded by this
+    private long lastSlotSecond;
+    private long lastEwmaInterval;
+    private long lastEwmaCount;
+    private volatile boolean ewmaInitialized;
+    private volatile double oneMinuteRate;
+    private volatile double fiveMinuteRate;
+    private volatile double fifteenMinuteRate;
+
+    /**
+     * Creates a meter handle. Handles are created by {@link MetricsUtils#meter(String)}.
+     *
+     * @param name the name of the meter
+     */
+    MeterHandle(String name) {
+        this(name, System::nanoTime);
+    }
+
+    /**
+     * Creates a meter handle with a custom clock.
+     *
+     * @param name the name of the meter
+     * @param nanoClock the clock, in nanoseconds
+     */
+    MeterHandle(String name, LongSupplier nanoClock) {
+        this.name = name;
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+        for (int i = 1; i < SLOT_COUNT; i++) {
+            slotSeconds.set(i, -1L);
+        }
+    }
+
+    /**
+     * Gets the name of the meter.
+     *
+     * @return the meter name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Marks the occurrence of one event.
+     */
+    public void mark() {
+        mark(1L);
+    }
+
+    /**
+     * Marks the occurrence of events.
+     *
+     * @param events the number of events
+     */
+    public void mark(long events) {
+        tickIfNecessary(currentSecond());
+        count.add(events);
+    }
+
+    /**
+     * Gets the number of events marked since the meter was created.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the average rate over a sliding window ending now.
+     * Windows longer than the age of the meter are measured since its creation.
+     *
+     * @param windowSeconds the window length, between 1 and {@value #MAX_WINDOW_SECONDS}
+     * @return the rate in events per second
+     */
+    public double getRate(int windowSeconds) {
+        if (windowSeconds < 1 || windowSeconds > MAX_WINDOW_SECONDS) {
+            throw new IllegalArgumentException("windowSeconds must be between 1 and " + MAX_WINDOW_SECONDS);
+        }
+        while (true) {
+            long elapsedNanos = nanoClock.getAsLong() - startNanos;
+            long second = elapsedNanos / TimeUnit.SECONDS.toNanos(1);
+            tickIfNecessary(second);
+            long current = count.sum();
+            long windowStartSecond = second - windowSeconds;
+            if (windowStartSecond < 0) {
+                return elapsedNanos <= 0 ? 0.0 : current / (elapsedNanos / 1e9);
+            }
+            // While another thread's tick has not written the window start yet, the nearest
+            // older slot gives a slightly longer window that still holds the recent events
+            long oldestSecond = Math.max(0, second - MAX_WINDOW_SECONDS);
+            for (long s = windowStartSecond; s >= oldestSecond; s--) {
+                long windowStartCount = readSlot(s);
+                if (windowStartCount >= 0) {
+                    double windowLength = (elapsedNanos - TimeUnit.SECONDS.toNanos(s)) / 1e9;
+                    return Math.max(0, current - windowStartCount) / windowLength;
+                }
+            }
+            // No slot of the ring is written yet after a long idle period: wait for the tick
+            writeSlots(second);
+        }
+    }
+
+    // Reads the count at the start of a second, or -1 if the slot does not hold that second;
+    // the second is read on both sides of the count because tick rewrites slots in place
+    private long readSlot(long second) {
+        int slot = (int) (second % SLOT_COUNT);
+        if (slotSeconds.get(slot) != second) {
+            return -1L;
+        }
+        long slotCount = slotCounts.get(slot);
+        return slotSeconds.get(slot) == second ? slotCount : -1L;
+    }
+
+    /**
+     * Gets the one-minute exponentially weighted moving average rate.
+     *
+     * @return the rate in events per second
+     */
+    public double getOneMinuteRate() {
+        tickIfNecessary(currentSecond());
+        return oneMinuteRate;
+    }
+
+    /**
+     * Gets the five-minute exponentially weighted moving average rate.
+     *
+     * @return the rate in events per second
+     */
+    public double getFiveMinuteRate() {
+        tickIfNecessary(currentSecond());
+        return fiveMinuteRate;
+    }
+
+    /**
+     * Gets the fifteen-minute exponentially weighted moving average rate.
+     *
+     * @return the rate in events per second
+     */
+    public double getFifteenMinuteRate() {
+        tickIfNecessary(currentSecond());
+        return fifteenMinuteRate;
+    }
+
+    /**
+     * Gets the mean rate since the meter was created.
+     *
+     * @return the rate in events per second
+     */
+    public double getMeanRate() {
+        long elapsedNanos = nanoClock.getAsLong() - startNanos;
+        return elapsedNanos <= 0 ? 0.0 : getCount() / (elapsedNanos / 1e9);
+    }
+
+    private long currentSecond() {
+        return (nanoClock.getAsLong() - startNanos) / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private void tickIfNecessary(long second) {
+        long last = lastTickSecond.get();
+        if (second > last && lastTickSecond.compareAndSet(last, second)) {
+            tick(second);
+        }
+    }
+
+    private synchronized void tick(long second) {
+        long current = writeSlots(second);
+        long interval = second / EWMA_INTERVAL_SECONDS;
+        long intervals = interval - lastEwmaInterval;
+        if (intervals <= 0) {
+            return;
+        }
+        lastEwmaInterval = interval;
+        double instantRate = (double) (current - lastEwmaCount) / EWMA_INTERVAL_SECONDS;
+        lastEwmaCount = current;
+        if (!ewmaInitialized) {
+            oneMinuteRate = instantRate;
+            fiveMinuteRate = instantRate;
+            fifteenMinuteRate = instantRate;
+            ewmaInitialized = true;
+        } else {
+            oneMinuteRate = decay(oneMinuteRate, instantRate, ONE_MINUTE_ALPHA);
+            fiveMinuteRate = decay(fiveMinuteRate, instantRate, FIVE_MINUTE_ALPHA);
+            fifteenMinuteRate = decay(fifteenMinuteRate, instantRate, FIFTEEN_MINUTE_ALPHA);
+        }
+        // Idle intervals without events only decay the averages
+        long idleIntervals = Math.min(intervals - 1, MAX_EWMA_CATCH_UP_INTERVALS);
+        for (long i = 0; i < idleIntervals; i++) {
+            oneMinuteRate = decay(oneMinuteRate, 0.0, ONE_MINUTE_ALPHA);
+            fiveMinuteRate = decay(fiveMinuteRate, 0.0, FIVE_MINUTE_ALPHA);
+            fifteenMinuteRate = decay(fifteenMinuteRate, 0.0, FIFTEEN_MINUTE_ALPHA);
+        }
+    }
+
+    // Writes the slots up to a second unless a tick or a rate query already did
+    private synchronized long writeSlots(long second) {
+        long current = count.sum();
+        for (long s = Math.max(lastSlotSecond + 1, second - SLOT_COUNT + 1); s <= second; s++) {
+            int slot = (int) (s % SLOT_COUNT);
+            slotSeconds.set(slot, -1L);
+            slotCounts.set(slot, current);
+            slotSeconds.set(slot, s);
+        }
+        lastSlotSecond = Math.max(lastSlotSecond, second);
+        return current;
+    }
+
+    private static double decay(double rate, double instantRate, double alpha) {
+        return rate + alpha * (instantRate - rate);
+    }
+
+    private static double alpha(int minutes) {
+        return 1 - Math.exp(-EWMA_INTERVAL_SECONDS / 60.0 / minutes);
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.ashishnitw.observability;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event for an execution time reported through
+ * {@link LoggingUtils#logMethodExecutionTime(String, long)}.
+ * The method has already run when the time is reported, so this is an instant event
+ * that carries the reported time as a field.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+@Name("io.github.ashishnitw.MethodExecution")
+@Label("Method Execution")
+@Category("Observability")
+@Description("Method execution time reported through LoggingUtils.logMethodExecutionTime")
+@StackTrace(false)
+final class MethodExecutionEvent extends Event {
+
+    @Label("Method Name")
+    String methodName;
+
+    @Label("Execution Time")
+    @Timespan(Timespan.MILLISECONDS)
+    long executionTime;
+}
@@ -0,0 +1,334 @@
+package io.github.ashishnitw.observability;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.prometheus.metrics.expositionformats.ExpositionFormatWriter;
+import io.prometheus.metrics.expositionformats.ExpositionFormats;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Embedded HTTP server that serves a Prometheus registry on {@code /metrics}.
+ * The server is built on the JDK HTTP server and handles scrapes on a small bounded
+ * thread pool. The encoded registry is cached for a configurable number of milliseconds
+ * and concurrent scrapes share a single encoding, so several scrapers hitting the
+ * endpoint at once do not each re-encode the registry. Encoding and gzip buffers are
+ * reused between scrapes. When the pool and its queue are full, further scrapes are answered
+ * with 503 on the server's dispatcher thread instead of being encoded there, and any path
+ * other than {@code /metrics} gets 404.
+ *
+ * <pre>{@code
+ * try (MetricsHttpExporter exporter = MetricsHttpExporter.start(9400)) {
+ *     runApplication();
+ * }
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class MetricsHttpExporter implements AutoCloseable {
+
+    /**
+     * Default time in milliseconds for which an encoded scrape is reused.
+     */
+    public static final long DEFAULT_CACHE_MILLIS = 1000L;
+
+    /**
+     * Default number of threads that handle scrapes.
+     */
+    public static final int DEFAULT_THREADS = 2;
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsHttpExporter.class);
+    private static final String METRICS_PATH = "/metrics";
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+    private final PrometheusRegistry registry;
+    private final ExpositionFormats expositionFormats = ExpositionFormats.init();
+    private final ConcurrentHashMap<String, ScrapeCache> caches = new ConcurrentHashMap<>();
+    private final long cacheNanos;
+    // Set while a scrape rejected by the full pool runs on the dispatcher thread
+    private final ThreadLocal<Boolean> overflow = new ThreadLocal<>();
+
+    private MetricsHttpExporter(InetSocketAddress address, PrometheusRegistry registry,
+                                long cacheMillis, int threads) throws IOException {
+        if (cacheMillis < 0) {
+            throw new IllegalArgumentException("cacheMillis must not be negative");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.registry = registry;
+        this.cacheNanos = TimeUnit.MILLISECONDS.toNanos(cacheMillis);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 16), new DaemonThreadFactory(), this::rejectScrape);
+        this.executor.allowCoreThreadTimeOut(true);
+        this.server = HttpServer.create(address, 0);
+        this.server.setExecutor(executor);
+        this.server.createContext(METRICS_PATH, this::handle);
+        this.server.start();
+        logger.info("Metrics exporter listening on {}", server.getAddress());
+    }
+
+    /**
+     * Starts an exporter for the default registry on all interfaces.
+     *
+     * @param port the port to listen on, or 0 for an ephemeral port
+     * @return the running exporter
+     * @throws IOException if the server cannot be started
+     */
+    public static MetricsHttpExporter start(int port) throws IOException {
+        return start(new InetSocketAddress(port), MetricsUtils.getPrometheusRegistry(),
+                DEFAULT_CACHE_MILLIS, DEFAULT_THREADS);
+    }
+
+    /**
+     * Starts an exporter for the default registry with a custom cache time.
+     *
+     * @param port the port to listen on, or 0 for an ephemeral port
+     * @param cacheMillis the time in milliseconds for which an encoded scrape is reused
+     * @return the running exporter
+     * @throws IOException if the server cannot be started
+     */
+    public static MetricsHttpExporter start(int port, long cacheMillis) throws IOException {
+        return start(new InetSocketAddress(port), MetricsUtils.getPrometheusRegistry(), cacheMillis, DEFAULT_THREADS);
+    }
+
+    /**
+     * Starts an exporter.
+     *
+     * @param address the address to listen on
+     * @param registry the registry to serve
+     * @param cacheMillis the time in milliseconds for which an encoded scrape is reused
+     * @param threads the number of threads that handle scrapes
+     * @return the running exporter
+     * @throws IOException if the server cannot be started
+     */
+    public static MetricsHttpExporter start(InetSocketAddress address, PrometheusRegistry registry,
+                                            long cacheMillis, int threads) throws IOException {
+        return new MetricsHttpExporter(address, registry, cacheMillis, threads);
+    }
+
+    /**
+     * Gets the port the exporter is listening on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server and its scrape threads.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        caches.values().forEach(ScrapeCache::release);
+        logger.info("Metrics exporter stopped");
+    }
+
+    // Runs the exchange on the dispatcher thread, where handle() only answers 503
+    private void rejectScrape(Runnable exchangeTask, ThreadPoolExecutor pool) {
+        if (pool.isShutdown()) {
+            return;
+        }
+        overflow.set(Boolean.TRUE);
+        try {
+            exchangeTask.run();
+        } finally {
+            overflow.remove();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long requestNanos = System.nanoTime();
+        try {
+            if (!METRICS_PATH.equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            if (overflow.get() != null) {
+                logger.debug("Rejected metrics scrape because all scrape threads are busy");
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            ExpositionFormatWriter writer = expositionFormats.findWriter(
+                    exchange.getRequestHeaders().getFirst("Accept"));
+            boolean gzip = acceptsGzip(exchange.getRequestHeaders().get("Accept-Encoding"));
+            ScrapeCache cache = caches.computeIfAbsent(writer.getContentType(), k -> new ScrapeCache(writer));
+            Encoded encoded = cache.get(requestNanos, gzip);
+
+            byte[] body = gzip ? encoded.gzipped : encoded.plain;
+            exchange.getResponseHeaders().set("Content-Type", writer.getContentType());
+            if (gzip) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            if ("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to serve metrics scrape", e);
+            if (exchange.getResponseCode() == -1) {
+                exchange.sendResponseHeaders(503, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static boolean acceptsGzip(List<String> acceptEncodings) {
+        if (acceptEncodings == null) {
+            return false;
+        }
+        for (String value : acceptEncodings) {
+            for (String encoding : value.split(",")) {
+                if (encoding.trim().toLowerCase().startsWith("gzip")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Encoded scrape output for one exposition format, shared by concurrent scrapes.
+     */
+    private final class ScrapeCache {
+
+        private final ExpositionFormatWriter writer;
+        // ByteArrayOutputStream.reset() keeps the backing array, so both buffers are reused
+        private final ByteArrayOutputStream encodeBuffer = new ByteArrayOutputStream(16 * 1024);
+        private final ByteArrayOutputStream gzipBuffer = new ByteArrayOutputStream(4 * 1024);
+        private final byte[] deflateChunk = new byte[8192];
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final CRC32 crc = new CRC32();
+        private volatile Encoded current;
+
+        ScrapeCache(ExpositionFormatWriter writer) {
+            this.writer = writer;
+        }
+
+        Encoded get(long requestNanos, boolean gzip) throws IOException {
+            Encoded encoded = current;
+            if (isUsable(encoded, requestNanos, gzip)) {
+                return encoded;
+            }
+            synchronized (this) {
+                encoded = current;
+                if (!isUsable(encoded, requestNanos, false)) {
+                    encoded = encode();
+                }
+                if (gzip && encoded.gzipped == null) {
+                    encoded = new Encoded(encoded.plain, compress(encoded.plain), encoded.encodedAtNanos);
+                }
+                current = encoded;
+                return encoded;
+            }
+        }
+
+        private boolean isUsable(Encoded encoded, long requestNanos, boolean gzip) {
+            if (encoded == null || (gzip && encoded.gzipped == null)) {
+                return false;
+            }
+            // An encoding that started after the request arrived is as fresh as a new one
+            return encoded.encodedAtNanos - requestNanos >= 0
+                    || System.nanoTime() - encoded.encodedAtNanos < cacheNanos;
+        }
+
+        private Encoded encode() throws IOException {
+            long encodedAtNanos = System.nanoTime();
+            encodeBuffer.reset();
+            writer.write(encodeBuffer, registry.scrape());
+            return new Encoded(encodeBuffer.toByteArray(), null, encodedAtNanos);
+        }
+
+        private byte[] compress(byte[] plain) {
+            gzipBuffer.reset();
+            gzipBuffer.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+            deflater.reset();
+            deflater.setInput(plain);
+            deflater.finish();
+            while (!deflater.finished()) {
+                int length = deflater.deflate(deflateChunk);
+                gzipBuffer.write(deflateChunk, 0, length);
+            }
+            crc.reset();
+            crc.update(plain, 0, plain.length);
+            writeIntLittleEndian(gzipBuffer, (int) crc.getValue());
+            writeIntLittleEndian(gzipBuffer, plain.length);
+            return gzipBuffer.toByteArray();
+        }
+
+        synchronized void release() {
+            deflater.end();
+        }
+    }
+
+    private static void writeIntLittleEndian(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+        out.write((value >>> 16) & 0xff);
+        out.write((value >>> 24) & 0xff);
+    }
+
+    /**
+     * Immutable encoded scrape, safe to write from several threads.
+     */
+    private static final class Encoded {
+
+        private final byte[] plain;
+        private final byte[] gzipped;
+        private final long encodedAtNanos;
+
+        Encoded(byte[] plain, byte[] gzipped, long encodedAtNanos) {
+            this.plain = plain;
+            this.gzipped = gzipped;
+            this.encodedAtNanos = encodedAtNanos;
+        }
+    }
+
+    /**
+     * Thread factory for the daemon threads that handle scrapes.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "metrics-exporter-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
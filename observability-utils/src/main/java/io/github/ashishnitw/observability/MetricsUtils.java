@@ -1,11 +1,36 @@
 package io.github.ashishnitw.observability;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import io.prometheus.metrics.core.metrics.Counter;
 import io.prometheus.metrics.core.metrics.Gauge;
 import io.prometheus.metrics.core.metrics.Histogram;
+import io.prometheus.metrics.model.registry.Collector;
+import io.prometheus.metrics.model.registry.MultiCollector;
 import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import io.prometheus.metrics.model.snapshots.CounterSnapshot;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import io.prometheus.metrics.model.snapshots.HistogramSnapshot;
+import io.prometheus.metrics.model.snapshots.Labels;
+import io.prometheus.metrics.model.snapshots.MetricMetadata;
+import io.prometheus.metrics.model.snapshots.MetricSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,15 +45,71 @@ import org.slf4j.LoggerFactory;
  */
 public final class MetricsUtils {
 
-    private static final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
-    private static final ConcurrentHashMap<String, Long> timers = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, CounterHandle> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, TimerHandle> timers = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Long> timerStartTimes = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, AsyncOperationMetrics> asyncOperations = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, GaugeHandle> gauges = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, MeterHandle> meters = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, SampledTimerHandle> sampledTimers = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, DDSketch> sketches = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, DistinctCounter> distinctCounters = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, AdaptiveConcurrencyLimiter> concurrencyLimiters =
+            new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, LabeledMetric<?>> labeledMetrics = new ConcurrentHashMap<>();
     
     // Prometheus metrics
     private static final ConcurrentHashMap<String, Counter> prometheusCounters = new ConcurrentHashMap<>();
     private static final ConcurrentHashMap<String, Gauge> prometheusGauges = new ConcurrentHashMap<>();
     private static final ConcurrentHashMap<String, Histogram> prometheusHistograms = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Collector> prometheusTimerHistograms = new ConcurrentHashMap<>();
+    private static final AtomicBoolean localMetricsCollectorRegistered = new AtomicBoolean(false);
+    // Other collectors of this library registered with the default registry, whose names local metrics avoid
+    private static final Set<MultiCollector> reservingCollectors = ConcurrentHashMap.newKeySet();
+    private static volatile MappedCounters mappedStorage;
+    private static volatile HeavyHitterTracking heavyHitters;
     private static final Logger logger = LoggerFactory.getLogger(MetricsUtils.class);
 
+    // Registry limits; the update path never looks at them, only creation and the idle sweeper do
+    private static final LongAdder evictedSeries = new LongAdder();
+    // Each rejected name is counted once; a lookup of a rejected name is rejected again every time
+    private static final HyperLogLog rejectedSeries = new HyperLogLog();
+    // Names of the counters and timers whose handles the library keeps, which are never evicted
+    private static final Set<String> pinnedCounters = ConcurrentHashMap.newKeySet();
+    private static final Set<String> pinnedTimers = ConcurrentHashMap.newKeySet();
+    // Names of the Prometheus instruments handed out by the bind methods, which are never evicted either
+    private static final Set<String> pinnedPrometheusMetrics = ConcurrentHashMap.newKeySet();
+    private static final String[] OPERATION_COUNTER_SUFFIXES = {
+            "_count", "_totalTime", "_success", "_failure", "_cancelled"
+    };
+    private static final IdleMetricEvictor idleMetricEvictor = new IdleMetricEvictor(List.of(
+            new IdleMetricEvictor.Source<>(counters, CounterHandle::get, MetricsUtils::isPinnedCounter,
+                    (name, counter) -> { }),
+            new IdleMetricEvictor.Source<>(timers, TimerHandle::getCount,
+                    name -> pinnedTimers.contains(name) || prometheusTimerHistograms.containsKey(name),
+                    (name, timer) -> forgetOperation(name)),
+            new IdleMetricEvictor.Source<>(timerStartTimes, Long::doubleValue, name -> false,
+                    (name, startTime) -> { }),
+            new IdleMetricEvictor.Source<>(prometheusCounters, Counter::get, pinnedPrometheusMetrics::contains,
+                    (name, counter) -> getPrometheusRegistry().unregister(counter)),
+            new IdleMetricEvictor.Source<>(prometheusGauges, Gauge::get, pinnedPrometheusMetrics::contains,
+                    (name, gauge) -> getPrometheusRegistry().unregister(gauge)),
+            new IdleMetricEvictor.Source<>(prometheusHistograms, MetricsUtils::observationCount,
+                    pinnedPrometheusMetrics::contains,
+                    (name, histogram) -> getPrometheusRegistry().unregister(histogram))));
+    private static volatile int maxSeries = Integer.MAX_VALUE;
+    private static volatile long timeToIdleNanos;
+    private static ScheduledExecutorService idleSweeper;
+    private static ScheduledFuture<?> idleSweep;
+
+    // Name of the unregistered instruments returned when binding a Prometheus metric fails
+    private static final String DETACHED_METRIC_NAME = "detached_metric";
+
+    private static final double[] DEFAULT_HISTOGRAM_BOUNDS_SECONDS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
     /**
      * Private constructor to prevent instantiation.
      */
@@ -36,11 +117,43 @@ public final class MetricsUtils {
         throw new UnsupportedOperationException("Utility class cannot be instantiated");
     }
 
+    /**
+     * Gets or creates a handle to a counter.
+     * Resolve the handle once and keep it to increment the counter without a map lookup.
+     *
+     * @param counterName the name of the counter
+     * @return the counter handle
+     */
+    public static CounterHandle counter(String counterName) {
+        CounterHandle counter = counters.get(counterName);
+        if (counter != null) {
+            return counter;
+        }
+        if (isFull(counters, counterName)) {
+            return new CounterHandle(counterName, null);
+        }
+        return counters.computeIfAbsent(counterName, MetricsUtils::newCounter);
+    }
+
+    /**
+     * Gets or creates a counter whose handle the library keeps, such as a drop counter of
+     * a background component. The counter is never evicted as idle, since updates through
+     * the kept handle would no longer be exported.
+     *
+     * @param counterName the name of the counter
+     * @return the counter handle
+     */
+    static CounterHandle internalCounter(String counterName) {
+        pinnedCounters.add(counterName);
+        return counter(counterName);
+    }
+
     /**
      * Increments a counter by 1.
      *
      * @param counterName the name of the counter
-     * @return the new counter value
+     * @return a best-effort snapshot of the counter value after the increment, see
+     *         {@link #incrementCounter(String, long)}
      */
     public static long incrementCounter(String counterName) {
         return incrementCounter(counterName, 1);
@@ -48,14 +161,27 @@ public final class MetricsUtils {
 
     /**
      * Increments a counter by the specified amount.
+     * Prefer {@link #counter(String)} on hot paths, which avoids the lookup and the
+     * summation needed to return the new value.
+     * <p>
+     * The counter is striped, so the returned value is summed after the increment rather
+     * than read atomically with it. It includes this increment unless the counter is reset
+     * concurrently, but it may also include increments made by other threads in the
+     * meantime, and two threads may see the same value. Do not use it to hand out unique
+     * numbers.
      *
      * @param counterName the name of the counter
      * @param amount the amount to increment
-     * @return the new counter value
+     * @return a best-effort snapshot of the counter value after the increment
      */
     public static long incrementCounter(String counterName, long amount) {
-        return counters.computeIfAbsent(counterName, k -> new AtomicLong(0))
-                .addAndGet(amount);
+        CounterHandle counter = counter(counterName);
+        counter.increment(amount);
+        HeavyHitterTracking tracking = heavyHitters;
+        if (tracking != null) {
+            tracking.counterIncrements.add(counterName, amount);
+        }
+        return counter.get();
     }
 
     /**
@@ -65,7 +191,7 @@ public final class MetricsUtils {
      * @return the counter value, or 0 if the counter doesn't exist
      */
     public static long getCounterValue(String counterName) {
-        AtomicLong counter = counters.get(counterName);
+        CounterHandle counter = counters.get(counterName);
         return counter != null ? counter.get() : 0L;
     }
 
@@ -75,19 +201,424 @@ public final class MetricsUtils {
      * @param counterName the name of the counter
      */
     public static void resetCounter(String counterName) {
-        AtomicLong counter = counters.get(counterName);
+        CounterHandle counter = counters.get(counterName);
         if (counter != null) {
-            counter.set(0);
+            counter.reset();
+        }
+    }
+
+    /**
+     * Gets or creates a handle to a local gauge.
+     *
+     * @param gaugeName the name of the gauge
+     * @return the gauge handle
+     */
+    public static GaugeHandle gauge(String gaugeName) {
+        GaugeHandle gauge = gauges.get(gaugeName);
+        if (gauge != null) {
+            return gauge;
+        }
+        return gauges.computeIfAbsent(gaugeName, MetricsUtils::newGauge);
+    }
+
+    /**
+     * Gets or creates a handle to a meter that tracks event rates.
+     *
+     * @param meterName the name of the meter
+     * @return the meter handle
+     */
+    public static MeterHandle meter(String meterName) {
+        MeterHandle meter = meters.get(meterName);
+        if (meter != null) {
+            return meter;
+        }
+        return meters.computeIfAbsent(meterName, MeterHandle::new);
+    }
+
+    /**
+     * Keeps counters and gauges created from now on in a memory-mapped file, so their values
+     * survive restarts and can be read by other processes with {@link MappedCountersReader}.
+     * Call it at startup, before the metrics are first used; metrics that already exist stay
+     * on the heap, as do labeled metrics and metrics that no longer fit in the file.
+     *
+     * @param storage the mapped counters file, or null to create new metrics on the heap again
+     */
+    public static void useMappedStorage(MappedCounters storage) {
+        mappedStorage = storage;
+        if (storage != null) {
+            logger.info("Storing new counters and gauges in {}", storage.getFile());
+        }
+    }
+
+    /**
+     * Limits the number of series in each registry map: local counters, timers, start
+     * times of {@link #startTimer(String)}, and Prometheus counters, gauges and histograms.
+     * Once a map holds {@code maxSeries} entries, lookups of new names get a detached metric
+     * that is neither stored nor exported, timers started under new names are not kept,
+     * and the names are counted as rejected. The limit is checked without locking, so
+     * concurrent creations may overshoot it slightly.
+     *
+     * @param maxSeries the maximum number of series per map
+     */
+    public static void setMaxSeries(int maxSeries) {
+        if (maxSeries < 1) {
+            throw new IllegalArgumentException("maxSeries must be positive");
+        }
+        MetricsUtils.maxSeries = maxSeries;
+    }
+
+    /**
+     * Evicts series whose value has not changed for a time-to-idle, from the same maps as
+     * {@link #setMaxSeries(int)}. Evicted Prometheus metrics are unregistered from the
+     * registry. A background sweeper compares each value with the previous sweep, so
+     * updates carry no bookkeeping; a constant gauge is idle as well. Handles kept by
+     * callers keep working after eviction but are no longer exported, so this is meant for
+     * metrics looked up by name, such as names derived from request data. A timer started
+     * with {@link #startTimer(String)} and not stopped within the time-to-idle is dropped,
+     * so its {@link #stopTimer(String)} returns -1. Timers exported
+     * with {@link #exportTimerHistogram(String, String)} are never evicted, nor are the
+     * metrics whose handles this library keeps, such as those of sampled timers, executors
+     * and drop counters. The timer of a measured operation is evicted together with its
+     * {@code _count}, {@code _totalTime}, {@code _success}, {@code _failure} and
+     * {@code _cancelled} counters.
+     *
+     * @param timeToIdle the time without change after which a series is evicted, or 0 to disable eviction
+     * @param unit the time unit of the time-to-idle
+     */
+    public static synchronized void setTimeToIdle(long timeToIdle, TimeUnit unit) {
+        long nanos = unit.toNanos(timeToIdle);
+        if (nanos < 0) {
+            throw new IllegalArgumentException("timeToIdle must not be negative");
+        }
+        timeToIdleNanos = nanos;
+        if (idleSweep != null) {
+            idleSweep.cancel(false);
+            idleSweep = null;
+        }
+        if (nanos == 0) {
+            return;
+        }
+        if (idleSweeper == null) {
+            idleSweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-idle-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        long period = Math.max(TimeUnit.MILLISECONDS.toNanos(10), nanos / 4);
+        idleSweep = idleSweeper.scheduleWithFixedDelay(MetricsUtils::sweepIdleMetrics, period, period,
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs an idle sweep now, in addition to the scheduled ones.
+     * A series is evicted once two sweeps at least the time-to-idle apart saw the same value.
+     *
+     * @return the number of evicted series
+     */
+    public static int evictIdleMetrics() {
+        long ttl = timeToIdleNanos;
+        if (ttl <= 0) {
+            return 0;
+        }
+        int evicted = idleMetricEvictor.sweep(System.nanoTime(), ttl);
+        if (evicted > 0) {
+            evictedSeries.add(evicted);
+            logger.info("Evicted {} idle metric series", evicted);
+        }
+        return evicted;
+    }
+
+    /**
+     * Gets the number of series evicted because they were idle.
+     *
+     * @return the evicted series count
+     */
+    public static long getEvictedSeriesCount() {
+        return evictedSeries.sum();
+    }
+
+    /**
+     * Gets the number of distinct names that were not created because a registry was full.
+     * Repeated lookups of a rejected name count once. The count is estimated in fixed
+     * memory with a {@link HyperLogLog}, so it is within a few percent for large counts.
+     *
+     * @return the rejected series count
+     */
+    public static long getRejectedSeriesCount() {
+        return rejectedSeries.estimate();
+    }
+
+    /**
+     * Tracks which operations and counters are the heaviest, in fixed memory.
+     * Every {@link #measureOperation(String, MeasurableOperation)} and
+     * {@link #measureAsync(String, Supplier)} call is added to a ranking by call count and one
+     * by total time, and every {@link #incrementCounter(String, long)} to a ranking by amount.
+     * Each ranking monitors {@code capacity} names per {@link HeavyHitters} stripe, and the top
+     * {@code topN} of each are exported as the {@code top_operation_calls},
+     * {@code top_operation_time_seconds} and {@code top_counter_increments} gauges. Counters
+     * incremented through a {@link CounterHandle} are not ranked: handles are meant for
+     * names known up front, while heavy hitters matter for names derived from data.
+     *
+     * @param topN the number of names exported per ranking, or 0 to stop tracking
+     * @param capacity the number of names monitored per ranking, at least {@code topN}
+     */
+    public static void trackHeavyHitters(int topN, int capacity) {
+        if (topN < 0 || (topN > 0 && capacity < topN)) {
+            throw new IllegalArgumentException("topN must not be negative and capacity must be at least topN");
         }
+        heavyHitters = topN == 0 ? null : new HeavyHitterTracking(topN, capacity);
+    }
+
+    /**
+     * Tracks which operations and counters are the heaviest, monitoring four times as many
+     * names as are exported. See {@link #trackHeavyHitters(int, int)}.
+     *
+     * @param topN the number of names exported per ranking, or 0 to stop tracking
+     */
+    public static void trackHeavyHitters(int topN) {
+        trackHeavyHitters(topN, topN * 4);
+    }
+
+    /**
+     * Gets the operations with the most calls since tracking started.
+     *
+     * @param n the maximum number of operations to return
+     * @return the operations and their call counts, largest first, or an empty list if not tracking
+     */
+    public static List<HeavyHitters.Entry> topOperationsByCount(int n) {
+        HeavyHitterTracking tracking = heavyHitters;
+        return tracking != null ? tracking.operationCalls.top(n) : List.of();
+    }
+
+    /**
+     * Gets the operations with the most total time since tracking started.
+     *
+     * @param n the maximum number of operations to return
+     * @return the operations and their total time in nanoseconds, largest first, or an empty
+     *         list if not tracking
+     */
+    public static List<HeavyHitters.Entry> topOperationsByTotalTime(int n) {
+        HeavyHitterTracking tracking = heavyHitters;
+        return tracking != null ? tracking.operationTime.top(n) : List.of();
+    }
+
+    /**
+     * Gets the counters incremented by the largest amounts since tracking started.
+     *
+     * @param n the maximum number of counters to return
+     * @return the counters and their incremented amounts, largest first, or an empty list if not tracking
+     */
+    public static List<HeavyHitters.Entry> topCounters(int n) {
+        HeavyHitterTracking tracking = heavyHitters;
+        return tracking != null ? tracking.counterIncrements.top(n) : List.of();
+    }
+
+    /**
+     * Gets or creates a handle to a sampled timer that times 1 in {@code sampleInterval} calls.
+     * Every call is counted exactly in the {@code <timerName>_count} counter, and the sampled
+     * durations are scaled up into the timer of the same name (see {@link #timer(String)}).
+     *
+     * @param timerName the name of the timer
+     * @param sampleInterval the average number of calls per timed call, at most
+     *                       {@link SampledTimerHandle#MAX_SAMPLE_INTERVAL}
+     * @return the sampled timer handle
+     */
+    public static SampledTimerHandle sampledTimer(String timerName, int sampleInterval) {
+        return sampledTimer(timerName, sampleInterval, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets or creates a handle to a sampled timer that samples more often while calls are slow.
+     * When a sampled call takes at least {@code slowThreshold}, the sampling interval is
+     * halved, down to timing every call, and it grows back once calls are fast again.
+     * The settings of an existing sampled timer are kept.
+     *
+     * @param timerName the name of the timer
+     * @param sampleInterval the average number of calls per timed call, at most
+     *                       {@link SampledTimerHandle#MAX_SAMPLE_INTERVAL}
+     * @param slowThreshold the duration from which a call is considered slow
+     * @param unit the time unit of the threshold
+     * @return the sampled timer handle
+     */
+    public static SampledTimerHandle sampledTimer(String timerName, int sampleInterval,
+                                                  long slowThreshold, TimeUnit unit) {
+        SampledTimerHandle sampledTimer = sampledTimers.get(timerName);
+        if (sampledTimer != null) {
+            return sampledTimer;
+        }
+        return sampledTimers.computeIfAbsent(timerName,
+                k -> new SampledTimerHandle(k, sampleInterval, unit.toNanos(slowThreshold)));
+    }
+
+    /**
+     * Gets or creates a mergeable quantile sketch with the default relative accuracy.
+     * Unlike a timer's histogram, sketches from several nodes can be merged into accurate
+     * fleet-wide quantiles, see {@link DDSketch#serialize()} and {@link DDSketch#merge(DDSketch)}.
+     *
+     * @param sketchName the name of the sketch
+     * @return the sketch
+     */
+    public static DDSketch sketch(String sketchName) {
+        DDSketch sketch = sketches.get(sketchName);
+        if (sketch != null) {
+            return sketch;
+        }
+        return sketches.computeIfAbsent(sketchName, k -> new DDSketch());
+    }
+
+    /**
+     * Gets or creates a counter of the distinct values added since it was created.
+     * It is exported as a gauge with the estimated count. See {@link DistinctCounter}.
+     *
+     * @param counterName the name of the counter
+     * @return the distinct counter
+     */
+    public static DistinctCounter distinctCounter(String counterName) {
+        return distinctCounter(counterName, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets or creates a counter of the distinct values per tumbling window, such as unique
+     * users per minute. It is exported as a gauge with the estimate of the last completed
+     * window. See {@link DistinctCounter}.
+     *
+     * @param counterName the name of the counter
+     * @param window the window length, or 0 to count since creation
+     * @param unit the time unit of the window
+     * @return the distinct counter
+     */
+    public static DistinctCounter distinctCounter(String counterName, long window, TimeUnit unit) {
+        long windowMillis = unit.toMillis(window);
+        DistinctCounter counter = distinctCounters.get(counterName);
+        if (counter == null) {
+            counter = distinctCounters.computeIfAbsent(counterName,
+                    k -> new DistinctCounter(k, HyperLogLog.DEFAULT_PRECISION, windowMillis));
+        }
+        if (counter.getWindowMillis() != windowMillis) {
+            throw new IllegalArgumentException("Distinct counter " + counterName + " already exists with a window of "
+                    + counter.getWindowMillis() + " ms");
+        }
+        return counter;
+    }
+
+    /**
+     * Gets or creates a labeled counter family with the default cardinality cap.
+     *
+     * @param name the name of the counter
+     * @param labelNames the label names
+     * @return the labeled counter
+     */
+    public static LabeledMetric<CounterHandle> labeledCounter(String name, String... labelNames) {
+        return labeledCounter(name, LabeledMetric.DEFAULT_MAX_CARDINALITY, labelNames);
+    }
+
+    /**
+     * Gets or creates a labeled counter family.
+     *
+     * @param name the name of the counter
+     * @param maxCardinality the maximum number of label-value tuples before overflow
+     * @param labelNames the label names
+     * @return the labeled counter
+     */
+    public static LabeledMetric<CounterHandle> labeledCounter(String name, int maxCardinality, String... labelNames) {
+        return labeledMetric(name, LabeledMetric.Kind.COUNTER, maxCardinality, labelNames,
+                () -> new CounterHandle(name, null));
+    }
+
+    /**
+     * Gets or creates a labeled gauge family with the default cardinality cap.
+     *
+     * @param name the name of the gauge
+     * @param labelNames the label names
+     * @return the labeled gauge
+     */
+    public static LabeledMetric<GaugeHandle> labeledGauge(String name, String... labelNames) {
+        return labeledGauge(name, LabeledMetric.DEFAULT_MAX_CARDINALITY, labelNames);
+    }
+
+    /**
+     * Gets or creates a labeled gauge family.
+     *
+     * @param name the name of the gauge
+     * @param maxCardinality the maximum number of label-value tuples before overflow
+     * @param labelNames the label names
+     * @return the labeled gauge
+     */
+    public static LabeledMetric<GaugeHandle> labeledGauge(String name, int maxCardinality, String... labelNames) {
+        return labeledMetric(name, LabeledMetric.Kind.GAUGE, maxCardinality, labelNames,
+                () -> new GaugeHandle(name, null));
+    }
+
+    /**
+     * Gets or creates a labeled histogram family with the default cardinality cap.
+     * Values are recorded in nanoseconds and exported to Prometheus in seconds.
+     *
+     * @param name the name of the histogram
+     * @param labelNames the label names
+     * @return the labeled histogram
+     */
+    public static LabeledMetric<LatencyHistogram> labeledHistogram(String name, String... labelNames) {
+        return labeledHistogram(name, LabeledMetric.DEFAULT_MAX_CARDINALITY, labelNames);
+    }
+
+    /**
+     * Gets or creates a labeled histogram family.
+     *
+     * @param name the name of the histogram
+     * @param maxCardinality the maximum number of label-value tuples before overflow
+     * @param labelNames the label names
+     * @return the labeled histogram
+     */
+    public static LabeledMetric<LatencyHistogram> labeledHistogram(String name, int maxCardinality,
+                                                                   String... labelNames) {
+        return labeledMetric(name, LabeledMetric.Kind.HISTOGRAM, maxCardinality, labelNames, LatencyHistogram::new);
+    }
+
+    /**
+     * Gets or creates a handle to a timer.
+     * Unlike {@link #startTimer(String)}, samples of a timer handle are thread-safe,
+     * measured in nanoseconds and keep no state between start and stop.
+     *
+     * @param timerName the name of the timer
+     * @return the timer handle
+     */
+    public static TimerHandle timer(String timerName) {
+        TimerHandle timer = timers.get(timerName);
+        if (timer != null) {
+            return timer;
+        }
+        if (isFull(timers, timerName)) {
+            return new TimerHandle(timerName);
+        }
+        return timers.computeIfAbsent(timerName, TimerHandle::new);
+    }
+
+    /**
+     * Gets or creates a timer whose handle the library keeps. Like
+     * {@link #internalCounter(String)}, the timer is never evicted as idle.
+     *
+     * @param timerName the name of the timer
+     * @return the timer handle
+     */
+    static TimerHandle internalTimer(String timerName) {
+        pinnedTimers.add(timerName);
+        return timer(timerName);
     }
 
     /**
      * Starts a timer by recording the current system time.
+     * Only one start time is kept per name; use {@link #timer(String)} when the same
+     * operation may be timed from several threads at once. Start times count against
+     * {@link #setMaxSeries(int)} and are dropped after {@link #setTimeToIdle(long, TimeUnit)}.
      *
      * @param timerName the name of the timer
      */
     public static void startTimer(String timerName) {
-        timers.put(timerName, System.currentTimeMillis());
+        if (!timerStartTimes.containsKey(timerName) && isFull(timerStartTimes, timerName)) {
+            return;
+        }
+        timerStartTimes.put(timerName, System.currentTimeMillis());
     }
 
     /**
@@ -97,7 +628,7 @@ public final class MetricsUtils {
      * @return the elapsed time in milliseconds, or -1 if the timer doesn't exist
      */
     public static long stopTimer(String timerName) {
-        Long startTime = timers.remove(timerName);
+        Long startTime = timerStartTimes.remove(timerName);
         if (startTime == null) {
             return -1L;
         }
@@ -111,7 +642,7 @@ public final class MetricsUtils {
      * @return the elapsed time in milliseconds, or -1 if the timer doesn't exist
      */
     public static long getElapsedTime(String timerName) {
-        Long startTime = timers.get(timerName);
+        Long startTime = timerStartTimes.get(timerName);
         if (startTime == null) {
             return -1L;
         }
@@ -120,6 +651,12 @@ public final class MetricsUtils {
 
     /**
      * Measures the execution time of a code block.
+     * The duration is recorded into the timer named after the operation (see
+     * {@link #timer(String)}), which keeps its latency distribution, and into the
+     * {@code <operationName>_count} and {@code <operationName>_totalTime} counters.
+     * A JDK Flight Recorder event named {@code io.github.ashishnitw.Operation} is emitted
+     * with the outcome when a recording has it enabled. While tracing is enabled, the
+     * operation is also recorded as a span, see {@link TracingUtils}.
      *
      * @param <T> the return type of the code block
      * @param operationName the name of the operation for logging purposes
@@ -128,16 +665,141 @@ public final class MetricsUtils {
      * @throws Exception if the operation throws an exception
      */
     public static <T> T measureOperation(String operationName, MeasurableOperation<T> operation) throws Exception {
-        long startTime = System.currentTimeMillis();
+        OperationMetrics metrics = operationMetrics(operationName);
+        OperationEvent event = new OperationEvent();
+        Span span = TracingUtils.startSpan(operationName);
+        event.begin();
+        long startTime = System.nanoTime();
+        boolean success = false;
         try {
-            return operation.execute();
+            T result = operation.execute();
+            success = true;
+            return result;
+        } catch (Exception | Error e) {
+            span.recordError(e);
+            throw e;
         } finally {
-            long duration = System.currentTimeMillis() - startTime;
-            incrementCounter(operationName + "_count");
-            incrementCounter(operationName + "_totalTime", duration);
+            metrics.record(startTime, System.nanoTime());
+            event.end(operationName, success);
+            span.end();
         }
     }
 
+    /**
+     * Measures an asynchronous operation from the call until its stage completes.
+     * The duration is recorded like {@link #measureOperation(String, MeasurableOperation)}
+     * and the outcome is counted in the {@code <operationName>_success},
+     * {@code <operationName>_failure} and {@code <operationName>_cancelled} counters.
+     * The measurement completes on whichever thread completes the stage; no thread is
+     * started and nothing blocks.
+     *
+     * @param <T> the result type of the stage
+     * @param operationName the name of the operation
+     * @param operation starts the operation and returns its stage
+     * @return the stage returned by the operation
+     */
+    public static <T> CompletionStage<T> measureAsync(String operationName,
+                                                      Supplier<? extends CompletionStage<T>> operation) {
+        AsyncOperationMetrics metrics = asyncOperationMetrics(operationName);
+        OperationEvent event = new OperationEvent();
+        event.begin();
+        long startTime = System.nanoTime();
+        CompletionStage<T> stage;
+        try {
+            stage = operation.get();
+        } catch (RuntimeException | Error e) {
+            event.end(operationName, metrics.record(startTime, System.nanoTime(), e));
+            throw e;
+        }
+        stage.whenComplete((result, failure) ->
+                event.end(operationName, metrics.record(startTime, System.nanoTime(), failure)));
+        return stage;
+    }
+
+    /**
+     * Gets or creates an adaptive concurrency limiter that starts at 20 calls in flight, once
+     * it has measured the no-load latency, and adapts between 1 and 1000.
+     * See {@link AdaptiveConcurrencyLimiter}.
+     *
+     * @param name the name of the limiter, also used as the prefix of its metrics
+     * @return the limiter
+     */
+    public static AdaptiveConcurrencyLimiter concurrencyLimiter(String name) {
+        return concurrencyLimiter(name, 20, 1, 1000);
+    }
+
+    /**
+     * Gets or creates an adaptive concurrency limiter. The limits only apply when the
+     * limiter is created; later calls with the same name return the existing limiter.
+     *
+     * @param name the name of the limiter, also used as the prefix of its metrics
+     * @param initialLimit the number of calls allowed in flight after the first no-load probe
+     * @param minLimit the smallest limit
+     * @param maxLimit the largest limit
+     * @return the limiter
+     */
+    public static AdaptiveConcurrencyLimiter concurrencyLimiter(String name, int initialLimit, int minLimit,
+                                                                int maxLimit) {
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiters.get(name);
+        if (limiter != null) {
+            return limiter;
+        }
+        return concurrencyLimiters.computeIfAbsent(name,
+                k -> new AdaptiveConcurrencyLimiter(k, initialLimit, minLimit, maxLimit));
+    }
+
+    /**
+     * Gets or creates an adaptive concurrency limiter with custom no-load probes. Each probe
+     * holds the limit at the probe limit for two windows, so rarer probes or a higher probe
+     * limit reject fewer calls but follow a backend that became slower for good later.
+     * The settings only apply when the limiter is created.
+     *
+     * @param name the name of the limiter, also used as the prefix of its metrics
+     * @param initialLimit the number of calls allowed in flight after the first no-load probe
+     * @param minLimit the smallest limit
+     * @param maxLimit the largest limit
+     * @param probeIntervalWindows the average number of windows between two probes, or
+     *                             {@link AdaptiveConcurrencyLimiter#NO_PROBE} to never probe
+     * @param probeLimit the limit held during a probe
+     * @return the limiter
+     */
+    public static AdaptiveConcurrencyLimiter concurrencyLimiter(String name, int initialLimit, int minLimit,
+                                                                int maxLimit, int probeIntervalWindows,
+                                                                int probeLimit) {
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiters.get(name);
+        if (limiter != null) {
+            return limiter;
+        }
+        return concurrencyLimiters.computeIfAbsent(name, k -> new AdaptiveConcurrencyLimiter(k, initialLimit,
+                minLimit, maxLimit, probeIntervalWindows, probeLimit));
+    }
+
+    /**
+     * Wraps an executor so that every task records its queue wait and run time.
+     * Queue wait, from submission until a thread picks the task up, is recorded into the
+     * {@code <name>_queue_wait} timer and run time into the {@code <name>_run} timer.
+     *
+     * @param name the name prefix of the timers
+     * @param executor the executor to wrap
+     * @return the instrumented executor
+     */
+    public static Executor instrumentExecutor(String name, Executor executor) {
+        InstrumentedExecutorService.Timers timers = new InstrumentedExecutorService.Timers(name);
+        return command -> executor.execute(timers.wrap(command));
+    }
+
+    /**
+     * Wraps an executor service so that every task records its queue wait and run time.
+     * See {@link #instrumentExecutor(String, Executor)} for the timers.
+     *
+     * @param name the name prefix of the timers
+     * @param executorService the executor service to wrap
+     * @return the instrumented executor service
+     */
+    public static ExecutorService instrumentExecutor(String name, ExecutorService executorService) {
+        return new InstrumentedExecutorService(name, executorService);
+    }
+
     /**
      * Gets memory statistics (used, max, free memory in bytes).
      *
@@ -162,12 +824,21 @@ public final class MetricsUtils {
 
     /**
      * Creates or gets a Prometheus counter metric.
+     * When the registry limit set by {@link #setMaxSeries(int)} is reached, an
+     * unregistered counter is returned instead.
      *
      * @param name the name of the counter
      * @param help the help text for the counter
      * @return the Prometheus counter
      */
     public static Counter getOrCreatePrometheusCounter(String name, String help) {
+        Counter existing = prometheusCounters.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        if (isFull(prometheusCounters, name)) {
+            return Counter.builder().name(DETACHED_METRIC_NAME).help(help).build();
+        }
         return prometheusCounters.computeIfAbsent(name, k -> {
             try {
                 Counter counter = Counter.builder()
@@ -194,7 +865,9 @@ public final class MetricsUtils {
         try {
             Counter counter = getOrCreatePrometheusCounter(name, help);
             counter.inc(amount);
-            logger.debug("Incremented Prometheus counter {} by {}", name, amount);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Incremented Prometheus counter {} by {}", name, amount);
+            }
         } catch (Exception e) {
             logger.error("Failed to increment Prometheus counter: {}", name, e);
         }
@@ -212,12 +885,21 @@ public final class MetricsUtils {
 
     /**
      * Creates or gets a Prometheus gauge metric.
+     * When the registry limit set by {@link #setMaxSeries(int)} is reached, an
+     * unregistered gauge is returned instead.
      *
      * @param name the name of the gauge
      * @param help the help text for the gauge
      * @return the Prometheus gauge
      */
     public static Gauge getOrCreatePrometheusGauge(String name, String help) {
+        Gauge existing = prometheusGauges.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        if (isFull(prometheusGauges, name)) {
+            return Gauge.builder().name(DETACHED_METRIC_NAME).help(help).build();
+        }
         return prometheusGauges.computeIfAbsent(name, k -> {
             try {
                 Gauge gauge = Gauge.builder()
@@ -244,7 +926,9 @@ public final class MetricsUtils {
         try {
             Gauge gauge = getOrCreatePrometheusGauge(name, help);
             gauge.set(value);
-            logger.debug("Set Prometheus gauge {} to {}", name, value);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Set Prometheus gauge {} to {}", name, value);
+            }
         } catch (Exception e) {
             logger.error("Failed to set Prometheus gauge: {}", name, e);
         }
@@ -252,12 +936,21 @@ public final class MetricsUtils {
 
     /**
      * Creates or gets a Prometheus histogram metric.
+     * When the registry limit set by {@link #setMaxSeries(int)} is reached, an
+     * unregistered histogram is returned instead.
      *
      * @param name the name of the histogram
      * @param help the help text for the histogram
      * @return the Prometheus histogram
      */
     public static Histogram getOrCreatePrometheusHistogram(String name, String help) {
+        Histogram existing = prometheusHistograms.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        if (isFull(prometheusHistograms, name)) {
+            return Histogram.builder().name(DETACHED_METRIC_NAME).help(help).build();
+        }
         return prometheusHistograms.computeIfAbsent(name, k -> {
             try {
                 Histogram histogram = Histogram.builder()
@@ -284,31 +977,147 @@ public final class MetricsUtils {
         try {
             Histogram histogram = getOrCreatePrometheusHistogram(name, help);
             histogram.observe(value);
-            logger.debug("Observed value {} in Prometheus histogram {}", value, name);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Observed value {} in Prometheus histogram {}", value, name);
+            }
         } catch (Exception e) {
             logger.error("Failed to observe Prometheus histogram: {}", name, e);
         }
     }
 
     /**
-     * Pushes in-memory metrics to Prometheus registry.
-     * This method is useful for synchronizing local metrics with Prometheus.
+     * Binds a Prometheus counter for use on hot paths.
+     * The counter is looked up or registered once; keep the returned instance and call
+     * {@code inc} on it directly, which skips the map lookup, exception handling and
+     * logging done by {@link #incrementPrometheusCounter(String, String, double)}.
+     * If registration fails, the error is logged once here and a detached counter that
+     * is not exported is returned, so call sites never fail. A bound counter is never
+     * evicted as idle, since increments through the kept instance would no longer be exported.
+     *
+     * @param name the name of the counter
+     * @param help the help text for the counter
+     * @return the bound counter
+     */
+    public static Counter bindPrometheusCounter(String name, String help) {
+        pinnedPrometheusMetrics.add(name);
+        try {
+            return getOrCreatePrometheusCounter(name, help);
+        } catch (RuntimeException e) {
+            return Counter.builder().name(DETACHED_METRIC_NAME).help(help).build();
+        }
+    }
+
+    /**
+     * Binds a Prometheus gauge for use on hot paths.
+     * Keep the returned instance and call {@code set} on it directly. If registration
+     * fails, the error is logged once and a detached gauge that is not exported is returned.
+     * Like a bound counter, a bound gauge is never evicted as idle.
+     *
+     * @param name the name of the gauge
+     * @param help the help text for the gauge
+     * @return the bound gauge
+     */
+    public static Gauge bindPrometheusGauge(String name, String help) {
+        pinnedPrometheusMetrics.add(name);
+        try {
+            return getOrCreatePrometheusGauge(name, help);
+        } catch (RuntimeException e) {
+            return Gauge.builder().name(DETACHED_METRIC_NAME).help(help).build();
+        }
+    }
+
+    /**
+     * Binds a Prometheus histogram for use on hot paths.
+     * Keep the returned instance and call {@code observe} on it directly. If registration
+     * fails, the error is logged once and a detached histogram that is not exported is returned.
+     * Like a bound counter, a bound histogram is never evicted as idle.
+     *
+     * @param name the name of the histogram
+     * @param help the help text for the histogram
+     * @return the bound histogram
+     */
+    public static Histogram bindPrometheusHistogram(String name, String help) {
+        pinnedPrometheusMetrics.add(name);
+        try {
+            return getOrCreatePrometheusHistogram(name, help);
+        } catch (RuntimeException e) {
+            return Histogram.builder().name(DETACHED_METRIC_NAME).help(help).build();
+        }
+    }
+
+    /**
+     * Exports the latency distribution of a timer as a Prometheus histogram.
+     * The histogram is named after the sanitized timer name with a {@code _seconds} suffix
+     * and its buckets are read from the timer when the registry is scraped, so recording
+     * stays as cheap as {@link TimerHandle#record(long)}. Operations measured with
+     * {@link #measureOperation(String, MeasurableOperation)} use a timer of the same name.
+     *
+     * @param timerName the name of the timer
+     * @param help the help text for the histogram
+     */
+    public static void exportTimerHistogram(String timerName, String help) {
+        exportTimerHistogram(timerName, help, DEFAULT_HISTOGRAM_BOUNDS_SECONDS);
+    }
+
+    /**
+     * Exports the latency distribution of a timer as a Prometheus histogram with custom buckets.
+     *
+     * @param timerName the name of the timer
+     * @param help the help text for the histogram
+     * @param upperBoundsSeconds the bucket upper bounds in seconds, sorted ascending
+     */
+    public static void exportTimerHistogram(String timerName, String help, double... upperBoundsSeconds) {
+        prometheusTimerHistograms.computeIfAbsent(timerName, k -> {
+            try {
+                Collector collector = new TimerHistogramCollector(timer(k),
+                        sanitizeMetricName(k) + "_seconds", help, withInfinity(upperBoundsSeconds));
+                getPrometheusRegistry().register(collector);
+                logger.debug("Exported timer {} as Prometheus histogram", k);
+                return collector;
+            } catch (Exception e) {
+                logger.error("Failed to export timer histogram: {}", k, e);
+                throw new RuntimeException(e);
+            }
+        });
+    }
+    /**
+     * Exposes in-memory counters, gauges, distinct counters and labeled metrics to the Prometheus registry.
+     * A collector is registered once and reads the current values lazily when the
+     * registry is scraped, so values are never double counted and nothing is pushed
+     * between scrapes. Calling this method again has no effect.
      */
     public static void syncMetricsToPrometheus() {
+        if (!localMetricsCollectorRegistered.compareAndSet(false, true)) {
+            return;
+        }
         try {
-            counters.forEach((name, counter) -> {
-                String prometheusName = sanitizeMetricName(name);
-                Counter promCounter = getOrCreatePrometheusCounter(prometheusName, "Synced from local metrics");
-                long currentValue = counter.get();
-                // Increment the Prometheus counter with the current value
-                promCounter.inc(currentValue);
-                logger.debug("Synced counter {} with value {}", prometheusName, currentValue);
-            });
+            getPrometheusRegistry().register(new LocalMetricsCollector());
+            logger.debug("Registered local metrics collector");
         } catch (Exception e) {
+            localMetricsCollectorRegistered.set(false);
             logger.error("Failed to sync metrics to Prometheus", e);
         }
     }
 
+    /**
+     * Reserves the names of a collector registered with the default registry, so that local
+     * metrics with a clashing name are skipped when the registry is scraped.
+     *
+     * @param collector the collector
+     */
+    static void reserveNames(MultiCollector collector) {
+        reservingCollectors.add(collector);
+    }
+
+    /**
+     * Releases the names reserved by {@link #reserveNames(MultiCollector)}.
+     *
+     * @param collector the collector
+     */
+    static void releaseNames(MultiCollector collector) {
+        reservingCollectors.remove(collector);
+    }
+
     /**
      * Sanitizes a metric name to be Prometheus-compliant.
      * Replaces non-alphanumeric characters with underscores.
@@ -321,12 +1130,39 @@ public final class MetricsUtils {
             return "metric";
         }
         // Prometheus metric names must match: [a-zA-Z_:][a-zA-Z0-9_:]*
-        String sanitized = name.replaceAll("[^a-zA-Z0-9_:]", "_");
+        StringBuilder sanitized = new StringBuilder(name.length() + 1);
+        name.codePoints().forEach(c -> sanitized.append(isMetricNameChar(c) ? (char) c : '_'));
         // Ensure it starts with a letter or underscore
-        if (!sanitized.matches("^[a-zA-Z_].*")) {
-            sanitized = "_" + sanitized;
+        char first = sanitized.charAt(0);
+        if (!(first == '_' || (first >= 'a' && first <= 'z') || (first >= 'A' && first <= 'Z'))) {
+            sanitized.insert(0, '_');
+        }
+        return sanitized.toString();
+    }
+
+    private static boolean isMetricNameChar(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == ':';
+    }
+
+    /**
+     * Converts a local counter name into a valid Prometheus counter name.
+     *
+     * @param name the local counter name
+     * @return the Prometheus name without the {@code _total} suffix, or null if the name
+     *         ends with a suffix reserved by Prometheus
+     */
+    static String toPrometheusCounterName(String name) {
+        String sanitized = sanitizeMetricName(name);
+        if (sanitized.endsWith("_total") && sanitized.length() > "_total".length()) {
+            sanitized = sanitized.substring(0, sanitized.length() - "_total".length());
+        }
+        try {
+            new MetricMetadata(sanitized);
+            return sanitized;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Local counter {} cannot be exported to Prometheus: {}", name, e.getMessage());
+            return null;
         }
-        return sanitized;
     }
 
     /**
@@ -346,12 +1182,437 @@ public final class MetricsUtils {
             prometheusCounters.clear();
             prometheusGauges.clear();
             prometheusHistograms.clear();
+            prometheusTimerHistograms.clear();
+            pinnedPrometheusMetrics.clear();
             logger.info("Cleared all Prometheus metrics");
         } catch (Exception e) {
             logger.error("Failed to clear Prometheus metrics", e);
         }
     }
 
+    private static boolean isFull(ConcurrentHashMap<String, ?> metrics, String name) {
+        if (metrics.size() < maxSeries) {
+            return false;
+        }
+        rejectedSeries.add(name);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Registry limit of {} series reached, rejected {}", maxSeries, name);
+        }
+        return true;
+    }
+
+    private static void sweepIdleMetrics() {
+        try {
+            evictIdleMetrics();
+        } catch (RuntimeException e) {
+            logger.error("Failed to evict idle metrics", e);
+        }
+    }
+
+    // The counters of a measured operation are kept by its cached metrics, and go with its timer
+    private static boolean isPinnedCounter(String name) {
+        if (pinnedCounters.contains(name)) {
+            return true;
+        }
+        for (String suffix : OPERATION_COUNTER_SUFFIXES) {
+            if (name.endsWith(suffix)) {
+                String operation = name.substring(0, name.length() - suffix.length());
+                if (operations.containsKey(operation) || asyncOperations.containsKey(operation)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Evicts an operation as a unit once its timer is idle, so its handles are re-resolved on next use
+    private static void forgetOperation(String name) {
+        if (!operations.containsKey(name) && !asyncOperations.containsKey(name)) {
+            return;
+        }
+        // Counters first: new operation metrics are only created once the old ones are gone
+        for (String suffix : OPERATION_COUNTER_SUFFIXES) {
+            counters.remove(name + suffix);
+        }
+        operations.remove(name);
+        asyncOperations.remove(name);
+    }
+
+    private static double observationCount(Histogram histogram) {
+        long count = 0;
+        for (HistogramSnapshot.HistogramDataPointSnapshot dataPoint : histogram.collect().getDataPoints()) {
+            count += dataPoint.getCount();
+        }
+        return count;
+    }
+
+    private static CounterHandle newCounter(String name) {
+        return new CounterHandle(name, toPrometheusCounterName(name), mappedSlot(name, false));
+    }
+
+    private static GaugeHandle newGauge(String name) {
+        return new GaugeHandle(name, sanitizeMetricName(name), mappedSlot(name, true));
+    }
+
+    private static MappedCounters.Slot mappedSlot(String name, boolean gauge) {
+        MappedCounters storage = mappedStorage;
+        if (storage == null) {
+            return null;
+        }
+        try {
+            return gauge ? storage.gaugeSlot(name) : storage.counterSlot(name);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Keeping {} on the heap: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    private static OperationMetrics operationMetrics(String operationName) {
+        OperationMetrics metrics = operations.get(operationName);
+        if (metrics != null) {
+            return metrics;
+        }
+        return operations.computeIfAbsent(operationName, OperationMetrics::new);
+    }
+
+    private static AsyncOperationMetrics asyncOperationMetrics(String operationName) {
+        AsyncOperationMetrics metrics = asyncOperations.get(operationName);
+        if (metrics != null) {
+            return metrics;
+        }
+        return asyncOperations.computeIfAbsent(operationName, AsyncOperationMetrics::new);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> LabeledMetric<T> labeledMetric(String name, LabeledMetric.Kind kind, int maxCardinality,
+                                                      String[] labelNames, Supplier<T> childFactory) {
+        LabeledMetric<?> metric = labeledMetrics.get(name);
+        if (metric == null) {
+            metric = labeledMetrics.computeIfAbsent(name,
+                    k -> new LabeledMetric<>(k, kind, maxCardinality, labelNames, childFactory));
+        }
+        if (metric.getKind() != kind || !metric.getLabelNames().equals(Arrays.asList(labelNames))) {
+            throw new IllegalArgumentException("Labeled metric " + name + " already exists as a "
+                    + metric.getKind().name().toLowerCase() + " with labels " + metric.getLabelNames());
+        }
+        return (LabeledMetric<T>) metric;
+    }
+
+    private static double[] withInfinity(double[] upperBounds) {
+        if (upperBounds.length > 0 && upperBounds[upperBounds.length - 1] == Double.POSITIVE_INFINITY) {
+            return upperBounds.clone();
+        }
+        double[] bounds = Arrays.copyOf(upperBounds, upperBounds.length + 1);
+        bounds[upperBounds.length] = Double.POSITIVE_INFINITY;
+        return bounds;
+    }
+
+    /**
+     * Metric handles of a measured operation, resolved once per operation name.
+     */
+    private static final class OperationMetrics {
+
+        private final String name;
+        private final TimerHandle timer;
+        private final CounterHandle count;
+        private final CounterHandle totalTime;
+
+        OperationMetrics(String operationName) {
+            this.name = operationName;
+            this.timer = timer(operationName);
+            this.count = counter(operationName + "_count");
+            this.totalTime = counter(operationName + "_totalTime");
+        }
+
+        void record(long startNanos, long endNanos) {
+            long duration = endNanos - startNanos;
+            timer.record(duration);
+            count.increment();
+            // Count millisecond boundaries crossed, so sub-millisecond operations still add up
+            totalTime.increment(Math.floorDiv(endNanos, 1_000_000L) - Math.floorDiv(startNanos, 1_000_000L));
+            HeavyHitterTracking tracking = heavyHitters;
+            if (tracking != null) {
+                tracking.operationCalls.add(name, 1);
+                tracking.operationTime.add(name, duration);
+            }
+        }
+    }
+
+    /**
+     * Heavy hitter rankings enabled by {@link #trackHeavyHitters(int, int)}.
+     */
+    private static final class HeavyHitterTracking {
+
+        private final int topN;
+        private final HeavyHitters operationCalls;
+        private final HeavyHitters operationTime;
+        private final HeavyHitters counterIncrements;
+
+        HeavyHitterTracking(int topN, int capacity) {
+            this.topN = topN;
+            this.operationCalls = new HeavyHitters(capacity);
+            this.operationTime = new HeavyHitters(capacity);
+            this.counterIncrements = new HeavyHitters(capacity);
+        }
+    }
+
+    /**
+     * Outcome counters of an asynchronous operation, next to its operation metrics.
+     */
+    private static final class AsyncOperationMetrics {
+
+        private final OperationMetrics operation;
+        private final CounterHandle success;
+        private final CounterHandle failure;
+        private final CounterHandle cancelled;
+
+        AsyncOperationMetrics(String operationName) {
+            this.operation = operationMetrics(operationName);
+            this.success = counter(operationName + "_success");
+            this.failure = counter(operationName + "_failure");
+            this.cancelled = counter(operationName + "_cancelled");
+        }
+
+        String record(long startNanos, long endNanos, Throwable error) {
+            operation.record(startNanos, endNanos);
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+            if (cause == null) {
+                success.increment();
+                return OperationEvent.SUCCESS;
+            }
+            if (cause instanceof CancellationException) {
+                cancelled.increment();
+                return OperationEvent.CANCELLED;
+            }
+            failure.increment();
+            return OperationEvent.FAILURE;
+        }
+    }
+
+    /**
+     * Collector that converts a timer's latency distribution into a Prometheus histogram at scrape time.
+     */
+    private static final class TimerHistogramCollector implements Collector {
+
+        private final TimerHandle timer;
+        private final String name;
+        private final String help;
+        private final double[] upperBoundsSeconds;
+
+        TimerHistogramCollector(TimerHandle timer, String name, String help, double[] upperBoundsSeconds) {
+            this.timer = timer;
+            this.name = name;
+            this.help = help;
+            this.upperBoundsSeconds = upperBoundsSeconds;
+        }
+
+        @Override
+        public HistogramSnapshot collect() {
+            return HistogramSnapshot.builder()
+                    .name(name)
+                    .help(help)
+                    .dataPoint(timer.getHistogram().toPrometheusDataPoint(upperBoundsSeconds, Labels.EMPTY))
+                    .build();
+        }
+
+        @Override
+        public String getPrometheusName() {
+            return name;
+        }
+    }
+
+    /**
+     * Collector that reads the local counters, gauges and labeled metrics when the
+     * Prometheus registry is scraped.
+     */
+    private static final class LocalMetricsCollector implements MultiCollector {
+
+        private static final String COUNTER_HELP = "Local counter from MetricsUtils";
+        private static final String GAUGE_HELP = "Local gauge from MetricsUtils";
+        private static final String DISTINCT_HELP = "Estimated distinct values from MetricsUtils";
+        private static final String LIMIT_HELP = "Current adaptive concurrency limit";
+        private static final String IN_FLIGHT_HELP = "Calls in flight under an adaptive concurrency limit";
+        private static final String EVICTED_HELP = "Metric series evicted by MetricsUtils because they were idle";
+        private static final String REJECTED_HELP = "Metric series rejected by MetricsUtils because a registry was full";
+        private static final String TOP_OPERATION_CALLS_HELP = "Estimated calls of the operations with the most calls";
+        private static final String TOP_OPERATION_TIME_HELP = "Estimated total time of the operations with the most time";
+        private static final String TOP_COUNTERS_HELP = "Estimated increments of the counters incremented the most";
+        // Sample names exposed by each type of family: counters add _total, histograms their series
+        private static final String[] COUNTER_SUFFIXES = {"", "_total", "_created"};
+        private static final String[] GAUGE_SUFFIXES = {""};
+        private static final String[] HISTOGRAM_SUFFIXES = {"", "_count", "_sum", "_bucket", "_created"};
+        private static final String[] ANY_SUFFIXES = {"", "_total", "_created", "_count", "_sum", "_bucket", "_info"};
+
+        @Override
+        public MetricSnapshots collect() {
+            List<MetricSnapshot> snapshots = new ArrayList<>(counters.size() + gauges.size() + labeledMetrics.size());
+            Set<String> seen = reservedSampleNames();
+            for (CounterHandle counter : counters.values()) {
+                String name = counter.getPrometheusName();
+                if (isExportable(name, COUNTER_SUFFIXES, seen)) {
+                    snapshots.add(CounterSnapshot.builder()
+                            .name(name)
+                            .help(COUNTER_HELP)
+                            .dataPoint(CounterSnapshot.CounterDataPointSnapshot.builder()
+                                    .value(counter.get())
+                                    .build())
+                            .build());
+                }
+            }
+            for (GaugeHandle gauge : gauges.values()) {
+                String name = gauge.getPrometheusName();
+                if (isExportable(name, GAUGE_SUFFIXES, seen)) {
+                    snapshots.add(GaugeSnapshot.builder()
+                            .name(name)
+                            .help(GAUGE_HELP)
+                            .dataPoint(GaugeSnapshot.GaugeDataPointSnapshot.builder()
+                                    .value(gauge.get())
+                                    .build())
+                            .build());
+                }
+            }
+            for (DistinctCounter counter : distinctCounters.values()) {
+                String name = counter.getPrometheusName();
+                if (isExportable(name, GAUGE_SUFFIXES, seen)) {
+                    snapshots.add(GaugeSnapshot.builder()
+                            .name(name)
+                            .help(DISTINCT_HELP)
+                            .dataPoint(GaugeSnapshot.GaugeDataPointSnapshot.builder()
+                                    .value(counter.getEstimate())
+                                    .build())
+                            .build());
+                }
+            }
+            for (AdaptiveConcurrencyLimiter limiter : concurrencyLimiters.values()) {
+                String prefix = sanitizeMetricName(limiter.getName());
+                addGauge(snapshots, seen, prefix + "_limit", LIMIT_HELP, limiter.getLimit());
+                addGauge(snapshots, seen, prefix + "_in_flight", IN_FLIGHT_HELP, limiter.getInFlight());
+            }
+            for (LabeledMetric<?> metric : labeledMetrics.values()) {
+                MetricSnapshot snapshot = metric.collect(DEFAULT_HISTOGRAM_BOUNDS_SECONDS);
+                if (snapshot != null
+                        && isExportable(snapshot.getMetadata().getName(), suffixes(metric.getKind()), seen)) {
+                    snapshots.add(snapshot);
+                }
+            }
+            HeavyHitterTracking tracking = heavyHitters;
+            if (tracking != null) {
+                addTopGauge(snapshots, seen, "top_operation_calls", TOP_OPERATION_CALLS_HELP, "operation",
+                        tracking.operationCalls.top(tracking.topN), 1.0);
+                addTopGauge(snapshots, seen, "top_operation_time_seconds", TOP_OPERATION_TIME_HELP, "operation",
+                        tracking.operationTime.top(tracking.topN), 1e-9);
+                addTopGauge(snapshots, seen, "top_counter_increments", TOP_COUNTERS_HELP, "counter",
+                        tracking.counterIncrements.top(tracking.topN), 1.0);
+            }
+            if (maxSeries != Integer.MAX_VALUE || timeToIdleNanos > 0) {
+                addLimitCounter(snapshots, seen, "metrics_series_evicted", EVICTED_HELP, evictedSeries.sum());
+                addLimitCounter(snapshots, seen, "metrics_series_rejected", REJECTED_HELP, rejectedSeries.estimate());
+            }
+            return new MetricSnapshots(snapshots);
+        }
+
+        private static void addLimitCounter(List<MetricSnapshot> snapshots, Set<String> seen,
+                                            String name, String help, long value) {
+            if (isExportable(name, COUNTER_SUFFIXES, seen)) {
+                snapshots.add(CounterSnapshot.builder()
+                        .name(name)
+                        .help(help)
+                        .dataPoint(CounterSnapshot.CounterDataPointSnapshot.builder()
+                                .value(value)
+                                .build())
+                        .build());
+            }
+        }
+
+        private static void addGauge(List<MetricSnapshot> snapshots, Set<String> seen,
+                                     String name, String help, double value) {
+            if (isExportable(name, GAUGE_SUFFIXES, seen)) {
+                snapshots.add(GaugeSnapshot.builder()
+                        .name(name)
+                        .help(help)
+                        .dataPoint(GaugeSnapshot.GaugeDataPointSnapshot.builder()
+                                .value(value)
+                                .build())
+                        .build());
+            }
+        }
+
+        private static void addTopGauge(List<MetricSnapshot> snapshots, Set<String> seen, String name, String help,
+                                        String labelName, List<HeavyHitters.Entry> top, double scale) {
+            if (isExportable(name, GAUGE_SUFFIXES, seen)) {
+                GaugeSnapshot.Builder builder = GaugeSnapshot.builder().name(name).help(help);
+                for (HeavyHitters.Entry entry : top) {
+                    builder.dataPoint(GaugeSnapshot.GaugeDataPointSnapshot.builder()
+                            .value(entry.getWeight() * scale)
+                            .labels(Labels.of(labelName, entry.getKey()))
+                            .build());
+                }
+                snapshots.add(builder.build());
+            }
+        }
+
+        // Sample names of the metrics registered by the getOrCreatePrometheus* methods, the timer
+        // histograms and the other collectors of this library, which local metrics must not reuse
+        private static Set<String> reservedSampleNames() {
+            Set<String> reserved = new HashSet<>();
+            for (String name : prometheusCounters.keySet()) {
+                String base = name.endsWith("_total") ? name.substring(0, name.length() - "_total".length()) : name;
+                reserve(reserved, base, COUNTER_SUFFIXES);
+            }
+            for (String name : prometheusGauges.keySet()) {
+                reserve(reserved, name, GAUGE_SUFFIXES);
+            }
+            for (String name : prometheusHistograms.keySet()) {
+                reserve(reserved, name, HISTOGRAM_SUFFIXES);
+            }
+            for (String name : prometheusTimerHistograms.keySet()) {
+                reserve(reserved, sanitizeMetricName(name) + "_seconds", HISTOGRAM_SUFFIXES);
+            }
+            // The type of these families is not known without collecting them, so every suffix is reserved
+            for (MultiCollector collector : reservingCollectors) {
+                for (String name : collector.getPrometheusNames()) {
+                    reserve(reserved, name, ANY_SUFFIXES);
+                }
+            }
+            return reserved;
+        }
+
+        private static void reserve(Set<String> reserved, String name, String[] suffixes) {
+            for (String suffix : suffixes) {
+                reserved.add(name + suffix);
+            }
+        }
+
+        private static String[] suffixes(LabeledMetric.Kind kind) {
+            switch (kind) {
+                case COUNTER:
+                    return COUNTER_SUFFIXES;
+                case HISTOGRAM:
+                    return HISTOGRAM_SUFFIXES;
+                default:
+                    return GAUGE_SUFFIXES;
+            }
+        }
+
+        // Claims the sample names of a family, or skips the family when one of them is already
+        // taken, so that a scrape never exposes the same series twice
+        private static boolean isExportable(String name, String[] suffixes, Set<String> seen) {
+            if (name == null) {
+                return false;
+            }
+            for (String suffix : suffixes) {
+                if (seen.contains(name + suffix)) {
+                    logger.debug("Skipped local metric {} because {} is already exported", name, name + suffix);
+                    return false;
+                }
+            }
+            reserve(seen, name, suffixes);
+            return true;
+        }
+    }
+
     /**
      * Functional interface for measurable operations.
      *
@@ -0,0 +1,197 @@
+package io.github.ashishnitw.observability;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sequencing of a preallocated ring buffer with many producers and one consumer thread.
+ * The ring hands out sequences only; the owner keeps the slot contents in its own arrays,
+ * indexed by {@link #index(long)}, so that producers never allocate.
+ * <p>
+ * A producer claims a sequence with {@link #claim()}, fills the slot and calls
+ * {@link #publish(long)}. The consumer reads the slots in sequence order while
+ * {@link #isPublished(long)}, reports its progress with {@link #consumed(long)} and calls
+ * {@link #idle(int, long)} while it waits. After {@link #close()} no sequence can be claimed,
+ * and the consumer stops once {@link #isClaimedOrOpen(long)} is false, which happens only
+ * after every claimed sequence has been consumed.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+final class MultiProducerRing {
+
+    /**
+     * Longest park of an idle consumer, in nanoseconds.
+     */
+    static final long MAX_IDLE_PARK_NANOS = 4_000_000L;
+
+    // An idle consumer spins, then yields, then parks for a time that doubles up to the
+    // maximum, so it reacts quickly to bursts but wakes only a few hundred times a second when idle
+    private static final int IDLE_SPINS = 100;
+    private static final int IDLE_YIELDS = 100;
+    private static final int IDLE_DOUBLINGS = 16;
+    private static final long MIN_IDLE_PARK_NANOS = 10_000L;
+    private static final long BLOCKED_PARK_NANOS = 1_000L;
+    // Set in the claim sequence by close(): later claims fail, and the consumer drains every
+    // sequence below it, so no accepted event can be claimed after the final drain
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final int mask;
+    private final AtomicLongArray published;
+    private final AtomicLong claimSequence = new AtomicLong();
+    private final AtomicLong consumeSequence = new AtomicLong();
+    private final boolean blockWhenFull;
+    private final Thread consumer;
+
+    /**
+     * Creates a ring.
+     *
+     * @param capacity the number of slots, a power of two
+     * @param blockWhenFull whether producers wait for a free slot rather than fail when the ring is full
+     * @param consumer the consumer thread, checked before a producer waits for it
+     */
+    MultiProducerRing(int capacity, boolean blockWhenFull, Thread consumer) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two greater than 1");
+        }
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1L);
+        }
+        this.blockWhenFull = blockWhenFull;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Claims the next sequence.
+     *
+     * @return the sequence, or -1 if the ring is closed, or full and not blocking
+     */
+    long claim() {
+        int capacity = mask + 1;
+        while (true) {
+            long sequence = claimSequence.get();
+            if (sequence < 0) {
+                return -1L;
+            }
+            if (sequence - consumeSequence.get() >= capacity) {
+                // A dead consumer never frees a slot, so blocking would park the caller forever
+                if (!blockWhenFull || !consumer.isAlive()) {
+                    return -1L;
+                }
+                LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+            } else if (claimSequence.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * Gets the slot index of a sequence.
+     *
+     * @param sequence the sequence
+     * @return the slot index
+     */
+    int index(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    /**
+     * Publishes a claimed sequence after its slot has been filled.
+     *
+     * @param sequence the claimed sequence
+     */
+    void publish(long sequence) {
+        // Release store: the slot contents become visible before the sequence
+        published.lazySet(index(sequence), sequence);
+    }
+
+    /**
+     * Checks whether a sequence has been published.
+     *
+     * @param sequence the sequence
+     * @return true if the slot of the sequence can be read
+     */
+    boolean isPublished(long sequence) {
+        return published.get(index(sequence)) == sequence;
+    }
+
+    /**
+     * Frees the slots of every sequence below the given one.
+     *
+     * @param next the next sequence the consumer reads
+     */
+    void consumed(long next) {
+        consumeSequence.lazySet(next);
+    }
+
+    /**
+     * Checks whether the consumer must keep waiting for a sequence: either the ring is
+     * open and more sequences may be claimed, or the sequence is claimed but not yet published.
+     *
+     * @param sequence the next sequence the consumer reads
+     * @return false once the ring is closed and every claimed sequence is below the given one
+     */
+    boolean isClaimedOrOpen(long sequence) {
+        long claimed = claimSequence.get();
+        return claimed >= 0 || sequence < (claimed & ~CLOSED);
+    }
+
+    /**
+     * Gets the sequence below which every sequence has been claimed.
+     *
+     * @return the claimed sequence
+     */
+    long getClaimedSequence() {
+        return claimSequence.get() & ~CLOSED;
+    }
+
+    /**
+     * Gets the sequence below which every sequence has been consumed.
+     *
+     * @return the consumed sequence
+     */
+    long getConsumedSequence() {
+        return consumeSequence.get();
+    }
+
+    /**
+     * Closes the ring, so that every later claim fails.
+     *
+     * @return true if this call closed the ring, false if it was already closed
+     */
+    boolean close() {
+        long sequence = claimSequence.get();
+        while (sequence >= 0 && !claimSequence.compareAndSet(sequence, sequence | CLOSED)) {
+            sequence = claimSequence.get();
+        }
+        return sequence >= 0;
+    }
+
+    /**
+     * Waits a little on the consumer thread while no sequence is published.
+     * Reset the returned round count to 0 after consuming a sequence.
+     *
+     * @param idleRounds the rounds waited since the last consumed sequence
+     * @param maxParkNanos the longest park, for a consumer with a deadline of its own
+     * @return the rounds to pass to the next call
+     */
+    static int idle(int idleRounds, long maxParkNanos) {
+        if (idleRounds < IDLE_SPINS) {
+            Thread.onSpinWait();
+        } else if (idleRounds < IDLE_SPINS + IDLE_YIELDS) {
+            Thread.yield();
+        } else {
+            int doublings = Math.min(idleRounds - IDLE_SPINS - IDLE_YIELDS, IDLE_DOUBLINGS);
+            long parkNanos = Math.min(MIN_IDLE_PARK_NANOS << doublings, MAX_IDLE_PARK_NANOS);
+            LockSupport.parkNanos(Math.max(1L, Math.min(parkNanos, maxParkNanos)));
+            if (doublings == IDLE_DOUBLINGS) {
+                return idleRounds;
+            }
+        }
+        return idleRounds + 1;
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.ashishnitw.observability;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event for an operation timed by
+ * {@link MetricsUtils#measureOperation(String, MetricsUtils.MeasurableOperation)} or
+ * {@link MetricsUtils#measureAsync(String, java.util.function.Supplier)}.
+ * JFR records the duration and thread itself. When the event is not enabled in the
+ * running recording, begin, end and commit do nothing and the JIT removes the allocation.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+@Name("io.github.ashishnitw.Operation")
+@Label("Operation")
+@Category("Observability")
+@Description("Operation timed by MetricsUtils.measureOperation")
+@StackTrace(false)
+final class OperationEvent extends Event {
+
+    static final String SUCCESS = "success";
+    static final String FAILURE = "failure";
+    static final String CANCELLED = "cancelled";
+
+    @Label("Operation Name")
+    String operationName;
+
+    @Label("Outcome")
+    String outcome;
+
+    /**
+     * Ends the event and commits it if the recording wants it.
+     *
+     * @param name the name of the operation
+     * @param success whether the operation completed without throwing
+     */
+    void end(String name, boolean success) {
+        end(name, success ? SUCCESS : FAILURE);
+    }
+
+    /**
+     * Ends the event with an outcome and commits it if the recording wants it.
+     *
+     * @param name the name of the operation
+     * @param operationOutcome the outcome of the operation
+     */
+    void end(String name, String operationOutcome) {
+        end();
+        if (shouldCommit()) {
+            operationName = name;
+            outcome = operationOutcome;
+            commit();
+        }
+    }
+}
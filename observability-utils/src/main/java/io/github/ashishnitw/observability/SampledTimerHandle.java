@@ -0,0 +1,164 @@
+package io.github.ashishnitw.observability;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Pre-resolved handle to a timer that only times a random 1 in N calls.
+ * For operations that run millions of times per second, reading the clock twice and
+ * updating a histogram on every call is measurable overhead. A sampled timer counts every
+ * call exactly, but reads the clock only for sampled calls, chosen with
+ * {@link ThreadLocalRandom}. Each sampled duration is recorded into the underlying timer
+ * with a weight of N, so its count, total and percentiles estimate all calls.
+ * <p>
+ * With a slow threshold, a sampled call at or above the threshold halves N, down to timing
+ * every call, so a slowdown is caught quickly; fast samples let N grow back gradually.
+ * A sample is weighted with the N it was drawn with, which the start token carries, so
+ * calls in flight while N changes keep the estimates unbiased.
+ *
+ * <pre>{@code
+ * SampledTimerHandle lookups = MetricsUtils.sampledTimer("cache_lookup", 64);
+ * long start = lookups.start();
+ * try {
+ *     lookup(key);
+ * } finally {
+ *     lookups.stop(start);
+ * }
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class SampledTimerHandle {
+
+    /**
+     * Largest sampling interval, so that the interval fits in the start token.
+     */
+    public static final int MAX_SAMPLE_INTERVAL = (1 << 20) - 1;
+
+    // A start token is the start time shifted left with the sampling interval in the low bits,
+    // so durations up to 2^44 ns (about 4.8 hours) come out exact
+    private static final int INTERVAL_BITS = 20;
+    private static final long INTERVAL_MASK = (1L << INTERVAL_BITS) - 1;
+    // Start token of calls that are not sampled; sampled tokens never have zero interval bits
+    static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    private final String name;
+    private final int baseInterval;
+    private final long slowThresholdNanos;
+    private final CounterHandle calls;
+    private final TimerHandle timer;
+    // Updated without coordination: concurrent adjustments may overwrite each other, which only
+    // delays adaptation
+    private volatile int interval;
+
+    /**
+     * Creates a sampled timer handle. Handles are created by
+     * {@link MetricsUtils#sampledTimer(String, int)}.
+     *
+     * @param name the name of the timer
+     * @param sampleInterval the average number of calls per timed call, at most {@value #MAX_SAMPLE_INTERVAL}
+     * @param slowThresholdNanos the duration from which a call is considered slow
+     */
+    SampledTimerHandle(String name, int sampleInterval, long slowThresholdNanos) {
+        if (sampleInterval < 1 || sampleInterval > MAX_SAMPLE_INTERVAL) {
+            throw new IllegalArgumentException("sampleInterval must be between 1 and " + MAX_SAMPLE_INTERVAL);
+        }
+        this.name = name;
+        this.baseInterval = sampleInterval;
+        this.slowThresholdNanos = slowThresholdNanos;
+        this.interval = sampleInterval;
+        this.calls = MetricsUtils.internalCounter(name + "_count");
+        this.timer = MetricsUtils.internalTimer(name);
+    }
+
+    /**
+     * Gets the name of the timer.
+     *
+     * @return the timer name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Counts a call and decides whether to time it.
+     *
+     * @return the start token to pass to {@link #stop(long)}
+     */
+    public long start() {
+        calls.increment();
+        int n = interval;
+        if (n == 1 || ThreadLocalRandom.current().nextInt(n) == 0) {
+            return (System.nanoTime() << INTERVAL_BITS) | n;
+        }
+        return NOT_SAMPLED;
+    }
+
+    /**
+     * Stops a call and records its duration if it was sampled.
+     *
+     * @param startToken the token returned by {@link #start()}
+     */
+    public void stop(long startToken) {
+        if (startToken == NOT_SAMPLED) {
+            return;
+        }
+        // The shifted difference wraps around exactly like the start time did
+        long duration = ((System.nanoTime() << INTERVAL_BITS) - (startToken & ~INTERVAL_MASK)) >>> INTERVAL_BITS;
+        timer.getHistogram().record(duration, startToken & INTERVAL_MASK);
+        int n = interval;
+        if (duration >= slowThresholdNanos) {
+            if (n > 1) {
+                interval = n >> 1;
+            }
+        } else if (n < baseInterval) {
+            interval = Math.min(baseInterval, n + (n >> 3) + 1);
+        }
+    }
+
+    /**
+     * Runs an operation, timing it if it is sampled.
+     *
+     * @param <T> the return type of the operation
+     * @param operation the operation to run
+     * @return the result of the operation
+     * @throws Exception if the operation throws an exception
+     */
+    public <T> T measure(MetricsUtils.MeasurableOperation<T> operation) throws Exception {
+        long start = start();
+        try {
+            return operation.execute();
+        } finally {
+            stop(start);
+        }
+    }
+
+    /**
+     * Gets the exact number of calls.
+     *
+     * @return the call count
+     */
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    /**
+     * Gets the current sampling interval, which is lower than the configured one while
+     * calls are slow.
+     *
+     * @return the average number of calls per timed call
+     */
+    public int getSampleInterval() {
+        return interval;
+    }
+
+    /**
+     * Gets the timer that holds the scaled-up estimates of all calls.
+     *
+     * @return the timer handle
+     */
+    public TimerHandle getTimer() {
+        return timer;
+    }
+}
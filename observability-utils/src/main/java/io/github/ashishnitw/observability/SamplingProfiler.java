@@ -0,0 +1,378 @@
+package io.github.ashishnitw.observability;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process sampling CPU profiler for when no external profiler can be attached.
+ * A background thread periodically takes the stacks of all runnable threads through
+ * {@link ThreadMXBean} and merges them into a trie of frames, which is written as
+ * collapsed stacks ({@code frame;frame;frame count} lines) for flame graph tools.
+ * <p>
+ * The profiler is meant to be safe to leave on. The trie holds at most {@code maxNodes}
+ * frames; samples that would need more are counted in a {@code [truncated]} frame below
+ * the deepest known one. Stacks are cut at {@code maxDepth} frames. The time spent
+ * sampling is measured, and when a sample takes longer than {@value #MAX_OVERHEAD_PERCENT}%
+ * of the interval the next one is delayed, so the overhead stays bounded on machines with
+ * many threads. The overhead is exported as the {@code profiler_overhead_ratio} gauge and
+ * the samples taken as the {@code profiler_samples} counter.
+ * <p>
+ * Thread dumps are taken at safepoints, so, as with any profiler built on them, time spent
+ * in long counted loops is attributed to the nearest safepoint poll. Threads blocked in
+ * native I/O are reported as runnable and show up in the profile.
+ *
+ * <pre>{@code
+ * SamplingProfiler profiler = SamplingProfiler.start(20);
+ * ...
+ * profiler.stop();
+ * profiler.writeCollapsed(Path.of("/tmp/profile.collapsed"));
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class SamplingProfiler implements AutoCloseable {
+
+    /**
+     * Default maximum number of frames per stack.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 128;
+
+    /**
+     * Default maximum number of frames in the trie.
+     */
+    public static final int DEFAULT_MAX_NODES = 20_000;
+
+    static final int MAX_OVERHEAD_PERCENT = 2;
+    static final String TRUNCATED_FRAME = "[truncated]";
+
+    private static final Logger logger = LoggerFactory.getLogger(SamplingProfiler.class);
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final long intervalNanos;
+    private final int maxDepth;
+    private final int maxNodes;
+    private final ScheduledExecutorService scheduler;
+    private final CounterHandle samplesCounter = MetricsUtils.internalCounter("profiler_samples");
+    private final GaugeHandle overheadGauge = MetricsUtils.gauge("profiler_overhead_ratio");
+    // Guarded by this; written by the sampling thread and read by writers
+    private final Node root = new Node(null, null);
+    private int nodeCount;
+    private long samples;
+    private long threadSamples;
+    private long truncatedSamples;
+    private long samplingNanos;
+    private final long startNanos;
+    private volatile long stopNanos;
+
+    private SamplingProfiler(int samplesPerSecond, int maxDepth, int maxNodes) {
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / samplesPerSecond;
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        this.startNanos = System.nanoTime();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-sampling-profiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts profiling with the default limits.
+     *
+     * @param samplesPerSecond the number of samples per second, between 1 and 1000
+     * @return the running profiler
+     */
+    public static SamplingProfiler start(int samplesPerSecond) {
+        return start(samplesPerSecond, DEFAULT_MAX_DEPTH, DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * Starts profiling.
+     *
+     * @param samplesPerSecond the number of samples per second, between 1 and 1000
+     * @param maxDepth the maximum number of frames per stack
+     * @param maxNodes the maximum number of frames in the trie
+     * @return the running profiler
+     */
+    public static SamplingProfiler start(int samplesPerSecond, int maxDepth, int maxNodes) {
+        if (samplesPerSecond < 1 || samplesPerSecond > 1000) {
+            throw new IllegalArgumentException("samplesPerSecond must be between 1 and 1000");
+        }
+        if (maxDepth < 1 || maxNodes < 1) {
+            throw new IllegalArgumentException("maxDepth and maxNodes must be positive");
+        }
+        SamplingProfiler profiler = new SamplingProfiler(samplesPerSecond, maxDepth, maxNodes);
+        profiler.scheduler.schedule(profiler::sampleAndReschedule, profiler.intervalNanos, TimeUnit.NANOSECONDS);
+        logger.info("Started sampling profiler at {} samples per second", samplesPerSecond);
+        return profiler;
+    }
+
+    private void sampleAndReschedule() {
+        long delay = intervalNanos;
+        try {
+            long duration = sample();
+            // Keep sampling below the overhead budget by stretching the interval
+            delay = Math.max(intervalNanos, duration * 100 / MAX_OVERHEAD_PERCENT - duration);
+        } catch (RuntimeException e) {
+            logger.error("Failed to sample thread stacks", e);
+        }
+        try {
+            scheduler.schedule(this::sampleAndReschedule, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Stopped while sampling
+        }
+    }
+
+    /**
+     * Takes a sample immediately, in addition to the scheduled ones.
+     *
+     * @return the time the sample took in nanoseconds
+     */
+    long sample() {
+        long start = System.nanoTime();
+        ThreadInfo[] infos = threads.dumpAllThreads(false, false, maxDepth);
+        long self = Thread.currentThread().getId();
+        synchronized (this) {
+            for (ThreadInfo info : infos) {
+                if (info != null && info.getThreadId() != self && info.getThreadState() == Thread.State.RUNNABLE) {
+                    StackTraceElement[] stack = info.getStackTrace();
+                    if (stack.length > 0) {
+                        add(stack);
+                        threadSamples++;
+                    }
+                }
+            }
+            samples++;
+            long duration = System.nanoTime() - start;
+            samplingNanos += duration;
+            overheadGauge.set((double) samplingNanos / Math.max(1, System.nanoTime() - startNanos));
+            samplesCounter.increment();
+            return duration;
+        }
+    }
+
+    // Stacks are leaf first; the trie is rooted at the outermost frame
+    private void add(StackTraceElement[] stack) {
+        Node node = root;
+        for (int i = stack.length - 1; i >= 0; i--) {
+            StackTraceElement frame = stack[i];
+            Node child = node.child(frame.getClassName(), frame.getMethodName());
+            if (child == null) {
+                if (nodeCount >= maxNodes) {
+                    node.truncatedCount++;
+                    truncatedSamples++;
+                    return;
+                }
+                child = node.addChild(frame.getClassName(), frame.getMethodName());
+                nodeCount++;
+            }
+            node = child;
+        }
+        node.selfCount++;
+    }
+
+    /**
+     * Writes the profile as collapsed stacks, one line per distinct stack.
+     *
+     * @param out the writer to write to
+     * @throws IOException if writing fails
+     */
+    public synchronized void writeCollapsed(Writer out) throws IOException {
+        StringBuilder path = new StringBuilder(256);
+        if (root.truncatedCount > 0) {
+            out.append(TRUNCATED_FRAME).append(' ').append(Long.toString(root.truncatedCount)).append('\n');
+        }
+        for (Node child : root.children) {
+            write(child, path, out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the profile as collapsed stacks to a file.
+     *
+     * @param file the file to write
+     * @throws IOException if writing fails
+     */
+    public void writeCollapsed(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeCollapsed(out);
+        }
+    }
+
+    private static void write(Node node, StringBuilder path, Writer out) throws IOException {
+        int length = path.length();
+        if (length > 0) {
+            path.append(';');
+        }
+        appendFrame(path, node.className);
+        path.append('.');
+        appendFrame(path, node.methodName);
+        if (node.selfCount > 0) {
+            out.append(path).append(' ').append(Long.toString(node.selfCount)).append('\n');
+        }
+        if (node.truncatedCount > 0) {
+            out.append(path).append(';').append(TRUNCATED_FRAME).append(' ')
+                    .append(Long.toString(node.truncatedCount)).append('\n');
+        }
+        for (Node child : node.children) {
+            write(child, path, out);
+        }
+        path.setLength(length);
+    }
+
+    // Semicolons separate frames and spaces separate the count, so neither may appear in a frame
+    private static void appendFrame(StringBuilder path, String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            path.append(c == ';' || c == ' ' ? '_' : c);
+        }
+    }
+
+    /**
+     * Forgets all samples collected so far; profiling continues.
+     */
+    public synchronized void reset() {
+        root.children.clear();
+        root.truncatedCount = 0;
+        nodeCount = 0;
+        threadSamples = 0;
+        truncatedSamples = 0;
+    }
+
+    /**
+     * Stops profiling. The collected profile can still be written.
+     */
+    public void stop() {
+        if (!scheduler.isShutdown()) {
+            stopNanos = System.nanoTime();
+            scheduler.shutdownNow();
+            logger.info("Stopped sampling profiler after {} samples, overhead {}%", getSampleCount(),
+                    String.format("%.3f", getOverheadRatio() * 100));
+        }
+    }
+
+    /**
+     * Stops profiling.
+     */
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Checks whether the profiler is still sampling.
+     *
+     * @return true until {@link #stop()} is called
+     */
+    public boolean isRunning() {
+        return !scheduler.isShutdown();
+    }
+
+    /**
+     * Gets the number of samples taken, each covering all runnable threads.
+     *
+     * @return the sample count
+     */
+    public synchronized long getSampleCount() {
+        return samples;
+    }
+
+    /**
+     * Gets the number of thread stacks added to the profile since the last reset.
+     *
+     * @return the thread stack count
+     */
+    public synchronized long getThreadSampleCount() {
+        return threadSamples;
+    }
+
+    /**
+     * Gets the number of thread stacks that were cut short because the trie was full.
+     *
+     * @return the truncated stack count
+     */
+    public synchronized long getTruncatedSampleCount() {
+        return truncatedSamples;
+    }
+
+    /**
+     * Gets the number of frames in the trie.
+     *
+     * @return the node count
+     */
+    public synchronized int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Gets the total time spent sampling.
+     *
+     * @return the sampling time in nanoseconds
+     */
+    public synchronized long getSamplingNanos() {
+        return samplingNanos;
+    }
+
+    /**
+     * Gets the share of wall-clock time the sampling thread has spent sampling since the
+     * profiler started, which is an upper bound for its CPU overhead.
+     *
+     * @return the overhead ratio, 0.01 meaning 1%
+     */
+    public double getOverheadRatio() {
+        long end = isRunning() ? System.nanoTime() : stopNanos;
+        return (double) getSamplingNanos() / Math.max(1, end - startNanos);
+    }
+
+    /**
+     * A frame in the trie. Children are few per frame, so they are kept in a list and found
+     * by comparing names, which avoids building a key for every frame of every sample.
+     */
+    private static final class Node {
+
+        private final String className;
+        private final String methodName;
+        private final List<Node> children = new ArrayList<>(2);
+        private long selfCount;
+        private long truncatedCount;
+
+        Node(String className, String methodName) {
+            this.className = className;
+            this.methodName = methodName;
+        }
+
+        Node child(String className, String methodName) {
+            for (int i = 0, size = children.size(); i < size; i++) {
+                Node child = children.get(i);
+                if (child.methodName.equals(methodName) && child.className.equals(className)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        Node addChild(String className, String methodName) {
+            Node child = new Node(className, methodName);
+            children.add(child);
+            return child;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package io.github.ashishnitw.observability;
+
+/**
+ * A timed, named unit of work within a trace, started with {@link TracingUtils#startSpan(String)}.
+ * A span started while another span is current on the same thread becomes its child and
+ * the current span until it ends, so nested calls form a tree. Spans should be ended on the
+ * thread that started them, in reverse order; try-with-resources does both:
+ *
+ * <pre>{@code
+ * try (Span span = TracingUtils.startSpan("checkout")) {
+ *     ...
+ * }
+ * }</pre>
+ *
+ * Spans of traces that were not sampled, and all spans while tracing is disabled, are the
+ * shared {@link #isSampled() unsampled} span, whose methods do next to nothing.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class Span implements AutoCloseable {
+
+    /**
+     * The span handed out when a trace is not sampled.
+     */
+    static final Span NOOP = new Span();
+
+    private final String name;
+    private final long traceId;
+    private final long spanId;
+    private final long parentSpanId;
+    // The span that was current on the starting thread, restored and unlinked when this span ends
+    private Span previous;
+    // Started by LoggingUtils.logMethodEntry, so LoggingUtils.logMethodExit may end it
+    private final boolean methodFrame;
+    private final String threadName;
+    private final long startEpochMillis;
+    private final long startNanos;
+    private final TracingUtils.Tracer tracer;
+    private volatile long durationNanos = -1L;
+    private volatile String error;
+
+    private Span() {
+        this.name = "";
+        this.traceId = 0L;
+        this.spanId = 0L;
+        this.parentSpanId = 0L;
+        this.previous = null;
+        this.methodFrame = false;
+        this.threadName = "";
+        this.startEpochMillis = 0L;
+        this.startNanos = 0L;
+        this.tracer = null;
+    }
+
+    Span(TracingUtils.Tracer tracer, String name, long traceId, long spanId, long parentSpanId, Span previous,
+         boolean methodFrame) {
+        this.tracer = tracer;
+        this.name = name;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.previous = previous;
+        this.methodFrame = methodFrame;
+        this.threadName = Thread.currentThread().getName();
+        this.startEpochMillis = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Ends the span, records its duration and hands it to the exporter. Ending a span twice
+     * has no effect.
+     */
+    public void end() {
+        if (this == NOOP) {
+            TracingUtils.endUnsampled();
+            return;
+        }
+        if (durationNanos >= 0) {
+            return;
+        }
+        durationNanos = Math.max(0L, System.nanoTime() - startNanos);
+        TracingUtils.ended(tracer, this);
+    }
+
+    /**
+     * Ends the span.
+     */
+    @Override
+    public void close() {
+        end();
+    }
+
+    /**
+     * Marks the span as failed.
+     *
+     * @param throwable the failure
+     */
+    public void recordError(Throwable throwable) {
+        if (this != NOOP && throwable != null) {
+            error = throwable.getClass().getName();
+        }
+    }
+
+    /**
+     * Checks whether the span is recorded and exported.
+     *
+     * @return false for the spans of unsampled traces and while tracing is disabled
+     */
+    public boolean isSampled() {
+        return this != NOOP;
+    }
+
+    /**
+     * Gets the name.
+     *
+     * @return the span name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the id shared by all spans of the trace.
+     *
+     * @return the trace id, or 0 if the span is not sampled
+     */
+    public long getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * Gets the id of the span.
+     *
+     * @return the span id, or 0 if the span is not sampled
+     */
+    public long getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * Gets the id of the parent span.
+     *
+     * @return the parent span id, or 0 for the root span of a trace
+     */
+    public long getParentSpanId() {
+        return parentSpanId;
+    }
+
+    Span getPrevious() {
+        return previous;
+    }
+
+    void unlink() {
+        previous = null;
+    }
+
+    boolean isMethodFrame() {
+        return methodFrame;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Gets the name of the thread that started the span.
+     *
+     * @return the thread name
+     */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * Gets when the span started.
+     *
+     * @return the start time in epoch milliseconds
+     */
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    /**
+     * Gets the duration of the span.
+     *
+     * @return the duration in nanoseconds, or -1 while the span has not ended
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Gets the class of the failure recorded with {@link #recordError(Throwable)}.
+     *
+     * @return the exception class name, or null if the span did not fail
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Formats an id as 16 lowercase hex digits, as trace tools expect.
+     *
+     * @param id the trace or span id
+     * @return the hex id
+     */
+    public static String toHex(long id) {
+        String hex = Long.toHexString(id);
+        return hex.length() == 16 ? hex : "0".repeat(16 - hex.length()) + hex;
+    }
+
+    @Override
+    public String toString() {
+        if (this == NOOP) {
+            return "Span[unsampled]";
+        }
+        return "Span[" + name + " trace=" + toHex(traceId) + " span=" + toHex(spanId)
+                + (parentSpanId != 0L ? " parent=" + toHex(parentSpanId) : "")
+                + (durationNanos >= 0 ? " duration=" + durationNanos + "ns" : "")
+                + (error != null ? " error=" + error : "") + "]";
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.ashishnitw.observability;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives finished spans from the export thread of {@link TracingUtils}.
+ * Implementations are called from that one thread only.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public interface SpanExporter extends Closeable {
+
+    /**
+     * Exports a batch of finished spans, in the order they ended.
+     * The list is reused after this call returns; the spans themselves may be kept.
+     *
+     * @param spans the spans
+     * @throws IOException if the spans cannot be exported; they are then dropped
+     */
+    void export(List<Span> spans) throws IOException;
+
+    /**
+     * Releases the resources of the exporter when tracing is disabled.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
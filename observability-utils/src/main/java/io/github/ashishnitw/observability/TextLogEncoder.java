@@ -0,0 +1,66 @@
+package io.github.ashishnitw.observability;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Encodes log events as single lines of UTF-8 text, followed by the stack trace if there is
+ * an exception:
+ *
+ * <pre>
+ * 2024-05-01T12:30:00.250Z INFO  [main] com.example.OrderService - Order 42 placed {requestId=abc}
+ * </pre>
+ *
+ * The timestamp is UTC. The diagnostic context is appended in braces when it is not empty.
+ * Instances are not thread-safe; an {@link AsyncLogAppender} only calls its encoder from its
+ * writer thread.
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class TextLogEncoder implements LogEventEncoder {
+
+    private final LogEncoding encoding = new LogEncoding();
+
+    @Override
+    public void encode(LogEvent event, ByteBuffer out) {
+        LogEncoding.putTimestamp(out, event.getTimestampMillis());
+        out.put((byte) ' ');
+        String level = event.getLevel().name();
+        LogEncoding.putAscii(out, level);
+        for (int i = level.length(); i < 6; i++) {
+            out.put((byte) ' ');
+        }
+        out.put((byte) '[');
+        LogEncoding.putUtf8(out, String.valueOf(event.getThreadName()));
+        out.put((byte) ']');
+        out.put((byte) ' ');
+        LogEncoding.putUtf8(out, String.valueOf(event.getLoggerName()));
+        out.put((byte) ' ');
+        out.put((byte) '-');
+        out.put((byte) ' ');
+        LogEncoding.putUtf8(out, encoding.formatMessage(event));
+        Map<String, String> mdc = event.getMdc();
+        if (mdc != null && !mdc.isEmpty()) {
+            out.put((byte) ' ');
+            out.put((byte) '{');
+            boolean first = true;
+            for (Map.Entry<String, String> entry : mdc.entrySet()) {
+                if (!first) {
+                    out.put((byte) ',');
+                    out.put((byte) ' ');
+                }
+                first = false;
+                LogEncoding.putUtf8(out, String.valueOf(entry.getKey()));
+                out.put((byte) '=');
+                LogEncoding.putUtf8(out, String.valueOf(entry.getValue()));
+            }
+            out.put((byte) '}');
+        }
+        out.put((byte) '\n');
+        if (event.getThrowable() != null) {
+            LogEncoding.putUtf8(out, encoding.formatStackTrace(event.getThrowable()));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package io.github.ashishnitw.observability;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pre-resolved handle to a named timer.
+ * A timer keeps the count, total, maximum and latency distribution of the durations
+ * recorded into it. Durations are measured with {@link System#nanoTime()} and no shared
+ * state is touched between start and stop, so any number of threads can time the same
+ * operation concurrently.
+ *
+ * <pre>{@code
+ * TimerHandle timer = MetricsUtils.timer("db_query");
+ * long start = timer.start();
+ * try {
+ *     runQuery();
+ * } finally {
+ *     timer.stop(start);
+ * }
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class TimerHandle {
+
+    private final String name;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /**
+     * Creates a timer handle. Handles are created by {@link MetricsUtils#timer(String)}.
+     *
+     * @param name the name of the timer
+     */
+    TimerHandle(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the name of the timer.
+     *
+     * @return the timer name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Starts a timer sample.
+     * The returned token is passed to {@link #stop(long)}; starting a sample does not
+     * allocate or touch shared state.
+     *
+     * @return the start token
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Stops a timer sample and records its duration.
+     *
+     * @param startToken the token returned by {@link #start()}
+     * @return the elapsed time in nanoseconds
+     */
+    public long stop(long startToken) {
+        long duration = System.nanoTime() - startToken;
+        histogram.record(duration);
+        return duration;
+    }
+
+    /**
+     * Starts a timer sample that records its duration when closed.
+     * Use {@link #start()} and {@link #stop(long)} where allocation must be avoided
+     * entirely; the returned scope is usually, but not always, removed by escape analysis.
+     *
+     * @return the sample scope
+     */
+    public Sample time() {
+        return new Sample(this, System.nanoTime());
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param durationNanos the duration in nanoseconds
+     */
+    public void record(long durationNanos) {
+        histogram.record(durationNanos);
+    }
+
+    /**
+     * Records a duration in the specified unit.
+     *
+     * @param duration the duration
+     * @param unit the time unit of the duration
+     */
+    public void record(long duration, TimeUnit unit) {
+        histogram.record(unit.toNanos(duration));
+    }
+
+    /**
+     * Gets the number of recorded durations.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    /**
+     * Gets the total of all recorded durations.
+     *
+     * @param unit the time unit of the result
+     * @return the total time
+     */
+    public long getTotalTime(TimeUnit unit) {
+        return unit.convert(histogram.getSum(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the longest recorded duration.
+     *
+     * @param unit the time unit of the result
+     * @return the maximum time
+     */
+    public long getMax(TimeUnit unit) {
+        return unit.convert(histogram.getMax(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the mean of the recorded durations.
+     *
+     * @return the mean in nanoseconds
+     */
+    public double getMeanNanos() {
+        return histogram.getMean();
+    }
+
+    /**
+     * Gets the duration at a percentile, for example 50, 90, 99 or 99.9.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @param unit the time unit of the result
+     * @return the duration at the percentile
+     */
+    public long getPercentile(double percentile, TimeUnit unit) {
+        return unit.convert(histogram.getValueAtPercentile(percentile), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the latency distribution of this timer.
+     *
+     * @return the histogram
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Resets the timer.
+     */
+    public void reset() {
+        histogram.reset();
+    }
+
+    /**
+     * A running timer sample that records its duration when closed.
+     */
+    public static final class Sample implements AutoCloseable {
+
+        private final TimerHandle timer;
+        private final long startNanos;
+
+        private Sample(TimerHandle timer, long startNanos) {
+            this.timer = timer;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Stops the sample and records its duration.
+         */
+        @Override
+        public void close() {
+            timer.stop(startNanos);
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package io.github.ashishnitw.observability;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Utility class for lightweight in-process tracing.
+ * A {@link Span} is a named, timed unit of work; spans started while another span is
+ * current on the same thread become its children, so {@link #startSpan(String)},
+ * {@link LoggingUtils#logMethodEntry(String)} / {@link LoggingUtils#logMethodExit(String)}
+ * and {@link MetricsUtils#measureOperation(String, MetricsUtils.MeasurableOperation)} calls
+ * nest into one trace. The current span is kept per thread, which also holds for virtual
+ * threads; work handed to another thread is linked with {@link #startSpan(String, Span)}.
+ * <p>
+ * A method that throws usually skips its {@code logMethodExit}. Its span is then ended by
+ * the exit of an enclosing method, which ends the nearest open span of that method name,
+ * or by the end of an enclosing span; exits that match no open method are ignored. When an
+ * outermost method may throw, start its span with try-with-resources instead, so the
+ * thread cannot be left inside a trace. As a last resort, a thread holding more than
+ * 256 open spans drops them and starts over.
+ * <p>
+ * Tracing is off until {@link #enableTracing(double, int, SpanExporter)} is called.
+ * Sampling is decided once per trace, at its root span: the spans of an unsampled trace,
+ * and all spans while tracing is off, are one shared span that records nothing, so they
+ * allocate nothing and cost a thread-local lookup at most. Finished spans of sampled
+ * traces go to a bounded buffer, from which a daemon thread hands batches to the
+ * {@link SpanExporter}; when the buffer is full, spans are dropped and counted by the
+ * {@code spans_dropped} counter.
+ *
+ * <pre>{@code
+ * TracingUtils.enableTracing(0.1, 4096, new FileSpanExporter(Path.of("spans.jsonl")));
+ * try (Span span = TracingUtils.startSpan("checkout")) {
+ *     MetricsUtils.measureOperation("charge_card", () -> gateway.charge(order));
+ * }
+ * }</pre>
+ *
+ * @author ashishnitw
+ * @version 1.0.1
+ * @since 1.0.1
+ */
+public final class TracingUtils {
+
+    private static final Logger logger = LoggerFactory.getLogger(TracingUtils.class);
+    private static final ThreadLocal<Context> CONTEXT = ThreadLocal.withInitial(Context::new);
+    static final int MAX_DEPTH = 256;
+    // Null while tracing is disabled
+    private static volatile Tracer tracer;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private TracingUtils() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+
+    /**
+     * Enables tracing, replacing any previous configuration. The previous exporter, if any,
+     * receives the spans still buffered and is closed.
+     *
+     * @param sampleRate the share of traces recorded, between 0 and 1
+     * @param bufferCapacity the number of finished spans buffered for the exporter
+     * @param exporter receives the finished spans
+     */
+    public static void enableTracing(double sampleRate, int bufferCapacity, SpanExporter exporter) {
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1");
+        }
+        if (bufferCapacity < 1) {
+            throw new IllegalArgumentException("bufferCapacity must be positive");
+        }
+        if (exporter == null) {
+            throw new IllegalArgumentException("exporter cannot be null");
+        }
+        Tracer previous;
+        synchronized (TracingUtils.class) {
+            previous = tracer;
+            tracer = new Tracer(sampleRate, bufferCapacity, exporter);
+        }
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * Disables tracing. The spans still buffered are exported and the exporter is closed.
+     */
+    public static void disableTracing() {
+        Tracer previous;
+        synchronized (TracingUtils.class) {
+            previous = tracer;
+            tracer = null;
+        }
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * Checks whether tracing is enabled.
+     *
+     * @return true between {@link #enableTracing(double, int, SpanExporter)} and {@link #disableTracing()}
+     */
+    public static boolean isTracingEnabled() {
+        return tracer != null;
+    }
+
+    /**
+     * Starts a span as a child of the current span of this thread, or as the root of a new
+     * trace if there is none, and makes it the current span until it ends.
+     *
+     * @param name the span name
+     * @return the span, unsampled if the trace is not sampled or tracing is disabled
+     */
+    public static Span startSpan(String name) {
+        Tracer t = tracer;
+        if (t == null) {
+            return Span.NOOP;
+        }
+        Context context = context(t);
+        return start(t, context, name, context.unsampledDepth > 0 ? Span.NOOP : context.current, false);
+    }
+
+    /**
+     * Starts a span with an explicit parent, typically a span of another thread that handed
+     * work to this one, and makes it the current span of this thread until it ends.
+     *
+     * @param name the span name
+     * @param parent the parent span, or null to start a new trace
+     * @return the span, unsampled if the trace is not sampled or tracing is disabled
+     */
+    public static Span startSpan(String name, Span parent) {
+        Tracer t = tracer;
+        if (t == null) {
+            return Span.NOOP;
+        }
+        return start(t, context(t), name, parent, false);
+    }
+
+    private static Span start(Tracer t, Context context, String name, Span parent, boolean methodFrame) {
+        if (parent == Span.NOOP || (parent == null && !t.sample())) {
+            context.pushUnsampled(methodFrame ? name : null);
+            return Span.NOOP;
+        }
+        long traceId = parent == null ? randomId() : parent.getTraceId();
+        long parentSpanId = parent == null ? 0L : parent.getSpanId();
+        if (context.depth >= MAX_DEPTH) {
+            logger.debug("Dropping {} open spans of thread {}", context.depth, Thread.currentThread().getName());
+            context.current = null;
+            context.depth = 0;
+        }
+        Span span = new Span(t, name, traceId, randomId(), parentSpanId, context.current, methodFrame);
+        context.current = span;
+        context.depth++;
+        return span;
+    }
+
+    /**
+     * Gets the current span of this thread.
+     *
+     * @return the current span, unsampled if there is none or it is not sampled
+     */
+    public static Span currentSpan() {
+        Tracer t = tracer;
+        if (t == null) {
+            return Span.NOOP;
+        }
+        Context context = context(t);
+        return context.unsampledDepth > 0 || context.current == null ? Span.NOOP : context.current;
+    }
+
+    /**
+     * Waits until every span that ended before this call has been handed to the exporter.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public static void flush() throws InterruptedException {
+        Tracer t = tracer;
+        if (t != null) {
+            t.flush();
+        }
+    }
+
+    /**
+     * Gets the number of finished spans dropped because the buffer was full, since tracing
+     * was last enabled.
+     *
+     * @return the dropped span count
+     */
+    public static long getDroppedSpanCount() {
+        Tracer t = tracer;
+        return t != null ? t.dropped.sum() : 0L;
+    }
+
+    /**
+     * Starts a span for {@link LoggingUtils#logMethodEntry(String)}.
+     *
+     * @param methodName the name of the method
+     */
+    static void onMethodEntry(String methodName) {
+        Tracer t = tracer;
+        if (t == null || methodName == null) {
+            return;
+        }
+        Context context = context(t);
+        start(t, context, methodName, context.unsampledDepth > 0 ? Span.NOOP : context.current, true);
+    }
+
+    /**
+     * Ends the nearest open span of {@link LoggingUtils#logMethodEntry(String)} for the method,
+     * together with the spans opened after it and not ended, such as those of methods that
+     * threw. Does nothing if the method has no open span.
+     *
+     * @param methodName the name of the method
+     */
+    static void onMethodExit(String methodName) {
+        Tracer t = tracer;
+        if (t == null || methodName == null) {
+            return;
+        }
+        Context context = context(t);
+        if (context.unsampledDepth > 0 && context.popUnsampled(methodName)) {
+            return;
+        }
+        for (Span s = context.current; s != null; s = s.getPrevious()) {
+            if (s.isMethodFrame() && s.getName().equals(methodName)) {
+                // Unsampled frames can only have been opened after it
+                context.truncateUnsampled(0);
+                s.end();
+                return;
+            }
+        }
+    }
+
+    static void endUnsampled() {
+        Tracer t = tracer;
+        if (t == null) {
+            return;
+        }
+        Context context = CONTEXT.get();
+        if (context.tracer == t && context.unsampledDepth > 0) {
+            context.popUnsampled(null);
+        }
+    }
+
+    static void ended(Tracer t, Span span) {
+        Context context = CONTEXT.get();
+        if (context.tracer == t) {
+            // Restore what was current before the span, also when inner spans were never ended
+            int frames = 0;
+            for (Span s = context.current; s != null; s = s.getPrevious()) {
+                frames++;
+                if (s == span) {
+                    context.current = span.getPrevious();
+                    context.depth -= frames;
+                    // Exported spans must not keep the chain of the thread alive
+                    span.unlink();
+                    break;
+                }
+            }
+        }
+        t.offer(span);
+    }
+
+    // The context of a thread is reset when tracing is reconfigured
+    private static Context context(Tracer t) {
+        Context context = CONTEXT.get();
+        if (context.tracer != t) {
+            context.tracer = t;
+            context.current = null;
+            context.depth = 0;
+            context.truncateUnsampled(0);
+        }
+        return context;
+    }
+
+    private static long randomId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0L);
+        return id;
+    }
+
+    /**
+     * The tracing state of one thread.
+     */
+    private static final class Context {
+
+        private Tracer tracer;
+        private Span current;
+        // Number of spans in the chain from current
+        private int depth;
+        // Frames of an unsampled trace, innermost last: the method name of a method frame,
+        // or null for a span, which is the shared unsampled span and cannot identify itself
+        private String[] unsampled = new String[8];
+        private int unsampledDepth;
+
+        void pushUnsampled(String methodName) {
+            if (unsampledDepth == unsampled.length) {
+                if (unsampledDepth >= MAX_DEPTH) {
+                    logger.debug("Dropping {} open unsampled spans of thread {}", unsampledDepth,
+                            Thread.currentThread().getName());
+                    truncateUnsampled(0);
+                } else {
+                    unsampled = Arrays.copyOf(unsampled, unsampled.length * 2);
+                }
+            }
+            unsampled[unsampledDepth++] = methodName;
+        }
+
+        // Pops the innermost frame of the method, or of a span if null, and the frames above it
+        boolean popUnsampled(String methodName) {
+            for (int i = unsampledDepth - 1; i >= 0; i--) {
+                if (methodName == null ? unsampled[i] == null : methodName.equals(unsampled[i])) {
+                    truncateUnsampled(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void truncateUnsampled(int depth) {
+            Arrays.fill(unsampled, depth, unsampledDepth, null);
+            unsampledDepth = depth;
+        }
+    }
+
+    /**
+     * One configuration of {@link #enableTracing(double, int, SpanExporter)}: the sampler,
+     * the buffer of finished spans and the export thread.
+     */
+    static final class Tracer {
+
+        private static final int MAX_BATCH = 512;
+        private static final long POLL_MILLIS = 100L;
+
+        private final double sampleRate;
+        private final ArrayBlockingQueue<Span> buffer;
+        private final SpanExporter exporter;
+        private final Thread thread;
+        private final LongAdder dropped = new LongAdder();
+        private final CounterHandle droppedCounter = MetricsUtils.internalCounter("spans_dropped");
+        private final AtomicLong accepted = new AtomicLong();
+        private volatile long processed;
+        private volatile boolean running = true;
+
+        Tracer(double sampleRate, int bufferCapacity, SpanExporter exporter) {
+            this.sampleRate = sampleRate;
+            this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+            this.exporter = exporter;
+            this.thread = new Thread(this::export, "metrics-span-exporter");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        boolean sample() {
+            return sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+        }
+
+        void offer(Span span) {
+            if (running && buffer.offer(span)) {
+                accepted.incrementAndGet();
+            } else {
+                dropped.increment();
+                droppedCounter.increment();
+            }
+        }
+
+        void flush() throws InterruptedException {
+            long target = accepted.get();
+            while (processed < target && thread.isAlive()) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+
+        void shutdown() {
+            running = false;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void export() {
+            List<Span> batch = new ArrayList<>(MAX_BATCH);
+            long count = 0;
+            while (running || !buffer.isEmpty()) {
+                try {
+                    Span first = buffer.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    buffer.drainTo(batch, MAX_BATCH - 1);
+                    exporter.export(batch);
+                } catch (InterruptedException e) {
+                    break;
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Failed to export {} spans", batch.size(), e);
+                }
+                count += batch.size();
+                processed = count;
+                batch.clear();
+            }
+            try {
+                exporter.close();
+            } catch (IOException | RuntimeException e) {
+                logger.error("Failed to close span exporter", e);
+            }
+        }
+    }
+}
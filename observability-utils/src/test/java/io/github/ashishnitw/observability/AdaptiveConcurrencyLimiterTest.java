@@ -0,0 +1,210 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for AdaptiveConcurrencyLimiter.
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void testTryAcquire_RejectsBeyondLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("limiter_reject", 2, 1, 10);
+        long first = limiter.tryAcquire();
+        long second = limiter.tryAcquire();
+        assertNotEquals(AdaptiveConcurrencyLimiter.REJECTED, first);
+        assertNotEquals(AdaptiveConcurrencyLimiter.REJECTED, second);
+        assertEquals(AdaptiveConcurrencyLimiter.REJECTED, limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(1, limiter.getRejectedCount());
+
+        limiter.release(first);
+        limiter.releaseIgnored(second);
+        limiter.release(AdaptiveConcurrencyLimiter.REJECTED);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void testAcquire_WaitsForReleasedPermit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("limiter_wait", 1, 1, 10);
+        long held = limiter.tryAcquire();
+        CountDownLatch waiting = new CountDownLatch(1);
+        AtomicLong acquired = new AtomicLong(AdaptiveConcurrencyLimiter.REJECTED);
+        Thread waiter = new Thread(() -> {
+            waiting.countDown();
+            try {
+                acquired.set(limiter.acquire(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        waiting.await();
+        limiter.release(held);
+        waiter.join(5_000);
+        assertNotEquals(AdaptiveConcurrencyLimiter.REJECTED, acquired.get());
+        assertEquals(1, limiter.getInFlight());
+
+        assertEquals(AdaptiveConcurrencyLimiter.REJECTED, limiter.acquire(20, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testExecute_RecordsOperationAndRejects() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("limiter_execute", 1, 1, 10);
+        assertEquals("ok", limiter.execute(() -> "ok"));
+        assertEquals(1, MetricsUtils.timer("limiter_execute").getCount());
+        assertThrows(IllegalStateException.class, () -> limiter.execute(() -> {
+            throw new IllegalStateException("failed");
+        }));
+        assertEquals(0, limiter.getInFlight());
+
+        long held = limiter.tryAcquire();
+        assertThrows(RejectedExecutionException.class, () -> limiter.execute(() -> "rejected"));
+        limiter.release(held);
+    }
+
+    @Test
+    void testReleaseDropped_ShrinksLimitAfterProbe() {
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("limiter_drop", 100, 1, 200, clock::get);
+        assertEquals(AdaptiveConcurrencyLimiter.DEFAULT_PROBE_LIMIT, limiter.getLimit());
+        for (int window = 0; window < 2; window++) {
+            for (int i = 0; i < AdaptiveConcurrencyLimiter.MIN_WINDOW_SAMPLES; i++) {
+                long token = limiter.tryAcquire();
+                clock.addAndGet(20 * MILLIS);
+                limiter.release(token);
+            }
+        }
+        assertEquals(100, limiter.getLimit());
+
+        long token = limiter.tryAcquire();
+        clock.addAndGet(200 * MILLIS);
+        limiter.releaseDropped(token);
+        assertEquals(90, limiter.getLimit());
+    }
+
+    @Test
+    void testLimit_IdleServiceDoesNotGrow() {
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("limiter_idle", 20, 1, 200, clock::get);
+        for (int i = 0; i < 10_000; i++) {
+            long token = limiter.tryAcquire();
+            clock.addAndGet(MILLIS);
+            limiter.release(token);
+        }
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    void testSimulation_SlowBackendLimitsConcurrencyAndRecovers() {
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("limiter_simulation", 50, 1, 500, clock::get);
+        SyntheticBackend backend = new SyntheticBackend(10, 5 * MILLIS);
+
+        // Clients offer 20 calls per millisecond, ten times what 10 workers serve
+        Stats overloaded = simulate(limiter, backend, clock, 20, 30_000);
+        assertTrue(limiter.getLimit() <= 40, "limit " + limiter.getLimit());
+        assertTrue(limiter.getLimit() >= 5, "limit " + limiter.getLimit());
+        assertTrue(overloaded.rejected > 0);
+        // Without the limiter about 100 calls would queue, at 50 ms each
+        assertTrue(overloaded.averageLatencyNanos() < 20 * MILLIS, overloaded.averageLatencyNanos() / MILLIS + " ms");
+
+        // The backend scales out; the limit follows
+        backend.workers = 80;
+        simulate(limiter, backend, clock, 20, 30_000);
+        assertTrue(limiter.getLimit() >= 60, "limit " + limiter.getLimit());
+    }
+
+    @Test
+    void testSimulation_RejectionRateAcrossProbeCycle() {
+        // Ten workers at 5 ms serve 2 calls per millisecond of the 3 offered, so a third is rejected anyway
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrencyLimiter probing = new AdaptiveConcurrencyLimiter("limiter_probe_cycle", 20, 1, 500,
+                20, AdaptiveConcurrencyLimiter.DEFAULT_PROBE_LIMIT, clock::get);
+        SyntheticBackend backend = new SyntheticBackend(10, 5 * MILLIS);
+        simulate(probing, backend, clock, 3, 10_000);
+        // Three probe cycles of 15 to 25 windows of 100 ms, each with two windows held at the probe limit
+        Stats cycles = simulate(probing, backend, clock, 3, 6_000);
+        double probingRate = cycles.rejected / (3.0 * 6_000);
+
+        clock.set(0);
+        AdaptiveConcurrencyLimiter steady = new AdaptiveConcurrencyLimiter("limiter_no_probe", 20, 1, 500,
+                AdaptiveConcurrencyLimiter.NO_PROBE, AdaptiveConcurrencyLimiter.DEFAULT_PROBE_LIMIT, clock::get);
+        assertEquals(20, steady.getLimit());
+        simulate(steady, backend, clock, 3, 10_000);
+        double steadyRate = simulate(steady, backend, clock, 3, 6_000).rejected / (3.0 * 6_000);
+
+        assertTrue(steadyRate < 0.5, "steady rejection rate " + steadyRate);
+        // A probe can at most reject every call of its two windows out of at least fifteen
+        assertTrue(probingRate - steadyRate < 2.0 / 15, "probing " + probingRate + ", steady " + steadyRate);
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdaptiveConcurrencyLimiter("limiter_bad_probe", 20, 1, 500, -1, 4, clock::get));
+    }
+
+    private static Stats simulate(AdaptiveConcurrencyLimiter limiter, SyntheticBackend backend, AtomicLong clock,
+                                  int callsPerMillisecond, int millis) {
+        Stats stats = new Stats();
+        PriorityQueue<long[]> completions = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        long end = clock.get() + millis * MILLIS;
+        while (clock.get() < end) {
+            long now = clock.addAndGet(MILLIS);
+            while (!completions.isEmpty() && completions.peek()[0] <= now) {
+                long[] call = completions.poll();
+                limiter.release(call[1]);
+                stats.completed++;
+                stats.latencyNanos += now - call[1];
+            }
+            for (int i = 0; i < callsPerMillisecond; i++) {
+                long token = limiter.tryAcquire();
+                if (token == AdaptiveConcurrencyLimiter.REJECTED) {
+                    stats.rejected++;
+                } else {
+                    completions.add(new long[] {now + backend.latency(limiter.getInFlight()), token});
+                }
+            }
+        }
+        while (!completions.isEmpty()) {
+            limiter.releaseIgnored(completions.poll()[1]);
+        }
+        return stats;
+    }
+
+    /**
+     * Backend whose calls queue once all workers are busy.
+     */
+    private static final class SyntheticBackend {
+
+        private final long serviceNanos;
+        private int workers;
+
+        SyntheticBackend(int workers, long serviceNanos) {
+            this.workers = workers;
+            this.serviceNanos = serviceNanos;
+        }
+
+        long latency(int inFlight) {
+            return serviceNanos * Math.max(1, (inFlight + workers - 1) / workers);
+        }
+    }
+
+    private static final class Stats {
+
+        private long completed;
+        private long rejected;
+        private long latencyNanos;
+
+        long averageLatencyNanos() {
+            return completed == 0 ? 0 : latencyNanos / completed;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.Level;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for AsyncLogAppender.
+ */
+class AsyncLogAppenderTest {
+
+    @Test
+    void testAppend_WritesLinesInOrder() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("async-log", ".log");
+        try (AsyncLogAppender appender = AsyncLogAppender.open(file)) {
+            for (int i = 0; i < 100; i++) {
+                assertTrue(appender.append(Level.INFO, "orders", "Order {} placed", new Object[]{i}, null, null));
+            }
+            appender.flush();
+
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(100, lines.size());
+            for (int i = 0; i < 100; i++) {
+                assertTrue(lines.get(i).endsWith("INFO  [" + Thread.currentThread().getName()
+                        + "] orders - Order " + i + " placed"), lines.get(i));
+            }
+            assertEquals(Files.size(file), appender.getWrittenBytes());
+            assertEquals(0, appender.getBacklog());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testAppend_AppendsToExistingFile() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("async-log", ".log");
+        try {
+            Files.writeString(file, "existing\n");
+            try (AsyncLogAppender appender = AsyncLogAppender.open(file)) {
+                appender.append(Level.WARN, "a", "new", null, null, null);
+                appender.flush();
+            }
+
+            List<String> lines = Files.readAllLines(file);
+            assertEquals("existing", lines.get(0));
+            assertTrue(lines.get(1).endsWith("- new"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testFlushInterval_WritesWithoutExplicitFlush() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("async-log", ".log");
+        try (AsyncLogAppender appender = AsyncLogAppender.open(file, 16, AsyncLogAppender.OverflowPolicy.DROP,
+                new TextLogEncoder(), 64 * 1024, 20, TimeUnit.MILLISECONDS)) {
+            appender.append(Level.INFO, "a", "timed", null, null, null);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (Files.size(file) == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(Files.readString(file).contains("timed"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testBatchSize_SmallBufferWritesEveryEvent() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("async-log", ".log");
+        try (AsyncLogAppender appender = AsyncLogAppender.open(file, 16, AsyncLogAppender.OverflowPolicy.BLOCK,
+                new TextLogEncoder(), 128, 1, TimeUnit.HOURS)) {
+            String big = "x".repeat(1000);
+            for (int i = 0; i < 50; i++) {
+                appender.append(Level.INFO, "a", "{} {}", new Object[]{i, big}, null, null);
+            }
+            appender.flush();
+
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(50, lines.size());
+            assertTrue(lines.get(49).endsWith("- 49 " + big));
+            assertEquals(0, appender.getDroppedCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testDropPolicy_CountsEventsWhenFull() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("async-log", ".log");
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingEncoder encoder = new BlockingEncoder(release);
+        long droppedBefore = MetricsUtils.getCounterValue("log_events_dropped");
+        try (AsyncLogAppender appender = AsyncLogAppender.open(file, 2, AsyncLogAppender.OverflowPolicy.DROP,
+                encoder, 1024, 1, TimeUnit.MILLISECONDS)) {
+            // The writer holds the first slot until the encoder is released
+            assertTrue(appender.append(Level.INFO, "a", "1", null, null, null));
+            assertTrue(appender.append(Level.INFO, "a", "2", null, null, null));
+            assertFalse(appender.append(Level.INFO, "a", "3", null, null, null));
+
+            assertEquals(1, appender.getDroppedCount());
+            assertEquals(droppedBefore + 1, MetricsUtils.getCounterValue("log_events_dropped"));
+            release.countDown();
+            appender.flush();
+            assertEquals(List.of("1", "2"), Files.readAllLines(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testEncoderError_WriterKeepsRunning() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("async-log", ".log");
+        LogEventEncoder encoder = (event, out) -> {
+            if (event.getMessage().equals("boom")) {
+                throw new StackOverflowError();
+            }
+            out.put((event.getMessage() + "\n").getBytes(StandardCharsets.UTF_8));
+        };
+        try (AsyncLogAppender appender = AsyncLogAppender.open(file, 2, AsyncLogAppender.OverflowPolicy.BLOCK,
+                encoder, 1024, 1, TimeUnit.MILLISECONDS)) {
+            appender.append(Level.INFO, "a", "1", null, null, null);
+            appender.append(Level.INFO, "a", "boom", null, null, null);
+            for (int i = 2; i <= 5; i++) {
+                assertTrue(appender.append(Level.INFO, "a", String.valueOf(i), null, null, null));
+            }
+            appender.flush();
+
+            assertEquals(List.of("1", "2", "3", "4", "5"), Files.readAllLines(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testWriteError_CountsBatchAsDropped() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("async-log", ".log");
+        // A channel not opened for writing fails every batch
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             AsyncLogAppender appender = AsyncLogAppender.open(channel, 16, AsyncLogAppender.OverflowPolicy.DROP,
+                     new TextLogEncoder(), 1024, 1, TimeUnit.HOURS)) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(appender.append(Level.INFO, "a", "lost", null, null, null));
+            }
+            appender.flush();
+
+            assertEquals(3, appender.getDroppedCount());
+            assertEquals(0, appender.getWrittenBytes());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testBlockPolicy_LosesNothingUnderContention() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("async-log", ".log");
+        try (AsyncLogAppender appender = AsyncLogAppender.open(file, 8, AsyncLogAppender.OverflowPolicy.BLOCK,
+                new TextLogEncoder(), 4096, 10, TimeUnit.MILLISECONDS)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        appender.append(Level.INFO, "a", "event {}", new Object[]{i}, null, null);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            appender.flush();
+
+            assertEquals(8000, Files.readAllLines(file).size());
+            assertEquals(0, appender.getDroppedCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testOversizedEvent_WrittenWhole() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("async-log", ".log");
+        try (AsyncLogAppender appender = AsyncLogAppender.open(file, 16, AsyncLogAppender.OverflowPolicy.DROP,
+                new TextLogEncoder(), 64, 1, TimeUnit.HOURS)) {
+            String big = "y".repeat(10_000);
+            appender.append(Level.INFO, "a", "small", null, null, null);
+            appender.append(Level.INFO, "a", big, null, null, null);
+            appender.flush();
+
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(2, lines.size());
+            assertTrue(lines.get(1).endsWith(big));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testClose_DrainsAndDropsLaterEvents() throws IOException {
+        Path file = Files.createTempFile("async-log", ".log");
+        try {
+            AsyncLogAppender appender = AsyncLogAppender.open(file, 1024, AsyncLogAppender.OverflowPolicy.DROP,
+                    new TextLogEncoder(), 64 * 1024, 1, TimeUnit.HOURS);
+            for (int i = 0; i < 500; i++) {
+                appender.append(Level.DEBUG, "a", "before close", null, null, null);
+            }
+            appender.close();
+            appender.close();
+
+            assertEquals(500, Files.readAllLines(file).size());
+            assertFalse(appender.append(Level.DEBUG, "a", "after close", null, null, null));
+            assertEquals(1, appender.getDroppedCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testClose_ConcurrentWithLoggersWritesEveryAcceptedEvent() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("async-log", ".log");
+        try {
+            AsyncLogAppender appender = AsyncLogAppender.open(file, 64, AsyncLogAppender.OverflowPolicy.BLOCK,
+                    new TextLogEncoder(), 4096, 10, TimeUnit.MILLISECONDS);
+            LongAdder accepted = new LongAdder();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        if (appender.append(Level.INFO, "a", "event {}", new Object[]{i}, null, null)) {
+                            accepted.increment();
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            Thread.sleep(5);
+            appender.close();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(accepted.sum(), Files.readAllLines(file).size());
+            assertEquals(8000, accepted.sum() + appender.getDroppedCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testOpen_InvalidCapacity() throws IOException {
+        Path file = Files.createTempFile("async-log", ".log");
+        try {
+            assertThrows(IllegalArgumentException.class, () -> AsyncLogAppender.open(file, 100,
+                    AsyncLogAppender.OverflowPolicy.DROP, new TextLogEncoder(), 1024, 1, TimeUnit.SECONDS));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Encoder that writes the bare message and waits for a latch on the first event.
+     */
+    private static final class BlockingEncoder implements LogEventEncoder {
+
+        private final CountDownLatch release;
+
+        BlockingEncoder(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void encode(LogEvent event, ByteBuffer out) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            out.put((event.getMessage() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for AsyncLoggingServiceProvider.
+ */
+class AsyncLoggingServiceProviderTest {
+
+    private static AsyncLoggingServiceProvider initialize(Path file, String level) {
+        System.setProperty("observability.logging.file", file.toString());
+        System.setProperty("observability.logging.level", level);
+        try {
+            AsyncLoggingServiceProvider provider = new AsyncLoggingServiceProvider();
+            provider.initialize();
+            return provider;
+        } finally {
+            System.clearProperty("observability.logging.file");
+            System.clearProperty("observability.logging.level");
+        }
+    }
+
+    @Test
+    void testLogger_WritesThroughAppender() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("async-provider", ".log");
+        AsyncLoggingServiceProvider provider = initialize(file, "info");
+        try {
+            Logger logger = provider.getLoggerFactory().getLogger("orders");
+            assertSame(logger, provider.getLoggerFactory().getLogger("orders"));
+            assertEquals("orders", logger.getName());
+
+            logger.info("Order {} placed for {}", 42, "alice");
+            logger.debug("not logged");
+            logger.error("Order {} failed", 43, new IllegalStateException("boom"));
+            provider.getAppender().flush();
+
+            List<String> lines = Files.readAllLines(file);
+            assertTrue(lines.get(0).endsWith("INFO  [" + Thread.currentThread().getName()
+                    + "] orders - Order 42 placed for alice"), lines.get(0));
+            assertTrue(lines.get(1).endsWith("ERROR [" + Thread.currentThread().getName()
+                    + "] orders - Order 43 failed"), lines.get(1));
+            assertEquals("java.lang.IllegalStateException: boom", lines.get(2));
+            assertFalse(Files.readString(file).contains("not logged"));
+        } finally {
+            provider.getAppender().close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testLogger_LevelThreshold() throws IOException {
+        Path file = Files.createTempFile("async-provider", ".log");
+        AsyncLoggingServiceProvider provider = initialize(file, "WARN");
+        try {
+            Logger logger = provider.getLoggerFactory().getLogger("a");
+            assertFalse(logger.isTraceEnabled());
+            assertFalse(logger.isDebugEnabled());
+            assertFalse(logger.isInfoEnabled());
+            assertTrue(logger.isWarnEnabled());
+            assertTrue(logger.isErrorEnabled());
+        } finally {
+            provider.getAppender().close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testLogger_CapturesMdc() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("async-provider", ".log");
+        AsyncLoggingServiceProvider provider = initialize(file, "INFO");
+        try {
+            Logger logger = provider.getLoggerFactory().getLogger("a");
+            provider.getMDCAdapter().put("requestId", "r-1");
+            logger.info("with context");
+            provider.getMDCAdapter().clear();
+            logger.info("without context");
+            provider.getAppender().flush();
+
+            List<String> lines = Files.readAllLines(file);
+            assertTrue(lines.get(0).endsWith("- with context {requestId=r-1}"), lines.get(0));
+            assertTrue(lines.get(1).endsWith("- without context"), lines.get(1));
+        } finally {
+            provider.getAppender().close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testFormatJson_WritesJsonLines() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("async-provider", ".log");
+        System.setProperty("observability.logging.format", "json");
+        AsyncLoggingServiceProvider provider;
+        try {
+            provider = initialize(file, "INFO");
+        } finally {
+            System.clearProperty("observability.logging.format");
+        }
+        try {
+            provider.getLoggerFactory().getLogger("orders").warn("Order {} is late", 7);
+            provider.getAppender().flush();
+
+            String line = Files.readAllLines(file).get(0);
+            assertTrue(line.startsWith("{\"timestamp\":\""), line);
+            assertTrue(line.endsWith(",\"level\":\"WARN\",\"logger\":\"orders\",\"thread\":\""
+                    + Thread.currentThread().getName() + "\",\"message\":\"Order 7 is late\"}"), line);
+        } finally {
+            provider.getAppender().close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testProvider_ApiVersionAndMarkers() throws IOException {
+        Path file = Files.createTempFile("async-provider", ".log");
+        AsyncLoggingServiceProvider provider = initialize(file, "INFO");
+        try {
+            assertEquals("2.0.99", provider.getRequestedApiVersion());
+            assertEquals("AUDIT", provider.getMarkerFactory().getMarker("AUDIT").getName());
+        } finally {
+            provider.getAppender().close();
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for AsyncMetricsIngestor.
+ */
+class AsyncMetricsIngestorTest {
+
+    @Test
+    void testRecord_FoldsIntoCountersAndTimers() throws InterruptedException {
+        MetricsUtils.resetCounter("ingest_requests");
+        MetricsUtils.timer("ingest_latency").reset();
+        try (AsyncMetricsIngestor ingestor = AsyncMetricsIngestor.start(1024, AsyncMetricsIngestor.OverflowPolicy.BLOCK)) {
+            int requests = ingestor.registerCounter("ingest_requests");
+            int latency = ingestor.registerTimer("ingest_latency");
+            assertEquals(requests, ingestor.registerCounter("ingest_requests"));
+
+            ingestor.record(requests, 1);
+            ingestor.record(requests, 4);
+            ingestor.record(latency, TimeUnit.MILLISECONDS.toNanos(3));
+            ingestor.flush();
+
+            assertEquals(5, MetricsUtils.getCounterValue("ingest_requests"));
+            assertEquals(1, MetricsUtils.timer("ingest_latency").getCount());
+            assertEquals(3, MetricsUtils.timer("ingest_latency").getMax(TimeUnit.MILLISECONDS));
+            assertEquals(0, ingestor.getBacklog());
+        }
+    }
+
+    @Test
+    void testRecord_AfterIdlePeriodIsFolded() throws InterruptedException {
+        MetricsUtils.resetCounter("ingest_after_idle");
+        try (AsyncMetricsIngestor ingestor = AsyncMetricsIngestor.start(64, AsyncMetricsIngestor.OverflowPolicy.DROP)) {
+            int id = ingestor.registerCounter("ingest_after_idle");
+            // Long enough for the aggregator to back off to its longest park
+            Thread.sleep(100);
+            ingestor.record(id, 1);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            while (MetricsUtils.getCounterValue("ingest_after_idle") == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(1, MetricsUtils.getCounterValue("ingest_after_idle"));
+
+            Thread.sleep(100);
+            ingestor.record(id, 1);
+            ingestor.flush();
+            assertEquals(2, MetricsUtils.getCounterValue("ingest_after_idle"));
+        }
+    }
+
+    @Test
+    void testRecord_UnknownMetricId() {
+        try (AsyncMetricsIngestor ingestor = AsyncMetricsIngestor.start(16, AsyncMetricsIngestor.OverflowPolicy.DROP)) {
+            assertThrows(IllegalArgumentException.class, () -> ingestor.record(5, 1));
+        }
+    }
+
+    @Test
+    void testStart_InvalidCapacity() {
+        assertThrows(IllegalArgumentException.class,
+                () -> AsyncMetricsIngestor.start(100, AsyncMetricsIngestor.OverflowPolicy.DROP));
+    }
+
+    @Test
+    void testManyProducers_BlockPolicyLosesNothing() throws InterruptedException {
+        MetricsUtils.resetCounter("ingest_block");
+        try (AsyncMetricsIngestor ingestor = AsyncMetricsIngestor.start(64, AsyncMetricsIngestor.OverflowPolicy.BLOCK)) {
+            int id = ingestor.registerCounter("ingest_block");
+            runProducers(ingestor, id, 8, 50_000);
+            ingestor.flush();
+
+            assertEquals(400_000, MetricsUtils.getCounterValue("ingest_block"));
+            assertEquals(0, ingestor.getDroppedCount());
+        }
+    }
+
+    @Test
+    void testManyProducers_DropPolicyCountsDrops() throws InterruptedException {
+        MetricsUtils.resetCounter("ingest_drop");
+        try (AsyncMetricsIngestor ingestor = AsyncMetricsIngestor.start(16, AsyncMetricsIngestor.OverflowPolicy.DROP)) {
+            int id = ingestor.registerCounter("ingest_drop");
+            runProducers(ingestor, id, 8, 50_000);
+            ingestor.flush();
+
+            assertEquals(400_000, MetricsUtils.getCounterValue("ingest_drop") + ingestor.getDroppedCount());
+        }
+    }
+
+    @Test
+    void testClose_DrainsAndDropsLaterEvents() {
+        MetricsUtils.resetCounter("ingest_close");
+        AsyncMetricsIngestor ingestor = AsyncMetricsIngestor.start(1024, AsyncMetricsIngestor.OverflowPolicy.DROP);
+        int id = ingestor.registerCounter("ingest_close");
+        for (int i = 0; i < 500; i++) {
+            ingestor.record(id, 1);
+        }
+        ingestor.close();
+
+        assertEquals(500, MetricsUtils.getCounterValue("ingest_close"));
+        assertFalse(ingestor.record(id, 1));
+    }
+
+    @Test
+    void testClose_ConcurrentWithProducersKeepsEveryAcceptedEvent() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            MetricsUtils.resetCounter("ingest_close_race");
+            AsyncMetricsIngestor ingestor = AsyncMetricsIngestor.start(64, AsyncMetricsIngestor.OverflowPolicy.BLOCK);
+            int id = ingestor.registerCounter("ingest_close_race");
+            LongAdder accepted = new LongAdder();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        if (ingestor.record(id, 1)) {
+                            accepted.increment();
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            Thread.sleep(1);
+            ingestor.close();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(accepted.sum(), MetricsUtils.getCounterValue("ingest_close_race"));
+            assertEquals(20_000, accepted.sum() + ingestor.getDroppedCount());
+        }
+    }
+
+    @Test
+    void testRecord_DoesNotAllocate() throws InterruptedException {
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        try (AsyncMetricsIngestor ingestor = AsyncMetricsIngestor.start(1 << 12, AsyncMetricsIngestor.OverflowPolicy.BLOCK)) {
+            int id = ingestor.registerCounter("ingest_alloc");
+            for (int i = 0; i < 100_000; i++) {
+                ingestor.record(id, 1);
+            }
+            ingestor.flush();
+
+            long threadId = Thread.currentThread().getId();
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 100_000; i++) {
+                ingestor.record(id, 1);
+            }
+            long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+            assertTrue(allocated < 1024, "Allocated " + allocated + " bytes");
+        }
+    }
+
+    private static void runProducers(AsyncMetricsIngestor ingestor, int id, int threadCount, int eventsPerThread)
+            throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < eventsPerThread; j++) {
+                    ingestor.record(id, 1);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
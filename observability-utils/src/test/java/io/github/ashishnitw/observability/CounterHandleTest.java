@@ -0,0 +1,77 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for CounterHandle.
+ */
+class CounterHandleTest {
+
+    @BeforeEach
+    void setUp() {
+        MetricsUtils.resetCounter("handle_counter");
+        MetricsUtils.resetCounter("handle_concurrent");
+    }
+
+    @Test
+    void testCounter_ReturnsSameHandle() {
+        CounterHandle first = MetricsUtils.counter("handle_counter");
+        CounterHandle second = MetricsUtils.counter("handle_counter");
+        assertSame(first, second);
+        assertEquals("handle_counter", first.getName());
+    }
+
+    @Test
+    void testIncrement() {
+        CounterHandle counter = MetricsUtils.counter("handle_counter");
+        counter.increment();
+        counter.increment(4);
+        assertEquals(5, counter.get());
+    }
+
+    @Test
+    void testHandleSharesValueWithStaticMethods() {
+        CounterHandle counter = MetricsUtils.counter("handle_counter");
+        counter.increment(3);
+        assertEquals(5, MetricsUtils.incrementCounter("handle_counter", 2));
+        assertEquals(5, MetricsUtils.getCounterValue("handle_counter"));
+
+        MetricsUtils.resetCounter("handle_counter");
+        assertEquals(0, counter.get());
+    }
+
+    @Test
+    void testReset() {
+        CounterHandle counter = MetricsUtils.counter("handle_counter");
+        counter.increment(10);
+        counter.reset();
+        assertEquals(0, counter.get());
+    }
+
+    @Test
+    void testConcurrentIncrements() throws InterruptedException {
+        CounterHandle counter = MetricsUtils.counter("handle_concurrent");
+        int threadCount = 8;
+        int incrementsPerThread = 100_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < incrementsPerThread; j++) {
+                    counter.increment();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals((long) threadCount * incrementsPerThread, counter.get());
+    }
+}
@@ -0,0 +1,214 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for DDSketch.
+ */
+class DDSketchTest {
+
+    private static final double[] QUANTILES = {0.0, 0.1, 0.5, 0.9, 0.95, 0.99, 0.999, 1.0};
+
+    @Test
+    void testAccuracy_Uniform() {
+        Random random = new Random(1);
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1 + random.nextDouble() * 1_000_000;
+        }
+        assertAccurate(sketchOf(values, 0.01), values, 0.01);
+    }
+
+    @Test
+    void testAccuracy_LogNormalLatencies() {
+        Random random = new Random(2);
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // Median around 1 ms in nanoseconds with a long tail
+            values[i] = Math.exp(13.8 + 1.5 * random.nextGaussian());
+        }
+        assertAccurate(sketchOf(values, 0.01), values, 0.01);
+        // Finer accuracy needs more buckets to cover the same range without collapsing
+        DDSketch fine = new DDSketch(0.001, 16_384);
+        for (double value : values) {
+            fine.record(value);
+        }
+        assertAccurate(fine, values, 0.001);
+    }
+
+    @Test
+    void testMerge_MatchesSketchOfAllValues() {
+        Random random = new Random(3);
+        double[] values = new double[80_000];
+        DDSketch[] nodes = {new DDSketch(), new DDSketch(), new DDSketch(), new DDSketch()};
+        for (int i = 0; i < values.length; i++) {
+            // Each node sees a different latency profile
+            int node = i % nodes.length;
+            values[i] = Math.exp(10 + node + random.nextGaussian());
+            nodes[node].record(values[i]);
+        }
+        DDSketch fleet = new DDSketch();
+        for (DDSketch node : nodes) {
+            fleet.merge(node);
+        }
+
+        assertEquals(values.length, fleet.getCount());
+        assertArrayEquals(sketchOf(values, 0.01).bucketCounts(), fleet.bucketCounts());
+        assertAccurate(fleet, values, 0.01);
+    }
+
+    @Test
+    void testMerge_DifferentAccuracyRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new DDSketch().merge(new DDSketch(0.02, DDSketch.DEFAULT_MAX_BUCKETS)));
+        DDSketch sketch = new DDSketch();
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(sketch));
+    }
+
+    @Test
+    void testSerialize_RoundTrip() {
+        Random random = new Random(4);
+        DDSketch sketch = new DDSketch();
+        for (int i = 0; i < 50_000; i++) {
+            sketch.record(Math.exp(12 + random.nextGaussian()));
+        }
+        sketch.record(0);
+        sketch.record(-3);
+
+        byte[] bytes = sketch.serialize();
+        DDSketch copy = DDSketch.deserialize(bytes);
+
+        assertEquals(sketch.getCount(), copy.getCount());
+        assertEquals(sketch.getSum(), copy.getSum());
+        assertEquals(sketch.getMin(), copy.getMin());
+        assertEquals(sketch.getMax(), copy.getMax());
+        assertArrayEquals(sketch.bucketCounts(), copy.bucketCounts());
+        for (double quantile : QUANTILES) {
+            assertEquals(sketch.getValueAtQuantile(quantile), copy.getValueAtQuantile(quantile));
+        }
+        // Compact: a few bytes per bucket plus a fixed header
+        assertTrue(bytes.length < 48 + sketch.getBucketCount() * 3, "size " + bytes.length);
+    }
+
+    @Test
+    void testDeserialize_RejectsInvalidInput() {
+        assertThrows(IllegalArgumentException.class, () -> DDSketch.deserialize(new byte[]{9}));
+        byte[] truncated = Arrays.copyOf(new DDSketch().serialize(), 10);
+        assertThrows(IllegalArgumentException.class, () -> DDSketch.deserialize(truncated));
+    }
+
+    @Test
+    void testDeserialize_RejectsCraftedHeader() {
+        // Bucket counts far beyond the payload must fail before anything is allocated
+        assertThrows(IllegalArgumentException.class,
+                () -> DDSketch.deserialize(header(Integer.MAX_VALUE, Integer.MAX_VALUE, 0)));
+        assertThrows(IllegalArgumentException.class,
+                () -> DDSketch.deserialize(header(Long.MAX_VALUE, 1, 0)));
+        assertThrows(IllegalArgumentException.class,
+                () -> DDSketch.deserialize(header(DDSketch.MAX_BUCKETS, DDSketch.MAX_BUCKETS, 0)));
+        // A first index whose last bucket would overflow int
+        byte[] overflow = header(2048, 2, ((long) Integer.MAX_VALUE) << 1, 1, 1);
+        assertThrows(IllegalArgumentException.class, () -> DDSketch.deserialize(overflow));
+        assertEquals(2, DDSketch.deserialize(header(2048, 2, 0, 1, 1)).getCount());
+    }
+
+    @Test
+    void testMemory_FullLatencyRange() {
+        DDSketch sketch = new DDSketch();
+        // One nanosecond to one hour
+        for (double value = 1; value <= 3.6e12; value *= 1.001) {
+            sketch.record(value);
+        }
+        assertTrue(sketch.getBucketCount() < 1500, "buckets " + sketch.getBucketCount());
+        // At most 2048 buckets of 8 bytes plus the fixed fields, about 16.5 KB
+        assertTrue(sketch.estimateFootprintBytes() <= 16_500, "bytes " + sketch.estimateFootprintBytes());
+    }
+
+    @Test
+    void testMaxBuckets_CollapsesLowestBuckets() {
+        DDSketch sketch = new DDSketch(0.01, 100);
+        for (double value = 1; value <= 1e9; value *= 1.01) {
+            sketch.record(value);
+        }
+        for (double value = 1e9; value >= 1; value /= 1.01) {
+            sketch.record(value);
+        }
+        assertEquals(100, sketch.getBucketCount());
+        // The upper quantiles keep their accuracy
+        assertEquals(1e9, sketch.getValueAtQuantile(1.0), 0.0);
+        double p99 = sketch.getValueAtQuantile(0.99);
+        assertTrue(p99 > 5e8, "p99 " + p99);
+    }
+
+    @Test
+    void testEmptyAndZeroValues() {
+        DDSketch sketch = new DDSketch();
+        assertTrue(Double.isNaN(sketch.getValueAtQuantile(0.5)));
+        assertTrue(Double.isNaN(sketch.getMin()));
+        sketch.record(0);
+        sketch.record(0);
+        sketch.record(100);
+        assertEquals(0.0, sketch.getValueAtQuantile(0.5));
+        assertEquals(100.0, sketch.getValueAtQuantile(1.0), 1.0);
+        assertThrows(IllegalArgumentException.class, () -> sketch.getValueAtQuantile(1.5));
+        assertThrows(IllegalArgumentException.class, () -> sketch.record(Double.NaN));
+    }
+
+    @Test
+    void testMetricsUtilsSketch() {
+        DDSketch sketch = MetricsUtils.sketch("sketch_test");
+        assertSame(sketch, MetricsUtils.sketch("sketch_test"));
+        sketch.record(42);
+        assertEquals(42, sketch.getValueAtQuantile(0.5), 0.42);
+    }
+
+    private static DDSketch sketchOf(double[] values, double relativeAccuracy) {
+        DDSketch sketch = new DDSketch(relativeAccuracy, DDSketch.DEFAULT_MAX_BUCKETS);
+        for (double value : values) {
+            sketch.record(value);
+        }
+        return sketch;
+    }
+
+    /**
+     * Builds a serialized sketch by hand: a version 1 header at 1% accuracy, then the given varints
+     * for maxBuckets, zeroCount (always 0), bucket count and the remaining fields.
+     */
+    private static byte[] header(long maxBuckets, long buckets, long... rest) {
+        ByteBuffer out = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+        out.put((byte) 1).putDouble(0.01).putDouble(0).putDouble(1).putDouble(1);
+        putVarLong(out, maxBuckets);
+        putVarLong(out, 0);
+        putVarLong(out, buckets);
+        for (long value : rest) {
+            putVarLong(out, value);
+        }
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    private static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static void assertAccurate(DDSketch sketch, double[] values, double relativeAccuracy) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double quantile : QUANTILES) {
+            double exact = sorted[(int) (quantile * (sorted.length - 1))];
+            double estimate = sketch.getValueAtQuantile(quantile);
+            assertEquals(exact, estimate, exact * relativeAccuracy * (1 + 1e-9),
+                    "quantile " + quantile);
+        }
+    }
+}
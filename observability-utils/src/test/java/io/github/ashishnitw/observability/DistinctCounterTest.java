@@ -0,0 +1,75 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for DistinctCounter.
+ */
+class DistinctCounterTest {
+
+    private static final long MINUTE = 60_000;
+
+    @Test
+    void testGetEstimate_WithoutWindowCountsSinceCreation() {
+        DistinctCounter counter = new DistinctCounter("users", HyperLogLog.DEFAULT_PRECISION, 0);
+        for (int i = 0; i < 1_000; i++) {
+            counter.add("user-" + (i % 100));
+        }
+        assertEquals(100, counter.getEstimate(), 5);
+        assertEquals(counter.getEstimate(), counter.getCurrentEstimate());
+        assertEquals(-1, counter.getLastWindowStartMillis());
+    }
+
+    @Test
+    void testGetEstimate_ReportsLastCompletedWindow() {
+        AtomicLong clock = new AtomicLong(10 * MINUTE + 5_000);
+        DistinctCounter counter = new DistinctCounter("users", HyperLogLog.DEFAULT_PRECISION, MINUTE, clock::get);
+        for (int i = 0; i < 50; i++) {
+            counter.add(i);
+        }
+        assertEquals(0, counter.getEstimate());
+        assertEquals(50, counter.getCurrentEstimate(), 2);
+
+        clock.set(11 * MINUTE);
+        counter.add(1_000);
+        assertEquals(50, counter.getEstimate(), 2);
+        assertEquals(10 * MINUTE, counter.getLastWindowStartMillis());
+        assertEquals(1, counter.getCurrentEstimate());
+
+        clock.set(12 * MINUTE + 1);
+        assertEquals(1, counter.getEstimate());
+        assertEquals(11 * MINUTE, counter.getLastWindowStartMillis());
+    }
+
+    @Test
+    void testGetEstimate_SkippedWindowIsEmpty() {
+        AtomicLong clock = new AtomicLong(0);
+        DistinctCounter counter = new DistinctCounter("users", HyperLogLog.DEFAULT_PRECISION, MINUTE, clock::get);
+        counter.add(1);
+        clock.set(5 * MINUTE);
+        assertEquals(0, counter.getEstimate());
+        assertEquals(4 * MINUTE, counter.getLastWindowStartMillis());
+    }
+
+    @Test
+    void testSnapshots_MergeAcrossNodes() {
+        AtomicLong clock = new AtomicLong(0);
+        DistinctCounter nodeA = new DistinctCounter("users", HyperLogLog.DEFAULT_PRECISION, MINUTE, clock::get);
+        DistinctCounter nodeB = new DistinctCounter("users", HyperLogLog.DEFAULT_PRECISION, MINUTE, clock::get);
+        for (int i = 0; i < 300; i++) {
+            nodeA.add(i);
+            nodeB.add(i + 200);
+        }
+        HyperLogLog merged = nodeA.snapshot();
+        merged.merge(nodeB.snapshot());
+        assertEquals(500, merged.estimate(), 25);
+
+        assertNull(nodeA.snapshotLastWindow());
+        clock.set(MINUTE);
+        assertEquals(300, nodeA.snapshotLastWindow().estimate(), 15);
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.ashishnitw.observability;
+
+import io.github.ashishnitw.common.JsonUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for FileSpanExporter.
+ */
+class FileSpanExporterTest {
+
+    @AfterEach
+    void disableTracing() {
+        TracingUtils.disableTracing();
+    }
+
+    @Test
+    void testExport_WritesJsonLines() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("spans", ".jsonl");
+        try {
+            TracingUtils.enableTracing(1.0, 100, new FileSpanExporter(file));
+            Span root = TracingUtils.startSpan("checkout \"cart\"");
+            Span child = TracingUtils.startSpan("charge_card");
+            child.recordError(new IllegalStateException());
+            child.end();
+            root.end();
+            TracingUtils.disableTracing();
+
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(2, lines.size());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> first = JsonUtils.fromJson(lines.get(0), Map.class);
+            assertEquals(Span.toHex(root.getTraceId()), first.get("traceId"));
+            assertEquals(Span.toHex(child.getSpanId()), first.get("spanId"));
+            assertEquals(Span.toHex(root.getSpanId()), first.get("parentSpanId"));
+            assertEquals("charge_card", first.get("name"));
+            assertEquals("java.lang.IllegalStateException", first.get("error"));
+            assertEquals(child.getDurationNanos(), ((Number) first.get("durationNanos")).longValue());
+            @SuppressWarnings("unchecked")
+            Map<String, Object> second = JsonUtils.fromJson(lines.get(1), Map.class);
+            assertEquals("checkout \"cart\"", second.get("name"));
+            assertFalse(second.containsKey("parentSpanId"));
+            assertFalse(second.containsKey("error"));
+            assertTrue(((String) second.get("start")).endsWith("Z"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testExport_SpanLargerThanBuffer() throws IOException {
+        Path file = Files.createTempFile("spans", ".jsonl");
+        try {
+            TracingUtils.enableTracing(1.0, 10, new FileSpanExporter(file));
+            String huge = "h".repeat(100 * 1024);
+            TracingUtils.startSpan("before").end();
+            TracingUtils.startSpan(huge).end();
+            TracingUtils.startSpan("after").end();
+            TracingUtils.disableTracing();
+
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(3, lines.size());
+            for (String line : lines) {
+                assertNotNull(JsonUtils.fromJson(line, Map.class));
+            }
+            assertTrue(lines.get(0).contains("\"before\""));
+            assertTrue(lines.get(1).contains(huge));
+            assertTrue(lines.get(2).contains("\"after\""));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testExport_BatchLargerThanBuffer() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("spans", ".jsonl");
+        try {
+            TracingUtils.enableTracing(1.0, 5000, new FileSpanExporter(file));
+            String name = "n".repeat(200);
+            for (int i = 0; i < 2000; i++) {
+                TracingUtils.startSpan(name).end();
+            }
+            TracingUtils.disableTracing();
+
+            assertEquals(2000, Files.readAllLines(file).size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for GaugeHandle.
+ */
+class GaugeHandleTest {
+
+    @Test
+    void testGauge_ReturnsSameHandle() {
+        assertSame(MetricsUtils.gauge("handle_gauge"), MetricsUtils.gauge("handle_gauge"));
+        assertEquals("handle_gauge", MetricsUtils.gauge("handle_gauge").getName());
+    }
+
+    @Test
+    void testSetAndGet() {
+        GaugeHandle gauge = MetricsUtils.gauge("handle_gauge_set");
+        gauge.set(42.5);
+        assertEquals(42.5, gauge.get());
+        gauge.set(-1.0);
+        assertEquals(-1.0, gauge.get());
+    }
+
+    @Test
+    void testConcurrentAdd() throws InterruptedException {
+        GaugeHandle gauge = MetricsUtils.gauge("handle_gauge_add");
+        gauge.set(0);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    gauge.add(1.0);
+                    gauge.add(-0.5);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(20_000.0, gauge.get(), 0.0001);
+    }
+}
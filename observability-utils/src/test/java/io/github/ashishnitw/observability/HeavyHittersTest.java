@@ -0,0 +1,144 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for HeavyHitters.
+ */
+class HeavyHittersTest {
+
+    @Test
+    void testTop_ExactWhileUnderCapacity() {
+        HeavyHitters hitters = new HeavyHitters(4);
+        hitters.add("a", 5);
+        hitters.add("b", 20);
+        hitters.add("c", 1);
+        hitters.add("a", 10);
+
+        List<HeavyHitters.Entry> top = hitters.top(2);
+        assertEquals(2, top.size());
+        assertEquals("b", top.get(0).getKey());
+        assertEquals(20, top.get(0).getWeight());
+        assertEquals("a", top.get(1).getKey());
+        assertEquals(15, top.get(1).getWeight());
+        assertEquals(0, top.get(1).getError());
+        assertEquals(36, hitters.getTotalWeight());
+    }
+
+    @Test
+    void testAdd_ReplacesSmallestKeyWithError() {
+        HeavyHitters hitters = new HeavyHitters(2);
+        hitters.add("a", 10);
+        hitters.add("b", 3);
+        hitters.add("c", 1);
+
+        List<HeavyHitters.Entry> top = hitters.top(5);
+        assertEquals(2, top.size());
+        assertEquals("a", top.get(0).getKey());
+        assertEquals("c", top.get(1).getKey());
+        assertEquals(4, top.get(1).getWeight());
+        assertEquals(3, top.get(1).getError());
+        assertEquals(1, top.get(1).getGuaranteedWeight());
+    }
+
+    @Test
+    void testAdd_IgnoresNonPositiveWeights() {
+        HeavyHitters hitters = new HeavyHitters(2);
+        hitters.add("a", 0);
+        hitters.add("b", -5);
+        assertTrue(hitters.top(2).isEmpty());
+        assertEquals(0, hitters.getTotalWeight());
+    }
+
+    @Test
+    void testTop_FindsHeavyKeysAmongManyLightOnes() {
+        HeavyHitters hitters = new HeavyHitters(32);
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int r = random.nextInt(100);
+            if (r < 20) {
+                hitters.add("heavy-0", 1);
+            } else if (r < 35) {
+                hitters.add("heavy-1", 1);
+            } else if (r < 45) {
+                hitters.add("heavy-2", 1);
+            } else {
+                hitters.add("light-" + random.nextInt(5000), 1);
+            }
+        }
+
+        List<HeavyHitters.Entry> top = hitters.top(3);
+        assertEquals("heavy-0", top.get(0).getKey());
+        assertEquals("heavy-1", top.get(1).getKey());
+        assertEquals("heavy-2", top.get(2).getKey());
+        for (HeavyHitters.Entry entry : top) {
+            assertTrue(entry.getGuaranteedWeight() <= entry.getWeight());
+        }
+        // Every monitored key overestimates by at most totalWeight / capacity
+        long bound = hitters.getTotalWeight() / hitters.getCapacity();
+        for (HeavyHitters.Entry entry : hitters.top(32)) {
+            assertTrue(entry.getError() <= bound, entry.toString());
+        }
+    }
+
+    @Test
+    void testTop_MergesStripesOfConcurrentThreads() throws InterruptedException {
+        HeavyHitters hitters = new HeavyHitters(32, 8);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    int r = ThreadLocalRandom.current().nextInt(100);
+                    if (r < 30) {
+                        hitters.add("heavy-0", 1);
+                    } else if (r < 50) {
+                        hitters.add("heavy-1", 1);
+                    } else {
+                        hitters.add("light-" + ThreadLocalRandom.current().nextInt(5000), 1);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(8 * 50_000, hitters.getTotalWeight());
+        List<HeavyHitters.Entry> top = hitters.top(2);
+        assertEquals("heavy-0", top.get(0).getKey());
+        assertEquals("heavy-1", top.get(1).getKey());
+        // The merged stripes keep the error bound of a single summary
+        long bound = hitters.getTotalWeight() / hitters.getCapacity();
+        for (HeavyHitters.Entry entry : hitters.top(Integer.MAX_VALUE)) {
+            assertTrue(entry.getError() <= bound, entry.toString());
+        }
+        assertTrue(top.get(0).getGuaranteedWeight() > 8 * 50_000 * 0.25);
+    }
+
+    @Test
+    void testReset() {
+        HeavyHitters hitters = new HeavyHitters(2);
+        hitters.add("a", 1);
+        hitters.reset();
+        assertTrue(hitters.top(1).isEmpty());
+        assertEquals(0, hitters.getTotalWeight());
+        hitters.add("b", 2);
+        assertEquals("b", hitters.top(1).get(0).getKey());
+    }
+
+    @Test
+    void testConstructor_InvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new HeavyHitters(0));
+        assertThrows(IllegalArgumentException.class, () -> new HeavyHitters(4, 3));
+    }
+}
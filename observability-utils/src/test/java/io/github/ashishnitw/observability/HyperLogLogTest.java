@@ -0,0 +1,106 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for HyperLogLog.
+ */
+class HyperLogLogTest {
+
+    @Test
+    void testEstimate_EmptySketch() {
+        assertEquals(0, new HyperLogLog().estimate());
+    }
+
+    @Test
+    void testEstimate_AccurateAcrossRanges() {
+        for (int distinct : new int[] {1, 10, 100, 1_000, 5_000, 20_000, 100_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < distinct; i++) {
+                sketch.add(i);
+                sketch.add(i);
+            }
+            double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+            // Four standard errors, about 6.5% at the default precision
+            assertTrue(error < 4 * sketch.getStandardError(), distinct + " estimated as " + sketch.estimate());
+        }
+    }
+
+    @Test
+    void testAdd_StringsAndLongsAreCounted() {
+        HyperLogLog sketch = new HyperLogLog(14);
+        for (int i = 0; i < 50_000; i++) {
+            sketch.add("user-" + i);
+        }
+        assertEquals(50_000, sketch.estimate(), 50_000 * 4 * sketch.getStandardError());
+    }
+
+    @Test
+    void testMerge_EqualsUnion() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (int i = 0; i < 30_000; i++) {
+            a.add(i);
+            union.add(i);
+        }
+        for (int i = 20_000; i < 60_000; i++) {
+            b.add(i);
+            union.add(i);
+        }
+        a.merge(b);
+        assertEquals(union.estimate(), a.estimate());
+        assertThrows(IllegalArgumentException.class, () -> a.merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void testSerialize_RoundTrip() {
+        HyperLogLog sketch = new HyperLogLog(10);
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add(i);
+        }
+        byte[] bytes = sketch.serialize();
+        assertEquals(2 + 1024, bytes.length);
+        HyperLogLog copy = HyperLogLog.deserialize(bytes);
+        assertEquals(10, copy.getPrecision());
+        assertEquals(sketch.estimate(), copy.estimate());
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.deserialize(new byte[] {1, 10, 0}));
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.deserialize(new byte[] {9, 10}));
+    }
+
+    @Test
+    void testAdd_ConcurrentAddsLoseNothing() throws InterruptedException {
+        HyperLogLog concurrent = new HyperLogLog();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 25_000;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 25_000; i++) {
+                    concurrent.add(offset + i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        HyperLogLog sequential = new HyperLogLog();
+        for (int i = 0; i < 100_000; i++) {
+            sequential.add(i);
+        }
+        // Registers hold maxima, so the result does not depend on the interleaving
+        assertEquals(sequential.estimate(), concurrent.estimate());
+    }
+
+    @Test
+    void testConstructor_InvalidPrecision() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(19));
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for IdleMetricEvictor.
+ */
+class IdleMetricEvictorTest {
+
+    private static final long TTL = TimeUnit.SECONDS.toNanos(10);
+
+    @Test
+    void testSweep_EvictsOnlyUnchangedMetrics() {
+        ConcurrentHashMap<String, CounterHandle> counters = new ConcurrentHashMap<>();
+        CounterHandle idle = new CounterHandle("idle", null);
+        CounterHandle busy = new CounterHandle("busy", null);
+        counters.put("idle", idle);
+        counters.put("busy", busy);
+        List<String> evicted = new ArrayList<>();
+        IdleMetricEvictor evictor = new IdleMetricEvictor(List.of(new IdleMetricEvictor.Source<>(
+                counters, CounterHandle::get, name -> false, (name, counter) -> evicted.add(name))));
+
+        assertEquals(0, evictor.sweep(0, TTL));
+        busy.increment();
+        assertEquals(0, evictor.sweep(TTL / 2, TTL));
+        busy.increment();
+        assertEquals(1, evictor.sweep(TTL, TTL));
+
+        assertEquals(List.of("idle"), evicted);
+        assertFalse(counters.containsKey("idle"));
+        assertSame(busy, counters.get("busy"));
+    }
+
+    @Test
+    void testSweep_IdlePeriodRestartsOnChange() {
+        ConcurrentHashMap<String, CounterHandle> counters = new ConcurrentHashMap<>();
+        CounterHandle counter = new CounterHandle("restarting", null);
+        counters.put("restarting", counter);
+        IdleMetricEvictor evictor = new IdleMetricEvictor(List.of(new IdleMetricEvictor.Source<>(
+                counters, CounterHandle::get, name -> false, (name, c) -> { })));
+
+        evictor.sweep(0, TTL);
+        counter.increment();
+        evictor.sweep(TTL - 1, TTL);
+        assertEquals(0, evictor.sweep(TTL + 1, TTL));
+        assertEquals(1, evictor.sweep(2 * TTL, TTL));
+    }
+
+    @Test
+    void testSweep_PinnedMetricsAreKept() {
+        ConcurrentHashMap<String, TimerHandle> timers = new ConcurrentHashMap<>();
+        timers.put("pinned", new TimerHandle("pinned"));
+        IdleMetricEvictor evictor = new IdleMetricEvictor(List.of(new IdleMetricEvictor.Source<>(
+                timers, TimerHandle::getCount, "pinned"::equals, (name, timer) -> { })));
+
+        evictor.sweep(0, TTL);
+        assertEquals(0, evictor.sweep(2 * TTL, TTL));
+        assertTrue(timers.containsKey("pinned"));
+    }
+
+    @Test
+    void testSweep_RecreatedMetricStartsFresh() {
+        ConcurrentHashMap<String, CounterHandle> counters = new ConcurrentHashMap<>();
+        counters.put("recreated", new CounterHandle("recreated", null));
+        IdleMetricEvictor evictor = new IdleMetricEvictor(List.of(new IdleMetricEvictor.Source<>(
+                counters, CounterHandle::get, name -> false, (name, c) -> { })));
+
+        evictor.sweep(0, TTL);
+        counters.put("recreated", new CounterHandle("recreated", null));
+        assertEquals(0, evictor.sweep(TTL, TTL));
+        assertEquals(1, evictor.sweep(2 * TTL, TTL));
+    }
+}
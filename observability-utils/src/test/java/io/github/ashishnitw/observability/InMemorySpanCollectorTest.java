@@ -0,0 +1,61 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for InMemorySpanCollector.
+ */
+class InMemorySpanCollectorTest {
+
+    @AfterEach
+    void disableTracing() {
+        TracingUtils.disableTracing();
+    }
+
+    @Test
+    void testExport_KeepsMostRecentSpans() throws InterruptedException {
+        InMemorySpanCollector collector = new InMemorySpanCollector(3);
+        TracingUtils.enableTracing(1.0, 100, collector);
+        for (int i = 0; i < 5; i++) {
+            TracingUtils.startSpan("span" + i).end();
+        }
+        TracingUtils.flush();
+
+        List<Span> spans = collector.getSpans();
+        assertEquals(3, spans.size());
+        assertEquals("span2", spans.get(0).getName());
+        assertEquals("span4", spans.get(2).getName());
+        assertEquals(3, collector.getCapacity());
+
+        collector.clear();
+        assertTrue(collector.getSpans().isEmpty());
+    }
+
+    @Test
+    void testGetTrace_OrderedByStart() throws InterruptedException {
+        InMemorySpanCollector collector = new InMemorySpanCollector(10);
+        TracingUtils.enableTracing(1.0, 100, collector);
+        Span root = TracingUtils.startSpan("root");
+        TracingUtils.startSpan("child").end();
+        root.end();
+        Span other = TracingUtils.startSpan("other");
+        other.end();
+        TracingUtils.flush();
+
+        List<Span> trace = collector.getTrace(root.getTraceId());
+        assertEquals(2, trace.size());
+        assertEquals("root", trace.get(0).getName());
+        assertEquals("child", trace.get(1).getName());
+        assertEquals(List.of(other), collector.getTrace(other.getTraceId()));
+    }
+
+    @Test
+    void testConstructor_InvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new InMemorySpanCollector(0));
+    }
+}
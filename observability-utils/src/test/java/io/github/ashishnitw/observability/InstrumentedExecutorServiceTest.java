@@ -0,0 +1,99 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for InstrumentedExecutorService.
+ */
+class InstrumentedExecutorServiceTest {
+
+    @Test
+    void testSubmit_RecordsQueueWaitSeparatelyFromRunTime() throws Exception {
+        ExecutorService executor = MetricsUtils.instrumentExecutor("pool_wait", Executors.newSingleThreadExecutor());
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Future<?> blocker = executor.submit(() -> {
+                started.countDown();
+                await(release);
+            });
+            Future<String> queued = executor.submit(() -> "queued");
+            started.await();
+            Thread.sleep(50);
+            release.countDown();
+            blocker.get();
+            assertEquals("queued", queued.get());
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+
+        TimerHandle queueWait = MetricsUtils.timer("pool_wait_queue_wait");
+        TimerHandle run = MetricsUtils.timer("pool_wait_run");
+        assertEquals(2, queueWait.getCount());
+        assertEquals(2, run.getCount());
+        // The second task waited behind the first, which ran until released
+        assertTrue(queueWait.getMax(TimeUnit.MILLISECONDS) >= 50);
+        assertTrue(run.getMax(TimeUnit.MILLISECONDS) >= 50);
+    }
+
+    @Test
+    void testInvokeAll() throws Exception {
+        ExecutorService executor = MetricsUtils.instrumentExecutor("pool_invoke", Executors.newFixedThreadPool(2));
+        try {
+            List<Callable<Integer>> tasks = List.of(() -> 1, () -> 2, () -> 3);
+            int sum = 0;
+            for (Future<Integer> future : executor.invokeAll(tasks)) {
+                sum += future.get();
+            }
+            assertEquals(6, sum);
+            assertEquals(2, (int) executor.invokeAny(List.of(() -> 2)));
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(4, MetricsUtils.timer("pool_invoke_run").getCount());
+    }
+
+    @Test
+    void testShutdownNow_ReturnsUnwrappedTasks() {
+        ExecutorService executor = MetricsUtils.instrumentExecutor("pool_shutdown", Executors.newSingleThreadExecutor());
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> await(release));
+        Runnable pending = () -> { };
+        executor.execute(pending);
+
+        List<Runnable> notRun = executor.shutdownNow();
+        release.countDown();
+        assertTrue(notRun.contains(pending));
+        assertTrue(executor.isShutdown());
+    }
+
+    @Test
+    void testPlainExecutor() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        Executor executor = MetricsUtils.instrumentExecutor("plain_executor", (Executor) Runnable::run);
+        executor.execute(done::countDown);
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(1, MetricsUtils.timer("plain_executor_queue_wait").getCount());
+        assertEquals(1, MetricsUtils.timer("plain_executor_run").getCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
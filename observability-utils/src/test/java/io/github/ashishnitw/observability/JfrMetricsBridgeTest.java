@@ -0,0 +1,127 @@
+package io.github.ashishnitw.observability;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for JfrMetricsBridge and the custom JFR events.
+ */
+class JfrMetricsBridgeTest {
+
+    @Test
+    void testMeasureOperation_EmitsOperationEvent() throws Exception {
+        List<RecordedEvent> events = record("io.github.ashishnitw.Operation", () -> {
+            MetricsUtils.measureOperation("jfr_test_operation", () -> "done");
+            assertThrows(IllegalStateException.class, () -> MetricsUtils.measureOperation("jfr_test_failure", () -> {
+                throw new IllegalStateException("expected");
+            }));
+        });
+
+        RecordedEvent success = find(events, "jfr_test_operation");
+        assertEquals("success", success.getString("outcome"));
+        assertNotNull(success.getThread());
+        assertFalse(success.getDuration().isNegative());
+        assertEquals("failure", find(events, "jfr_test_failure").getString("outcome"));
+    }
+
+    @Test
+    void testLogMethodExecutionTime_EmitsMethodExecutionEvent() throws Exception {
+        List<RecordedEvent> events = record("io.github.ashishnitw.MethodExecution",
+                () -> LoggingUtils.logMethodExecutionTime("jfrTestMethod", 42));
+
+        RecordedEvent event = events.stream()
+                .filter(e -> "jfrTestMethod".equals(e.getString("methodName")))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(Duration.ofMillis(42), event.getDuration("executionTime"));
+    }
+
+    @Test
+    void testBridge_RecordsGarbageCollections() throws InterruptedException {
+        TimerHandle gcPause = MetricsUtils.timer("jfr_gc_pause");
+        long before = gcPause.getCount();
+        try (JfrMetricsBridge bridge = JfrMetricsBridge.start()) {
+            long deadline = System.currentTimeMillis() + 20_000;
+            while (gcPause.getCount() == before && System.currentTimeMillis() < deadline) {
+                System.gc();
+                Thread.sleep(200);
+            }
+        }
+        assertTrue(gcPause.getCount() > before);
+    }
+
+    @Test
+    void testBridge_RecordsMonitorContention() throws InterruptedException {
+        TimerHandle monitorEnter = MetricsUtils.timer("jfr_monitor_enter");
+        long before = monitorEnter.getCount();
+        Object lock = new Object();
+        try (JfrMetricsBridge bridge = JfrMetricsBridge.start(Duration.ZERO, 10)) {
+            long deadline = System.currentTimeMillis() + 20_000;
+            while (monitorEnter.getCount() == before && System.currentTimeMillis() < deadline) {
+                CountDownLatch held = new CountDownLatch(1);
+                Thread holder = new Thread(() -> {
+                    synchronized (lock) {
+                        held.countDown();
+                        sleep(50);
+                    }
+                });
+                holder.start();
+                held.await();
+                synchronized (lock) {
+                    assertTrue(Thread.holdsLock(lock));
+                }
+                holder.join();
+                Thread.sleep(200);
+            }
+        }
+        assertTrue(monitorEnter.getCount() > before);
+    }
+
+    @Test
+    void testStart_InvalidSampleRate() {
+        assertThrows(IllegalArgumentException.class, () -> JfrMetricsBridge.start(Duration.ZERO, 0));
+    }
+
+    private static List<RecordedEvent> record(String eventName, ThrowingRunnable action) throws Exception {
+        Path file = Files.createTempFile("jfr-test", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(eventName);
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String operationName) {
+        return events.stream()
+                .filter(e -> operationName.equals(e.getString("operationName")))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
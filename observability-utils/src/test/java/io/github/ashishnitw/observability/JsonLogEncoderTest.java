@@ -0,0 +1,106 @@
+package io.github.ashishnitw.observability;
+
+import io.github.ashishnitw.common.JsonUtils;
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.Level;
+
+import java.lang.management.ManagementFactory;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Test class for JsonLogEncoder.
+ */
+class JsonLogEncoderTest {
+
+    private static String encode(JsonLogEncoder encoder, LogEvent event) {
+        ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        encoder.encode(event, out);
+        return new String(out.array(), 0, out.position(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testEncode_Layout() {
+        String json = encode(new JsonLogEncoder(), new LogEvent(1_714_566_600_250L, Level.INFO, "com.example.Orders",
+                "main", "Order {} placed", new Object[]{42}, null, null));
+
+        assertEquals("{\"timestamp\":\"2024-05-01T12:30:00.250Z\",\"level\":\"INFO\",\"logger\":\"com.example.Orders\","
+                + "\"thread\":\"main\",\"message\":\"Order 42 placed\"}\n", json);
+    }
+
+    @Test
+    void testEncode_ParsesWithAllFields() {
+        Map<String, String> mdc = new LinkedHashMap<>();
+        mdc.put("requestId", "r-\"1\"");
+        mdc.put("empty", null);
+        JsonLogEncoder encoder = new JsonLogEncoder(Map.of("service", "orders"));
+        String json = encode(encoder, new LogEvent(0L, Level.ERROR, "a", "worker-1", "Order {} failed",
+                new Object[]{43}, new IllegalStateException("boom"), mdc));
+
+        assertTrue(json.endsWith("}\n"));
+        assertEquals(1, json.split("\n").length);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> parsed = JsonUtils.fromJson(json, Map.class);
+        assertEquals("1970-01-01T00:00:00.000Z", parsed.get("timestamp"));
+        assertEquals("ERROR", parsed.get("level"));
+        assertEquals("worker-1", parsed.get("thread"));
+        assertEquals("Order 43 failed", parsed.get("message"));
+        assertEquals("orders", parsed.get("service"));
+        Map<?, ?> parsedMdc = (Map<?, ?>) parsed.get("mdc");
+        assertEquals("r-\"1\"", parsedMdc.get("requestId"));
+        assertTrue(parsedMdc.containsKey("empty"));
+        assertNull(parsedMdc.get("empty"));
+        assertTrue(((String) parsed.get("exception")).startsWith("java.lang.IllegalStateException: boom\n\tat "));
+    }
+
+    @Test
+    void testEncode_EscapesStrings() {
+        String message = "quote \" backslash \\ newline \n tab \t bell \u0007 caf\u00e9 \u20ac \ud83d\ude00 lone \ud800 end";
+        String json = encode(new JsonLogEncoder(), new LogEvent(0L, Level.WARN, "a", "main", message,
+                null, null, null));
+
+        assertTrue(json.contains("\"message\":\"quote \\\" backslash \\\\ newline \\n tab \\t bell \\u0007 "
+                + "caf\u00e9 \u20ac \ud83d\ude00 lone \\ufffd end\""), json);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> parsed = JsonUtils.fromJson(json, Map.class);
+        assertEquals(message.replace('\ud800', '\ufffd'), parsed.get("message"));
+    }
+
+    @Test
+    void testEncode_OverflowThrows() {
+        ByteBuffer out = ByteBuffer.allocate(32);
+        assertThrows(BufferOverflowException.class, () -> new JsonLogEncoder().encode(
+                new LogEvent(0L, Level.INFO, "a", "main", "message", null, null, null), out));
+    }
+
+    @Test
+    void testEncode_DoesNotAllocate() {
+        var allocations = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeFalse(!allocations.isThreadAllocatedMemorySupported());
+        JsonLogEncoder encoder = new JsonLogEncoder(Map.of("service", "orders"));
+        LogEvent event = new LogEvent(1_714_566_600_250L, Level.INFO, "com.example.Orders", "main",
+                "Order placed", null, null, null);
+        ByteBuffer out = ByteBuffer.allocate(1024);
+        for (int i = 0; i < 100_000; i++) {
+            out.clear();
+            encoder.encode(event, out);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            out.clear();
+            encoder.encode(event, out);
+        }
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        // Less than a byte per event: what remains is measurement noise, not per-event garbage
+        assertTrue(allocated < 64 * 1024, "allocated " + allocated + " bytes");
+    }
+}
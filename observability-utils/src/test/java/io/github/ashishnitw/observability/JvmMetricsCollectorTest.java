@@ -0,0 +1,117 @@
+package io.github.ashishnitw.observability;
+
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import io.prometheus.metrics.model.snapshots.DataPointSnapshot;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for JvmMetricsCollector.
+ */
+class JvmMetricsCollectorTest {
+
+    @Test
+    void testCollect_ExportsAllMetrics() {
+        PrometheusRegistry registry = new PrometheusRegistry();
+        try (JvmMetricsCollector collector = JvmMetricsCollector.start(registry, 60_000, 5)) {
+            Set<String> names = new HashSet<>();
+            for (MetricSnapshot snapshot : registry.scrape()) {
+                names.add(snapshot.getMetadata().getName());
+            }
+            assertEquals(new HashSet<>(collector.getPrometheusNames()), names);
+        }
+    }
+
+    @Test
+    void testCollect_ThreadStatesCountLiveThreads() {
+        PrometheusRegistry registry = new PrometheusRegistry();
+        try (JvmMetricsCollector collector = JvmMetricsCollector.start(registry, 60_000, 5)) {
+            double states = 0;
+            for (DataPointSnapshot dataPoint : find(collector.collect(), "jvm_threads_state").getDataPoints()) {
+                states += ((GaugeSnapshot.GaugeDataPointSnapshot) dataPoint).getValue();
+            }
+            assertTrue(states > 0);
+            assertEquals(Thread.State.values().length,
+                    find(collector.collect(), "jvm_threads_state").getDataPoints().size());
+        }
+    }
+
+    @Test
+    void testSample_TracksAllocationsAndBufferPools() {
+        PrometheusRegistry registry = new PrometheusRegistry();
+        try (JvmMetricsCollector collector = JvmMetricsCollector.start(registry, 60_000, 3)) {
+            ByteBuffer direct = ByteBuffer.allocateDirect(64 * 1024);
+            byte[][] garbage = new byte[64][];
+            for (int i = 0; i < garbage.length; i++) {
+                garbage[i] = new byte[16 * 1024];
+            }
+            collector.sample();
+            MetricSnapshots snapshots = collector.collect();
+
+            assertTrue(find(snapshots, "jvm_thread_allocated_bytes").getDataPoints().size() <= 3);
+            double directUsed = 0;
+            for (DataPointSnapshot dataPoint : find(snapshots, "jvm_buffer_pool_used_bytes").getDataPoints()) {
+                if ("direct".equals(dataPoint.getLabels().get("pool"))) {
+                    directUsed = ((GaugeSnapshot.GaugeDataPointSnapshot) dataPoint).getValue();
+                }
+            }
+            assertTrue(directUsed >= direct.capacity());
+            assertEquals(64, garbage.length);
+        }
+    }
+
+    @Test
+    void testSample_OverheadIsMeasured() {
+        PrometheusRegistry registry = new PrometheusRegistry();
+        try (JvmMetricsCollector collector = JvmMetricsCollector.start(registry, 60_000, 5)) {
+            long before = collector.getTotalSampleNanos();
+            collector.sample();
+            assertTrue(collector.getLastSampleDurationNanos() > 0);
+            assertEquals(before + collector.getLastSampleDurationNanos(), collector.getTotalSampleNanos());
+        }
+    }
+
+    @Test
+    void testStart_SchedulesSamples() throws InterruptedException {
+        PrometheusRegistry registry = new PrometheusRegistry();
+        try (JvmMetricsCollector collector = JvmMetricsCollector.start(registry, 10, 5)) {
+            long initial = collector.getTotalSampleNanos();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (collector.getTotalSampleNanos() == initial && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(collector.getTotalSampleNanos() > initial);
+        }
+    }
+
+    @Test
+    void testClose_Unregisters() {
+        PrometheusRegistry registry = new PrometheusRegistry();
+        JvmMetricsCollector collector = JvmMetricsCollector.start(registry, 60_000, 5);
+        collector.close();
+        assertEquals(0, registry.scrape().size());
+    }
+
+    @Test
+    void testStart_InvalidInterval() {
+        assertThrows(IllegalArgumentException.class,
+                () -> JvmMetricsCollector.start(new PrometheusRegistry(), 0, 5));
+    }
+
+    private static MetricSnapshot find(MetricSnapshots snapshots, String name) {
+        for (MetricSnapshot snapshot : snapshots) {
+            if (snapshot.getMetadata().getName().equals(name)) {
+                return snapshot;
+            }
+        }
+        throw new AssertionError("Missing metric " + name);
+    }
+}
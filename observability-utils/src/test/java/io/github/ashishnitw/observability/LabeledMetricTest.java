@@ -0,0 +1,168 @@
+package io.github.ashishnitw.observability;
+
+import io.prometheus.metrics.model.snapshots.CounterSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for LabeledMetric.
+ */
+class LabeledMetricTest {
+
+    @Test
+    void testLabels_ReturnsCachedChild() {
+        LabeledMetric<CounterHandle> requests = MetricsUtils.labeledCounter("labeled_requests", "method", "status");
+        CounterHandle getOk = requests.labels("GET", "200");
+        getOk.increment();
+        requests.labels("GET", "200").increment(2);
+
+        assertSame(getOk, requests.labels("GET", "200"));
+        assertNotSame(getOk, requests.labels("POST", "200"));
+        assertEquals(3, getOk.get());
+        assertEquals(List.of("method", "status"), requests.getLabelNames());
+    }
+
+    @Test
+    void testLabels_CallerArrayReuseDoesNotCorruptKeys() {
+        LabeledMetric<CounterHandle> requests = MetricsUtils.labeledCounter("labeled_reuse", "path");
+        String[] values = {"/a"};
+        CounterHandle a = requests.labels(values);
+        values[0] = "/b";
+        CounterHandle b = requests.labels(values);
+
+        assertNotSame(a, b);
+        assertSame(a, requests.labels("/a"));
+    }
+
+    @Test
+    void testLabels_WrongLabelCount() {
+        LabeledMetric<CounterHandle> requests = MetricsUtils.labeledCounter("labeled_arity", "method");
+        assertThrows(IllegalArgumentException.class, () -> requests.labels("GET", "200"));
+    }
+
+    @Test
+    void testLabels_NullValue() {
+        LabeledMetric<CounterHandle> requests = MetricsUtils.labeledCounter("labeled_null", "method");
+        assertThrows(IllegalArgumentException.class, () -> requests.labels((String) null));
+    }
+
+    @Test
+    void testCardinalityCap_FoldsIntoOverflow() {
+        LabeledMetric<CounterHandle> users = MetricsUtils.labeledCounter("labeled_capped", 3, "user");
+        for (int i = 0; i < 10; i++) {
+            users.labels("user-" + i).increment();
+        }
+
+        assertEquals(3, users.getCardinality());
+        assertEquals(7, users.getOverflowCount());
+        CounterHandle overflow = users.labels("another-user");
+        assertEquals(7, overflow.get());
+
+        List<List<String>> seen = new ArrayList<>();
+        users.forEach((values, child) -> seen.add(values));
+        assertEquals(4, seen.size());
+        assertTrue(seen.contains(List.of(LabeledMetric.OVERFLOW_LABEL_VALUE)));
+    }
+
+    @Test
+    void testOverflowTuple_ResolvesToOverflowChild() {
+        LabeledMetric<CounterHandle> users = MetricsUtils.labeledCounter("labeled_explicit_other", 3, "user");
+        users.labels("user-1").increment();
+        CounterHandle other = users.labels(LabeledMetric.OVERFLOW_LABEL_VALUE);
+        other.increment(2);
+
+        assertEquals(1, users.getCardinality());
+        assertEquals(0, users.getOverflowCount());
+        for (int i = 2; i < 6; i++) {
+            users.labels("user-" + i).increment();
+        }
+        assertSame(other, users.labels("user-9"));
+
+        List<List<String>> seen = new ArrayList<>();
+        users.forEach((values, child) -> seen.add(values));
+        assertEquals(4, seen.size());
+        assertEquals(1, seen.stream().filter(List.of(LabeledMetric.OVERFLOW_LABEL_VALUE)::equals).count());
+        assertEquals(4, other.get());
+    }
+
+    @Test
+    void testCardinalityCap_Concurrent() throws InterruptedException {
+        LabeledMetric<CounterHandle> keys = MetricsUtils.labeledCounter("labeled_capped_concurrent", 50, "key");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int offset = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    keys.labels("key-" + (i * 8 + offset)).increment();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(50, keys.getCardinality());
+        long total = 0;
+        List<Long> values = new ArrayList<>();
+        keys.forEach((labelValues, child) -> values.add(child.get()));
+        for (long value : values) {
+            total += value;
+        }
+        assertEquals(8_000, total);
+    }
+
+    @Test
+    void testLabeledGaugeAndHistogram() {
+        LabeledMetric<GaugeHandle> queueSize = MetricsUtils.labeledGauge("labeled_queue_size", "queue");
+        queueSize.labels("emails").set(12);
+        assertEquals(12.0, queueSize.labels("emails").get());
+
+        LabeledMetric<LatencyHistogram> latency = MetricsUtils.labeledHistogram("labeled_latency", "route");
+        latency.labels("/users").record(1_000_000);
+        assertEquals(1, latency.labels("/users").getCount());
+    }
+
+    @Test
+    void testSameNameWithDifferentLabels() {
+        MetricsUtils.labeledCounter("labeled_conflict", "a");
+        assertThrows(IllegalArgumentException.class, () -> MetricsUtils.labeledCounter("labeled_conflict", "b"));
+        assertThrows(IllegalArgumentException.class, () -> MetricsUtils.labeledGauge("labeled_conflict", "a"));
+    }
+
+    @Test
+    void testInvalidLabelNames() {
+        assertThrows(IllegalArgumentException.class, () -> MetricsUtils.labeledCounter("labeled_bad_name", "bad-name"));
+        assertThrows(IllegalArgumentException.class, () -> MetricsUtils.labeledCounter("labeled_bad_prefix", "__name"));
+        assertThrows(IllegalArgumentException.class, () -> MetricsUtils.labeledGauge("labeled_duplicate", "a", "a"));
+        assertThrows(IllegalArgumentException.class, () -> MetricsUtils.labeledHistogram("labeled_le", "le"));
+        assertThrows(IllegalArgumentException.class,
+                () -> MetricsUtils.labeledHistogram("labeled_quantile", "route", "quantile"));
+        assertEquals(List.of("le"), MetricsUtils.labeledGauge("labeled_gauge_le", "le").getLabelNames());
+    }
+
+    @Test
+    void testExportedToPrometheus() {
+        LabeledMetric<CounterHandle> jobs = MetricsUtils.labeledCounter("labeled_jobs_total", "queue");
+        jobs.labels("emails").increment(4);
+        jobs.labels("reports").increment(1);
+        MetricsUtils.syncMetricsToPrometheus();
+
+        MetricSnapshot snapshot = MetricsUtils.getPrometheusRegistry().scrape().stream()
+                .filter(s -> s.getMetadata().getName().equals("labeled_jobs"))
+                .findFirst()
+                .orElseThrow();
+        double emails = ((CounterSnapshot) snapshot).getDataPoints().stream()
+                .filter(dataPoint -> "emails".equals(dataPoint.getLabels().get("queue")))
+                .findFirst()
+                .orElseThrow()
+                .getValue();
+        assertEquals(4.0, emails);
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.ashishnitw.observability;
+
+import io.prometheus.metrics.model.snapshots.Labels;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for LatencyHistogram.
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void testRecord_Statistics() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10);
+        histogram.record(1_000);
+        histogram.record(1_000_000);
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(1_001_010, histogram.getSum());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(1_001_010 / 3.0, histogram.getMean(), 0.001);
+    }
+
+    @Test
+    void testRecord_WithOccurrences() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000, 8);
+        histogram.record(5_000, 0);
+
+        assertEquals(8, histogram.getCount());
+        assertEquals(8_000, histogram.getSum());
+        assertEquals(1_000, histogram.getMax());
+        assertEquals(8, histogram.getBucketValueCount(LatencyHistogram.bucketIndex(1_000)));
+    }
+
+    @Test
+    void testRecord_NegativeValueCountsAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.getBucketValueCount(0));
+        assertEquals(0, histogram.getSum());
+    }
+
+    @Test
+    void testBucketBoundsAreContiguous() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getBucketLowerBound(0));
+        for (int i = 1; i < histogram.getBucketCount(); i++) {
+            assertEquals(histogram.getBucketUpperBound(i - 1) + 1, histogram.getBucketLowerBound(i));
+        }
+        assertEquals(Long.MAX_VALUE, histogram.getBucketUpperBound(histogram.getBucketCount() - 1));
+    }
+
+    @Test
+    void testBucketIndex_MatchesBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = {0, 1, 63, 64, 65, 127, 128, 1_000, 123_456_789, LatencyHistogram.MAX_TRACKABLE_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(histogram.getBucketLowerBound(index) <= value);
+            assertTrue(histogram.getBucketUpperBound(index) >= value);
+        }
+    }
+
+    @Test
+    void testBucketWidth_RelativeErrorBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 64; i < histogram.getBucketCount() - 1; i++) {
+            long lower = histogram.getBucketLowerBound(i);
+            long width = histogram.getBucketUpperBound(i) - lower + 1;
+            assertTrue((double) width / lower <= 1.0 / 32, "Bucket " + i + " is too wide");
+        }
+    }
+
+    @Test
+    void testRecord_ValueAboveTrackableRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(1, histogram.getBucketValueCount(histogram.getBucketCount() - 1));
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+    }
+
+    @Test
+    void testPercentiles_UniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1_000);
+        }
+
+        assertWithinRelativeError(50_000_000, histogram.getP50());
+        assertWithinRelativeError(90_000_000, histogram.getP90());
+        assertWithinRelativeError(99_000_000, histogram.getP99());
+        assertWithinRelativeError(99_900_000, histogram.getP999());
+        assertEquals(100_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void testPercentiles_TailIsVisible() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 990; i++) {
+            histogram.record(1_000_000);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(500_000_000);
+        }
+
+        assertWithinRelativeError(1_000_000, histogram.getP50());
+        assertWithinRelativeError(1_000_000, histogram.getP99());
+        assertWithinRelativeError(500_000_000, histogram.getP999());
+        assertEquals(500_000_000, histogram.getMax());
+    }
+
+    @Test
+    void testPercentiles_Empty() {
+        assertEquals(0, new LatencyHistogram().getP99());
+    }
+
+    @Test
+    void testToPrometheusDataPoint() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(500_000);
+        histogram.record(2_000_000);
+        histogram.record(20_000_000_000L);
+
+        var dataPoint = histogram.toPrometheusDataPoint(new double[]{0.001, 0.01, Double.POSITIVE_INFINITY}, Labels.EMPTY);
+        var buckets = dataPoint.getClassicBuckets();
+        assertEquals(1, buckets.getCount(0));
+        assertEquals(1, buckets.getCount(1));
+        assertEquals(1, buckets.getCount(2));
+        assertEquals(20.0025, dataPoint.getSum(), 1e-9);
+    }
+
+    @Test
+    void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getBucketValueCount(42));
+    }
+
+    private static void assertWithinRelativeError(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 32,
+                "Expected about " + expected + " but was " + actual);
+    }
+}
@@ -3,7 +3,12 @@ package io.github.ashishnitw.observability;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
 
 /**
  * Test class for LoggingUtils.
@@ -24,6 +29,83 @@ class LoggingUtilsTest {
         assertDoesNotThrow(() -> LoggingUtils.logMethodExit("testMethod", null));
     }
 
+    @Test
+    void testLogMethodEntryAndExit_Overloads() {
+        assertDoesNotThrow(() -> {
+            LoggingUtils.logMethodEntry("testMethod", "param1");
+            LoggingUtils.logMethodEntry("testMethod", "param1", "param2", "param3");
+            LoggingUtils.logMethodEntry("testMethod", 1);
+            LoggingUtils.logMethodEntry("testMethod", 1L);
+            LoggingUtils.logMethodEntry("testMethod", 1.5f);
+            LoggingUtils.logMethodEntry("testMethod", 1.5);
+            LoggingUtils.logMethodEntry("testMethod", true);
+            LoggingUtils.logMethodEntry("testMethod", 'c');
+            LoggingUtils.logMethodEntry("testMethod", (Object[]) null);
+            LoggingUtils.logMethodEntry("testMethod", new Object[] {"a", "b", "c", "d", "e", "f", "g", "h", "i", "j"});
+            LoggingUtils.logMethodExit("testMethod");
+            LoggingUtils.logMethodExit("testMethod", 1);
+            LoggingUtils.logMethodExit("testMethod", 1L);
+            LoggingUtils.logMethodExit("testMethod", 1.5f);
+            LoggingUtils.logMethodExit("testMethod", 1.5);
+            LoggingUtils.logMethodExit("testMethod", false);
+            LoggingUtils.logMethodExit("testMethod", 'c');
+        });
+    }
+
+    @Test
+    void testLazyVariants_SupplierNotCalledWhenTraceDisabled() {
+        assumeFalse(LoggingUtils.getLogger(LoggingUtils.class).isTraceEnabled());
+        AtomicBoolean called = new AtomicBoolean();
+        LoggingUtils.logMethodEntryLazy("testMethod", () -> {
+            called.set(true);
+            return "expensive";
+        });
+        LoggingUtils.logMethodExitLazy("testMethod", () -> {
+            called.set(true);
+            return "expensive";
+        });
+        assertFalse(called.get());
+    }
+
+    @Test
+    void testDisabledEntryAndExit_DoNotAllocate() {
+        assumeFalse(LoggingUtils.getLogger(LoggingUtils.class).isTraceEnabled());
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Object first = "first";
+        Object second = "second";
+        Object third = "third";
+        for (int i = 0; i < 100_000; i++) {
+            logDisabledCalls(first, second, third, i);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            logDisabledCalls(first, second, third, i);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // 1.4 million disabled calls; allow for the bytes allocated by the measurement call itself
+        assertTrue(allocated < 1024, "Allocated " + allocated + " bytes");
+    }
+
+    private static void logDisabledCalls(Object first, Object second, Object third, int i) {
+        LoggingUtils.logMethodEntry("allocationTest");
+        LoggingUtils.logMethodEntry("allocationTest", first);
+        LoggingUtils.logMethodEntry("allocationTest", first, second);
+        LoggingUtils.logMethodEntry("allocationTest", first, second, third);
+        LoggingUtils.logMethodEntry("allocationTest", i + 1_000_000);
+        LoggingUtils.logMethodEntry("allocationTest", i * 1_000_000L);
+        LoggingUtils.logMethodEntry("allocationTest", i * 0.5);
+        LoggingUtils.logMethodEntryLazy("allocationTest", () -> "lazy");
+        LoggingUtils.logMethodExit("allocationTest");
+        LoggingUtils.logMethodExit("allocationTest", first);
+        LoggingUtils.logMethodExit("allocationTest", i + 1_000_000);
+        LoggingUtils.logMethodExit("allocationTest", i * 1_000_000L);
+        LoggingUtils.logMethodExit("allocationTest", i * 0.5);
+        LoggingUtils.logMethodExitLazy("allocationTest", () -> "lazy");
+    }
+
     @Test
     void testLogMethodExecutionTime() {
         // Just verify it doesn't throw an exception
@@ -51,6 +133,42 @@ class LoggingUtilsTest {
         assertDoesNotThrow(() -> LoggingUtils.logException("Test error occurred", exception));
     }
 
+    @Test
+    void testLimitRepeatedMessages_SuppressesAndCounts() {
+        AtomicLong clock = new AtomicLong();
+        long before = MetricsUtils.getCounterValue("log_messages_suppressed");
+        LoggingUtils.limitRepeatedMessages(1, 5, clock::get);
+        try {
+            Exception exception = new IllegalStateException("gateway timeout");
+            for (int i = 0; i < 100; i++) {
+                LoggingUtils.logException("Payment failed", exception);
+            }
+            assertEquals(before + 95, MetricsUtils.getCounterValue("log_messages_suppressed"));
+
+            // Other messages have buckets of their own
+            LoggingUtils.logException("Refund failed", exception);
+            assertEquals(before + 95, MetricsUtils.getCounterValue("log_messages_suppressed"));
+
+            // One token is back after a second; its line is preceded by the summary
+            clock.addAndGet(1_000_000_000L);
+            LoggingUtils.logException("Payment failed", exception);
+            LoggingUtils.logException("Payment failed", exception);
+            assertEquals(before + 96, MetricsUtils.getCounterValue("log_messages_suppressed"));
+        } finally {
+            LoggingUtils.limitRepeatedMessages(0, 0);
+        }
+        for (int i = 0; i < 10; i++) {
+            LoggingUtils.logException("Payment failed", new RuntimeException());
+        }
+        assertEquals(before + 96, MetricsUtils.getCounterValue("log_messages_suppressed"));
+    }
+
+    @Test
+    void testLimitRepeatedMessages_InvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> LoggingUtils.limitRepeatedMessages(-1, 5));
+        assertThrows(IllegalArgumentException.class, () -> LoggingUtils.limitRepeatedMessages(10, 0));
+    }
+
     @Test
     void testLogWarning() {
         // Just verify it doesn't throw an exception
@@ -0,0 +1,74 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for MappedCountersReader.
+ */
+class MappedCountersReaderTest {
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("mapped-counters-reader", ".dat");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void testRead_SeesLiveValues() throws IOException {
+        try (MappedCounters counters = MappedCounters.open(file, 4)) {
+            MappedCounters.Slot hits = counters.counterSlot("hits");
+            hits.add(10);
+            counters.gaugeSlot("ratio").setDouble(0.5);
+
+            Map<String, Number> values = MappedCountersReader.read(file);
+            assertEquals(10L, values.get("hits"));
+            assertEquals(0.5, values.get("ratio"));
+
+            hits.add(5);
+            assertEquals(15L, MappedCountersReader.read(file).get("hits"));
+        }
+    }
+
+    @Test
+    void testReadOwnerPid() throws IOException {
+        try (MappedCounters counters = MappedCounters.open(file, 4)) {
+            assertEquals(ProcessHandle.current().pid(), MappedCountersReader.readOwnerPid(file));
+        }
+    }
+
+    @Test
+    void testDump() throws IOException {
+        try (MappedCounters counters = MappedCounters.open(file, 4)) {
+            counters.counterSlot("dumped").add(7);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MappedCountersReader.dump(file, new PrintStream(out, true, StandardCharsets.UTF_8));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("dumped 7"));
+    }
+
+    @Test
+    void testRead_RejectsOtherFiles() throws IOException {
+        Files.write(file, new byte[128]);
+        assertThrows(IOException.class, () -> MappedCountersReader.read(file));
+        Files.write(file, new byte[3]);
+        assertThrows(IOException.class, () -> MappedCountersReader.read(file));
+    }
+}
@@ -0,0 +1,128 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for MappedCounters.
+ */
+class MappedCountersTest {
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("mapped-counters", ".dat");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        MetricsUtils.useMappedStorage(null);
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void testCounterAndGaugeSlots() throws IOException {
+        try (MappedCounters counters = MappedCounters.open(file, 8)) {
+            MappedCounters.Slot requests = counters.counterSlot("requests");
+            requests.add(5);
+            requests.add(2);
+            MappedCounters.Slot temperature = counters.gaugeSlot("temperature");
+            temperature.setDouble(21.5);
+            temperature.addDouble(0.25);
+
+            assertEquals(7, requests.get());
+            assertEquals(21.75, temperature.getDouble());
+            assertSame(requests, counters.counterSlot("requests"));
+            assertEquals(2, counters.getUsedSlots());
+        }
+    }
+
+    @Test
+    void testValuesSurviveReopen() throws IOException {
+        try (MappedCounters counters = MappedCounters.open(file, 8)) {
+            counters.counterSlot("restarts").add(41);
+            counters.gaugeSlot("level").setDouble(3.5);
+        }
+        try (MappedCounters counters = MappedCounters.open(file, 8)) {
+            counters.counterSlot("restarts").add(1);
+            assertEquals(42, counters.counterSlot("restarts").get());
+            assertEquals(3.5, counters.gaugeSlot("level").getDouble());
+            assertEquals(2, counters.getUsedSlots());
+        }
+    }
+
+    @Test
+    void testDifferentLayoutIsRecreated() throws IOException {
+        try (MappedCounters counters = MappedCounters.open(file, 8)) {
+            counters.counterSlot("old").add(1);
+        }
+        try (MappedCounters counters = MappedCounters.open(file, 16)) {
+            assertEquals(0, counters.getUsedSlots());
+            assertEquals(0, counters.counterSlot("old").get());
+        }
+    }
+
+    @Test
+    void testFullFileReturnsNull() throws IOException {
+        try (MappedCounters counters = MappedCounters.open(file, 1)) {
+            assertNotNull(counters.counterSlot("first"));
+            assertNull(counters.counterSlot("second"));
+        }
+    }
+
+    @Test
+    void testInvalidSlots() throws IOException {
+        try (MappedCounters counters = MappedCounters.open(file, 4)) {
+            counters.counterSlot("typed");
+            assertThrows(IllegalArgumentException.class, () -> counters.gaugeSlot("typed"));
+            assertThrows(IllegalArgumentException.class, () -> counters.counterSlot("x".repeat(200)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> MappedCounters.open(file, 0));
+    }
+
+    @Test
+    void testConcurrentAdds() throws Exception {
+        try (MappedCounters counters = MappedCounters.open(file, 4)) {
+            MappedCounters.Slot slot = counters.counterSlot("concurrent");
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 100_000; i++) {
+                        slot.add(1);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(400_000, slot.get());
+        }
+    }
+
+    @Test
+    void testMetricsUtilsMappedStorage() throws IOException {
+        try (MappedCounters counters = MappedCounters.open(file, 8)) {
+            MetricsUtils.useMappedStorage(counters);
+            MetricsUtils.counter("mapped_requests").increment(3);
+            MetricsUtils.gauge("mapped_queue_depth").set(12.0);
+
+            assertEquals(3, counters.counterSlot("mapped_requests").get());
+            assertEquals(12.0, counters.gaugeSlot("mapped_queue_depth").getDouble());
+            assertEquals(3, MetricsUtils.getCounterValue("mapped_requests"));
+            MetricsUtils.resetCounter("mapped_requests");
+            assertEquals(0, counters.counterSlot("mapped_requests").get());
+        }
+    }
+}
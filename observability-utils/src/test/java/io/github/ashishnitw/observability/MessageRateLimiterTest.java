@@ -0,0 +1,125 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for MessageRateLimiter.
+ */
+class MessageRateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void testTryAcquire_AllowsBurstThenRate() {
+        AtomicLong clock = new AtomicLong(-5 * SECOND);
+        MessageRateLimiter limiter = new MessageRateLimiter(2, 3, clock::get);
+        MessageRateLimiter.Bucket bucket = limiter.bucket("disk full");
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bucket.tryAcquire(clock.get()));
+        }
+        assertFalse(bucket.tryAcquire(clock.get()));
+        assertFalse(bucket.tryAcquire(clock.get()));
+
+        // Two messages per second: one token every half second
+        clock.addAndGet(SECOND / 2);
+        assertTrue(bucket.tryAcquire(clock.get()));
+        assertFalse(bucket.tryAcquire(clock.get()));
+
+        // A long pause refills the burst but no more
+        clock.addAndGet(60 * SECOND);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bucket.tryAcquire(clock.get()));
+        }
+        assertFalse(bucket.tryAcquire(clock.get()));
+    }
+
+    @Test
+    void testTakeSuppressed_CountsSinceLastTake() {
+        AtomicLong clock = new AtomicLong();
+        MessageRateLimiter limiter = new MessageRateLimiter(1, 1, clock::get);
+        MessageRateLimiter.Bucket bucket = limiter.bucket("timeout");
+
+        assertTrue(bucket.tryAcquire(clock.get()));
+        clock.addAndGet(SECOND / 10);
+        for (int i = 0; i < 7; i++) {
+            assertFalse(bucket.tryAcquire(clock.get()));
+        }
+        assertEquals(SECOND / 10, bucket.getFirstSuppressedNanos());
+        assertEquals(7, bucket.takeSuppressed());
+        assertEquals(0, bucket.takeSuppressed());
+    }
+
+    @Test
+    void testBucket_PerTemplateAndBounded() {
+        MessageRateLimiter limiter = new MessageRateLimiter(1, 1, System::nanoTime);
+        assertSame(limiter.bucket("a"), limiter.bucket("a"));
+        assertNotSame(limiter.bucket("a"), limiter.bucket("b"));
+        assertSame(limiter.bucket(null), limiter.bucket("null"));
+
+        assertSame(limiter.bucket("a"), limiter.bucket("a"));
+    }
+
+    @Test
+    void testBucket_FullMapEvictsRefilledBuckets() {
+        AtomicLong now = new AtomicLong();
+        MessageRateLimiter limiter = new MessageRateLimiter(1, 1, now::get);
+        // Every bucket has just let a message through, so none can be evicted
+        for (int i = 0; i < MessageRateLimiter.MAX_TEMPLATES; i++) {
+            assertTrue(limiter.bucket("message " + i).tryAcquire(now.get()));
+        }
+        MessageRateLimiter.Bucket overflow = limiter.bucket("message " + MessageRateLimiter.MAX_TEMPLATES);
+        assertSame(overflow, limiter.bucket("late one"));
+        assertFalse(limiter.bucket("message 0").tryAcquire(now.get()));
+
+        // A second later the buckets are back to a full burst, except the one holding a suppression
+        now.addAndGet(SECOND);
+        MessageRateLimiter.Bucket late = limiter.bucket("late one");
+        assertNotSame(overflow, late);
+        assertNotSame(late, limiter.bucket("late two"));
+        assertTrue(late.tryAcquire(now.get()));
+        MessageRateLimiter.Bucket suppressed = limiter.bucket("message 0");
+        assertTrue(suppressed.tryAcquire(now.get()));
+        assertEquals(1, suppressed.takeSuppressed());
+    }
+
+    @Test
+    void testConstructor_InvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new MessageRateLimiter(0, 1, System::nanoTime));
+        assertThrows(IllegalArgumentException.class, () -> new MessageRateLimiter(Double.NaN, 1, System::nanoTime));
+        assertThrows(IllegalArgumentException.class, () -> new MessageRateLimiter(1, 0, System::nanoTime));
+    }
+
+    @Test
+    void testTryAcquire_ConcurrentCallersGetExactlyTheBurst() throws InterruptedException {
+        long now = System.nanoTime();
+        MessageRateLimiter limiter = new MessageRateLimiter(0.001, 100, () -> now);
+        MessageRateLimiter.Bucket bucket = limiter.bucket("flood");
+        AtomicInteger allowed = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    if (bucket.tryAcquire(now)) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(100, allowed.get());
+        assertEquals(80_000 - 100, bucket.takeSuppressed());
+    }
+}
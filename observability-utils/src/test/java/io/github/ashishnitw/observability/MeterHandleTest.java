@@ -0,0 +1,143 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for MeterHandle.
+ */
+class MeterHandleTest {
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    private void advanceSeconds(double seconds) {
+        clock.addAndGet((long) (seconds * 1e9));
+    }
+
+    @Test
+    void testMeter_ReturnsSameHandle() {
+        assertSame(MetricsUtils.meter("handle_meter"), MetricsUtils.meter("handle_meter"));
+    }
+
+    @Test
+    void testMark_Count() {
+        MeterHandle meter = new MeterHandle("meter_count", clock::get);
+        meter.mark();
+        meter.mark(9);
+        assertEquals(10, meter.getCount());
+    }
+
+    @Test
+    void testGetRate_DuringConcurrentTick() throws InterruptedException {
+        MeterHandle meter = new MeterHandle("meter_concurrent_tick", clock::get);
+        advanceSeconds(1.5);
+        meter.mark(10);
+        advanceSeconds(2);
+        Thread ticking = new Thread(() -> meter.mark(1));
+        synchronized (meter) {
+            // The thread claims the tick for second 3, then waits for the monitor to write the slots
+            ticking.start();
+            while (ticking.getState() != Thread.State.BLOCKED) {
+                Thread.onSpinWait();
+            }
+            meter.mark(5);
+            assertEquals(15 / 2.5, meter.getRate(1), 1e-9, "Must fall back to the slot of second 1");
+        }
+        ticking.join();
+        assertEquals(1 / 1.5, meter.getRate(1), 1e-9);
+    }
+
+    @Test
+    void testGetRate_AfterLongIdle() {
+        MeterHandle meter = new MeterHandle("meter_long_idle", clock::get);
+        meter.mark(10);
+        advanceSeconds(MeterHandle.MAX_WINDOW_SECONDS * 3 + 0.5);
+        assertEquals(0.0, meter.getRate(MeterHandle.MAX_WINDOW_SECONDS));
+        meter.mark(3);
+        assertEquals(3 / 10.5, meter.getRate(10), 1e-9);
+    }
+
+    @Test
+    void testGetRate_SteadyLoad() {
+        MeterHandle meter = new MeterHandle("meter_steady", clock::get);
+        for (int second = 0; second < 120; second++) {
+            meter.mark(100);
+            advanceSeconds(1);
+        }
+        assertEquals(100.0, meter.getRate(10), 1.0);
+        assertEquals(100.0, meter.getRate(60), 1.0);
+        assertEquals(100.0, meter.getMeanRate(), 1.0);
+    }
+
+    @Test
+    void testGetRate_OnlyCountsRecentWindow() {
+        MeterHandle meter = new MeterHandle("meter_recent", clock::get);
+        for (int second = 0; second < 60; second++) {
+            meter.mark(1000);
+            advanceSeconds(1);
+        }
+        for (int second = 0; second < 30; second++) {
+            meter.mark(10);
+            advanceSeconds(1);
+        }
+        assertEquals(10.0, meter.getRate(10), 0.5);
+        assertTrue(meter.getRate(60) > 400);
+    }
+
+    @Test
+    void testGetRate_IdleMeterDropsToZero() {
+        MeterHandle meter = new MeterHandle("meter_idle", clock::get);
+        for (int second = 0; second < 20; second++) {
+            meter.mark(50);
+            advanceSeconds(1);
+        }
+        advanceSeconds(1_000);
+        assertEquals(0.0, meter.getRate(10));
+        assertEquals(0.0, meter.getRate(MeterHandle.MAX_WINDOW_SECONDS));
+    }
+
+    @Test
+    void testGetRate_YoungerThanWindow() {
+        MeterHandle meter = new MeterHandle("meter_young", clock::get);
+        meter.mark(20);
+        advanceSeconds(2);
+        assertEquals(10.0, meter.getRate(60), 0.001);
+    }
+
+    @Test
+    void testGetRate_InvalidWindow() {
+        MeterHandle meter = new MeterHandle("meter_invalid", clock::get);
+        assertThrows(IllegalArgumentException.class, () -> meter.getRate(0));
+        assertThrows(IllegalArgumentException.class, () -> meter.getRate(MeterHandle.MAX_WINDOW_SECONDS + 1));
+    }
+
+    @Test
+    void testEwmaRates_ConvergeToSteadyRate() {
+        MeterHandle meter = new MeterHandle("meter_ewma", clock::get);
+        for (int second = 0; second < 1_800; second++) {
+            meter.mark(10);
+            advanceSeconds(1);
+        }
+        assertEquals(10.0, meter.getOneMinuteRate(), 0.1);
+        assertEquals(10.0, meter.getFiveMinuteRate(), 0.1);
+        assertEquals(10.0, meter.getFifteenMinuteRate(), 0.5);
+    }
+
+    @Test
+    void testEwmaRates_DecayWhenIdle() {
+        MeterHandle meter = new MeterHandle("meter_ewma_decay", clock::get);
+        for (int second = 0; second < 600; second++) {
+            meter.mark(10);
+            advanceSeconds(1);
+        }
+        advanceSeconds(300);
+        double oneMinute = meter.getOneMinuteRate();
+        double fifteenMinute = meter.getFifteenMinuteRate();
+        assertTrue(oneMinute < 0.1, "One minute rate was " + oneMinute);
+        assertTrue(fifteenMinute > oneMinute);
+    }
+}
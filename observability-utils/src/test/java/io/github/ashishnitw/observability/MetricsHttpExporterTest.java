@@ -0,0 +1,218 @@
+package io.github.ashishnitw.observability;
+
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.model.registry.Collector;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for MetricsHttpExporter.
+ */
+class MetricsHttpExporterTest {
+
+    @Test
+    void testScrape() throws Exception {
+        MetricsUtils.incrementPrometheusCounter("exporter_test_requests", "Exporter test requests");
+        try (MetricsHttpExporter exporter = MetricsHttpExporter.start(0)) {
+            String body = scrape(exporter.getPort(), false);
+            assertTrue(body.contains("exporter_test_requests"), body);
+        }
+    }
+
+    @Test
+    void testScrape_Gzip() throws Exception {
+        MetricsUtils.setPrometheusGauge("exporter_test_gauge", "Exporter test gauge", 7.0);
+        try (MetricsHttpExporter exporter = MetricsHttpExporter.start(0)) {
+            String plain = scrape(exporter.getPort(), false);
+            String gzipped = scrape(exporter.getPort(), true);
+            assertTrue(gzipped.contains("exporter_test_gauge"));
+            assertEquals(plain, gzipped);
+        }
+    }
+
+    @Test
+    void testScrape_CachedWithinCacheTime() throws Exception {
+        PrometheusRegistry registry = new PrometheusRegistry();
+        var counter = Counter.builder()
+                .name("cached_scrapes")
+                .help("Cached scrapes")
+                .register(registry);
+        try (MetricsHttpExporter exporter = MetricsHttpExporter.start(
+                new InetSocketAddress("127.0.0.1", 0), registry, 60_000, 1)) {
+            String first = scrape(exporter.getPort(), false);
+            counter.inc(100);
+            assertEquals(first, scrape(exporter.getPort(), false));
+        }
+    }
+
+    @Test
+    void testScrape_NotCachedWithZeroCacheTime() throws Exception {
+        PrometheusRegistry registry = new PrometheusRegistry();
+        var counter = Counter.builder()
+                .name("uncached_scrapes")
+                .help("Uncached scrapes")
+                .register(registry);
+        try (MetricsHttpExporter exporter = MetricsHttpExporter.start(
+                new InetSocketAddress("127.0.0.1", 0), registry, 0, 1)) {
+            String first = scrape(exporter.getPort(), false);
+            counter.inc(100);
+            assertNotEquals(first, scrape(exporter.getPort(), false));
+        }
+    }
+
+    @Test
+    void testMethodNotAllowed() throws Exception {
+        try (MetricsHttpExporter exporter = MetricsHttpExporter.start(0)) {
+            HttpURLConnection connection = open(exporter.getPort());
+            connection.setRequestMethod("DELETE");
+            assertEquals(405, connection.getResponseCode());
+        }
+    }
+
+    @Test
+    void testOtherPathsNotFound() throws Exception {
+        try (MetricsHttpExporter exporter = MetricsHttpExporter.start(0)) {
+            for (String path : List.of("/metricsfoo", "/metrics/extra", "/")) {
+                HttpURLConnection connection = (HttpURLConnection) new URL(
+                        "http://127.0.0.1:" + exporter.getPort() + path).openConnection();
+                assertEquals(404, connection.getResponseCode(), path);
+            }
+        }
+    }
+
+    @Test
+    void testScrapesBeyondQueueRejected() throws Exception {
+        PrometheusRegistry registry = new PrometheusRegistry();
+        CountDownLatch scrapeStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        registry.register((Collector) () -> {
+            scrapeStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return GaugeSnapshot.builder().name("slow_scrape").help("Slow scrape").build();
+        });
+        try (MetricsHttpExporter exporter = MetricsHttpExporter.start(
+                new InetSocketAddress("127.0.0.1", 0), registry, 0, 1)) {
+            // One scrape holds the only thread, sixteen fill its queue and the rest are rejected
+            List<Thread> clients = new ArrayList<>();
+            List<Integer> codes = Collections.synchronizedList(new ArrayList<>());
+            for (int i = 0; i < 40; i++) {
+                Thread client = new Thread(() -> {
+                    try {
+                        HttpURLConnection connection = open(exporter.getPort());
+                        connection.setReadTimeout(10_000);
+                        codes.add(connection.getResponseCode());
+                    } catch (IOException e) {
+                        codes.add(-1);
+                    }
+                });
+                clients.add(client);
+                client.start();
+                if (i == 0) {
+                    assertTrue(scrapeStarted.await(5, TimeUnit.SECONDS));
+                }
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (codes.size() < 23 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(Collections.nCopies(23, 503), List.copyOf(codes));
+
+            release.countDown();
+            for (Thread client : clients) {
+                client.join();
+            }
+            assertEquals(17, Collections.frequency(codes, 200));
+        }
+    }
+
+    @Test
+    void testConcurrentScrapesWhileMetricsAreUpdated() throws Exception {
+        TimerHandle timer = MetricsUtils.timer("exporter_load_op");
+        CounterHandle counter = MetricsUtils.counter("exporter_load_requests");
+        MetricsUtils.exportTimerHistogram("exporter_load_op", "Exporter load operation");
+        MetricsUtils.syncMetricsToPrometheus();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> updaters = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread updater = new Thread(() -> {
+                while (running.get()) {
+                    counter.increment();
+                    timer.stop(timer.start());
+                    MetricsUtils.incrementPrometheusCounter("exporter_load_prom", "Exporter load");
+                }
+            });
+            updaters.add(updater);
+            updater.start();
+        }
+
+        try (MetricsHttpExporter exporter = MetricsHttpExporter.start(0, 5)) {
+            List<Thread> scrapers = new ArrayList<>();
+            List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+            for (int i = 0; i < 4; i++) {
+                boolean gzip = i % 2 == 0;
+                Thread scraper = new Thread(() -> {
+                    try {
+                        for (int j = 0; j < 25; j++) {
+                            String body = scrape(exporter.getPort(), gzip);
+                            assertTrue(body.contains("exporter_load_requests"));
+                            assertTrue(body.contains("exporter_load_op_seconds"));
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                });
+                scrapers.add(scraper);
+                scraper.start();
+            }
+            for (Thread scraper : scrapers) {
+                scraper.join();
+            }
+            assertTrue(failures.isEmpty(), () -> "Scrape failed: " + failures);
+        } finally {
+            running.set(false);
+            for (Thread updater : updaters) {
+                updater.join();
+            }
+        }
+        assertTrue(counter.get() > 0);
+    }
+
+    private static HttpURLConnection open(int port) throws IOException {
+        return (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/metrics").openConnection();
+    }
+
+    private static String scrape(int port, boolean gzip) throws IOException {
+        HttpURLConnection connection = open(port);
+        if (gzip) {
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+        }
+        assertEquals(200, connection.getResponseCode());
+        try (InputStream in = gzip ? new GZIPInputStream(connection.getInputStream()) : connection.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
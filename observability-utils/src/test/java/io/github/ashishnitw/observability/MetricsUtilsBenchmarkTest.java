@@ -0,0 +1,128 @@
+package io.github.ashishnitw.observability;
+
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.core.metrics.Gauge;
+import io.prometheus.metrics.core.metrics.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Micro-benchmark comparing the per-call cost of the name-based methods of MetricsUtils
+ * with bound instruments and handles. Tagged {@code benchmark}, so it is left out of the
+ * {@code test} task and run with {@code ./gradlew :observability-utils:benchmark}. Each
+ * benchmark publishes the timings of both variants as report entries, and checks as a
+ * regression guard that the bound variant is not slower than the lookup by name.
+ */
+@Tag("benchmark")
+class MetricsUtilsBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int MEASURED_ITERATIONS = 2_000_000;
+
+    @Test
+    void benchmarkCounterIncrement(TestReporter reporter) {
+        Counter bound = MetricsUtils.bindPrometheusCounter("bench_counter", "Benchmark counter");
+        double named = measure(() -> MetricsUtils.incrementPrometheusCounter("bench_counter", "Benchmark counter"));
+        double direct = measure(bound::inc);
+        assertNotSlower(reporter, "counter inc", named, direct);
+        assertEquals(2 * (WARMUP_ITERATIONS + MEASURED_ITERATIONS), bound.get(), 0.5);
+    }
+
+    @Test
+    void benchmarkGaugeSet(TestReporter reporter) {
+        Gauge bound = MetricsUtils.bindPrometheusGauge("bench_gauge", "Benchmark gauge");
+        double named = measure(() -> MetricsUtils.setPrometheusGauge("bench_gauge", "Benchmark gauge", 1.0));
+        double direct = measure(() -> bound.set(2.0));
+        assertNotSlower(reporter, "gauge set", named, direct);
+        assertEquals(2.0, bound.get());
+    }
+
+    @Test
+    void benchmarkHistogramObserve(TestReporter reporter) {
+        Histogram bound = MetricsUtils.bindPrometheusHistogram("bench_histogram", "Benchmark histogram");
+        double named = measure(() -> MetricsUtils.observePrometheusHistogram("bench_histogram",
+                "Benchmark histogram", 0.01));
+        double direct = measure(() -> bound.observe(0.01));
+        assertNotSlower(reporter, "histogram observe", named, direct);
+    }
+
+    @Test
+    void benchmarkLocalCounterIncrement(TestReporter reporter) {
+        CounterHandle handle = MetricsUtils.counter("bench_local_counter");
+        double named = measure(() -> MetricsUtils.incrementCounter("bench_local_counter"));
+        double direct = measure(handle::increment);
+        assertNotSlower(reporter, "local counter increment", named, direct);
+        assertEquals(2L * (WARMUP_ITERATIONS + MEASURED_ITERATIONS), handle.get());
+    }
+
+    @Test
+    void benchmarkHeavyHittersContended(TestReporter reporter) throws Exception {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        String[] keys = {"orders", "payments", "search", "login"};
+        HeavyHitters global = new HeavyHitters(64, 1);
+        HeavyHitters striped = new HeavyHitters(64);
+        double single = measureContended(threads, i -> global.add(keys[i & 3], 1));
+        double spread = measureContended(threads, i -> striped.add(keys[i & 3], 1));
+        assertNotSlower(reporter, "heavy hitters add, " + threads + " threads", "one lock", single, "striped", spread);
+        assertEquals(global.getTotalWeight(), striped.getTotalWeight());
+    }
+
+    // Average wall-clock time per call while all threads call at once
+    private static double measureContended(int threads, IntConsumer call) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    barrier.await();
+                    for (int i = 0; i < WARMUP_ITERATIONS + MEASURED_ITERATIONS / 4; i++) {
+                        call.accept(i);
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        barrier.await();
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return (double) (System.nanoTime() - start) / (threads * (WARMUP_ITERATIONS + MEASURED_ITERATIONS / 4));
+    }
+
+    private static double measure(Runnable call) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            call.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            call.run();
+        }
+        return (double) (System.nanoTime() - start) / MEASURED_ITERATIONS;
+    }
+
+    // The bound variant does the same work without the lookup; the margin absorbs timer noise
+    private static void assertNotSlower(TestReporter reporter, String operation, double namedNanos,
+                                        double boundNanos) {
+        assertNotSlower(reporter, operation, "by name", namedNanos, "bound", boundNanos);
+    }
+
+    private static void assertNotSlower(TestReporter reporter, String operation, String baseline,
+                                        double baselineNanos, String candidate, double candidateNanos) {
+        reporter.publishEntry(operation + ", " + baseline + ", ns/op", String.format("%.2f", baselineNanos));
+        reporter.publishEntry(operation + ", " + candidate + ", ns/op", String.format("%.2f", candidateNanos));
+        assertTrue(candidateNanos <= baselineNanos * 1.5, String.format("%s %s: %.2f ns/op, %s: %.2f ns/op",
+                operation, baseline, baselineNanos, candidate, candidateNanos));
+    }
+}
@@ -1,8 +1,17 @@
 package io.github.ashishnitw.observability;
 
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.core.metrics.Gauge;
+import io.prometheus.metrics.core.metrics.Histogram;
+import io.prometheus.metrics.model.snapshots.CounterSnapshot;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -105,6 +114,23 @@ class MetricsUtilsTest {
         assertTrue(totalTime >= 50);
     }
 
+    @Test
+    void testMeasureOperation_RecordsLatencyDistribution() throws Exception {
+        TimerHandle timer = MetricsUtils.timer("test_dist_op");
+        timer.reset();
+        for (int i = 0; i < 10; i++) {
+            MetricsUtils.measureOperation("test_dist_op", () -> null);
+        }
+        MetricsUtils.measureOperation("test_dist_op", () -> {
+            Thread.sleep(20);
+            return null;
+        });
+
+        assertEquals(11, timer.getCount());
+        assertTrue(timer.getMax(TimeUnit.MILLISECONDS) >= 20);
+        assertTrue(timer.getPercentile(50, TimeUnit.MILLISECONDS) < 20);
+    }
+
     @Test
     void testMeasureOperation_Exception() {
         Exception testException = new RuntimeException("test error");
@@ -206,6 +232,86 @@ class MetricsUtilsTest {
         assertNotNull(histogram);
     }
 
+    @Test
+    void testExportTimerHistogram() throws Exception {
+        MetricsUtils.measureOperation("export.op", () -> null);
+        MetricsUtils.exportTimerHistogram("export.op", "Exported operation latency");
+        MetricsUtils.exportTimerHistogram("export.op", "Exported operation latency");
+
+        var snapshot = MetricsUtils.getPrometheusRegistry().scrape().stream()
+                .filter(s -> s.getMetadata().getName().equals("export_op_seconds"))
+                .findFirst();
+        assertTrue(snapshot.isPresent());
+    }
+
+    @Test
+    void testSyncMetricsToPrometheus_ReadsValuesAtScrapeTime() {
+        MetricsUtils.resetCounter("synced.requests_total");
+        MetricsUtils.incrementCounter("synced.requests_total", 5);
+        MetricsUtils.syncMetricsToPrometheus();
+        MetricsUtils.syncMetricsToPrometheus();
+
+        assertEquals(5.0, scrapeCounter("synced_requests"));
+        assertEquals(5.0, scrapeCounter("synced_requests"), "Scraping twice must not double count");
+
+        MetricsUtils.incrementCounter("synced.requests_total", 2);
+        assertEquals(7.0, scrapeCounter("synced_requests"));
+    }
+
+    @Test
+    void testSyncMetricsToPrometheus_SkipsNamesClashingAfterNormalization() {
+        MetricsUtils.incrementPrometheusCounter("clash_requests_total", "Clashing counter", 1);
+        MetricsUtils.incrementCounter("clash_requests", 5);
+        MetricsUtils.observePrometheusHistogram("clash_latency", "Clashing histogram", 1.0);
+        MetricsUtils.gauge("clash_latency_count").set(3);
+        MetricsUtils.exportTimerHistogram("clash.op", "Clashing timer");
+        MetricsUtils.gauge("clash_op_seconds_sum").set(4);
+        MetricsUtils.gauge("clash_free").set(6);
+        MetricsUtils.syncMetricsToPrometheus();
+
+        var names = MetricsUtils.getPrometheusRegistry().scrape().stream()
+                .map(snapshot -> snapshot.getMetadata().getName())
+                .toList();
+        assertEquals(1.0, scrapeCounter("clash_requests"), "The Prometheus counter must win over the local one");
+        assertFalse(names.contains("clash_latency_count"));
+        assertFalse(names.contains("clash_op_seconds_sum"));
+        assertTrue(names.contains("clash_free"));
+    }
+
+    @Test
+    void testToPrometheusCounterName() {
+        assertEquals("jobs", MetricsUtils.toPrometheusCounterName("jobs_total"));
+        assertEquals("test_op_count", MetricsUtils.toPrometheusCounterName("test.op_count"));
+        assertNull(MetricsUtils.toPrometheusCounterName("jobs_created"));
+    }
+
+    @Test
+    void testBindPrometheusCounter_ReturnsRegisteredCounter() {
+        var bound = MetricsUtils.bindPrometheusCounter("bound_counter", "Bound counter");
+        bound.inc();
+        bound.inc(2.0);
+        assertSame(MetricsUtils.getOrCreatePrometheusCounter("bound_counter", "Bound counter"), bound);
+        assertEquals(3.0, bound.get());
+    }
+
+    @Test
+    void testBindPrometheusCounter_InvalidNameReturnsDetachedCounter() {
+        var bound = MetricsUtils.bindPrometheusCounter("invalid name!", "Invalid counter");
+        assertNotNull(bound);
+        assertDoesNotThrow(() -> bound.inc());
+    }
+
+    @Test
+    void testBindPrometheusGaugeAndHistogram() {
+        var gauge = MetricsUtils.bindPrometheusGauge("bound_gauge", "Bound gauge");
+        gauge.set(5.0);
+        assertEquals(5.0, gauge.get());
+
+        var histogram = MetricsUtils.bindPrometheusHistogram("bound_histogram", "Bound histogram");
+        assertDoesNotThrow(() -> histogram.observe(0.5));
+        assertSame(MetricsUtils.getOrCreatePrometheusHistogram("bound_histogram", "Bound histogram"), histogram);
+    }
+
     @Test
     void testSanitizeMetricName() {
         assertEquals("test_metric", MetricsUtils.sanitizeMetricName("test-metric"));
@@ -213,6 +319,8 @@ class MetricsUtilsTest {
         assertEquals("_123metric", MetricsUtils.sanitizeMetricName("123metric"));
         assertEquals("test_metric_", MetricsUtils.sanitizeMetricName("test@metric!"));
         assertEquals("metric", MetricsUtils.sanitizeMetricName(""));
+        assertEquals("_:metric", MetricsUtils.sanitizeMetricName(":metric"));
+        assertEquals("caf__", MetricsUtils.sanitizeMetricName("caf\u00e9\uD83D\uDE00"));
     }
 
     @Test
@@ -232,4 +340,246 @@ class MetricsUtilsTest {
         var newCounter = MetricsUtils.getOrCreatePrometheusCounter("prom_counter4", "New counter");
         assertNotNull(newCounter);
     }
+
+    @Test
+    void testMeasureAsync_TimesUntilCompletion() throws Exception {
+        TimerHandle timer = MetricsUtils.timer("async_op");
+        long before = timer.getCount();
+        CompletableFuture<String> future = new CompletableFuture<>();
+
+        CompletionStage<String> stage = MetricsUtils.measureAsync("async_op", () -> future);
+        assertSame(future, stage);
+        assertEquals(before, timer.getCount());
+
+        Thread.sleep(20);
+        future.complete("done");
+        assertEquals(before + 1, timer.getCount());
+        assertTrue(timer.getMax(TimeUnit.MILLISECONDS) >= 20);
+        assertEquals(1, MetricsUtils.getCounterValue("async_op_success"));
+    }
+
+    @Test
+    void testMeasureAsync_CountsOutcomes() {
+        CompletableFuture<String> succeeded = new CompletableFuture<>();
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        CompletableFuture<String> cancelled = new CompletableFuture<>();
+        MetricsUtils.measureAsync("async_outcomes", () -> succeeded);
+        MetricsUtils.measureAsync("async_outcomes", () -> failed);
+        MetricsUtils.measureAsync("async_outcomes", () -> cancelled.thenApply(String::trim));
+
+        succeeded.complete("ok");
+        failed.completeExceptionally(new IllegalStateException("expected"));
+        cancelled.cancel(false);
+
+        assertEquals(1, MetricsUtils.getCounterValue("async_outcomes_success"));
+        assertEquals(1, MetricsUtils.getCounterValue("async_outcomes_failure"));
+        assertEquals(1, MetricsUtils.getCounterValue("async_outcomes_cancelled"));
+        assertEquals(3, MetricsUtils.getCounterValue("async_outcomes_count"));
+    }
+
+    @Test
+    void testMeasureAsync_SupplierThrows() {
+        assertThrows(IllegalStateException.class, () -> MetricsUtils.measureAsync("async_throws", () -> {
+            throw new IllegalStateException("expected");
+        }));
+        assertEquals(1, MetricsUtils.getCounterValue("async_throws_failure"));
+        assertEquals(1, MetricsUtils.timer("async_throws").getCount());
+    }
+
+    @Test
+    void testSetMaxSeries_RejectsNewSeries() {
+        MetricsUtils.counter("limit_existing").increment();
+        long rejectedBefore = MetricsUtils.getRejectedSeriesCount();
+        try {
+            MetricsUtils.setMaxSeries(1);
+            CounterHandle rejected = MetricsUtils.counter("limit_rejected_counter");
+            rejected.increment(5);
+            assertEquals(5, rejected.get());
+            assertEquals(0, MetricsUtils.getCounterValue("limit_rejected_counter"));
+            assertEquals(1, MetricsUtils.counter("limit_existing").get());
+            assertNotNull(MetricsUtils.getOrCreatePrometheusCounter("limit_rejected_prom", "Rejected"));
+            assertTrue(MetricsUtils.getRejectedSeriesCount() >= rejectedBefore + 2);
+            assertEquals(-1.0, scrapeCounter("limit_rejected_prom"));
+            MetricsUtils.startTimer("limit_rejected_timer");
+            assertEquals(-1L, MetricsUtils.stopTimer("limit_rejected_timer"));
+        } finally {
+            MetricsUtils.setMaxSeries(Integer.MAX_VALUE);
+        }
+    }
+
+    @Test
+    void testSetMaxSeries_CountsRejectedNameOnce() {
+        MetricsUtils.counter("limit_once_existing").increment();
+        try {
+            MetricsUtils.setMaxSeries(1);
+            MetricsUtils.incrementCounter("limit_once_rejected");
+            long rejected = MetricsUtils.getRejectedSeriesCount();
+            for (int i = 0; i < 100; i++) {
+                MetricsUtils.incrementCounter("limit_once_rejected");
+            }
+            assertEquals(rejected, MetricsUtils.getRejectedSeriesCount());
+        } finally {
+            MetricsUtils.setMaxSeries(Integer.MAX_VALUE);
+        }
+    }
+
+    @Test
+    void testSetTimeToIdle_EvictsIdleSeries() throws InterruptedException {
+        MetricsUtils.incrementCounter("idle_local_counter");
+        MetricsUtils.incrementPrometheusCounter("idle_prom_counter", "Idle Prometheus counter");
+        CounterHandle busy = MetricsUtils.counter("busy_local_counter");
+        MetricsUtils.startTimer("idle_started_timer");
+        long evictedBefore = MetricsUtils.getEvictedSeriesCount();
+        try {
+            MetricsUtils.setTimeToIdle(1, TimeUnit.HOURS);
+            MetricsUtils.evictIdleMetrics();
+            MetricsUtils.setTimeToIdle(20, TimeUnit.MILLISECONDS);
+            // The background sweeper runs too; keep the busy counter changing between sweeps
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+            while (System.nanoTime() < deadline) {
+                busy.increment();
+                Thread.sleep(1);
+            }
+            busy.increment();
+            MetricsUtils.evictIdleMetrics();
+
+            assertEquals(-1L, MetricsUtils.getElapsedTime("idle_started_timer"));
+            assertEquals(0, MetricsUtils.getCounterValue("idle_local_counter"));
+            assertEquals(-1.0, scrapeCounter("idle_prom_counter"));
+            assertSame(busy, MetricsUtils.counter("busy_local_counter"));
+            assertTrue(MetricsUtils.getEvictedSeriesCount() >= evictedBefore + 3);
+        } finally {
+            MetricsUtils.setTimeToIdle(0, TimeUnit.SECONDS);
+        }
+        MetricsUtils.incrementPrometheusCounter("idle_prom_counter", "Idle Prometheus counter");
+        assertEquals(1.0, scrapeCounter("idle_prom_counter"));
+    }
+
+    @Test
+    void testSetTimeToIdle_KeepsHandlesHeldByLibrary() throws Exception {
+        CounterHandle dropped = MetricsUtils.internalCounter("idle_pinned_dropped");
+        dropped.increment();
+        MetricsUtils.measureOperation("idle_hot_operation", () -> "ok");
+        MetricsUtils.measureOperation("idle_cold_operation", () -> "ok");
+        try {
+            MetricsUtils.setTimeToIdle(1, TimeUnit.HOURS);
+            MetricsUtils.evictIdleMetrics();
+            MetricsUtils.setTimeToIdle(20, TimeUnit.MILLISECONDS);
+            // Sub-millisecond calls keep the timer busy while _totalTime does not change
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+            while (System.nanoTime() < deadline) {
+                MetricsUtils.measureOperation("idle_hot_operation", () -> "ok");
+                Thread.sleep(1);
+            }
+            MetricsUtils.measureOperation("idle_hot_operation", () -> "ok");
+            MetricsUtils.evictIdleMetrics();
+
+            // The cold operation went as a unit: timer and counters
+            assertEquals(0, MetricsUtils.getCounterValue("idle_cold_operation_count"));
+            assertEquals(0, MetricsUtils.timer("idle_cold_operation").getCount());
+        } finally {
+            MetricsUtils.setTimeToIdle(0, TimeUnit.SECONDS);
+        }
+        dropped.increment();
+        assertEquals(2, MetricsUtils.getCounterValue("idle_pinned_dropped"));
+        long totalTime = MetricsUtils.getCounterValue("idle_hot_operation_totalTime");
+        MetricsUtils.measureOperation("idle_hot_operation", () -> {
+            Thread.sleep(2);
+            return "ok";
+        });
+        assertTrue(MetricsUtils.getCounterValue("idle_hot_operation_totalTime") > totalTime);
+        MetricsUtils.measureOperation("idle_cold_operation", () -> "ok");
+        assertEquals(1, MetricsUtils.getCounterValue("idle_cold_operation_count"));
+        assertEquals(1, MetricsUtils.timer("idle_cold_operation").getCount());
+    }
+
+    @Test
+    void testSetTimeToIdle_KeepsBoundPrometheusMetrics() throws InterruptedException {
+        Counter counter = MetricsUtils.bindPrometheusCounter("idle_bound_counter", "Bound counter");
+        Gauge gauge = MetricsUtils.bindPrometheusGauge("idle_bound_gauge", "Bound gauge");
+        Histogram histogram = MetricsUtils.bindPrometheusHistogram("idle_bound_histogram", "Bound histogram");
+        counter.inc();
+        try {
+            MetricsUtils.setTimeToIdle(1, TimeUnit.HOURS);
+            MetricsUtils.evictIdleMetrics();
+            MetricsUtils.setTimeToIdle(20, TimeUnit.MILLISECONDS);
+            Thread.sleep(50);
+            MetricsUtils.evictIdleMetrics();
+        } finally {
+            MetricsUtils.setTimeToIdle(0, TimeUnit.SECONDS);
+        }
+        // The kept instances are still the registered ones, so their updates are still exported
+        assertSame(counter, MetricsUtils.getOrCreatePrometheusCounter("idle_bound_counter", "Bound counter"));
+        assertSame(gauge, MetricsUtils.getOrCreatePrometheusGauge("idle_bound_gauge", "Bound gauge"));
+        assertSame(histogram,
+                MetricsUtils.getOrCreatePrometheusHistogram("idle_bound_histogram", "Bound histogram"));
+        counter.inc();
+        assertEquals(2.0, scrapeCounter("idle_bound_counter"));
+    }
+
+    @Test
+    void testSetTimeToIdle_InvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> MetricsUtils.setMaxSeries(0));
+        assertThrows(IllegalArgumentException.class, () -> MetricsUtils.setTimeToIdle(-1, TimeUnit.SECONDS));
+        assertEquals(0, MetricsUtils.evictIdleMetrics());
+    }
+
+    @Test
+    void testTrackHeavyHitters_RanksOperationsAndCounters() throws Exception {
+        MetricsUtils.trackHeavyHitters(2);
+        try {
+            for (int i = 0; i < 5; i++) {
+                MetricsUtils.measureOperation("hh_frequent_op", () -> null);
+            }
+            MetricsUtils.measureOperation("hh_slow_op", () -> {
+                Thread.sleep(20);
+                return null;
+            });
+            MetricsUtils.incrementCounter("hh_counter_a", 7);
+            MetricsUtils.incrementCounter("hh_counter_b", 2);
+
+            assertEquals("hh_frequent_op", MetricsUtils.topOperationsByCount(1).get(0).getKey());
+            assertEquals(5, MetricsUtils.topOperationsByCount(1).get(0).getWeight());
+            HeavyHitters.Entry slowest = MetricsUtils.topOperationsByTotalTime(1).get(0);
+            assertEquals("hh_slow_op", slowest.getKey());
+            assertTrue(slowest.getWeight() >= TimeUnit.MILLISECONDS.toNanos(20));
+            assertEquals("hh_counter_a", MetricsUtils.topCounters(2).get(0).getKey());
+            assertEquals(7, MetricsUtils.topCounters(2).get(0).getWeight());
+
+            MetricsUtils.syncMetricsToPrometheus();
+            assertTrue(MetricsUtils.getPrometheusRegistry().scrape().stream()
+                    .anyMatch(snapshot -> snapshot.getMetadata().getName().equals("top_operation_time_seconds")
+                            && snapshot.getDataPoints().size() == 2));
+        } finally {
+            MetricsUtils.trackHeavyHitters(0);
+        }
+        assertTrue(MetricsUtils.topOperationsByCount(1).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> MetricsUtils.trackHeavyHitters(4, 2));
+    }
+
+    @Test
+    void testDistinctCounter_ExportedAsGauge() {
+        DistinctCounter counter = MetricsUtils.distinctCounter("test_distinct_users");
+        assertSame(counter, MetricsUtils.distinctCounter("test_distinct_users"));
+        for (int i = 0; i < 200; i++) {
+            counter.add("user-" + (i % 20));
+        }
+        assertEquals(20, counter.getEstimate(), 1);
+        assertThrows(IllegalArgumentException.class,
+                () -> MetricsUtils.distinctCounter("test_distinct_users", 1, TimeUnit.MINUTES));
+
+        MetricsUtils.syncMetricsToPrometheus();
+        assertTrue(MetricsUtils.getPrometheusRegistry().scrape().stream()
+                .filter(snapshot -> snapshot.getMetadata().getName().equals("test_distinct_users"))
+                .anyMatch(snapshot -> ((GaugeSnapshot) snapshot).getDataPoints().get(0).getValue()
+                        == counter.getEstimate()));
+    }
+
+    private static double scrapeCounter(String name) {
+        return MetricsUtils.getPrometheusRegistry().scrape().stream()
+                .filter(snapshot -> snapshot.getMetadata().getName().equals(name))
+                .map(snapshot -> ((CounterSnapshot) snapshot).getDataPoints().get(0).getValue())
+                .findFirst()
+                .orElse(-1.0);
+    }
 }
@@ -0,0 +1,61 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for MultiProducerRing.
+ */
+class MultiProducerRingTest {
+
+    @Test
+    void testClaim_FailsWhenFullUnlessConsumed() {
+        MultiProducerRing ring = new MultiProducerRing(2, false, Thread.currentThread());
+        assertEquals(0, ring.claim());
+        assertEquals(1, ring.claim());
+        assertEquals(-1, ring.claim());
+
+        ring.publish(0);
+        assertTrue(ring.isPublished(0));
+        assertFalse(ring.isPublished(1));
+        ring.consumed(1);
+        assertEquals(2, ring.claim());
+        assertEquals(0, ring.index(2));
+        assertEquals(3, ring.getClaimedSequence());
+        assertEquals(1, ring.getConsumedSequence());
+    }
+
+    @Test
+    void testClaim_BlockingFailsWhenConsumerIsDead() throws InterruptedException {
+        Thread consumer = new Thread(() -> { });
+        consumer.start();
+        consumer.join();
+        MultiProducerRing ring = new MultiProducerRing(2, true, consumer);
+        ring.claim();
+        ring.claim();
+        assertEquals(-1, ring.claim());
+    }
+
+    @Test
+    void testClose_ConsumerWaitsForClaimedSequences() {
+        MultiProducerRing ring = new MultiProducerRing(4, false, Thread.currentThread());
+        long sequence = ring.claim();
+        assertTrue(ring.close());
+        assertFalse(ring.close());
+        assertEquals(-1, ring.claim());
+        assertEquals(1, ring.getClaimedSequence());
+
+        // The claimed sequence is still drained, nothing after it
+        assertTrue(ring.isClaimedOrOpen(sequence));
+        ring.publish(sequence);
+        ring.consumed(sequence + 1);
+        assertFalse(ring.isClaimedOrOpen(sequence + 1));
+    }
+
+    @Test
+    void testNew_InvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new MultiProducerRing(3, false, Thread.currentThread()));
+        assertThrows(IllegalArgumentException.class, () -> new MultiProducerRing(1, false, Thread.currentThread()));
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for SampledTimerHandle.
+ */
+class SampledTimerHandleTest {
+
+    @Test
+    void testCountsEveryCallAndSamplesSome() throws Exception {
+        SampledTimerHandle handle = MetricsUtils.sampledTimer("sampled_every_call", 16);
+        int calls = 100_000;
+        for (int i = 0; i < calls; i++) {
+            handle.measure(() -> null);
+        }
+
+        assertEquals(calls, handle.getCallCount());
+        assertEquals(calls, MetricsUtils.getCounterValue("sampled_every_call_count"));
+        // Each sample stands for 16 calls, so the estimate is within a few percent of the truth
+        long estimated = handle.getTimer().getCount();
+        assertEquals(0, estimated % 16);
+        assertTrue(Math.abs(estimated - calls) < calls * 0.1, "estimated " + estimated);
+    }
+
+    @Test
+    void testIntervalOfOneTimesEveryCall() {
+        SampledTimerHandle handle = MetricsUtils.sampledTimer("sampled_all", 1);
+        for (int i = 0; i < 10; i++) {
+            handle.stop(handle.start());
+        }
+        assertEquals(10, handle.getTimer().getCount());
+    }
+
+    @Test
+    void testScaledEstimateOfTotalTime() throws Exception {
+        SampledTimerHandle handle = MetricsUtils.sampledTimer("sampled_total", 4);
+        for (int i = 0; i < 400; i++) {
+            handle.measure(() -> {
+                Thread.sleep(0, 200_000);
+                return null;
+            });
+        }
+        double meanMicros = handle.getTimer().getMeanNanos() / 1000.0;
+        assertTrue(meanMicros >= 200, "mean " + meanMicros);
+        assertTrue(handle.getTimer().getTotalTime(TimeUnit.MILLISECONDS) >= 60);
+    }
+
+    @Test
+    void testSlowCallsLowerInterval() {
+        SampledTimerHandle handle = MetricsUtils.sampledTimer("sampled_slow", 1024, 0, TimeUnit.NANOSECONDS);
+        for (int i = 0; i < 100_000 && handle.getSampleInterval() > 1; i++) {
+            handle.stop(handle.start());
+        }
+        assertEquals(1, handle.getSampleInterval());
+    }
+
+    @Test
+    void testFastCallsRestoreInterval() throws InterruptedException {
+        SampledTimerHandle handle = new SampledTimerHandle("sampled_recover", 64, TimeUnit.MILLISECONDS.toNanos(50));
+        long slow = sampledStart(handle);
+        Thread.sleep(60);
+        handle.stop(slow);
+        assertEquals(32, handle.getSampleInterval());
+        for (int i = 0; i < 100_000 && handle.getSampleInterval() < 64; i++) {
+            handle.stop(handle.start());
+        }
+        assertEquals(64, handle.getSampleInterval());
+    }
+
+    @Test
+    void testSampleWeightedWithIntervalAtStart() throws InterruptedException {
+        SampledTimerHandle handle = new SampledTimerHandle("sampled_in_flight", 16, TimeUnit.MILLISECONDS.toNanos(50));
+        long inFlight = sampledStart(handle);
+        long slow = sampledStart(handle);
+        Thread.sleep(60);
+        handle.stop(slow);
+        assertEquals(8, handle.getSampleInterval());
+
+        // Drawn with 1 in 16, so it stands for 16 calls even though the interval is now 8
+        handle.stop(inFlight);
+        assertEquals(32, handle.getTimer().getCount());
+        assertTrue(handle.getTimer().getHistogram().getMax() >= TimeUnit.MILLISECONDS.toNanos(60));
+    }
+
+    @Test
+    void testInvalidInterval() {
+        assertThrows(IllegalArgumentException.class, () -> MetricsUtils.sampledTimer("sampled_invalid", 0));
+        assertThrows(IllegalArgumentException.class, () -> MetricsUtils.sampledTimer("sampled_invalid",
+                SampledTimerHandle.MAX_SAMPLE_INTERVAL + 1));
+    }
+
+    private static long sampledStart(SampledTimerHandle handle) {
+        long token;
+        do {
+            token = handle.start();
+        } while (token == SampledTimerHandle.NOT_SAMPLED);
+        return token;
+    }
+}
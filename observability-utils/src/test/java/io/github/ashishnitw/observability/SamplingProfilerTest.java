@@ -0,0 +1,104 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for SamplingProfiler.
+ */
+class SamplingProfilerTest {
+
+    private static volatile long sink;
+
+    @Test
+    void testProfile_ContainsBusyMethod() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread busy = startBusyThread(running, 0);
+        SamplingProfiler profiler = SamplingProfiler.start(200);
+        try {
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (profiler.getThreadSampleCount() < 20 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            profiler.stop();
+            running.set(false);
+            busy.join();
+        }
+        assertFalse(profiler.isRunning());
+        assertTrue(profiler.getSampleCount() > 0);
+        assertTrue(profiler.getOverheadRatio() > 0);
+        assertTrue(profiler.getOverheadRatio() < 0.5, "overhead " + profiler.getOverheadRatio());
+
+        String collapsed = collapsed(profiler);
+        assertTrue(collapsed.contains("SamplingProfilerTest.burnCpu "), collapsed);
+        for (String line : collapsed.split("\n")) {
+            assertTrue(line.matches("[^ ]+ \\d+"), line);
+        }
+    }
+
+    @Test
+    void testSample_TruncatesWhenTrieIsFull() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread busy = startBusyThread(running, 20);
+        SamplingProfiler profiler = SamplingProfiler.start(1, SamplingProfiler.DEFAULT_MAX_DEPTH, 5);
+        try {
+            for (int i = 0; i < 20; i++) {
+                profiler.sample();
+            }
+        } finally {
+            profiler.close();
+            running.set(false);
+            busy.join();
+        }
+        assertTrue(profiler.getNodeCount() <= 5);
+        assertTrue(profiler.getTruncatedSampleCount() > 0);
+        assertTrue(collapsed(profiler).contains(SamplingProfiler.TRUNCATED_FRAME));
+
+        profiler.reset();
+        assertEquals(0, profiler.getNodeCount());
+        assertEquals("", collapsed(profiler));
+    }
+
+    @Test
+    void testStart_InvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> SamplingProfiler.start(0));
+        assertThrows(IllegalArgumentException.class, () -> SamplingProfiler.start(10, 0, 10));
+    }
+
+    private static String collapsed(SamplingProfiler profiler) throws IOException {
+        StringWriter out = new StringWriter();
+        profiler.writeCollapsed(out);
+        return out.toString();
+    }
+
+    private static Thread startBusyThread(AtomicBoolean running, int depth) throws InterruptedException {
+        Thread thread = new Thread(() -> recurse(running, depth), "profiler-test-busy");
+        thread.start();
+        while (thread.getState() == Thread.State.NEW) {
+            Thread.sleep(1);
+        }
+        return thread;
+    }
+
+    private static void recurse(AtomicBoolean running, int depth) {
+        if (depth > 0) {
+            recurse(running, depth - 1);
+        } else {
+            burnCpu(running);
+        }
+    }
+
+    private static void burnCpu(AtomicBoolean running) {
+        long x = 0;
+        while (running.get()) {
+            x = x * 31 + System.nanoTime();
+        }
+        sink = x;
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.Level;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TextLogEncoder.
+ */
+class TextLogEncoderTest {
+
+    private final TextLogEncoder encoder = new TextLogEncoder();
+
+    private String encode(String message, Object[] arguments, Throwable throwable, Map<String, String> mdc) {
+        ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        encoder.encode(new LogEvent(1_714_566_600_250L, Level.INFO, "com.example.Orders", "main", message,
+                arguments, throwable, mdc), out);
+        return new String(out.array(), 0, out.position(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testEncode_Layout() {
+        assertEquals("2024-05-01T12:30:00.250Z INFO  [main] com.example.Orders - Order 42 placed\n",
+                encode("Order {} placed", new Object[]{42}, null, null));
+    }
+
+    @Test
+    void testEncode_Placeholders() {
+        assertEquals("a=1 b=null c={}", message("a={} b={} c={}", 1, null));
+        assertEquals("literal {} then 7", message("literal \\{} then {}", 7));
+        assertEquals("backslash \\8", message("backslash \\\\{}", 8));
+        assertEquals("arrays [1, 2] [[a], [b]]", message("arrays {} {}", new int[]{1, 2},
+                new Object[][]{{"a"}, {"b"}}));
+        assertEquals("no args {}", message("no args {}"));
+    }
+
+    private String message(String pattern, Object... arguments) {
+        String line = encode(pattern, arguments, null, null);
+        return line.substring(line.indexOf(" - ") + 3, line.length() - 1);
+    }
+
+    @Test
+    void testEncode_MdcAndUtf8() {
+        Map<String, String> mdc = new LinkedHashMap<>();
+        mdc.put("requestId", "abc");
+        mdc.put("user", "z\u00fcrich");
+        assertTrue(encode("caf\u00e9 \u20ac \ud83d\ude00", null, null, mdc)
+                .endsWith("- caf\u00e9 \u20ac \ud83d\ude00 {requestId=abc, user=z\u00fcrich}\n"));
+    }
+
+    @Test
+    void testEncode_StackTrace() {
+        String encoded = encode("failed", null, new IllegalStateException("boom"), null);
+        String[] lines = encoded.split("\n");
+        assertTrue(lines[0].endsWith("- failed"));
+        assertEquals("java.lang.IllegalStateException: boom", lines[1]);
+        assertTrue(lines[2].startsWith("\tat "));
+        assertTrue(encoded.endsWith("\n"));
+    }
+
+    @Test
+    void testEncode_TimestampsMatchJavaTime() {
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+        long[] times = {0L, 951_782_400_000L, 1_709_164_799_999L, 4_102_444_800_001L, -1L, 253_402_300_799_999L};
+        for (long time : times) {
+            ByteBuffer out = ByteBuffer.allocate(32);
+            LogEncoding.putTimestamp(out, time);
+            assertEquals(format.format(Instant.ofEpochMilli(time)),
+                    new String(out.array(), 0, out.position(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void testEncode_OverflowThrows() {
+        ByteBuffer out = ByteBuffer.allocate(16);
+        assertThrows(BufferOverflowException.class, () -> encoder.encode(new LogEvent(0L, Level.INFO, "a", "main",
+                "a message longer than the buffer", null, null, null), out));
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TimerHandle.
+ */
+class TimerHandleTest {
+
+    @BeforeEach
+    void setUp() {
+        MetricsUtils.timer("handle_timer").reset();
+        MetricsUtils.timer("handle_timer_concurrent").reset();
+    }
+
+    @Test
+    void testTimer_ReturnsSameHandle() {
+        assertSame(MetricsUtils.timer("handle_timer"), MetricsUtils.timer("handle_timer"));
+    }
+
+    @Test
+    void testStartAndStop() throws InterruptedException {
+        TimerHandle timer = MetricsUtils.timer("handle_timer");
+        long start = timer.start();
+        Thread.sleep(20);
+        long elapsed = timer.stop(start);
+
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(1, timer.getCount());
+        assertEquals(elapsed, timer.getTotalTime(TimeUnit.NANOSECONDS));
+        assertEquals(elapsed, timer.getMax(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    void testSampleScope() throws InterruptedException {
+        TimerHandle timer = MetricsUtils.timer("handle_timer");
+        try (TimerHandle.Sample ignored = timer.time()) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, timer.getCount());
+        assertTrue(timer.getTotalTime(TimeUnit.MILLISECONDS) >= 10);
+    }
+
+    @Test
+    void testRecord() {
+        TimerHandle timer = MetricsUtils.timer("handle_timer");
+        timer.record(100);
+        timer.record(3, TimeUnit.MICROSECONDS);
+
+        assertEquals(2, timer.getCount());
+        assertEquals(3100, timer.getTotalTime(TimeUnit.NANOSECONDS));
+        assertEquals(3, timer.getMax(TimeUnit.MICROSECONDS));
+        assertEquals(1550.0, timer.getMeanNanos(), 0.001);
+        assertEquals(2, timer.getHistogram().getCount());
+    }
+
+    @Test
+    void testGetPercentile() {
+        TimerHandle timer = MetricsUtils.timer("handle_timer");
+        for (int i = 1; i <= 100; i++) {
+            timer.record(i, TimeUnit.MILLISECONDS);
+        }
+        long p99 = timer.getPercentile(99, TimeUnit.MILLISECONDS);
+        assertTrue(p99 >= 97 && p99 <= 100, "p99 was " + p99);
+        assertEquals(100, timer.getPercentile(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testOverlappingSamplesFromManyThreads() throws InterruptedException {
+        TimerHandle timer = MetricsUtils.timer("handle_timer_concurrent");
+        int threadCount = 8;
+        int samplesPerThread = 10_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < samplesPerThread; j++) {
+                    timer.stop(timer.start());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals((long) threadCount * samplesPerThread, timer.getCount());
+    }
+
+    @Test
+    void testStartAndStop_DoNotAllocate() {
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        TimerHandle timer = MetricsUtils.timer("handle_timer");
+        for (int i = 0; i < 100_000; i++) {
+            timer.stop(timer.start());
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            timer.stop(timer.start());
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // Allow for the bytes allocated by the measurement call itself
+        assertTrue(allocated < 1024, "Allocated " + allocated + " bytes");
+    }
+}
@@ -0,0 +1,341 @@
+package io.github.ashishnitw.observability;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Test class for TracingUtils.
+ */
+class TracingUtilsTest {
+
+    @AfterEach
+    void disableTracing() {
+        TracingUtils.disableTracing();
+    }
+
+    @Test
+    void testStartSpan_NestsIntoOneTrace() throws InterruptedException {
+        InMemorySpanCollector collector = new InMemorySpanCollector(100);
+        TracingUtils.enableTracing(1.0, 100, collector);
+
+        Span root = TracingUtils.startSpan("checkout");
+        Span child = TracingUtils.startSpan("charge_card");
+        assertSame(child, TracingUtils.currentSpan());
+        Span grandchild = TracingUtils.startSpan("http_call");
+        grandchild.end();
+        child.end();
+        Span sibling = TracingUtils.startSpan("send_email");
+        sibling.end();
+        root.end();
+        assertFalse(TracingUtils.currentSpan().isSampled());
+        TracingUtils.flush();
+
+        List<Span> trace = collector.getTrace(root.getTraceId());
+        assertEquals(List.of(root, child, grandchild, sibling), trace);
+        assertEquals(0L, root.getParentSpanId());
+        assertEquals(root.getSpanId(), child.getParentSpanId());
+        assertEquals(child.getSpanId(), grandchild.getParentSpanId());
+        assertEquals(root.getSpanId(), sibling.getParentSpanId());
+        assertTrue(root.getDurationNanos() >= child.getDurationNanos());
+        assertEquals(Thread.currentThread().getName(), root.getThreadName());
+    }
+
+    @Test
+    void testEnd_Twice_ExportsOnce() throws InterruptedException {
+        InMemorySpanCollector collector = new InMemorySpanCollector(10);
+        TracingUtils.enableTracing(1.0, 10, collector);
+
+        try (Span span = TracingUtils.startSpan("once")) {
+            span.end();
+        }
+        TracingUtils.flush();
+
+        assertEquals(1, collector.getSpans().size());
+    }
+
+    @Test
+    void testEnd_RestoresParentWhenChildWasNotEnded() throws InterruptedException {
+        InMemorySpanCollector collector = new InMemorySpanCollector(10);
+        TracingUtils.enableTracing(1.0, 10, collector);
+
+        Span root = TracingUtils.startSpan("root");
+        TracingUtils.startSpan("leaked");
+        root.end();
+        Span next = TracingUtils.startSpan("next");
+        next.end();
+        TracingUtils.flush();
+
+        assertEquals(0L, next.getParentSpanId());
+        assertNotEquals(root.getTraceId(), next.getTraceId());
+    }
+
+    @Test
+    void testSampling_DecidedAtRoot() throws InterruptedException {
+        InMemorySpanCollector collector = new InMemorySpanCollector(10);
+        TracingUtils.enableTracing(0.0, 10, collector);
+
+        Span root = TracingUtils.startSpan("root");
+        Span child = TracingUtils.startSpan("child");
+        assertFalse(root.isSampled());
+        assertFalse(child.isSampled());
+        assertSame(root, child);
+        child.end();
+        root.end();
+
+        // Enabling all sampling again starts a fresh context
+        TracingUtils.enableTracing(1.0, 10, collector);
+        Span sampled = TracingUtils.startSpan("sampled");
+        assertTrue(sampled.isSampled());
+        assertEquals(0L, sampled.getParentSpanId());
+        sampled.end();
+        TracingUtils.flush();
+
+        assertEquals(List.of(sampled), collector.getSpans());
+    }
+
+    @Test
+    void testSampling_RateIsApproximated() {
+        InMemorySpanCollector collector = new InMemorySpanCollector(10);
+        TracingUtils.enableTracing(0.25, 10, collector);
+
+        int sampled = 0;
+        for (int i = 0; i < 20_000; i++) {
+            Span span = TracingUtils.startSpan("root");
+            if (span.isSampled()) {
+                sampled++;
+            }
+            span.end();
+        }
+
+        assertEquals(5000, sampled, 400);
+    }
+
+    @Test
+    void testUnsampledSpans_DoNotAllocate() {
+        var allocations = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        TracingUtils.enableTracing(0.0, 10, new InMemorySpanCollector(10));
+        for (int i = 0; i < 100_000; i++) {
+            nestedUnsampled();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            nestedUnsampled();
+        }
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(allocated < 64 * 1024, "allocated " + allocated + " bytes");
+    }
+
+    private static void nestedUnsampled() {
+        try (Span outer = TracingUtils.startSpan("outer")) {
+            try (Span inner = TracingUtils.startSpan("inner")) {
+                inner.recordError(null);
+            }
+        }
+    }
+
+    @Test
+    void testDisabled_ReturnsUnsampledSpan() {
+        assertFalse(TracingUtils.isTracingEnabled());
+        Span span = TracingUtils.startSpan("anything");
+        assertFalse(span.isSampled());
+        assertEquals(0L, span.getTraceId());
+        span.end();
+        assertFalse(TracingUtils.currentSpan().isSampled());
+        assertEquals(0, TracingUtils.getDroppedSpanCount());
+    }
+
+    @Test
+    void testStartSpan_ExplicitParentFromAnotherThread() throws InterruptedException {
+        InMemorySpanCollector collector = new InMemorySpanCollector(10);
+        TracingUtils.enableTracing(1.0, 10, collector);
+        Span root = TracingUtils.startSpan("request");
+        AtomicReference<Span> worker = new AtomicReference<>();
+
+        Thread thread = new Thread(() -> {
+            try (Span span = TracingUtils.startSpan("background", root)) {
+                worker.set(span);
+                assertSame(span, TracingUtils.currentSpan());
+            }
+            assertFalse(TracingUtils.currentSpan().isSampled());
+        });
+        thread.start();
+        thread.join();
+        assertSame(root, TracingUtils.currentSpan());
+        root.end();
+        TracingUtils.flush();
+
+        assertEquals(root.getTraceId(), worker.get().getTraceId());
+        assertEquals(root.getSpanId(), worker.get().getParentSpanId());
+        assertEquals(2, collector.getTrace(root.getTraceId()).size());
+    }
+
+    @Test
+    void testLoggingAndMetrics_NestAsSpans() throws Exception {
+        InMemorySpanCollector collector = new InMemorySpanCollector(10);
+        TracingUtils.enableTracing(1.0, 10, collector);
+
+        LoggingUtils.logMethodEntry("placeOrder", 42);
+        Span method = TracingUtils.currentSpan();
+        MetricsUtils.measureOperation("tracing_charge", () -> "ok");
+        assertThrows(IOException.class, () -> MetricsUtils.measureOperation("tracing_fail", () -> {
+            throw new IOException("down");
+        }));
+        LoggingUtils.logMethodExit("otherMethod");
+        assertSame(method, TracingUtils.currentSpan());
+        LoggingUtils.logMethodExit("placeOrder", true);
+        TracingUtils.flush();
+
+        List<Span> trace = collector.getTrace(method.getTraceId());
+        assertEquals(3, trace.size());
+        assertEquals("placeOrder", trace.get(0).getName());
+        assertEquals("tracing_charge", trace.get(1).getName());
+        assertEquals(method.getSpanId(), trace.get(1).getParentSpanId());
+        assertNull(trace.get(1).getError());
+        assertEquals("tracing_fail", trace.get(2).getName());
+        assertEquals("java.io.IOException", trace.get(2).getError());
+        assertFalse(TracingUtils.currentSpan().isSampled());
+    }
+
+    @Test
+    void testMethodExit_UnwindsMethodsThatThrew() throws InterruptedException {
+        InMemorySpanCollector collector = new InMemorySpanCollector(10);
+        TracingUtils.enableTracing(1.0, 10, collector);
+
+        LoggingUtils.logMethodEntry("handleRequest");
+        Span outer = TracingUtils.currentSpan();
+        try {
+            LoggingUtils.logMethodEntry("validate");
+            throw new IllegalStateException("invalid");
+        } catch (IllegalStateException e) {
+            // validate never logged its exit
+        }
+        assertEquals("validate", TracingUtils.currentSpan().getName());
+        LoggingUtils.logMethodExit("handleRequest");
+        assertFalse(TracingUtils.currentSpan().isSampled());
+        assertNull(outer.getPrevious());
+
+        Span next = TracingUtils.startSpan("nextRequest");
+        next.end();
+        TracingUtils.flush();
+
+        assertEquals(0L, next.getParentSpanId());
+        assertNotEquals(outer.getTraceId(), next.getTraceId());
+        assertEquals(List.of(outer), collector.getTrace(outer.getTraceId()));
+    }
+
+    @Test
+    void testMethodExit_UnsampledTraceIgnoresMismatchedExit() {
+        TracingUtils.enableTracing(1.0, 10, new InMemorySpanCollector(10));
+        Span foreign = TracingUtils.startSpan("foreign");
+        foreign.end();
+        TracingUtils.enableTracing(0.0, 10, new InMemorySpanCollector(10));
+
+        LoggingUtils.logMethodEntry("handleRequest");
+        try {
+            LoggingUtils.logMethodEntry("validate");
+            throw new IllegalStateException("invalid");
+        } catch (IllegalStateException e) {
+            // validate never logged its exit
+        }
+        LoggingUtils.logMethodExit("otherMethod");
+        // Still inside the unsampled trace: a linked span is started but is not current
+        try (Span probe = TracingUtils.startSpan("probe", foreign)) {
+            assertTrue(probe.isSampled());
+            assertFalse(TracingUtils.currentSpan().isSampled());
+        }
+        LoggingUtils.logMethodExit("handleRequest");
+
+        // Back outside any trace, so the thread samples new roots again
+        try (Span probe = TracingUtils.startSpan("probe", foreign)) {
+            assertSame(probe, TracingUtils.currentSpan());
+        }
+    }
+
+    @Test
+    void testStartSpan_DropsLeakedSpansBeyondMaxDepth() {
+        TracingUtils.enableTracing(1.0, 10, new InMemorySpanCollector(10));
+
+        for (int i = 0; i < TracingUtils.MAX_DEPTH; i++) {
+            LoggingUtils.logMethodEntry("leaked");
+        }
+        Span span = TracingUtils.startSpan("afterLeak");
+
+        assertNull(span.getPrevious());
+        span.end();
+        assertFalse(TracingUtils.currentSpan().isSampled());
+    }
+
+    @Test
+    void testBuffer_DropsWhenFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        SpanExporter blocking = spans -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        long droppedBefore = MetricsUtils.getCounterValue("spans_dropped");
+        TracingUtils.enableTracing(1.0, 2, blocking);
+
+        TracingUtils.startSpan("first").end();
+        // Wait until the exporter holds the first span, so the buffer is empty again
+        while (TracingUtils.getDroppedSpanCount() == 0) {
+            Span span = TracingUtils.startSpan("more");
+            span.end();
+        }
+        release.countDown();
+
+        assertTrue(TracingUtils.getDroppedSpanCount() > 0);
+        assertTrue(MetricsUtils.getCounterValue("spans_dropped") > droppedBefore);
+    }
+
+    @Test
+    void testEnableTracing_InvalidArguments() {
+        InMemorySpanCollector collector = new InMemorySpanCollector(1);
+        assertThrows(IllegalArgumentException.class, () -> TracingUtils.enableTracing(1.5, 10, collector));
+        assertThrows(IllegalArgumentException.class, () -> TracingUtils.enableTracing(Double.NaN, 10, collector));
+        assertThrows(IllegalArgumentException.class, () -> TracingUtils.enableTracing(0.5, 0, collector));
+        assertThrows(IllegalArgumentException.class, () -> TracingUtils.enableTracing(0.5, 10, null));
+    }
+
+    @Test
+    void testDisableTracing_ClosesExporter() {
+        AtomicReference<Boolean> closed = new AtomicReference<>(false);
+        TracingUtils.enableTracing(1.0, 10, new SpanExporter() {
+            @Override
+            public void export(List<Span> spans) {
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        });
+        TracingUtils.disableTracing();
+
+        assertTrue(closed.get());
+        assertFalse(TracingUtils.isTracingEnabled());
+    }
+
+    @Test
+    void testConstructor_ThrowsException() throws NoSuchMethodException {
+        var constructor = TracingUtils.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        Exception exception = assertThrows(Exception.class, constructor::newInstance);
+        assertTrue(exception.getCause() instanceof UnsupportedOperationException);
+    }
+}